@@ -18,4 +18,22 @@
 
 # If you keep the line number information, uncomment this to
 # hide the original source file name.
-#-renamesourcefileattribute SourceFile
\ No newline at end of file
+#-renamesourcefileattribute SourceFile
+
+# Registro de eventos: en release las llamadas a EventLog.d() se eliminan junto con la
+# construcción de sus argumentos, así que no cuestan nada en las rutas críticas
+-assumenosideeffects class com.example.segii.mapa.registro.EventLog {
+    *** d(...);
+}
+
+# Porcupine carga su biblioteca nativa y la llama por JNI con los nombres originales
+-keep class ai.picovoice.** { *; }
+
+# org.json se empaqueta además de la del sistema; se conserva tal cual para no mezclar versiones
+-keep class org.json.** { *; }
+
+# slf4j busca su implementación en tiempo de ejecución y la app no incluye ninguna
+-dontwarn org.slf4j.impl.**
+
+# Conserva los números de línea para que las trazas de los reportes de errores se puedan leer
+-keepattributes SourceFile,LineNumberTable
@@ -0,0 +1,96 @@
+package com.example.segii.mapa.keyWord;
+
+import android.content.Context;
+import android.os.Bundle;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Random;
+
+import ai.picovoice.porcupine.Porcupine;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+// Mide en el dispositivo el CPU de la escucha de la palabra clave con y sin la compuerta de voz,
+// con Porcupine real sobre un minuto de audio sintético con ruido de motor y tres ráfagas de voz.
+// Necesita la clave de Picovoice como argumento de la instrumentación:
+//   ./gradlew connectedAndroidTest -Pandroid.testInstrumentationRunnerArguments.picovoiceAccessKey=...
+// Los resultados quedan en logcat con la etiqueta VoiceGateBenchmark.
+@RunWith(AndroidJUnit4.class)
+public class VoiceActivityGateBenchmark {
+    private static final String TAG = "VoiceGateBenchmark";
+
+    @Test
+    public void cpuPerMinuteWithAndWithoutGate() throws Exception {
+        Bundle arguments = InstrumentationRegistry.getArguments();
+        String accessKey = arguments.getString("picovoiceAccessKey");
+        assumeTrue("Falta el argumento picovoiceAccessKey", accessKey != null && !accessKey.isEmpty());
+
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        Porcupine porcupine = new Porcupine.Builder()
+                .setAccessKey(accessKey)
+                .setKeywordPath("okey-segui_es_android_v3_0_0.ppn")
+                .setModelPath("porcupine_params_es.pv")
+                .setSensitivity(0.7f)
+                .build(context);
+        try {
+            short[][] audio = engineMinute(porcupine.getSampleRate(), porcupine.getFrameLength());
+            // Calentamiento
+            run(porcupine, audio, false);
+            long[] ungated = run(porcupine, audio, false);
+            long[] gated = run(porcupine, audio, true);
+            Log.i(TAG, "CPU por minuto de audio: sin compuerta " + ungated[0] + " ms, con compuerta "
+                    + gated[0] + " ms (" + gated[1] + "/" + audio.length + " frames a Porcupine)");
+            assertTrue(gated[1] < audio.length / 2);
+        } finally {
+            porcupine.delete();
+        }
+    }
+
+    // CPU del hilo (ms) y frames entregados a Porcupine
+    private static long[] run(Porcupine porcupine, short[][] audio, boolean gated) {
+        VoiceActivityGate gate = new VoiceActivityGate(audio[0].length);
+        gate.setEnabled(gated);
+        VoiceActivityGate.FrameSink detector = frame -> {
+            try {
+                porcupine.process(frame);
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        };
+        long start = SystemClock.currentThreadTimeMillis();
+        for (short[] frame : audio) gate.offer(frame, detector);
+        return new long[]{SystemClock.currentThreadTimeMillis() - start, gate.getFramesPassed()};
+    }
+
+    // Un minuto de ruido de motor (~300 RMS, 90 Hz) con tres ráfagas de ~1 s parecidas a voz
+    private static short[][] engineMinute(int sampleRate, int frameLength) {
+        Random random = new Random(5);
+        int frames = sampleRate * 60 / frameLength;
+        int burst = sampleRate / frameLength;
+        short[][] audio = new short[frames][frameLength];
+        int t = 0;
+        for (int f = 0; f < frames; f++) {
+            boolean speech = (f >= frames / 4 && f < frames / 4 + burst) || (f >= frames / 2 && f < frames / 2 + burst)
+                    || (f >= 3 * frames / 4 && f < 3 * frames / 4 + burst);
+            for (int i = 0; i < frameLength; i++, t++) {
+                double sample = random.nextGaussian() * 40
+                        + 320 * (1.2 * Math.sin(2 * Math.PI * 90 * t / sampleRate) + 0.3 * random.nextGaussian());
+                if (speech) {
+                    double envelope = 0.5 + 0.5 * Math.sin(2 * Math.PI * 4 * t / sampleRate);
+                    sample += envelope * 4000 * (Math.sin(2 * Math.PI * 180 * t / sampleRate)
+                            + 0.5 * Math.sin(2 * Math.PI * 360 * t / sampleRate));
+                }
+                audio[f][i] = (short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, sample));
+            }
+        }
+        return audio;
+    }
+}
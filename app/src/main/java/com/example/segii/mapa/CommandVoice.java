@@ -3,26 +3,98 @@ package com.example.segii.mapa;
 import android.app.Activity;
 import android.content.Intent;
 import android.speech.RecognizerIntent;
-import android.util.Log;
 import android.widget.Toast;
 
+import com.example.segii.mapa.keyWord.CommandMatcher;
+import com.example.segii.mapa.keyWord.CommandRecognizer;
+import com.example.segii.mapa.keyWord.MicCapture;
+import com.example.segii.mapa.registro.EventLog;
+
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Locale;
 
-// Clase que maneja el reconocimiento de voz para comandos de navegación
+// Clase que maneja el reconocimiento de voz para comandos de navegación.
+// Primero intenta el reconocedor del dispositivo con el conjunto fijo de comandos; solo si lo dicho
+// no es un comando abre el reconocimiento libre del sistema (que suele usar la red).
 public class CommandVoice {
     // Variable para almacenar la actividad que invoca esta clase
     private final Activity activity;
     // Código constante para identificar la solicitud de reconocimiento de voz
     private static final int VOICE_REQUEST_CODE = 5;
+    // Comandos y vocabulario local de destinos
+    private final CommandMatcher matcher = new CommandMatcher();
+    // Reconocimiento en el dispositivo
+    private final CommandRecognizer onDevice;
+    // Quien recibe los comandos reconocidos en el dispositivo (null: solo reconocimiento libre)
+    private VoiceCommandCallback commandCallback;
 
     // Constructor que recibe la actividad actual
     public CommandVoice(Activity activity) {
         this.activity = activity; // Asigna la actividad recibida
+        this.onDevice = new CommandRecognizer(activity, matcher);
+    }
+
+    // Establece quién recibe los comandos del reconocimiento en el dispositivo
+    public void setCommandCallback(VoiceCommandCallback callback) {
+        this.commandCallback = callback;
+    }
+
+    // Destinos que el usuario puede nombrar (categorías y nombres del catálogo)
+    public void setVocabulary(Collection<String> vocabulary) {
+        matcher.setVocabulary(vocabulary);
+    }
+
+    // Indica si la app puede responder "¿qué hay a N minutos?" (solo entonces se reconoce)
+    public void setReachableEnabled(boolean enabled) {
+        matcher.setReachableEnabled(enabled);
     }
 
-    // Método para iniciar el reconocimiento de voz
+    // Método para iniciar el reconocimiento de voz: en el dispositivo si se puede, si no el libre
     public void startVoiceRecognition() {
+        VoiceCommandCallback callback = commandCallback;
+        if (callback != null && onDevice.start(new CommandRecognizer.Listener() {
+            @Override
+            public void onCommand(CommandMatcher.Command command) {
+                switch (command.kind) {
+                    case NAVIGATE:
+                        callback.onDestinationReceived(command.destination);
+                        break;
+                    case CANCEL:
+                        callback.onCancelRequested();
+                        break;
+                    case WHERE_AM_I:
+                        callback.onWhereAmIRequested();
+                        break;
+                    case REACHABLE:
+                        callback.onReachableRequested(command.minutes);
+                        break;
+                }
+            }
+
+            @Override
+            public void onNoCommand() {
+                // No es un comando conocido: lo intenta el reconocimiento libre
+                startFreeFormRecognition();
+            }
+
+            @Override
+            public void onSilence() {
+                callback.onNothingRecognized();
+            }
+        })) {
+            return;
+        }
+        startFreeFormRecognition();
+    }
+
+    // Deja de escuchar y libera el reconocedor del dispositivo
+    public void release() {
+        onDevice.release();
+    }
+
+    // Abre el reconocimiento de voz libre del sistema; el resultado llega a onActivityResult
+    private void startFreeFormRecognition() {
         // Crea un Intent para la acción de reconocimiento de voz
         Intent intent = new Intent(RecognizerIntent.ACTION_RECOGNIZE_SPEECH);
         // Configura el modelo de lenguaje libre para el reconocimiento
@@ -31,17 +103,25 @@ public class CommandVoice {
         intent.putExtra(RecognizerIntent.EXTRA_LANGUAGE, Locale.getDefault());
         // Muestra un mensaje en la interfaz para guiar al usuario
         intent.putExtra(RecognizerIntent.EXTRA_PROMPT, "Di 'Navega a [destino]' (por ejemplo, Plaza Principal en Huauchinango)");
+        // El reconocimiento libre usa el micrófono directamente: la captura compartida lo suelta
+        MicCapture.get().pause();
         try {
             // Inicia la actividad de reconocimiento de voz y espera un resultado
             activity.startActivityForResult(intent, VOICE_REQUEST_CODE);
         } catch (Exception e) {
+            MicCapture.get().resume();
             // Muestra un mensaje si el reconocimiento de voz no está disponible
             Toast.makeText(activity, "Reconocimiento de voz no disponible", Toast.LENGTH_SHORT).show();
+            if (commandCallback != null) commandCallback.onNothingRecognized();
         }
     }
 
     // Método para procesar el resultado del reconocimiento de voz
     public void processVoiceResult(int requestCode, int resultCode, Intent data, VoiceCommandCallback callback) {
+        // Terminó el reconocimiento libre: la captura vuelve a escuchar la palabra clave
+        if (requestCode == VOICE_REQUEST_CODE) {
+            MicCapture.get().resume();
+        }
         // Verifica si el código de solicitud y el resultado son válidos, y si hay datos
         if (requestCode == VOICE_REQUEST_CODE && resultCode == Activity.RESULT_OK && data != null) {
             // Obtiene la lista de resultados del reconocimiento de voz
@@ -51,22 +131,22 @@ public class CommandVoice {
                 // Toma el primer resultado y lo convierte a minúsculas
                 String command = results.get(0).toLowerCase();
                 // Registra el comando reconocido en el log
-                Log.d("VoiceCommand", "Comando reconocido: " + command);
+                EventLog.d("VoiceCommand", "Comando reconocido", command);
                 // Verifica si el comando comienza con "navega a "
                 if (command.startsWith("navega a ")) {
                     // Extrae el destino eliminando "navega a " y espacios sobrantes
                     String destination = command.replace("navega a ", "").trim();
-                    // Limpia el destino eliminando caracteres no alfanuméricos
-                    destination = destination.replaceAll("[^a-zA-Z0-9\\s]", "").trim();
+                    // Limpia el destino eliminando caracteres no alfanuméricos (conserva acentos y ñ)
+                    destination = destination.replaceAll("[^\\p{L}0-9\\s]", "").trim();
                     // Registra el destino extraído en el log
-                    Log.d("VoiceCommand", "Destino extraído: " + destination);
+                    EventLog.d("VoiceCommand", "Destino extraído", destination);
 
                     // Verifica si el destino no está vacío
                     if (!destination.isEmpty()) {
                         // Extrae la primera palabra significativa del destino
                         String firstWord = destination.split("\\s+")[0];
                         // Registra la primera palabra en el log
-                        Log.d("VoiceCommand", "Primer palabra: " + firstWord);
+                        EventLog.d("VoiceCommand", "Primer palabra", firstWord);
                         // Llama al callback con el destino procesado
                         callback.onDestinationReceived(firstWord + " " + destination);
                     } else {
@@ -85,5 +165,17 @@ public class CommandVoice {
     public interface VoiceCommandCallback {
         // Método que se llama cuando se procesa un destino
         void onDestinationReceived(String destination);
+        // Se pidió terminar la navegación (solo en el dispositivo)
+        default void onCancelRequested() {
+        }
+        // Se preguntó dónde está el usuario (solo en el dispositivo)
+        default void onWhereAmIRequested() {
+        }
+        // Se preguntó qué hay a cierto tiempo de viaje (solo en el dispositivo)
+        default void onReachableRequested(int minutes) {
+        }
+        // No se escuchó ningún comando
+        default void onNothingRecognized() {
+        }
     }
 }
\ No newline at end of file
@@ -3,50 +3,63 @@ package com.example.segii.mapa;
 // Importaciones necesarias para manejar la ubicación, contexto y mapas de Google
 import android.annotation.SuppressLint;
 import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
 import android.widget.Toast;
 
+import com.example.segii.mapa.area.ServiceArea;
+import com.example.segii.mapa.estado.AppStateStore;
+import com.example.segii.mapa.ruta.RouteData;
+import com.example.segii.mapa.ubicacion.NavigationTracker;
 import com.google.android.gms.location.FusedLocationProviderClient;
+import com.google.android.gms.location.LocationRequest;
+import com.google.android.gms.location.LocationResult;
 import com.google.android.gms.location.LocationServices;
+import com.google.android.gms.location.Priority;
 import com.google.android.gms.maps.model.LatLng;
-import com.google.android.gms.maps.model.LatLngBounds;
+import com.google.android.gms.tasks.CancellationTokenSource;
 
-// Clase que maneja la obtención y gestión de la ubicación del dispositivo
+import java.util.concurrent.CompletableFuture;
+
+// Clase que maneja la obtención y gestión de la ubicación del dispositivo.
+// Solo la instancia del servicio de navegación publica en AppStateStore: así la posición y el
+// avance de cada foto salen siempre del mismo filtro y del mismo fix.
 public class Location {
     // Cliente para obtener la ubicación del dispositivo
     private final FusedLocationProviderClient fusedLocationClient;
     // Contexto de la aplicación
     private final Context context;
-    // Ubicación actual del dispositivo
-    private LatLng currentLocation;
-    // Límites geográficos de Huauchinango
-    private final LatLngBounds huauchinangoBounds;
-    // Centro geográfico de Huauchinango
-    private final LatLng huauchinangoCenter;
+    // Estado compartido donde se publica la ubicación actual (lo leen los demás componentes)
+    private final AppStateStore store = AppStateStore.get();
+    // Área de servicio (límites y centro de respaldo)
+    private final ServiceArea serviceArea;
+    // Filtrado de los fixes, ajuste a la ruta activa y detección de desvíos
+    private final NavigationTracker tracker = new NavigationTracker();
+    // Precisión que se asume cuando el fix no la reporta (metros)
+    private static final float DEFAULT_ACCURACY_M = 20f;
+    // Intervalo de actualizaciones durante la navegación (ms)
+    private static final long UPDATE_INTERVAL_MS = 1000;
+    // Callback de actualizaciones continuas (null si no se están recibiendo)
+    private com.google.android.gms.location.LocationCallback updatesCallback;
+    // Momento (reloj monótono, ms) del último fix que pasó por el filtro
+    private long lastFixMs = -1;
+    // Recibe cada fix procesado, también los que llegan agrupados en un lote (null si no hay)
+    private FixListener fixListener;
 
     // Constructor que inicializa los valores por defecto
     public Location(Context context) {
         this.context = context; // Asigna el contexto recibido
         // Inicializa el cliente de ubicación
         this.fusedLocationClient = LocationServices.getFusedLocationProviderClient(context);
-        // Define los límites geográficos de Huauchinango
-        this.huauchinangoBounds = new LatLngBounds(
-                new LatLng(20.1, -98.1), // Esquina inferior izquierda
-                new LatLng(20.25, -97.95) // Esquina superior derecha
-        );
-        // Define el centro de Huauchinango
-        this.huauchinangoCenter = new LatLng(-20.1782935, -98.0719694);
-        // Establece la ubicación inicial como el centro de Huauchinango
-        this.currentLocation = huauchinangoCenter;
+        // Usa la instancia compartida del área de servicio
+        this.serviceArea = ServiceArea.get(context);
     }
 
     // Constructor alternativo para inyección de dependencias
-    public Location(FusedLocationProviderClient fusedLocationClient, Context context, LatLngBounds huauchinangoBounds, LatLng huauchinangoCenter) {
+    public Location(FusedLocationProviderClient fusedLocationClient, Context context, ServiceArea serviceArea) {
         this.fusedLocationClient = fusedLocationClient; // Asigna el cliente de ubicación
         this.context = context; // Asigna el contexto
-        this.huauchinangoBounds = huauchinangoBounds; // Asigna los límites
-        this.huauchinangoCenter = huauchinangoCenter; // Asigna el centro
-        // Establece la ubicación inicial como el centro de Huauchinango
-        this.currentLocation = huauchinangoCenter;
+        this.serviceArea = serviceArea; // Asigna el área de servicio
     }
 
     // Método para obtener la ubicación actual del dispositivo
@@ -56,33 +69,182 @@ public class Location {
         fusedLocationClient.getLastLocation()
                 .addOnSuccessListener(location -> {
                     if (location != null) {
-                        // Actualiza la ubicación actual con las coordenadas obtenidas
-                        currentLocation = new LatLng(location.getLatitude(), location.getLongitude());
-                        // Verifica si la ubicación está dentro de los límites de Huauchinango
-                        if (!huauchinangoBounds.contains(currentLocation)) {
+                        // Publica la ubicación actual con el fix suavizado y ajustado a la ruta; si el
+                        // filtro ya vio un fix más reciente (navegando) se usa la posición publicada
+                        LatLng processed = processFix(location);
+                        LatLng current = processed != null ? publish(processed) : getCurrentLocation();
+                        // Verifica si la ubicación está dentro del área de servicio
+                        if (!serviceArea.contains(current)) {
                             // Muestra un mensaje si está fuera de los límites
-                            Toast.makeText(context, "Estás fuera de Huauchinango. Calculando ruta desde tu ubicación actual.", Toast.LENGTH_LONG).show();
+                            Toast.makeText(context, "Estás fuera de " + serviceArea.getName() + ". Calculando ruta desde tu ubicación actual.", Toast.LENGTH_LONG).show();
                         }
                         // Llama al callback con la ubicación obtenida
-                        callback.onLocationReceived(currentLocation);
+                        callback.onLocationReceived(current);
                     } else {
-                        // Si no se obtiene la ubicación, usa el centro de Huauchinango
-                        Toast.makeText(context, "No se pudo obtener la ubicación. Usando el centro de Huauchinango como origen.", Toast.LENGTH_LONG).show();
-                        currentLocation = huauchinangoCenter;
-                        callback.onLocationReceived(currentLocation);
+                        // Si no se obtiene la ubicación, usa el centro del área
+                        Toast.makeText(context, "No se pudo obtener la ubicación. Usando el centro de " + serviceArea.getName() + " como origen.", Toast.LENGTH_LONG).show();
+                        // El centro no es la posición del dispositivo: no se publica
+                        callback.onLocationReceived(serviceArea.getCenter());
                     }
                 })
                 .addOnFailureListener(e -> {
-                    // En caso de error, usa el centro de Huauchinango
-                    Toast.makeText(context, "Error al obtener la ubicación. Usando el centro de Huauchinango como origen.", Toast.LENGTH_LONG).show();
-                    currentLocation = huauchinangoCenter;
-                    callback.onLocationReceived(currentLocation);
+                    // En caso de error, usa el centro del área
+                    Toast.makeText(context, "Error al obtener la ubicación. Usando el centro de " + serviceArea.getName() + " como origen.", Toast.LENGTH_LONG).show();
+                    callback.onLocationReceived(serviceArea.getCenter());
                 });
     }
 
-    // Método para obtener la ubicación actual almacenada
+    // Pide un fix nuevo de alta precisión (no el último conocido). Si no llega en timeoutMs, o el
+    // proveedor no lo da, se usa getDeviceLocation. Cancelar el futuro apaga la solicitud al GPS
+    @SuppressLint("MissingPermission") // Suprime advertencia sobre permisos (se asume que se verifican previamente)
+    public CompletableFuture<LatLng> requestFreshFix(long timeoutMs) {
+        CompletableFuture<LatLng> future = new CompletableFuture<>();
+        CancellationTokenSource cancellation = new CancellationTokenSource();
+        // Respaldo: la última ubicación conocida (o el centro del área)
+        Runnable fallback = () -> {
+            if (future.isDone()) return;
+            cancellation.cancel();
+            getDeviceLocation(new LocationCallback() {
+                @Override
+                public void onLocationReceived(LatLng location) {
+                    future.complete(location);
+                }
+
+                @Override
+                public void onLocationFailed() {
+                    future.complete(getCurrentLocation());
+                }
+            });
+        };
+        fusedLocationClient.getCurrentLocation(Priority.PRIORITY_HIGH_ACCURACY, cancellation.getToken())
+                .addOnSuccessListener(location -> {
+                    if (location == null) {
+                        fallback.run();
+                    } else if (!future.isDone()) {
+                        LatLng processed = processFix(location);
+                        future.complete(processed != null ? publish(processed) : getCurrentLocation());
+                    }
+                })
+                .addOnFailureListener(e -> fallback.run());
+        Handler handler = new Handler(Looper.getMainLooper());
+        handler.postDelayed(fallback, timeoutMs);
+        future.whenComplete((location, error) -> {
+            handler.removeCallbacks(fallback);
+            if (future.isCancelled()) cancellation.cancel();
+        });
+        return future;
+    }
+
+    // Inicia las actualizaciones continuas de ubicación (durante la navegación)
+    public void startLocationUpdates(LocationCallback callback) {
+        startLocationUpdates(callback, 0);
+    }
+
+    // Inicia las actualizaciones continuas; con maxDelayMs > 0 el sistema puede juntar varios fixes
+    // y entregarlos de una vez (menos despertares del CPU cuando no hay una maniobra cerca)
+    @SuppressLint("MissingPermission") // Suprime advertencia sobre permisos (se asume que se verifican previamente)
+    public void startLocationUpdates(LocationCallback callback, long maxDelayMs) {
+        stopLocationUpdates();
+        LocationRequest request = new LocationRequest.Builder(Priority.PRIORITY_HIGH_ACCURACY, UPDATE_INTERVAL_MS)
+                .setMinUpdateIntervalMillis(UPDATE_INTERVAL_MS / 2)
+                .setMaxUpdateDelayMillis(maxDelayMs)
+                .build();
+        updatesCallback = new com.google.android.gms.location.LocationCallback() {
+            @Override
+            public void onLocationResult(LocationResult result) {
+                // Procesa cada fix en orden para que el filtro vea toda la secuencia
+                LatLng current = null;
+                for (android.location.Location fix : result.getLocations()) {
+                    LatLng processed = processFix(fix);
+                    if (processed != null) current = processed;
+                }
+                // Del lote solo se publica el último
+                if (current != null) callback.onLocationReceived(publish(current));
+            }
+        };
+        fusedLocationClient.requestLocationUpdates(request, updatesCallback, Looper.getMainLooper())
+                .addOnFailureListener(e -> callback.onLocationFailed());
+    }
+
+    // Detiene las actualizaciones continuas de ubicación
+    public void stopLocationUpdates() {
+        if (updatesCallback != null) {
+            fusedLocationClient.removeLocationUpdates(updatesCallback);
+            updatesCallback = null;
+        }
+    }
+
+    // Pasa un fix crudo por el filtro y, si hay ruta activa, lo ajusta a su geometría. Devuelve null
+    // si el fix no es más reciente que el último procesado (la última ubicación conocida mientras
+    // llegan actualizaciones): el filtro no debe retroceder en el tiempo
+    LatLng processFix(android.location.Location fix) {
+        float accuracy = fix.hasAccuracy() ? fix.getAccuracy() : DEFAULT_ACCURACY_M;
+        long timeMs = fix.getElapsedRealtimeNanos() / 1_000_000L;
+        if (timeMs <= lastFixMs) return null;
+        lastFixMs = timeMs;
+        tracker.onFix(fix.getLatitude(), fix.getLongitude(), accuracy, timeMs);
+        if (fixListener != null) {
+            fixListener.onFix(tracker.getDistanceAlongRoute(), fix.getTime());
+        }
+        return new LatLng(tracker.getLatitude(), tracker.getLongitude());
+    }
+
+    // Publica la posición en el estado compartido, con el avance si hay ruta activa
+    private LatLng publish(LatLng location) {
+        if (tracker.hasRoute()) {
+            double along = tracker.getDistanceAlongRoute();
+            store.update(state -> state.withProgress(location, along));
+        } else {
+            store.update(state -> state.withLocation(location));
+        }
+        return location;
+    }
+
+    // Establece la ruta activa para ajustar los fixes (null para quitarla)
+    public void setActiveRoute(RouteData route) {
+        tracker.setRoute(route);
+    }
+
+    // Indica si hay una ruta activa para ajustar los fixes
+    public boolean hasActiveRoute() {
+        return tracker.hasRoute();
+    }
+
+    // Establece el listener que se llama una vez por cada desvío de la ruta activa
+    public void setOffRouteListener(NavigationTracker.OffRouteListener listener) {
+        tracker.setOffRouteListener(listener);
+    }
+
+    // Establece el listener que recibe el avance de cada fix con su propia hora
+    public void setFixListener(FixListener listener) {
+        this.fixListener = listener;
+    }
+
+    // Distancia recorrida sobre la ruta activa, o -1 si el último fix no quedó sobre ella
+    public double getDistanceAlongRoute() {
+        return tracker.getDistanceAlongRoute();
+    }
+
+    // Velocidad estimada por el filtro (m/s)
+    public double getSpeed() {
+        return tracker.getSpeed();
+    }
+
+    // Indica si los últimos fixes están fuera de la ruta activa
+    public boolean isOffRoute() {
+        return tracker.isOffRoute();
+    }
+
+    // Método para obtener la ubicación actual (el centro del área si aún no hay un fix)
     public LatLng getCurrentLocation() {
-        return currentLocation;
+        LatLng location = store.getState().location;
+        return location != null ? location : serviceArea.getCenter();
+    }
+
+    // Avance de un fix individual: distancia sobre la ruta (-1 fuera de ella) y la hora en que se
+    // tomó el fix (ms desde la época), no la hora en que se entregó el lote
+    public interface FixListener {
+        void onFix(double distanceAlongRoute, long fixTimeMillis);
     }
 
     // Interfaz para manejar los resultados de la obtención de ubicación
@@ -1,13 +1,14 @@
 package com.example.segii.mapa;
 
 // Importaciones necesarias para manejar mapas, permisos, conectividad, interfaz y más
+import android.content.ComponentName;
 import android.content.Context;
 import android.content.Intent;
+import android.content.ServiceConnection;
 import android.content.pm.PackageManager;
-import android.net.ConnectivityManager;
-import android.net.NetworkInfo;
+import android.os.Build;
 import android.os.Bundle;
-import android.util.Log;
+import android.os.IBinder;
 import android.widget.Toast;
 
 import androidx.annotation.NonNull;
@@ -17,32 +18,114 @@ import androidx.core.app.ActivityCompat;
 import androidx.core.content.ContextCompat;
 
 import com.example.segii.R;
-import com.example.segii.mapa.keyWord.wordSegui;
+import com.example.segii.mapa.alcance.IsochroneEngine;
+import com.example.segii.mapa.alcance.Reachability;
+import com.example.segii.mapa.alcance.RoadGraph;
+import com.example.segii.mapa.area.ServiceArea;
+import com.example.segii.mapa.cache.CacheRegistry;
+import com.example.segii.mapa.estado.AppState;
+import com.example.segii.mapa.estado.AppStateStore;
+import com.example.segii.mapa.navegacion.NavigationService;
+import com.example.segii.mapa.poi.PoiIndex;
+import com.example.segii.mapa.red.NetworkMonitor;
+import com.example.segii.mapa.registro.EventLog;
+import com.example.segii.mapa.ruta.QuotaGovernor;
+import com.example.segii.mapa.ruta.RouteData;
+import com.example.segii.mapa.ruta.RouteStore;
 import com.google.android.gms.maps.GoogleMap;
 import com.google.android.gms.maps.OnMapReadyCallback;
 import com.google.android.gms.maps.SupportMapFragment;
 import com.google.android.gms.maps.model.LatLng;
 import com.google.android.material.floatingactionbutton.FloatingActionButton;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 // Clase principal de la actividad que muestra un mapa y maneja comandos de voz para navegación
-public class Mapa extends AppCompatActivity implements OnMapReadyCallback {
+public class Mapa extends AppCompatActivity implements OnMapReadyCallback, NavigationService.NavigationListener {
     // Constantes para los códigos de solicitud de permisos
     private static final int LOCATION_PERMISSION_REQUEST_CODE = 1;
     private static final int AUDIO_PERMISSION_REQUEST_CODE = 3;
+    private static final int NOTIFICATION_PERMISSION_REQUEST_CODE = 4;
     // Clave de acceso para el servicio de detección de palabras clave (hotword)
     private static final String PICOVOICE_ACCESS_KEY = "9JCv0f6pgDQ7+JX3QVWR3ZgsyygHaIHHQnl00sfYx5KUvyaW5CSs9A=="; // Verifica que sea válido
     // Etiqueta para logs
     private static final String TAG = "Mapa";
+    // Distancia de la ruta que se decodifica y dibuja de inmediato (m)
+    private static final double INITIAL_RENDER_METERS = 2000;
+    // Opciones que se ofrecen al pedir el lugar más cercano de una categoría
+    private static final int NEAREST_POI_OPTIONS = 5;
+    // Catálogo local de puntos de interés (assets)
+    private static final String POI_ASSET = "poi_huauchinango.csv";
+    // Red vial local (assets). Todavía no se incluye en la app: sin ella el comando "¿qué hay a N
+    // minutos?" no se reconoce, porque una malla uniforme solo daría distancia en línea recta
+    private static final String ROAD_NETWORK_ASSET = "red_vial.csv";
+    // Velocidad del tramo del punto a la calle más cercana (m/s): 25 km/h con el rodeo de las calles
+    private static final double ACCESS_SPEED_MPS = 25 / 3.6 / 1.3;
+    // Lugares que se ofrecen al preguntar qué hay cerca y forma del contorno del área alcanzable
+    private static final int REACHABLE_OPTIONS = 10;
+    private static final int REACHABLE_SECTORS = 72;
+    private static final double REACHABLE_TOLERANCE_METERS = 40;
 
     // Variables para manejar mapa, ubicación, comandos de voz, rutas y audio
     private mapaMan mapaManager; // Administra el mapa
-    private Location locationService; // Maneja la obtención de la ubicación
     private CommandVoice voiceCommandHandler; // Procesa comandos de voz
     private Route routeCalculator; // Calcula rutas
+    private NetworkMonitor network; // Estado de la conexión a internet
+    private VoiceRoutePipeline voicePipeline; // Flujo de la palabra clave a la ruta
     private Audio audio; // Reproduce audio
-    private wordSegui hotwordDetector; // Detecta palabras clave para activar comandos de voz
+    private RouteStore routeStore; // Guarda la ruta activa en disco
+    private RouteData activeRoute; // Ruta que se está mostrando actualmente
+    // Servicio de navegación (ubicación, guía por voz y palabra clave); null mientras se conecta
+    private NavigationService navigationService;
+    private boolean mapReady; // El mapa ya se puede dibujar
+    private boolean visible; // La actividad está entre onStart y onStop
+    private boolean notificationPermissionRequested; // Ya se pidió el permiso de notificaciones en esta sesión
+    private RouteData pendingRoute; // Ruta calculada antes de conectar con el servicio
+    // Pedidos de ubicación hechos antes de conectar con el servicio (el único que procesa los fixes)
+    private final List<Location.LocationCallback> pendingLocationRequests = new ArrayList<>();
+    // Estado compartido (ruta activa, posición) y las suscripciones mientras la actividad está visible
+    private final AppStateStore store = AppStateStore.get();
+    private final List<AppStateStore.Subscription> stateSubscriptions = new ArrayList<>();
+    // Conexión con el servicio de navegación
+    private final ServiceConnection serviceConnection = new ServiceConnection() {
+        @Override
+        public void onServiceConnected(ComponentName name, IBinder binder) {
+            navigationService = ((NavigationService.LocalBinder) binder).getService();
+            // Inicia la escucha de la palabra clave en el servicio (sigue activa en segundo plano)
+            if (checkAudioPermission() && !navigationService.isHotwordListening()) {
+                navigationService.startHotword(PICOVOICE_ACCESS_KEY);
+            }
+            if (pendingRoute != null) {
+                navigationService.startNavigation(pendingRoute);
+                pendingRoute = null;
+            }
+            for (Location.LocationCallback callback : pendingLocationRequests) {
+                navigationService.getDeviceLocation(callback);
+            }
+            pendingLocationRequests.clear();
+            attachToService();
+        }
+
+        @Override
+        public void onServiceDisconnected(ComponentName name) {
+            navigationService = null;
+        }
+    };
+    private volatile PoiIndex poiIndex; // Índice local de puntos de interés (null hasta que se carga)
+    private IsochroneEngine isochrones; // Tiempos de viaje locales (se crea en ioExecutor al primer uso)
+    private volatile boolean roadNetworkAvailable; // La app trae la red vial (se revisa al iniciar)
+    // Hilo para leer y escribir la ruta activa sin bloquear la interfaz
+    private final ExecutorService ioExecutor = Executors.newSingleThreadExecutor();
 
     // Método que se ejecuta al crear la actividad
     @Override
@@ -56,15 +139,38 @@ public class Mapa extends AppCompatActivity implements OnMapReadyCallback {
 
         // Inicializa los servicios
         mapaManager = new mapaMan(this); // Inicializa el administrador del mapa
-        locationService = new Location(this); // Inicializa el servicio de ubicación
         voiceCommandHandler = new CommandVoice(this); // Inicializa el manejador de comandos de voz
+        routeStore = new RouteStore(this); // Inicializa el almacenamiento de la ruta activa
+        // Carga el catálogo de puntos de interés en segundo plano (hoy vacío: ver el encabezado del CSV)
+        ioExecutor.execute(() -> {
+            try (InputStream in = getAssets().open(POI_ASSET)) {
+                poiIndex = PoiIndex.load(in);
+                if (poiIndex.isEmpty()) {
+                    EventLog.w(TAG, "El catálogo de puntos de interés está vacío: las búsquedas usan Geocoding", POI_ASSET);
+                }
+                // Los nombres del catálogo también son el vocabulario del reconocimiento en el dispositivo
+                voiceCommandHandler.setVocabulary(poiIndex.getVocabulary());
+            } catch (IOException e) {
+                EventLog.e(TAG, "No se pudo cargar el catálogo de puntos de interés", e);
+            }
+        });
+        // El comando de alcance solo se reconoce (y se sugiere al reconocedor) si hay red vial
+        ioExecutor.execute(() -> {
+            roadNetworkAvailable = hasAsset(ROAD_NETWORK_ASSET);
+            voiceCommandHandler.setReachableEnabled(roadNetworkAvailable);
+            if (!roadNetworkAvailable) {
+                EventLog.w(TAG, "Sin red vial local: el comando de alcance está desactivado", ROAD_NETWORK_ASSET);
+            }
+        });
+        // Estado de la red por callbacks del sistema; sin conexión las rutas esperan en cola
+        network = NetworkMonitor.get(this);
         // Inicializa el calculador de rutas con un callback para manejar resultados
         routeCalculator = new Route(new Route.RouteCallback() {
             // Cuando la ruta se calcula correctamente
             @Override
-            public void onRouteCalculated(List<LatLng> points, LatLng destination, String destinationName) {
-                // Dibuja la ruta en el mapa desde la ubicación actual al destino
-                mapaManager.drawRoute(points, locationService.getCurrentLocation(), destination, destinationName);
+            public void onRouteCalculated(RouteData route) {
+                // El servicio guarda la ruta, inicia la guía y la devuelve para dibujarla
+                startNavigation(route);
             }
 
             // Cuando falla el cálculo de la ruta
@@ -77,47 +183,65 @@ public class Mapa extends AppCompatActivity implements OnMapReadyCallback {
             // Cuando se encuentran múltiples destinos posibles
             @Override
             public void onMultipleDestinationsFound(List<Route.DestinationOption> options) {
-                // Convierte las opciones de destino a un arreglo de nombres
-                String[] destinationNames = options.stream().map(opt -> opt.name).toArray(String[]::new);
                 // Muestra un diálogo para que el usuario seleccione un destino
-                new AlertDialog.Builder(Mapa.this)
-                        .setTitle("Múltiples destinos encontrados")
-                        .setItems(destinationNames, (dialog, which) -> {
-                            Route.DestinationOption selected = options.get(which);
-                            // Obtiene la ubicación actual del dispositivo
-                            locationService.getDeviceLocation(new Location.LocationCallback() {
-                                @Override
-                                public void onLocationReceived(LatLng location) {
-                                    // Verifica si hay conexión a internet
-                                    if (isNetworkAvailable()) {
-                                        // Calcula la ruta al destino seleccionado
-                                        routeCalculator.calculateRoute(location, selected.name);
-                                    } else {
-                                        // Muestra un mensaje si no hay conexión
-                                        Toast.makeText(Mapa.this, "Sin conexión a internet", Toast.LENGTH_SHORT).show();
-                                    }
-                                }
-
-                                @Override
-                                public void onLocationFailed() {
-                                    // Muestra un mensaje si no se pudo obtener la ubicación
-                                    Toast.makeText(Mapa.this, "No se pudo obtener tu ubicación", Toast.LENGTH_SHORT).show();
-                                }
-                            });
-                        })
-                        .setNegativeButton("Cancelar", null)
-                        .show();
+                showDestinationOptions("Múltiples destinos encontrados", options);
             }
-        });
+        }, ServiceArea.get(this), QuotaGovernor.get(this), network, CacheRegistry.get(this));
 
-        // Inicializa el detector de palabras clave
-        hotwordDetector = new wordSegui(this);
-        // Configura el detector para iniciar el reconocimiento de voz al detectar la palabra clave
-        hotwordDetector.initializeAndStartListening(PICOVOICE_ACCESS_KEY, () -> {
-            Log.d(TAG, "Hotword detectado, iniciando reconocimiento de voz...");
-            voiceCommandHandler.startVoiceRecognition();
+        // Flujo de voz a ruta: el fix y la conexión se piden desde que se detecta la palabra clave
+        voicePipeline = new VoiceRoutePipeline(this::requestFreshFix, routeCalculator,
+                () -> poiIndex, network::isOnline, NEAREST_POI_OPTIONS);
+        voicePipeline.setOfflineListener((destination, recentRoute) -> runOnUiThread(() -> {
+            if (recentRoute != null) {
+                // Respuesta inmediata: la última ruta a ese destino; la nueva la reemplaza al llegar
+                showRoute(recentRoute);
+                Toast.makeText(this, "Sin conexión: se muestra la última ruta a " + destination
+                        + ". Se actualizará al recuperar la señal", Toast.LENGTH_LONG).show();
+            } else {
+                Toast.makeText(this, "Sin conexión: la ruta se calculará al recuperar la señal", Toast.LENGTH_LONG).show();
+            }
+        }));
+        // Comandos reconocidos en el dispositivo (sin pasar por el reconocimiento libre)
+        voiceCommandHandler.setCommandCallback(new CommandVoice.VoiceCommandCallback() {
+            @Override
+            public void onDestinationReceived(String destination) {
+                onVoiceDestination(destination);
+            }
+
+            @Override
+            public void onCancelRequested() {
+                voicePipeline.cancel();
+                if (navigationService != null && navigationService.getActiveRoute() != null) {
+                    navigationService.stopNavigation();
+                }
+            }
+
+            @Override
+            public void onWhereAmIRequested() {
+                voicePipeline.cancel();
+                centerOnUser();
+            }
+
+            @Override
+            public void onReachableRequested(int minutes) {
+                voicePipeline.cancel();
+                showReachable(minutes);
+            }
+
+            @Override
+            public void onNothingRecognized() {
+                voicePipeline.cancel();
+            }
         });
 
+        // Conecta con el servicio de navegación; la palabra clave se escucha desde ahí
+        bindService(new Intent(this, NavigationService.class), serviceConnection, Context.BIND_AUTO_CREATE);
+        if (!checkAudioPermission()) {
+            requestAudioPermission();
+        }
+        // Abierta desde el servicio al detectar la palabra clave en segundo plano
+        handleVoiceIntent(getIntent());
+
         // Obtiene el fragmento del mapa y lo configura para cargar asíncronamente
         SupportMapFragment mapFragment = (SupportMapFragment) getSupportFragmentManager()
                 .findFragmentById(R.id.map);
@@ -125,47 +249,24 @@ public class Mapa extends AppCompatActivity implements OnMapReadyCallback {
 
         // Configura el botón flotante para centrar el mapa en la ubicación actual
         FloatingActionButton fab = findViewById(R.id.fab_center_location);
-        fab.setOnClickListener(v -> {
-            // Verifica si se tiene permiso de ubicación
-            if (checkLocationPermission()) {
-                // Obtiene la ubicación actual
-                locationService.getDeviceLocation(new Location.LocationCallback() {
-                    @Override
-                    public void onLocationReceived(LatLng location) {
-                        // Centra el mapa en la ubicación
-                        mapaManager.centerOnLocation(location, true);
-                    }
-
-                    @Override
-                    public void onLocationFailed() {
-                        // Muestra un mensaje si no se pudo obtener la ubicación
-                        Toast.makeText(Mapa.this, "No se pudo obtener la ubicación", Toast.LENGTH_SHORT).show();
-                    }
-                });
-            } else {
-                // Solicita permiso de ubicación si no está otorgado
-                requestLocationPermission();
-            }
-        });
+        fab.setOnClickListener(v -> centerOnUser());
 
         // Configura el botón flotante para comandos de voz
         FloatingActionButton fabVoice = findViewById(R.id.fab_voice_command);
         fabVoice.setOnClickListener(view -> {
-            Log.d(TAG, "Botón de voz presionado, isListening: " + hotwordDetector.isListening());
+            if (navigationService == null) return; // Aún no se conecta el servicio
+            EventLog.d(TAG, "Botón de voz presionado, escuchando", navigationService.isHotwordListening());
             // Verifica si se tiene permiso de audio
             if (checkAudioPermission()) {
                 // Alterna el estado del detector de palabras clave
-                if (hotwordDetector.isListening()) {
-                    hotwordDetector.stopListening(); // Detiene la escucha
+                if (navigationService.isHotwordListening()) {
+                    navigationService.stopHotword(); // Detiene la escucha
                 } else {
                     // Inicia la escucha de la palabra clave
-                    hotwordDetector.initializeAndStartListening(PICOVOICE_ACCESS_KEY, () -> {
-                        Log.d(TAG, "Hotword detectado, iniciando reconocimiento de voz...");
-                        voiceCommandHandler.startVoiceRecognition();
-                    });
+                    navigationService.startHotword(PICOVOICE_ACCESS_KEY);
                 }
             } else {
-                Log.d(TAG, "Solicitando permiso de audio...");
+                EventLog.d(TAG, "Solicitando permiso de audio...");
                 // Solicita permiso de audio si no está otorgado
                 requestAudioPermission();
             }
@@ -178,12 +279,187 @@ public class Mapa extends AppCompatActivity implements OnMapReadyCallback {
         // Inicializa el mapa con el objeto GoogleMap
         mapaManager.initializeMap(googleMap);
 
+        mapReady = true;
+        // Recibe la ruta activa y la posición desde el estado compartido
+        subscribeToState();
+        attachToService();
+
         // Verifica si se tiene permiso de ubicación
         if (checkLocationPermission()) {
             // Habilita la capa de "Mi ubicación" en el mapa
             mapaManager.enableMyLocation();
             // Obtiene la ubicación actual
-            locationService.getDeviceLocation(new Location.LocationCallback() {
+            getDeviceLocation(new Location.LocationCallback() {
+                @Override
+                public void onLocationReceived(LatLng location) {
+                    // Centra el mapa en la ubicación si no hay una ruta en pantalla
+                    if (activeRoute == null) {
+                        mapaManager.centerOnLocation(location, true);
+                    }
+                }
+
+                @Override
+                public void onLocationFailed() {
+                    // Muestra un mensaje si no se pudo obtener la ubicación
+                    Toast.makeText(Mapa.this, "No se pudo obtener la ubicación", Toast.LENGTH_SHORT).show();
+                }
+            });
+        } else {
+            // Solicita permiso de ubicación si no está otorgado
+            requestLocationPermission();
+        }
+    }
+
+    // Se conecta como listener del servicio cuando la actividad está visible y el mapa listo.
+    // La ruta activa (ya decodificada) y la última posición llegan por el estado compartido, sin recalcular.
+    private void attachToService() {
+        if (navigationService == null || !mapReady || !visible) return;
+        boolean restore = store.getState().activeRoute == null && activeRoute == null;
+        navigationService.setListener(this);
+        if (restore) {
+            // Restaura la ruta activa guardada (si existe) sin volver a consultar las APIs
+            ioExecutor.execute(() -> {
+                RouteData saved = routeStore.load();
+                if (saved != null) {
+                    runOnUiThread(() -> {
+                        // Solo se usa si mientras tanto no se calculó otra ruta
+                        if (activeRoute == null) {
+                            startNavigation(saved);
+                        }
+                    });
+                }
+            });
+        }
+    }
+
+    // Se suscribe a la ruta activa y a la posición; cada aviso llega en el hilo principal solo
+    // cuando esa parte del estado cambia (el primero trae el estado actual)
+    private void subscribeToState() {
+        if (!mapReady || !visible || !stateSubscriptions.isEmpty()) return;
+        Executor mainExecutor = ContextCompat.getMainExecutor(this);
+        stateSubscriptions.add(store.subscribe(state -> state.activeRoute, this::onRouteState, mainExecutor));
+        stateSubscriptions.add(store.subscribe(state -> state.location, this::onProgressState, mainExecutor));
+    }
+
+    private void unsubscribeFromState() {
+        for (AppStateStore.Subscription subscription : stateSubscriptions) {
+            subscription.close();
+        }
+        stateSubscriptions.clear();
+    }
+
+    @Override
+    protected void onStart() {
+        super.onStart();
+        visible = true;
+        subscribeToState();
+        attachToService();
+    }
+
+    @Override
+    protected void onStop() {
+        super.onStop();
+        visible = false;
+        // En segundo plano no se dibuja nada: el servicio sigue navegando por su cuenta
+        unsubscribeFromState();
+        if (navigationService != null) {
+            navigationService.setListener(null);
+        }
+    }
+
+    @Override
+    protected void onNewIntent(Intent intent) {
+        super.onNewIntent(intent);
+        handleVoiceIntent(intent);
+    }
+
+    // Inicia el reconocimiento de voz si la actividad se abrió por la palabra clave
+    private void handleVoiceIntent(Intent intent) {
+        if (intent != null && intent.getBooleanExtra(NavigationService.EXTRA_START_VOICE, false)) {
+            intent.removeExtra(NavigationService.EXTRA_START_VOICE);
+            startVoiceCommand();
+        }
+    }
+
+    // Abre el reconocimiento de voz y, mientras el usuario habla, pide el fix y calienta la conexión
+    private void startVoiceCommand() {
+        if (checkLocationPermission()) {
+            voicePipeline.begin();
+        }
+        voiceCommandHandler.startVoiceRecognition();
+    }
+
+    // Entrega la ruta al servicio para que la siga (y la devuelva para dibujarla)
+    private void startNavigation(RouteData route) {
+        // El servicio pasa a primer plano con su notificación; desde Android 13 hay que pedir permiso para mostrarla
+        if (!checkNotificationPermission() && !notificationPermissionRequested) {
+            notificationPermissionRequested = true;
+            requestNotificationPermission();
+        }
+        if (navigationService != null) {
+            navigationService.startNavigation(route);
+        } else {
+            pendingRoute = route;
+        }
+    }
+
+    // Nueva ruta activa (inicio, recálculo o al volver a la actividad); null al terminar la navegación
+    private void onRouteState(AppState state) {
+        RouteData route = state.activeRoute;
+        if (route == null) {
+            // Navegación terminada (llegada o cancelación): la ruta ya no se muestra
+            if (activeRoute != null) mapaManager.clearRoute();
+            activeRoute = null;
+        } else if (route != activeRoute) {
+            // Al volver con la misma ruta no se vuelve a dibujar
+            showRoute(route);
+        }
+    }
+
+    // Nueva posición publicada por las actualizaciones de ubicación
+    private void onProgressState(AppState state) {
+        // El punto de la ubicación lo dibuja la capa "Mi ubicación" del mapa; aquí solo se separa
+        // la parte recorrida de la ruta y la cámara sigue al usuario
+        if (activeRoute != null && state.activeRoute == activeRoute && state.location != null) {
+            mapaManager.onProgress(state.location, state.distanceAlongRoute);
+        }
+    }
+
+    @Override
+    public void onHotwordDetected() {
+        EventLog.d(TAG, "Hotword detectado, iniciando reconocimiento de voz...");
+        startVoiceCommand();
+    }
+
+    // Muestra una ruta en el mapa y la marca como activa
+    private void showRoute(RouteData route) {
+        activeRoute = route;
+        if (route.isFullyDecoded()) {
+            mapaManager.drawRoute(route.getPoints(), route.getOrigin(), route.getDestination(), route.destinationName);
+            mapaManager.trackProgress(route.getPoints(), route.getCumulativeMeters());
+            return;
+        }
+        // Primer dibujo: solo los pasos cercanos al origen; la cámara usa los límites de la API
+        int nearSteps = route.stepsCovering(INITIAL_RENDER_METERS);
+        mapaManager.drawRoute(route.getPointsForSteps(0, nearSteps), route.getOrigin(), route.getDestination(),
+                route.destinationName, route.getBounds());
+        // El resto de la geometría se decodifica en segundo plano y luego se completa el dibujo
+        ioExecutor.execute(() -> {
+            List<LatLng> points = route.getPoints();
+            double[] cumulativeMeters = route.getCumulativeMeters();
+            runOnUiThread(() -> {
+                if (activeRoute != route) return; // Ya se reemplazó por otra ruta
+                mapaManager.updateRoutePoints(points, cumulativeMeters);
+            });
+        });
+    }
+
+    // Centra el mapa en la ubicación actual (botón flotante o "dónde estoy")
+    private void centerOnUser() {
+        // Verifica si se tiene permiso de ubicación
+        if (checkLocationPermission()) {
+            // Obtiene la ubicación actual
+            getDeviceLocation(new Location.LocationCallback() {
                 @Override
                 public void onLocationReceived(LatLng location) {
                     // Centra el mapa en la ubicación
@@ -202,6 +478,23 @@ public class Mapa extends AppCompatActivity implements OnMapReadyCallback {
         }
     }
 
+    // Pide la ubicación al servicio de navegación (espera a que se conecte si aún no lo está)
+    private void getDeviceLocation(Location.LocationCallback callback) {
+        if (navigationService != null) {
+            navigationService.getDeviceLocation(callback);
+        } else {
+            pendingLocationRequests.add(callback);
+        }
+    }
+
+    // Fix nuevo para el flujo de voz; sin servicio conectado, la última posición publicada
+    private CompletableFuture<LatLng> requestFreshFix(long timeoutMs) {
+        NavigationService service = navigationService;
+        if (service != null) return service.requestFreshFix(timeoutMs);
+        LatLng last = store.getState().location;
+        return CompletableFuture.completedFuture(last != null ? last : ServiceArea.get(this).getCenter());
+    }
+
     // Verifica si se tiene permiso de ubicación
     private boolean checkLocationPermission() {
         return ContextCompat.checkSelfPermission(this, android.Manifest.permission.ACCESS_FINE_LOCATION)
@@ -214,6 +507,13 @@ public class Mapa extends AppCompatActivity implements OnMapReadyCallback {
                 == PackageManager.PERMISSION_GRANTED;
     }
 
+    // Verifica si se pueden mostrar notificaciones (antes de Android 13 no hace falta permiso)
+    private boolean checkNotificationPermission() {
+        return Build.VERSION.SDK_INT < Build.VERSION_CODES.TIRAMISU
+                || ContextCompat.checkSelfPermission(this, android.Manifest.permission.POST_NOTIFICATIONS)
+                == PackageManager.PERMISSION_GRANTED;
+    }
+
     // Solicita permiso de ubicación
     private void requestLocationPermission() {
         ActivityCompat.requestPermissions(this,
@@ -228,6 +528,13 @@ public class Mapa extends AppCompatActivity implements OnMapReadyCallback {
                 AUDIO_PERMISSION_REQUEST_CODE);
     }
 
+    // Solicita permiso para mostrar la notificación de navegación
+    private void requestNotificationPermission() {
+        ActivityCompat.requestPermissions(this,
+                new String[]{android.Manifest.permission.POST_NOTIFICATIONS},
+                NOTIFICATION_PERMISSION_REQUEST_CODE);
+    }
+
     // Maneja los resultados de las solicitudes de permisos
     @Override
     public void onRequestPermissionsResult(int requestCode, @NonNull String[] permissions,
@@ -239,7 +546,7 @@ public class Mapa extends AppCompatActivity implements OnMapReadyCallback {
                 // Habilita la capa de "Mi ubicación" en el mapa
                 mapaManager.enableMyLocation();
                 // Obtiene la ubicación actual
-                locationService.getDeviceLocation(new Location.LocationCallback() {
+                getDeviceLocation(new Location.LocationCallback() {
                     @Override
                     public void onLocationReceived(LatLng location) {
                         // Centra el mapa en la ubicación
@@ -259,17 +566,22 @@ public class Mapa extends AppCompatActivity implements OnMapReadyCallback {
         } else if (requestCode == AUDIO_PERMISSION_REQUEST_CODE) {
             // Si se otorgó el permiso de audio
             if (grantResults.length > 0 && grantResults[0] == PackageManager.PERMISSION_GRANTED) {
-                Log.d(TAG, "Permiso de audio otorgado, iniciando hotwordDetector...");
-                // Inicia la escucha de la palabra clave
-                hotwordDetector.initializeAndStartListening(PICOVOICE_ACCESS_KEY, () -> {
-                    Log.d(TAG, "Hotword detectado, iniciando reconocimiento de voz...");
-                    voiceCommandHandler.startVoiceRecognition();
-                });
+                EventLog.d(TAG, "Permiso de audio otorgado, iniciando hotwordDetector...");
+                // Inicia la escucha de la palabra clave en el servicio
+                if (navigationService != null) {
+                    navigationService.startHotword(PICOVOICE_ACCESS_KEY);
+                }
             } else {
-                Log.d(TAG, "Permiso de audio denegado");
+                EventLog.d(TAG, "Permiso de audio denegado");
                 // Muestra un mensaje si se denegó el permiso
                 Toast.makeText(this, "Permiso de audio denegado", Toast.LENGTH_SHORT).show();
             }
+        } else if (requestCode == NOTIFICATION_PERMISSION_REQUEST_CODE) {
+            // La navegación sigue sin permiso, solo que sin la notificación con el tiempo restante
+            if (grantResults.length == 0 || grantResults[0] != PackageManager.PERMISSION_GRANTED) {
+                Toast.makeText(this, "Sin permiso de notificaciones no se mostrará el tiempo restante",
+                        Toast.LENGTH_SHORT).show();
+            }
         }
     }
 
@@ -278,50 +590,185 @@ public class Mapa extends AppCompatActivity implements OnMapReadyCallback {
     protected void onActivityResult(int requestCode, int resultCode, Intent data) {
         super.onActivityResult(requestCode, resultCode, data);
         // Procesa el resultado del reconocimiento de voz
+        boolean[] recognized = {false};
         voiceCommandHandler.processVoiceResult(requestCode, resultCode, data, destination -> {
-            // Verifica si se tiene permiso de ubicación
-            if (checkLocationPermission()) {
-                // Obtiene la ubicación actual
-                locationService.getDeviceLocation(new Location.LocationCallback() {
-                    @Override
-                    public void onLocationReceived(LatLng location) {
-                        Log.d("Mapa", "Ubicación actual antes de calcular ruta: (" + location.latitude + ", " + location.longitude + ")");
-                        // Verifica si hay conexión a internet
-                        if (isNetworkAvailable()) {
-                            // Calcula la ruta al destino especificado
-                            routeCalculator.calculateRoute(location, destination);
-                        } else {
-                            // Muestra un mensaje si no hay conexión
-                            Toast.makeText(Mapa.this, "Sin conexión a internet", Toast.LENGTH_SHORT).show();
+            recognized[0] = true;
+            onVoiceDestination(destination);
+        });
+        // Reconocimiento cancelado o sin destino: se sueltan el GPS y las solicitudes pendientes
+        if (!recognized[0]) {
+            voicePipeline.cancel();
+        }
+    }
+
+    // Destino dictado (en el dispositivo o por el reconocimiento libre): lo pasa al flujo de rutas
+    private void onVoiceDestination(String destination) {
+        // Verifica si se tiene permiso de ubicación
+        if (!checkLocationPermission()) {
+            // Muestra un mensaje y solicita permiso de ubicación
+            Toast.makeText(this, "Primero obtén tu ubicación", Toast.LENGTH_SHORT).show();
+            requestLocationPermission();
+            voicePipeline.cancel();
+            return;
+        }
+        // El fix y la conexión ya se pidieron al detectar la palabra clave; aquí se geocodifica
+        voicePipeline.onDestination(destination).whenComplete((result, error) ->
+                runOnUiThread(() -> showVoiceResult(destination, result, error)));
+    }
+
+    // Muestra el resultado del flujo de voz: inicia la ruta u ofrece las opciones
+    private void showVoiceResult(String destination, VoiceRoutePipeline.Result result, Throwable error) {
+        if (error != null) {
+            Throwable cause = error instanceof CompletionException ? error.getCause() : error;
+            if (cause instanceof CancellationException) return; // Se canceló a propósito
+            Toast.makeText(Mapa.this, Route.userMessage(Route.messageFor(cause), destination), Toast.LENGTH_LONG).show();
+        } else if (result.route != null) {
+            // El servicio guarda la ruta, inicia la guía y la devuelve para dibujarla
+            startNavigation(result.route);
+        } else {
+            showDestinationOptions(result.title, result.options);
+        }
+    }
+
+    // Muestra un diálogo con las opciones de destino y calcula la ruta a la que se elija
+    private void showDestinationOptions(String title, List<Route.DestinationOption> options) {
+        // Convierte las opciones de destino a un arreglo de nombres
+        showDestinationOptions(title, options, options.stream().map(opt -> opt.name).toArray(String[]::new));
+    }
+
+    // Igual, pero mostrando un texto propio para cada opción
+    private void showDestinationOptions(String title, List<Route.DestinationOption> options, String[] labels) {
+        new AlertDialog.Builder(Mapa.this)
+                .setTitle(title)
+                .setItems(labels, (dialog, which) -> {
+                    Route.DestinationOption selected = options.get(which);
+                    // Obtiene la ubicación actual del dispositivo
+                    getDeviceLocation(new Location.LocationCallback() {
+                        @Override
+                        public void onLocationReceived(LatLng location) {
+                            routeToOption(location, selected);
                         }
-                    }
 
-                    @Override
-                    public void onLocationFailed() {
-                        // Muestra un mensaje si no se pudo obtener la ubicación
-                        Toast.makeText(Mapa.this, "No se pudo obtener tu ubicación", Toast.LENGTH_SHORT).show();
+                        @Override
+                        public void onLocationFailed() {
+                            // Muestra un mensaje si no se pudo obtener la ubicación
+                            Toast.makeText(Mapa.this, "No se pudo obtener tu ubicación", Toast.LENGTH_SHORT).show();
+                        }
+                    });
+                })
+                .setNegativeButton("Cancelar", null)
+                .show();
+    }
+
+    // Responde "¿qué hay a N minutos?": dibuja el área alcanzable y ofrece los lugares del catálogo
+    // ordenados por tiempo de viaje, con un solo cálculo local (sin consultas de Directions)
+    private void showReachable(int minutes) {
+        // Sin red vial el comando no se reconoce; no se pide la ubicación para nada
+        if (!roadNetworkAvailable) return;
+        if (!checkLocationPermission()) {
+            requestLocationPermission();
+            return;
+        }
+        getDeviceLocation(new Location.LocationCallback() {
+            @Override
+            public void onLocationReceived(LatLng origin) {
+                ioExecutor.execute(() -> {
+                    IsochroneEngine engine = isochrones();
+                    if (engine == null) {
+                        runOnUiThread(() -> Toast.makeText(Mapa.this,
+                                "No se pudo cargar el mapa de calles local", Toast.LENGTH_LONG).show());
+                        return;
                     }
+                    Reachability reach = engine.compute(origin.latitude, origin.longitude, minutes * 60);
+                    List<LatLng> outline = reach.outline(REACHABLE_SECTORS, REACHABLE_TOLERANCE_METERS);
+                    PoiIndex index = poiIndex;
+                    List<Reachability.Reached> ranked = index != null
+                            ? reach.rank(index.getPois(), REACHABLE_OPTIONS) : new ArrayList<>();
+                    EventLog.i(TAG, "Alcance calculado (us)", reach.getElapsedMicros());
+                    EventLog.d(TAG, "Alcance: minutos", minutes);
+                    EventLog.d(TAG, "Alcance: nodos alcanzados", reach.getReachedCount());
+                    EventLog.d(TAG, "Alcance: lugares en el área", ranked.size());
+                    runOnUiThread(() -> {
+                        mapaManager.drawReachableArea(outline);
+                        if (index == null || index.isEmpty()) {
+                            // Sin catálogo solo se puede mostrar el área, no los lugares dentro de ella
+                            Toast.makeText(Mapa.this, "Área a " + minutes + " minutos (aún no hay lugares cargados)", Toast.LENGTH_SHORT).show();
+                            return;
+                        }
+                        if (ranked.isEmpty()) {
+                            Toast.makeText(Mapa.this, "No hay lugares del catálogo a " + minutes + " minutos", Toast.LENGTH_SHORT).show();
+                            return;
+                        }
+                        List<Route.DestinationOption> options = new ArrayList<>(ranked.size());
+                        String[] labels = new String[ranked.size()];
+                        for (int i = 0; i < labels.length; i++) {
+                            Reachability.Reached place = ranked.get(i);
+                            options.add(new Route.DestinationOption(place.poi.name,
+                                    new LatLng(place.poi.latitude, place.poi.longitude)));
+                            labels[i] = place.poi.name + " (" + Math.max(1, Math.round(place.seconds / 60)) + " min)";
+                        }
+                        showDestinationOptions("A " + minutes + " minutos o menos", options, labels);
+                    });
                 });
-            } else {
-                // Muestra un mensaje y solicita permiso de ubicación
-                Toast.makeText(this, "Primero obtén tu ubicación", Toast.LENGTH_SHORT).show();
-                requestLocationPermission();
+            }
+
+            @Override
+            public void onLocationFailed() {
+                Toast.makeText(Mapa.this, "No se pudo obtener tu ubicación", Toast.LENGTH_SHORT).show();
             }
         });
     }
 
-    // Verifica si hay conexión a internet
-    private boolean isNetworkAvailable() {
-        ConnectivityManager connectivityManager = (ConnectivityManager) getSystemService(Context.CONNECTIVITY_SERVICE);
-        NetworkInfo activeNetworkInfo = connectivityManager.getActiveNetworkInfo();
-        return activeNetworkInfo != null && activeNetworkInfo.isConnected();
+    // Indica si el archivo está en los assets de la app
+    private boolean hasAsset(String name) {
+        try {
+            String[] assets = getAssets().list("");
+            return assets != null && Arrays.asList(assets).contains(name);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    // Motor de alcance sobre la red vial de assets, o null si no se pudo leer (solo desde ioExecutor)
+    private IsochroneEngine isochrones() {
+        if (isochrones == null) {
+            RoadGraph graph;
+            try (InputStream in = getAssets().open(ROAD_NETWORK_ASSET)) {
+                graph = RoadGraph.load(in);
+            } catch (IOException e) {
+                EventLog.e(TAG, "No se pudo leer la red vial local", e);
+                return null;
+            }
+            EventLog.i(TAG, "Nodos de la red para el alcance", graph.getNodeCount());
+            isochrones = new IsochroneEngine(graph, ACCESS_SPEED_MPS);
+        }
+        return isochrones;
+    }
+
+    // Calcula la ruta a una opción de destino usando sus coordenadas (no se vuelve a geocodificar)
+    private void routeToOption(LatLng location, Route.DestinationOption option) {
+        // Sin conexión la solicitud queda en cola y se envía al recuperar la señal
+        if (!network.isOnline()) {
+            Toast.makeText(Mapa.this, "Sin conexión: la ruta se calculará al recuperar la señal", Toast.LENGTH_SHORT).show();
+        }
+        routeCalculator.calculateRoute(location, option.latLng, option.name);
     }
 
     // Método que se ejecuta al destruir la actividad
     @Override
     protected void onDestroy() {super.onDestroy();
-        Log.d(TAG, "Limpiando recursos en onDestroy...");
-        // Libera los recursos del detector de palabras clave
-        hotwordDetector.cleanup();
+        EventLog.d(TAG, "Limpiando recursos en onDestroy...");
+        // Se desconecta del servicio; si hay navegación activa sigue en primer plano
+        if (navigationService != null) {
+            navigationService.setListener(null);
+        }
+        unbindService(serviceConnection);
+        mapaManager.release();
+        voiceCommandHandler.release();
+        // Aciertos y tamaño de cada caché durante la sesión
+        EventLog.i(TAG, "Cachés", CacheRegistry.get(this).stats());
+        routeCalculator.shutdown();
+        // Termina el hilo de E/S (las escrituras pendientes se completan)
+        ioExecutor.shutdown();
     }
 }
\ No newline at end of file
@@ -0,0 +1,200 @@
+package com.example.segii.mapa;
+
+import com.example.segii.mapa.poi.PoiIndex;
+import com.example.segii.mapa.registro.EventLog;
+import com.example.segii.mapa.ruta.RouteData;
+import com.google.android.gms.maps.model.LatLng;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
+
+// Flujo de voz a ruta con etapas que se traslapan. Al detectar la palabra clave se pide un fix
+// nuevo y se abre la conexión con las APIs mientras el usuario habla; en cuanto se conoce el
+// destino se geocodifica sin esperar al fix, y la ruta se pide cuando ambos están listos.
+// Cada etapa es un futuro: cancel() detiene el GPS y las solicitudes HTTP pendientes.
+public class VoiceRoutePipeline {
+    // Tiempo máximo para esperar un fix nuevo antes de usar el último conocido (ms)
+    static final long FIX_TIMEOUT_MS = 8000;
+    private static final String TAG = "VoicePipeline";
+
+    // Fuente de fixes (Location en la app)
+    public interface FixSource {
+        CompletableFuture<LatLng> requestFreshFix(long timeoutMs);
+    }
+
+    // Aviso de que la solicitud espera a la red; recentRoute es una ruta reciente al destino o null
+    public interface OfflineListener {
+        void onWaitingForNetwork(String destination, RouteData recentRoute);
+    }
+
+    // Resultado del flujo: una ruta lista o varias opciones para que el usuario elija
+    public static final class Result {
+        public final RouteData route;
+        public final String title;
+        public final List<Route.DestinationOption> options;
+        public final LatLng origin;
+
+        Result(RouteData route, String title, List<Route.DestinationOption> options, LatLng origin) {
+            this.route = route;
+            this.title = title;
+            this.options = options;
+            this.origin = origin;
+        }
+    }
+
+    // Tiempos de cada etapa en ms desde la palabra clave (-1 si la etapa no se usó)
+    public static final class StageTimes {
+        public final long speechMs, fixMs, geocodeMs, directionsMs, totalMs;
+
+        StageTimes(long speechMs, long fixMs, long geocodeMs, long directionsMs, long totalMs) {
+            this.speechMs = speechMs;
+            this.fixMs = fixMs;
+            this.geocodeMs = geocodeMs;
+            this.directionsMs = directionsMs;
+            this.totalMs = totalMs;
+        }
+
+        // Se arma en el hilo del registro, no en el flujo
+        @Override
+        public String toString() {
+            return "voz " + speechMs + " ms, fix " + fixMs + " ms, geocodificación " + geocodeMs
+                    + " ms, direcciones " + directionsMs + " ms, total " + totalMs + " ms";
+        }
+    }
+
+    // Estado de una ejecución (de la palabra clave a la ruta)
+    private static final class Run {
+        final long start = System.nanoTime();
+        final CompletableFuture<LatLng> fix;
+        final List<CompletableFuture<?>> inFlight = new CopyOnWriteArrayList<>();
+        volatile long speechAt, fixAt, geocodeAt, directionsAt;
+
+        Run(CompletableFuture<LatLng> fix) {
+            this.fix = fix;
+            inFlight.add(fix);
+            fix.thenRun(() -> fixAt = System.nanoTime());
+        }
+
+        long ms(long at) {
+            return at == 0 ? -1 : (at - start) / 1_000_000L;
+        }
+
+        StageTimes times() {
+            return new StageTimes(ms(speechAt), ms(fixAt), ms(geocodeAt), ms(directionsAt), ms(System.nanoTime()));
+        }
+    }
+
+    private final FixSource fixSource;
+    private final Route route;
+    private final Supplier<PoiIndex> poiIndex;
+    private final BooleanSupplier networkAvailable;
+    private final int poiOptions;
+    private volatile Run current;
+    private volatile StageTimes lastTimes;
+    private volatile OfflineListener offlineListener;
+
+    public VoiceRoutePipeline(FixSource fixSource, Route route, Supplier<PoiIndex> poiIndex,
+                              BooleanSupplier networkAvailable, int poiOptions) {
+        this.fixSource = fixSource;
+        this.route = route;
+        this.poiIndex = poiIndex;
+        this.networkAvailable = networkAvailable;
+        this.poiOptions = poiOptions;
+    }
+
+    // Se llama al detectar la palabra clave: empieza a buscar el fix y calienta la conexión
+    public void begin() {
+        cancel();
+        current = new Run(fixSource.requestFreshFix(FIX_TIMEOUT_MS));
+        current.inFlight.add(route.warmUp());
+    }
+
+    // Se llama con el destino reconocido; el futuro se completa con la ruta o las opciones
+    public CompletableFuture<Result> onDestination(String destination) {
+        // Sin palabra clave (botón de voz): el fix empieza ahora
+        if (current == null) begin();
+        Run run = current;
+        run.speechAt = System.nanoTime();
+
+        CompletableFuture<Result> result;
+        // "La farmacia", "un cajero", ...: si el catálogo tiene puntos de esa categoría se responde
+        // con el índice local, sin geocodificar; si no, se geocodifica como cualquier otro destino
+        String category = PoiIndex.categoryFor(destination);
+        PoiIndex index = poiIndex.get();
+        if (index != null && index.hasCategory(category)) {
+            result = run.fix.thenCompose(location -> {
+                List<Route.DestinationOption> nearby = index.nearest(category, location, poiOptions);
+                if (nearby.size() == 1) {
+                    Route.DestinationOption only = nearby.get(0);
+                    return directions(run, location, only.latLng, only.name);
+                }
+                return CompletableFuture.completedFuture(new Result(null, "Más cercanos", nearby, location));
+            });
+        } else {
+            // La geocodificación no necesita el origen: corre mientras llega el fix
+            CompletableFuture<Route.Geocoded> geocode = route.geocode(destination);
+            run.inFlight.add(geocode);
+            geocode.thenRun(() -> run.geocodeAt = System.nanoTime());
+            result = run.fix.thenCombine(geocode, (location, found) -> new Object[]{location, found})
+                    .thenCompose(pair -> {
+                        LatLng location = (LatLng) pair[0];
+                        Route.Geocoded found = (Route.Geocoded) pair[1];
+                        if (found.location == null) {
+                            return CompletableFuture.completedFuture(
+                                    new Result(null, "Múltiples destinos encontrados", found.options, location));
+                        }
+                        return directions(run, location, found.location, destination);
+                    });
+        }
+        // Sin red las solicitudes esperan en la cola de Route; mientras, se ofrece la ruta reciente
+        // al mismo destino (si salió de cerca) para no dejar al usuario sin respuesta
+        OfflineListener listener = offlineListener;
+        if (listener != null && !networkAvailable.getAsBoolean()) {
+            run.fix.thenAccept(location -> listener.onWaitingForNetwork(destination, route.recentRoute(destination, location)));
+        }
+        run.inFlight.add(result);
+        result.whenComplete((value, error) -> {
+            if (run != current || result.isCancelled()) return;
+            lastTimes = run.times();
+            EventLog.i(TAG, "Latencia por etapa", lastTimes);
+            current = null;
+        });
+        return result;
+    }
+
+    // Pide la ruta y registra la etapa; el futuro queda en la ejecución para poder cancelarlo
+    private CompletableFuture<Result> directions(Run run, LatLng origin, LatLng destination, String name) {
+        CompletableFuture<RouteData> request = route.directions(origin, destination, name);
+        run.inFlight.add(request);
+        return request.thenApply(data -> {
+            run.directionsAt = System.nanoTime();
+            if (data == null) throw new CompletionException(new Route.RouteException("No se pudo calcular la ruta"));
+            return new Result(data, null, null, origin);
+        });
+    }
+
+    // Avisa que el usuario espera sin conexión
+    public void setOfflineListener(OfflineListener listener) {
+        this.offlineListener = listener;
+    }
+
+    // Cancela la ejecución en curso (reconocimiento cancelado o nueva palabra clave)
+    public void cancel() {
+        Run run = current;
+        current = null;
+        if (run == null) return;
+        // Del último al primero: el resultado queda cancelado y no como fallo de una etapa previa
+        for (int i = run.inFlight.size() - 1; i >= 0; i--) {
+            run.inFlight.get(i).cancel(false);
+        }
+    }
+
+    // Tiempos de la última ejecución completada (null si aún no hay)
+    public StageTimes getLastStageTimes() {
+        return lastTimes;
+    }
+}
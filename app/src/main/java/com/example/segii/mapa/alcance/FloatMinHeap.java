@@ -0,0 +1,102 @@
+package com.example.segii.mapa.alcance;
+
+import java.util.Arrays;
+
+// Montículo binario de mínimos sobre índices de nodos con prioridad float, en arreglos primitivos
+// (sin objetos por entrada). Guarda la posición de cada nodo para bajar su prioridad en el lugar,
+// así cada nodo entra una sola vez aunque Dijkstra encuentre varios caminos hacia él.
+class FloatMinHeap {
+    // Nodos en orden de montículo y su prioridad
+    private final int[] heap;
+    private final float[] keys;
+    // Posición de cada nodo en heap (-1 si no está)
+    private final int[] position;
+    private int size;
+
+    FloatMinHeap(int capacity) {
+        heap = new int[capacity];
+        keys = new float[capacity];
+        position = new int[capacity];
+        Arrays.fill(position, -1);
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    // Agrega el nodo o baja su prioridad si ya estaba con una mayor
+    void offer(int node, float key) {
+        int at = position[node];
+        if (at < 0) {
+            at = size++;
+            heap[at] = node;
+            position[node] = at;
+        } else if (keys[at] <= key) {
+            return;
+        }
+        keys[at] = key;
+        siftUp(at);
+    }
+
+    float peekKey() {
+        return keys[0];
+    }
+
+    // Quita y devuelve el nodo de menor prioridad
+    int poll() {
+        int top = heap[0];
+        position[top] = -1;
+        size--;
+        if (size > 0) {
+            heap[0] = heap[size];
+            keys[0] = keys[size];
+            position[heap[0]] = 0;
+            siftDown(0);
+        }
+        return top;
+    }
+
+    // Vacía el montículo (solo toca los nodos que quedaron dentro)
+    void clear() {
+        for (int i = 0; i < size; i++) position[heap[i]] = -1;
+        size = 0;
+    }
+
+    private void siftUp(int at) {
+        int node = heap[at];
+        float key = keys[at];
+        while (at > 0) {
+            int parent = (at - 1) >>> 1;
+            if (keys[parent] <= key) break;
+            move(parent, at);
+            at = parent;
+        }
+        place(node, key, at);
+    }
+
+    private void siftDown(int at) {
+        int node = heap[at];
+        float key = keys[at];
+        int half = size >>> 1;
+        while (at < half) {
+            int child = 2 * at + 1;
+            if (child + 1 < size && keys[child + 1] < keys[child]) child++;
+            if (key <= keys[child]) break;
+            move(child, at);
+            at = child;
+        }
+        place(node, key, at);
+    }
+
+    private void move(int from, int to) {
+        heap[to] = heap[from];
+        keys[to] = keys[from];
+        position[heap[to]] = to;
+    }
+
+    private void place(int node, float key, int at) {
+        heap[at] = node;
+        keys[at] = key;
+        position[node] = at;
+    }
+}
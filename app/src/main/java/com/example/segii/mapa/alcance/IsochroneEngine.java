@@ -0,0 +1,80 @@
+package com.example.segii.mapa.alcance;
+
+import java.util.Arrays;
+
+// Tiempos de viaje de uno a muchos sobre la red local: un solo recorrido de Dijkstra desde la
+// posición del usuario, cortado al llegar al tiempo máximo, da el tiempo a cada nodo alcanzable.
+// Con eso se responde "¿qué hay a 10 minutos?" para todos los puntos de interés a la vez, sin una
+// consulta de Directions por destino. Los arreglos de trabajo se reservan una vez por red y solo se
+// limpian los nodos que tocó la última consulta.
+public class IsochroneEngine {
+    // Distancia máxima de un punto a la red para tomarlo en cuenta (m)
+    static final double MAX_SNAP_METERS = 500;
+
+    private final RoadGraph graph;
+    // Velocidad del tramo fuera de la red (del punto al nodo más cercano), en m/s
+    private final double accessSpeedMps;
+    // Tiempo al que se llegó a cada nodo (infinito si no se ha tocado)
+    private final float[] seconds;
+    // Nodos que tocó la consulta actual, para limpiarlos al terminar
+    private final int[] touched;
+    private int touchedCount;
+    private final FloatMinHeap heap;
+
+    public IsochroneEngine(RoadGraph graph, double accessSpeedMps) {
+        this.graph = graph;
+        this.accessSpeedMps = accessSpeedMps;
+        int n = graph.getNodeCount();
+        seconds = new float[n];
+        Arrays.fill(seconds, Float.POSITIVE_INFINITY);
+        touched = new int[n];
+        heap = new FloatMinHeap(n);
+    }
+
+    public RoadGraph getGraph() {
+        return graph;
+    }
+
+    // Todo lo alcanzable desde (lat, lng) en maxSeconds
+    public synchronized Reachability compute(double lat, double lng, double maxSeconds) {
+        long startedAt = System.nanoTime();
+        int origin = graph.nearestNode(lat, lng, MAX_SNAP_METERS);
+        if (origin < 0) {
+            return new Reachability(graph, accessSpeedMps, -1, maxSeconds, new int[0], null, System.nanoTime() - startedAt);
+        }
+        int[] settled = new int[graph.getNodeCount()];
+        int settledCount = 0;
+        touch(origin, (float) (distanceTo(origin, lat, lng) / accessSpeedMps));
+        heap.offer(origin, seconds[origin]);
+        while (!heap.isEmpty() && heap.peekKey() <= maxSeconds) {
+            int node = heap.poll();
+            settled[settledCount++] = node;
+            float at = seconds[node];
+            for (int e = graph.edgeStart(node), end = graph.edgeEnd(node); e < end; e++) {
+                int target = graph.edgeTarget(e);
+                float arrival = at + graph.edgeSeconds(e);
+                if (arrival < seconds[target] && arrival <= maxSeconds) {
+                    touch(target, arrival);
+                    heap.offer(target, arrival);
+                }
+            }
+        }
+        // Copia el resultado y deja los arreglos listos para la siguiente consulta
+        float[] result = seconds.clone();
+        heap.clear();
+        for (int i = 0; i < touchedCount; i++) seconds[touched[i]] = Float.POSITIVE_INFINITY;
+        touchedCount = 0;
+        return new Reachability(graph, accessSpeedMps, origin, maxSeconds, Arrays.copyOf(settled, settledCount),
+                result, System.nanoTime() - startedAt);
+    }
+
+    private void touch(int node, float arrival) {
+        if (seconds[node] == Float.POSITIVE_INFINITY) touched[touchedCount++] = node;
+        seconds[node] = arrival;
+    }
+
+    private double distanceTo(int node, double lat, double lng) {
+        double dx = graph.xOf(node) - graph.toX(lng), dy = graph.yOf(node) - graph.toY(lat);
+        return Math.sqrt(dx * dx + dy * dy);
+    }
+}
@@ -0,0 +1,159 @@
+package com.example.segii.mapa.alcance;
+
+import com.example.segii.mapa.poi.Poi;
+import com.google.android.gms.maps.model.LatLng;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+// Resultado de una consulta de alcance: el tiempo a cada nodo alcanzable en orden de llegada.
+// Con él se ordenan los puntos de interés por tiempo de viaje y se arma el contorno del área
+// alcanzable para dibujarla en el mapa.
+public class Reachability {
+    // Punto de interés alcanzable y su tiempo de viaje
+    public static final class Reached {
+        public final Poi poi;
+        public final double seconds;
+
+        Reached(Poi poi, double seconds) {
+            this.poi = poi;
+            this.seconds = seconds;
+        }
+    }
+
+    private final RoadGraph graph;
+    private final double accessSpeedMps;
+    // Nodo de partida (-1 si el punto quedó lejos de la red)
+    private final int origin;
+    private final double maxSeconds;
+    // Nodos alcanzados en orden de llegada y el tiempo a cada nodo de la red
+    private final int[] reached;
+    private final float[] seconds;
+    private final long elapsedNanos;
+
+    Reachability(RoadGraph graph, double accessSpeedMps, int origin, double maxSeconds, int[] reached,
+                 float[] seconds, long elapsedNanos) {
+        this.graph = graph;
+        this.accessSpeedMps = accessSpeedMps;
+        this.origin = origin;
+        this.maxSeconds = maxSeconds;
+        this.reached = reached;
+        this.seconds = seconds;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    public boolean isEmpty() {
+        return reached.length == 0;
+    }
+
+    // Nodos de la red alcanzados
+    public int getReachedCount() {
+        return reached.length;
+    }
+
+    public double getMaxSeconds() {
+        return maxSeconds;
+    }
+
+    // Lo que tardó la consulta (µs)
+    public long getElapsedMicros() {
+        return elapsedNanos / 1000;
+    }
+
+    // Tiempo de viaje hasta el punto, o infinito si no se alcanza en el tiempo máximo
+    public double secondsTo(double lat, double lng) {
+        if (seconds == null) return Double.POSITIVE_INFINITY;
+        int node = graph.nearestNode(lat, lng, IsochroneEngine.MAX_SNAP_METERS);
+        if (node < 0 || seconds[node] == Float.POSITIVE_INFINITY) return Double.POSITIVE_INFINITY;
+        double dx = graph.xOf(node) - graph.toX(lng), dy = graph.yOf(node) - graph.toY(lat);
+        double total = seconds[node] + Math.sqrt(dx * dx + dy * dy) / accessSpeedMps;
+        return total <= maxSeconds ? total : Double.POSITIVE_INFINITY;
+    }
+
+    // Los puntos alcanzables en el tiempo máximo, del más rápido al más lento (hasta limit)
+    public List<Reached> rank(List<Poi> pois, int limit) {
+        if (seconds == null) return Collections.emptyList();
+        List<Reached> result = new ArrayList<>();
+        for (Poi poi : pois) {
+            double time = secondsTo(poi.latitude, poi.longitude);
+            if (time != Double.POSITIVE_INFINITY) result.add(new Reached(poi, time));
+        }
+        Collections.sort(result, (a, b) -> Double.compare(a.seconds, b.seconds));
+        return result.size() > limit ? new ArrayList<>(result.subList(0, limit)) : result;
+    }
+
+    // Contorno del área alcanzable: el nodo más lejano de cada sector angular alrededor del origen,
+    // simplificado con Douglas-Peucker (toleranceMeters). Vacío si se alcanzó muy poco
+    public List<LatLng> outline(int sectors, double toleranceMeters) {
+        if (origin < 0) return Collections.emptyList();
+        double ox = graph.xOf(origin), oy = graph.yOf(origin);
+        int[] farthest = new int[sectors];
+        double[] farthestDist2 = new double[sectors];
+        Arrays.fill(farthest, -1);
+        for (int node : reached) {
+            double dx = graph.xOf(node) - ox, dy = graph.yOf(node) - oy;
+            double dist2 = dx * dx + dy * dy;
+            int sector = (int) ((Math.atan2(dy, dx) + Math.PI) / (2 * Math.PI) * sectors) % sectors;
+            if (dist2 > farthestDist2[sector]) {
+                farthestDist2[sector] = dist2;
+                farthest[sector] = node;
+            }
+        }
+        int count = 0;
+        int[] ring = new int[sectors];
+        for (int node : farthest) {
+            if (node >= 0) ring[count++] = node;
+        }
+        if (count < 3) return Collections.emptyList();
+        boolean[] keep = new boolean[count];
+        // El anillo se cierra repitiendo el primer punto al final
+        simplify(ring, count, keep, toleranceMeters);
+        List<LatLng> points = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            if (keep[i]) points.add(new LatLng(graph.latAt(ring[i]), graph.lngAt(ring[i])));
+        }
+        return points.size() >= 3 ? points : Collections.emptyList();
+    }
+
+    // Douglas-Peucker sobre el anillo (sin recursión): marca en keep los puntos que se conservan
+    private void simplify(int[] ring, int count, boolean[] keep, double tolerance) {
+        keep[0] = true;
+        // Tramos pendientes [desde, hasta]; el índice count representa el primer punto otra vez
+        int[] stack = new int[2 * (count + 1)];
+        int top = 0;
+        stack[top++] = 0;
+        stack[top++] = count;
+        while (top > 0) {
+            int to = stack[--top];
+            int from = stack[--top];
+            if (to - from < 2) continue;
+            int a = ring[from], b = ring[to % count];
+            double ax = graph.xOf(a), ay = graph.yOf(a), bx = graph.xOf(b), by = graph.yOf(b);
+            int worst = -1;
+            double worstDistance = tolerance;
+            for (int i = from + 1; i < to; i++) {
+                double distance = distanceToSegment(graph.xOf(ring[i]), graph.yOf(ring[i]), ax, ay, bx, by);
+                if (distance > worstDistance) {
+                    worstDistance = distance;
+                    worst = i;
+                }
+            }
+            if (worst < 0) continue;
+            keep[worst] = true;
+            stack[top++] = from;
+            stack[top++] = worst;
+            stack[top++] = worst;
+            stack[top++] = to;
+        }
+    }
+
+    private static double distanceToSegment(double px, double py, double ax, double ay, double bx, double by) {
+        double dx = bx - ax, dy = by - ay;
+        double length2 = dx * dx + dy * dy;
+        double t = length2 > 0 ? Math.max(0, Math.min(1, ((px - ax) * dx + (py - ay) * dy) / length2)) : 0;
+        double ex = ax + t * dx - px, ey = ay + t * dy - py;
+        return Math.sqrt(ex * ex + ey * ey);
+    }
+}
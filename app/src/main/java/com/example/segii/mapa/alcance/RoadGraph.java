@@ -0,0 +1,281 @@
+package com.example.segii.mapa.alcance;
+
+import com.example.segii.mapa.area.ServiceArea;
+import com.google.android.gms.maps.model.LatLngBounds;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+// Red de calles local para calcular tiempos de viaje sin red. Se guarda en arreglos primitivos en
+// formato de lista de adyacencia comprimida: las aristas que salen del nodo i están en
+// [edgeStart[i], edgeStart[i + 1]) con su destino y su tiempo en segundos. Una rejilla de celdas
+// encuentra el nodo más cercano a un punto sin recorrer todos los nodos.
+// Se construye con Builder, leyendo el archivo de la red vial (load) o como una malla uniforme
+// sobre el área de servicio (lattice). La malla solo aproxima la distancia en línea recta con un
+// rodeo fijo, así que la app no la usa para responder con tiempos de viaje; sirve para pruebas.
+public class RoadGraph {
+    // Metros por grado de latitud y de longitud en el ecuador (aproximación equirectangular)
+    private static final double METERS_PER_DEG_LAT = 110_540.0;
+    private static final double METERS_PER_DEG_LNG = 111_320.0;
+    private static final double E5 = 1E5;
+    // Tamaño de las celdas del índice de nodos (m)
+    private static final double CELL_METERS = 250;
+
+    // Coordenadas de cada nodo en grados * 1E5
+    private final int[] coordsE5;
+    private final int[] edgeStart;
+    private final int[] edgeTarget;
+    private final float[] edgeSeconds;
+    // Proyección plana local
+    private final int originLatE5, originLngE5;
+    private final double metersPerE5Lat, metersPerE5Lng;
+    // Índice de nodos por celda (mismo formato comprimido que las aristas)
+    private final int columns, rows;
+    private final int[] cellStart;
+    private final int[] cellNodes;
+
+    private RoadGraph(int[] coordsE5, int[] edgeStart, int[] edgeTarget, float[] edgeSeconds) {
+        this.coordsE5 = coordsE5;
+        this.edgeStart = edgeStart;
+        this.edgeTarget = edgeTarget;
+        this.edgeSeconds = edgeSeconds;
+        int n = getNodeCount();
+        int minLat = Integer.MAX_VALUE, minLng = Integer.MAX_VALUE, maxLat = Integer.MIN_VALUE, maxLng = Integer.MIN_VALUE;
+        for (int i = 0; i < n; i++) {
+            minLat = Math.min(minLat, coordsE5[2 * i]);
+            maxLat = Math.max(maxLat, coordsE5[2 * i]);
+            minLng = Math.min(minLng, coordsE5[2 * i + 1]);
+            maxLng = Math.max(maxLng, coordsE5[2 * i + 1]);
+        }
+        if (n == 0) minLat = maxLat = minLng = maxLng = 0;
+        originLatE5 = minLat;
+        originLngE5 = minLng;
+        metersPerE5Lat = METERS_PER_DEG_LAT / E5;
+        metersPerE5Lng = METERS_PER_DEG_LNG * Math.cos(Math.toRadians((minLat + maxLat) / 2.0 / E5)) / E5;
+        columns = (int) ((maxLng - minLng) * metersPerE5Lng / CELL_METERS) + 1;
+        rows = (int) ((maxLat - minLat) * metersPerE5Lat / CELL_METERS) + 1;
+        // Cuenta los nodos de cada celda y luego los acomoda (ordenamiento por conteo)
+        cellStart = new int[columns * rows + 1];
+        for (int i = 0; i < n; i++) cellStart[cellOf(i) + 1]++;
+        for (int c = 0; c < columns * rows; c++) cellStart[c + 1] += cellStart[c];
+        cellNodes = new int[n];
+        int[] fill = Arrays.copyOf(cellStart, columns * rows);
+        for (int i = 0; i < n; i++) cellNodes[fill[cellOf(i)]++] = i;
+    }
+
+    public int getNodeCount() {
+        return coordsE5.length / 2;
+    }
+
+    public int getEdgeCount() {
+        return edgeTarget.length;
+    }
+
+    public double latAt(int node) {
+        return coordsE5[2 * node] / E5;
+    }
+
+    public double lngAt(int node) {
+        return coordsE5[2 * node + 1] / E5;
+    }
+
+    // Posición plana del nodo en metros (x al este, y al norte)
+    double xOf(int node) {
+        return (coordsE5[2 * node + 1] - originLngE5) * metersPerE5Lng;
+    }
+
+    double yOf(int node) {
+        return (coordsE5[2 * node] - originLatE5) * metersPerE5Lat;
+    }
+
+    double toX(double lng) {
+        return (lng * E5 - originLngE5) * metersPerE5Lng;
+    }
+
+    double toY(double lat) {
+        return (lat * E5 - originLatE5) * metersPerE5Lat;
+    }
+
+    int edgeStart(int node) {
+        return edgeStart[node];
+    }
+
+    int edgeEnd(int node) {
+        return edgeStart[node + 1];
+    }
+
+    int edgeTarget(int edge) {
+        return edgeTarget[edge];
+    }
+
+    float edgeSeconds(int edge) {
+        return edgeSeconds[edge];
+    }
+
+    private int cellOf(int node) {
+        int column = Math.min(columns - 1, (int) (xOf(node) / CELL_METERS));
+        int row = Math.min(rows - 1, (int) (yOf(node) / CELL_METERS));
+        return row * columns + column;
+    }
+
+    // Nodo más cercano al punto dentro de maxMeters, o -1 si no hay ninguno
+    public int nearestNode(double lat, double lng, double maxMeters) {
+        double x = toX(lng), y = toY(lat);
+        int column = (int) Math.floor(x / CELL_METERS);
+        int row = (int) Math.floor(y / CELL_METERS);
+        int maxRing = (int) Math.ceil(maxMeters / CELL_METERS) + 1;
+        int best = -1;
+        double bestDist2 = maxMeters * maxMeters;
+        for (int ring = 0; ring <= maxRing; ring++) {
+            // Los anillos siguientes están a más de (ring * celda) del punto: ya no pueden mejorar
+            double ringMin = (ring - 1) * CELL_METERS;
+            if (best >= 0 && ringMin > 0 && ringMin * ringMin > bestDist2) break;
+            for (int r = row - ring; r <= row + ring; r++) {
+                if (r < 0 || r >= rows) continue;
+                boolean edgeRow = r == row - ring || r == row + ring;
+                // En las filas de en medio solo cuentan las dos celdas del borde del anillo
+                for (int c = column - ring; c <= column + ring; c += edgeRow ? 1 : 2 * ring) {
+                    if (c >= 0 && c < columns) {
+                        int cell = r * columns + c;
+                        for (int k = cellStart[cell]; k < cellStart[cell + 1]; k++) {
+                            int node = cellNodes[k];
+                            double dx = xOf(node) - x, dy = yOf(node) - y;
+                            double dist2 = dx * dx + dy * dy;
+                            if (dist2 <= bestDist2) {
+                                bestDist2 = dist2;
+                                best = node;
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        return best;
+    }
+
+    // Malla de calles aproximada sobre el área de servicio: nodos cada spacingMeters (solo dentro
+    // de los límites) unidos con sus 8 vecinos. La distancia en línea recta se multiplica por
+    // circuity porque las calles no van en línea recta
+    public static RoadGraph lattice(ServiceArea area, double spacingMeters, double speedMps, double circuity) {
+        LatLngBounds bounds = area.getBounds();
+        double south = bounds.southwest.latitude, west = bounds.southwest.longitude;
+        double stepLat = spacingMeters / METERS_PER_DEG_LAT;
+        double centerLat = (south + bounds.northeast.latitude) / 2;
+        double stepLng = spacingMeters / (METERS_PER_DEG_LNG * Math.cos(Math.toRadians(centerLat)));
+        int rows = (int) Math.ceil((bounds.northeast.latitude - south) / stepLat) + 1;
+        int columns = (int) Math.ceil((bounds.northeast.longitude - west) / stepLng) + 1;
+        Builder builder = new Builder();
+        // Nodo de cada punto de la malla (-1 fuera del área)
+        int[] ids = new int[rows * columns];
+        for (int r = 0; r < rows; r++) {
+            for (int c = 0; c < columns; c++) {
+                double lat = south + r * stepLat, lng = west + c * stepLng;
+                ids[r * columns + c] = area.contains(lat, lng) ? builder.addNode(lat, lng) : -1;
+            }
+        }
+        double straight = spacingMeters * circuity / speedMps;
+        double diagonal = straight * Math.sqrt(2);
+        for (int r = 0; r < rows; r++) {
+            for (int c = 0; c < columns; c++) {
+                int from = ids[r * columns + c];
+                if (from < 0) continue;
+                // Cada par se une una vez en ambos sentidos: este, norte, noreste y noroeste
+                if (c + 1 < columns) builder.addTwoWay(from, ids[r * columns + c + 1], straight);
+                if (r + 1 < rows) {
+                    builder.addTwoWay(from, ids[(r + 1) * columns + c], straight);
+                    if (c + 1 < columns) builder.addTwoWay(from, ids[(r + 1) * columns + c + 1], diagonal);
+                    if (c > 0) builder.addTwoWay(from, ids[(r + 1) * columns + c - 1], diagonal);
+                }
+            }
+        }
+        return builder.build();
+    }
+
+    // Lee la red vial en formato CSV (las líneas con # se ignoran):
+    //   n,latitud,longitud                        nodo (se numeran en el orden del archivo)
+    //   a,desde,hasta,metros,km/h[,1]             tramo entre dos nodos (1 = un solo sentido)
+    public static RoadGraph load(InputStream in) throws IOException {
+        Builder builder = new Builder();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) continue;
+                String[] fields = line.split(",");
+                try {
+                    if (fields[0].equals("n") && fields.length >= 3) {
+                        builder.addNode(Double.parseDouble(fields[1]), Double.parseDouble(fields[2]));
+                    } else if (fields[0].equals("a") && fields.length >= 5) {
+                        int from = Integer.parseInt(fields[1].trim());
+                        int to = Integer.parseInt(fields[2].trim());
+                        double seconds = Double.parseDouble(fields[3]) / (Double.parseDouble(fields[4]) / 3.6);
+                        if (from < 0 || to < 0 || from >= builder.nodeCount || to >= builder.nodeCount) continue;
+                        if (fields.length > 5 && fields[5].trim().equals("1")) {
+                            builder.addEdge(from, to, seconds);
+                        } else {
+                            builder.addTwoWay(from, to, seconds);
+                        }
+                    }
+                } catch (NumberFormatException e) {
+                    // Línea inválida: se omite
+                }
+            }
+        }
+        return builder.build();
+    }
+
+    // Acumula nodos y aristas en arreglos que crecen y al final arma el formato comprimido
+    public static final class Builder {
+        private int[] coords = new int[256];
+        private int nodeCount;
+        private int[] from = new int[256], to = new int[256];
+        private float[] seconds = new float[256];
+        private int edgeCount;
+
+        public int addNode(double lat, double lng) {
+            if (2 * nodeCount + 2 > coords.length) coords = Arrays.copyOf(coords, coords.length * 2);
+            coords[2 * nodeCount] = (int) Math.round(lat * E5);
+            coords[2 * nodeCount + 1] = (int) Math.round(lng * E5);
+            return nodeCount++;
+        }
+
+        // Arista de un solo sentido
+        public void addEdge(int fromNode, int toNode, double travelSeconds) {
+            if (fromNode < 0 || toNode < 0) return;
+            if (edgeCount == from.length) {
+                from = Arrays.copyOf(from, edgeCount * 2);
+                to = Arrays.copyOf(to, edgeCount * 2);
+                seconds = Arrays.copyOf(seconds, edgeCount * 2);
+            }
+            from[edgeCount] = fromNode;
+            to[edgeCount] = toNode;
+            seconds[edgeCount] = (float) travelSeconds;
+            edgeCount++;
+        }
+
+        public void addTwoWay(int a, int b, double travelSeconds) {
+            if (a < 0 || b < 0) return;
+            addEdge(a, b, travelSeconds);
+            addEdge(b, a, travelSeconds);
+        }
+
+        public RoadGraph build() {
+            int[] start = new int[nodeCount + 1];
+            for (int e = 0; e < edgeCount; e++) start[from[e] + 1]++;
+            for (int i = 0; i < nodeCount; i++) start[i + 1] += start[i];
+            int[] fill = Arrays.copyOf(start, nodeCount);
+            int[] targets = new int[edgeCount];
+            float[] times = new float[edgeCount];
+            for (int e = 0; e < edgeCount; e++) {
+                int slot = fill[from[e]]++;
+                targets[slot] = to[e];
+                times[slot] = seconds[e];
+            }
+            return new RoadGraph(Arrays.copyOf(coords, 2 * nodeCount), start, targets, times);
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package com.example.segii.mapa.area;
+
+import java.util.List;
+
+// Índice de punto en polígono acelerado con una rejilla sobre el rectángulo envolvente.
+// Al construirlo se guarda, para cada celda, si su centro está dentro (regla par-impar sobre
+// todos los anillos) y qué aristas la tocan. Una consulta solo cuenta los cruces del segmento
+// centro-punto con las aristas de su celda, así el costo no depende del tamaño del polígono.
+class PolygonGrid {
+    // Celdas por lado de la rejilla (como máximo)
+    private static final int MAX_CELLS = 64;
+
+    // Extremos de cada arista: x = longitud, y = latitud (grados)
+    private final double[] ax, ay, bx, by;
+    // Rectángulo envolvente
+    final double minX, minY, maxX, maxY;
+    private final int cols, rows;
+    private final double cellW, cellH;
+    // Estado del centro de cada celda
+    private final boolean[] centerInside;
+    // Aristas de cada celda (null si la celda no tiene aristas)
+    private final int[][] cellEdges;
+
+    // Recibe los anillos del polígono como arreglos [x0, y0, x1, y1, ...] (exterior y huecos)
+    PolygonGrid(List<double[]> rings) {
+        int edges = 0;
+        for (double[] ring : rings) {
+            edges += ring.length / 2;
+        }
+        ax = new double[edges];
+        ay = new double[edges];
+        bx = new double[edges];
+        by = new double[edges];
+        double x0 = Double.MAX_VALUE, y0 = Double.MAX_VALUE, x1 = -Double.MAX_VALUE, y1 = -Double.MAX_VALUE;
+        int e = 0;
+        for (double[] ring : rings) {
+            int n = ring.length / 2;
+            for (int i = 0; i < n; i++) {
+                int j = (i + 1) % n; // El anillo se cierra aunque no repita el primer punto
+                ax[e] = ring[2 * i];
+                ay[e] = ring[2 * i + 1];
+                bx[e] = ring[2 * j];
+                by[e] = ring[2 * j + 1];
+                x0 = Math.min(x0, ax[e]);
+                y0 = Math.min(y0, ay[e]);
+                x1 = Math.max(x1, ax[e]);
+                y1 = Math.max(y1, ay[e]);
+                e++;
+            }
+        }
+        minX = x0;
+        minY = y0;
+        maxX = x1;
+        maxY = y1;
+
+        // Rejilla más fina cuanto más aristas, hasta MAX_CELLS por lado
+        int side = (int) Math.max(1, Math.min(MAX_CELLS, Math.ceil(Math.sqrt(edges))));
+        cols = side;
+        rows = side;
+        cellW = Math.max((maxX - minX) / cols, 1e-12);
+        cellH = Math.max((maxY - minY) / rows, 1e-12);
+
+        // Reparte las aristas en las celdas que toca su rectángulo envolvente
+        int[] counts = new int[cols * rows];
+        for (int k = 0; k < edges; k++) {
+            forEachCell(k, cell -> counts[cell]++);
+        }
+        cellEdges = new int[cols * rows][];
+        int[] fill = new int[cols * rows];
+        for (int c = 0; c < counts.length; c++) {
+            if (counts[c] > 0) cellEdges[c] = new int[counts[c]];
+        }
+        for (int k = 0; k < edges; k++) {
+            final int edge = k;
+            forEachCell(k, cell -> cellEdges[cell][fill[cell]++] = edge);
+        }
+
+        // Estado de cada centro con un rayo horizontal completo (solo al construir)
+        centerInside = new boolean[cols * rows];
+        for (int r = 0; r < rows; r++) {
+            for (int c = 0; c < cols; c++) {
+                centerInside[r * cols + c] = rayCast(centerX(c), centerY(r));
+            }
+        }
+    }
+
+    private interface CellVisitor {
+        void visit(int cell);
+    }
+
+    private void forEachCell(int edge, CellVisitor visitor) {
+        int c0 = col(Math.min(ax[edge], bx[edge])), c1 = col(Math.max(ax[edge], bx[edge]));
+        int r0 = row(Math.min(ay[edge], by[edge])), r1 = row(Math.max(ay[edge], by[edge]));
+        for (int r = r0; r <= r1; r++) {
+            for (int c = c0; c <= c1; c++) {
+                visitor.visit(r * cols + c);
+            }
+        }
+    }
+
+    private int col(double x) {
+        return Math.max(0, Math.min(cols - 1, (int) ((x - minX) / cellW)));
+    }
+
+    private int row(double y) {
+        return Math.max(0, Math.min(rows - 1, (int) ((y - minY) / cellH)));
+    }
+
+    private double centerX(int c) {
+        return minX + (c + 0.5) * cellW;
+    }
+
+    private double centerY(int r) {
+        return minY + (r + 0.5) * cellH;
+    }
+
+    // Regla par-impar con un rayo hacia +x sobre todas las aristas
+    private boolean rayCast(double x, double y) {
+        boolean inside = false;
+        for (int k = 0; k < ax.length; k++) {
+            if ((ay[k] > y) != (by[k] > y)) {
+                double xCross = ax[k] + (y - ay[k]) * (bx[k] - ax[k]) / (by[k] - ay[k]);
+                if (x < xCross) inside = !inside;
+            }
+        }
+        return inside;
+    }
+
+    // Indica si el punto (x = longitud, y = latitud) está dentro del polígono
+    boolean contains(double x, double y) {
+        if (x < minX || x > maxX || y < minY || y > maxY) return false;
+        int c = col(x), r = row(y);
+        int cell = r * cols + c;
+        boolean inside = centerInside[cell];
+        int[] edges = cellEdges[cell];
+        if (edges == null) return inside;
+        // Cada cruce del segmento centro-punto con una arista invierte el estado
+        double cx = centerX(c), cy = centerY(r);
+        for (int k : edges) {
+            if (crosses(cx, cy, x, y, k)) inside = !inside;
+        }
+        return inside;
+    }
+
+    // Intersección del segmento p-q con la arista k (extremo inferior incluido, superior excluido
+    // según la orientación de p-q, para no contar dos veces un vértice compartido)
+    private boolean crosses(double px, double py, double qx, double qy, int k) {
+        double d1 = orient(px, py, qx, qy, ax[k], ay[k]);
+        double d2 = orient(px, py, qx, qy, bx[k], by[k]);
+        if ((d1 > 0) == (d2 > 0)) return false;
+        double d3 = orient(ax[k], ay[k], bx[k], by[k], px, py);
+        double d4 = orient(ax[k], ay[k], bx[k], by[k], qx, qy);
+        return (d3 > 0) != (d4 > 0);
+    }
+
+    private static double orient(double ax, double ay, double bx, double by, double cx, double cy) {
+        return (bx - ax) * (cy - ay) - (by - ay) * (cx - ax);
+    }
+}
@@ -0,0 +1,193 @@
+package com.example.segii.mapa.area;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.google.android.gms.maps.model.LatLng;
+import com.google.android.gms.maps.model.LatLngBounds;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+// Área donde se ofrece el servicio: uno o más municipios con sus polígonos de límites.
+// Los polígonos se leen de un GeoJSON en assets y cada uno se indexa con una rejilla, así la
+// pregunta "¿este punto está dentro?" cuesta lo mismo sin importar cuántos vértices tenga el
+// límite. La app comparte una sola instancia (ver get).
+public class ServiceArea {
+    // Archivo de assets con los límites (FeatureCollection de Polygon o MultiPolygon)
+    static final String ASSET = "area_servicio.geojson";
+    private static final String TAG = "ServiceArea";
+
+    // Región con nombre (un municipio) y su índice
+    private static final class Region {
+        final String name;
+        final PolygonGrid grid;
+
+        Region(String name, PolygonGrid grid) {
+            this.name = name;
+            this.grid = grid;
+        }
+    }
+
+    // Instancia compartida por toda la app
+    private static ServiceArea shared;
+
+    private final String name;
+    private final List<Region> regions;
+    private final LatLng center;
+    private final LatLngBounds bounds;
+
+    private ServiceArea(String name, List<Region> regions, LatLng center) {
+        this.name = name;
+        this.regions = Collections.unmodifiableList(regions);
+        double minX = Double.MAX_VALUE, minY = Double.MAX_VALUE, maxX = -Double.MAX_VALUE, maxY = -Double.MAX_VALUE;
+        for (Region region : regions) {
+            minX = Math.min(minX, region.grid.minX);
+            minY = Math.min(minY, region.grid.minY);
+            maxX = Math.max(maxX, region.grid.maxX);
+            maxY = Math.max(maxY, region.grid.maxY);
+        }
+        this.bounds = new LatLngBounds(new LatLng(minY, minX), new LatLng(maxY, maxX));
+        this.center = center != null ? center : new LatLng((minY + maxY) / 2, (minX + maxX) / 2);
+    }
+
+    // Devuelve la instancia compartida, cargándola de assets la primera vez
+    public static synchronized ServiceArea get(Context context) {
+        if (shared == null) {
+            try (InputStream in = context.getApplicationContext().getAssets().open(ASSET)) {
+                shared = parse(readAll(in));
+            } catch (IOException | JSONException | IllegalArgumentException e) {
+                // Sin archivo válido se usa el rectángulo original de Huauchinango
+                Log.e(TAG, "No se pudo cargar el área de servicio, se usa la predeterminada", e);
+                shared = huauchinango();
+            }
+        }
+        return shared;
+    }
+
+    // Área predeterminada: el rectángulo con el que empezó la app
+    public static ServiceArea huauchinango() {
+        return box("Huauchinango", 20.1, -98.1, 20.25, -97.95, new LatLng(20.1738, -98.0549));
+    }
+
+    // Área rectangular (útil como respaldo y en pruebas)
+    public static ServiceArea box(String name, double south, double west, double north, double east, LatLng center) {
+        List<double[]> rings = new ArrayList<>();
+        rings.add(new double[]{west, south, east, south, east, north, west, north});
+        List<Region> regions = new ArrayList<>();
+        regions.add(new Region(name, new PolygonGrid(rings)));
+        return new ServiceArea(name, regions, center);
+    }
+
+    // Lee un FeatureCollection GeoJSON; cada Feature es una región con "properties.name".
+    // El nombre del área y su centro opcional ([lng, lat]) van en las propiedades de la colección.
+    public static ServiceArea parse(String geoJson) throws JSONException {
+        JSONObject root = new JSONObject(geoJson);
+        JSONObject properties = root.optJSONObject("properties");
+        String areaName = properties != null ? properties.optString("name", "") : "";
+        LatLng center = null;
+        JSONArray centerArray = properties != null ? properties.optJSONArray("center") : null;
+        if (centerArray != null && centerArray.length() >= 2) {
+            center = new LatLng(centerArray.getDouble(1), centerArray.getDouble(0));
+        }
+
+        List<Region> regions = new ArrayList<>();
+        JSONArray features = root.getJSONArray("features");
+        for (int i = 0; i < features.length(); i++) {
+            JSONObject feature = features.getJSONObject(i);
+            JSONObject geometry = feature.getJSONObject("geometry");
+            JSONObject featureProps = feature.optJSONObject("properties");
+            String regionName = featureProps != null ? featureProps.optString("name", areaName) : areaName;
+            String type = geometry.getString("type");
+            JSONArray coordinates = geometry.getJSONArray("coordinates");
+            if ("Polygon".equals(type)) {
+                regions.add(new Region(regionName, new PolygonGrid(rings(coordinates))));
+            } else if ("MultiPolygon".equals(type)) {
+                // Las partes de un MultiPolygon no se traslapan: se indexan como una sola región
+                List<double[]> all = new ArrayList<>();
+                for (int p = 0; p < coordinates.length(); p++) {
+                    all.addAll(rings(coordinates.getJSONArray(p)));
+                }
+                regions.add(new Region(regionName, new PolygonGrid(all)));
+            } else {
+                throw new IllegalArgumentException("Geometría no soportada: " + type);
+            }
+        }
+        if (regions.isEmpty()) {
+            throw new IllegalArgumentException("El área de servicio no tiene regiones");
+        }
+        if (areaName.isEmpty()) areaName = regions.get(0).name;
+        return new ServiceArea(areaName, regions, center);
+    }
+
+    // Convierte los anillos GeoJSON ([[lng, lat], ...]) a arreglos planos
+    private static List<double[]> rings(JSONArray polygon) throws JSONException {
+        List<double[]> rings = new ArrayList<>(polygon.length());
+        for (int r = 0; r < polygon.length(); r++) {
+            JSONArray ring = polygon.getJSONArray(r);
+            int n = ring.length();
+            // GeoJSON repite el primer punto al final; el índice cierra el anillo por sí mismo
+            JSONArray first = ring.getJSONArray(0), last = ring.getJSONArray(n - 1);
+            if (n > 1 && first.getDouble(0) == last.getDouble(0) && first.getDouble(1) == last.getDouble(1)) n--;
+            double[] flat = new double[2 * n];
+            for (int i = 0; i < n; i++) {
+                JSONArray point = ring.getJSONArray(i);
+                flat[2 * i] = point.getDouble(0);
+                flat[2 * i + 1] = point.getDouble(1);
+            }
+            rings.add(flat);
+        }
+        return rings;
+    }
+
+    private static String readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int n;
+        while ((n = in.read(buffer)) > 0) {
+            out.write(buffer, 0, n);
+        }
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    // Indica si el punto está dentro de alguna región del área
+    public boolean contains(double lat, double lng) {
+        return regionAt(lat, lng) != null;
+    }
+
+    public boolean contains(LatLng point) {
+        return point != null && contains(point.latitude, point.longitude);
+    }
+
+    // Nombre de la región que contiene el punto, o null si está fuera del área
+    public String regionAt(double lat, double lng) {
+        for (Region region : regions) {
+            if (region.grid.contains(lng, lat)) return region.name;
+        }
+        return null;
+    }
+
+    // Nombre del área para los mensajes al usuario
+    public String getName() {
+        return name;
+    }
+
+    // Centro que se usa cuando no hay ubicación
+    public LatLng getCenter() {
+        return center;
+    }
+
+    // Rectángulo que envuelve todas las regiones (para la cámara del mapa)
+    public LatLngBounds getBounds() {
+        return bounds;
+    }
+}
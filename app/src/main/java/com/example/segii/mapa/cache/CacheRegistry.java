@@ -0,0 +1,143 @@
+package com.example.segii.mapa.cache;
+
+import android.app.ActivityManager;
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+
+import com.example.segii.mapa.registro.EventLog;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Registro central de las cachés en memoria. Cada caché declara su presupuesto en bytes y cómo
+// medir sus entradas; el registro cuida además un límite global para todas juntas, descartando
+// entre cachés la entrada vieja, grande y barata de reconstruir (LRU con peso), y las reduce
+// cuando el sistema avisa que le falta memoria (onTrimMemory), antes de que mate a la app.
+public class CacheRegistry implements ComponentCallbacks2 {
+    // Límite global cuando no se conoce la memoria del dispositivo (pruebas)
+    public static final long DEFAULT_LIMIT_BYTES = 4L * 1024 * 1024;
+    // Fracción del heap de la app que pueden usar las cachés (memoryClass / 32: 6 MB con 192 MB)
+    private static final int HEAP_FRACTION = 32;
+    private static final String TAG = "CacheRegistry";
+
+    // Instancia compartida por toda la app
+    private static CacheRegistry shared;
+
+    private final long limitBytes;
+    private final List<MemoryCache<?, ?>> caches = new CopyOnWriteArrayList<>();
+    private final AtomicLong totalBytes = new AtomicLong();
+    // Reloj lógico de accesos, común a todas las cachés para comparar antigüedades entre ellas
+    private final AtomicLong ticks = new AtomicLong();
+
+    // Devuelve la instancia compartida; la primera vez calcula el límite según el heap del dispositivo
+    // y se registra para recibir los avisos de memoria
+    public static synchronized CacheRegistry get(Context context) {
+        if (shared == null) {
+            Context app = context.getApplicationContext();
+            ActivityManager activityManager = (ActivityManager) app.getSystemService(Context.ACTIVITY_SERVICE);
+            long limit = activityManager != null
+                    ? activityManager.getMemoryClass() * 1024L * 1024 / HEAP_FRACTION
+                    : DEFAULT_LIMIT_BYTES;
+            shared = new CacheRegistry(limit);
+            app.registerComponentCallbacks(shared);
+        }
+        return shared;
+    }
+
+    // Constructor para indicar el límite global en bytes
+    public CacheRegistry(long limitBytes) {
+        this.limitBytes = limitBytes;
+    }
+
+    // Crea y registra una caché. weight indica qué tan caro es reconstruir sus entradas
+    // (una respuesta de red pesa más que algo que se recalcula en memoria)
+    public <K, V> MemoryCache<K, V> create(String name, long budgetBytes, int weight, MemoryCache.Weigher<K, V> weigher) {
+        MemoryCache<K, V> cache = new MemoryCache<>(this, name, Math.min(budgetBytes, limitBytes), weight, weigher);
+        caches.add(cache);
+        return cache;
+    }
+
+    // Quita la caché del registro y libera sus entradas
+    public void remove(MemoryCache<?, ?> cache) {
+        if (caches.remove(cache)) cache.clear();
+    }
+
+    public long getLimitBytes() {
+        return limitBytes;
+    }
+
+    public long getTotalBytes() {
+        return totalBytes.get();
+    }
+
+    // Estado de cada caché registrada
+    public List<MemoryCache.Stats> stats() {
+        List<MemoryCache.Stats> list = new ArrayList<>(caches.size());
+        for (MemoryCache<?, ?> cache : caches) list.add(cache.stats());
+        return list;
+    }
+
+    long tick() {
+        return ticks.incrementAndGet();
+    }
+
+    // Lo llaman las cachés al cambiar de tamaño; si se pasa el límite global, descarta
+    void added(long delta) {
+        if (delta != 0 && totalBytes.addAndGet(delta) > limitBytes) {
+            trimTo(limitBytes);
+        }
+    }
+
+    // Descarta entradas (la de mayor puntaje entre todas las cachés) hasta quedar en targetBytes
+    synchronized void trimTo(long targetBytes) {
+        while (totalBytes.get() > targetBytes) {
+            long now = ticks.get();
+            MemoryCache<?, ?> victim = null;
+            double best = -1;
+            for (MemoryCache<?, ?> cache : caches) {
+                double score = cache.eldestScore(now);
+                if (score > best) {
+                    best = score;
+                    victim = cache;
+                }
+            }
+            if (victim == null) return; // Todas vacías
+            totalBytes.addAndGet(-victim.evictEldest());
+        }
+    }
+
+    // Reduce las cachés según la presión de memoria que reporta el sistema. Es de una sola vez:
+    // después las cachés se vuelven a llenar solo con lo que se use
+    @Override
+    public void onTrimMemory(int level) {
+        long total = totalBytes.get();
+        long target;
+        if (level >= TRIM_MEMORY_COMPLETE || level == TRIM_MEMORY_RUNNING_CRITICAL) {
+            target = 0; // La app está por morir o el sistema está al límite
+        } else if (level >= TRIM_MEMORY_MODERATE || level == TRIM_MEMORY_RUNNING_LOW) {
+            target = total / 4;
+        } else if (level >= TRIM_MEMORY_UI_HIDDEN || level == TRIM_MEMORY_RUNNING_MODERATE) {
+            target = total / 2;
+        } else {
+            return;
+        }
+        trimTo(target);
+        EventLog.i(TAG, "Memoria baja: nivel", level);
+        EventLog.i(TAG, "Cachés antes de reducir (KB)", total / 1024);
+        EventLog.i(TAG, "Cachés después de reducir (KB)", totalBytes.get() / 1024);
+        EventLog.d(TAG, "Cachés", stats());
+    }
+
+    @Override
+    public void onLowMemory() {
+        onTrimMemory(TRIM_MEMORY_COMPLETE);
+    }
+
+    @Override
+    public void onConfigurationChanged(Configuration newConfig) {
+        // No afecta a las cachés
+    }
+}
@@ -0,0 +1,162 @@
+package com.example.segii.mapa.cache;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Caché en memoria con presupuesto en bytes, registrada en un CacheRegistry.
+// Las entradas se ordenan por último uso; al pasar su presupuesto la caché descarta las más viejas,
+// y el registro puede descartar más cuando se pasa el límite global o el sistema pide memoria.
+public final class MemoryCache<K, V> {
+    // Costo aproximado en bytes de una entrada (lo declara quien crea la caché)
+    public interface Weigher<K, V> {
+        int bytes(K key, V value);
+    }
+
+    // Estado de la caché en un momento dado
+    public static final class Stats {
+        public final String name;
+        public final int entries;
+        public final long bytes, budgetBytes;
+        public final long hits, misses, evictions;
+
+        Stats(String name, int entries, long bytes, long budgetBytes, long hits, long misses, long evictions) {
+            this.name = name;
+            this.entries = entries;
+            this.bytes = bytes;
+            this.budgetBytes = budgetBytes;
+            this.hits = hits;
+            this.misses = misses;
+            this.evictions = evictions;
+        }
+
+        // Fracción de consultas que encontraron la entrada (0 si no hubo consultas)
+        public double hitRate() {
+            long total = hits + misses;
+            return total == 0 ? 0 : hits / (double) total;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(java.util.Locale.US, "%s: %d entradas, %d/%d KB, aciertos %.0f%% (%d/%d), %d descartadas",
+                    name, entries, bytes / 1024, budgetBytes / 1024, hitRate() * 100, hits, hits + misses, evictions);
+        }
+    }
+
+    // Valor con su costo y el momento de su último uso (tic del registro)
+    private static final class Entry<V> {
+        final V value;
+        final int bytes;
+        long lastUsed;
+
+        Entry(V value, int bytes, long lastUsed) {
+            this.value = value;
+            this.bytes = bytes;
+            this.lastUsed = lastUsed;
+        }
+    }
+
+    final String name;
+    final long budgetBytes;
+    // Qué tan caro es reconstruir una entrada: a mayor peso, más tarde se descarta
+    final int weight;
+    private final Weigher<K, V> weigher;
+    private final CacheRegistry registry;
+    // Orden de acceso: la primera entrada es la menos usada recientemente
+    private final LinkedHashMap<K, Entry<V>> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long bytes;
+    private long hits, misses, evictions;
+
+    MemoryCache(CacheRegistry registry, String name, long budgetBytes, int weight, Weigher<K, V> weigher) {
+        this.registry = registry;
+        this.name = name;
+        this.budgetBytes = budgetBytes;
+        this.weight = Math.max(1, weight);
+        this.weigher = weigher;
+    }
+
+    // Devuelve el valor guardado o null; cuenta el acierto o el fallo
+    public V get(K key) {
+        synchronized (this) {
+            Entry<V> entry = entries.get(key);
+            if (entry == null) {
+                misses++;
+                return null;
+            }
+            hits++;
+            entry.lastUsed = registry.tick();
+            return entry.value;
+        }
+    }
+
+    // Guarda el valor; si no cabe ni en el presupuesto completo de la caché, no se guarda
+    public void put(K key, V value) {
+        int cost = Math.max(1, weigher.bytes(key, value));
+        long delta;
+        synchronized (this) {
+            Entry<V> previous = entries.remove(key);
+            delta = previous != null ? -previous.bytes : 0;
+            if (cost <= budgetBytes) {
+                entries.put(key, new Entry<>(value, cost, registry.tick()));
+                delta += cost;
+            }
+            bytes += delta;
+            // Primero respeta el presupuesto propio
+            while (bytes > budgetBytes) {
+                delta -= evictEldestLocked();
+            }
+        }
+        // Después el límite global (fuera del candado de la caché: el registro toma los candados en orden)
+        registry.added(delta);
+    }
+
+    public void remove(K key) {
+        long freed = 0;
+        synchronized (this) {
+            Entry<V> entry = entries.remove(key);
+            if (entry != null) {
+                bytes -= entry.bytes;
+                freed = entry.bytes;
+            }
+        }
+        registry.added(-freed);
+    }
+
+    public void clear() {
+        long freed;
+        synchronized (this) {
+            freed = bytes;
+            entries.clear();
+            bytes = 0;
+        }
+        registry.added(-freed);
+    }
+
+    public synchronized Stats stats() {
+        return new Stats(name, entries.size(), bytes, budgetBytes, hits, misses, evictions);
+    }
+
+    // Puntaje de descarte de la entrada más vieja: antigüedad por tamaño entre el peso de la caché.
+    // Entre cachés gana la entrada vieja, grande y barata de reconstruir; -1 si la caché está vacía
+    synchronized double eldestScore(long now) {
+        Iterator<Entry<V>> it = entries.values().iterator();
+        if (!it.hasNext()) return -1;
+        Entry<V> eldest = it.next();
+        return (double) (now - eldest.lastUsed + 1) * eldest.bytes / weight;
+    }
+
+    // Descarta la entrada menos usada; devuelve los bytes liberados (lo usa el registro)
+    synchronized long evictEldest() {
+        return evictEldestLocked();
+    }
+
+    private long evictEldestLocked() {
+        Iterator<Map.Entry<K, Entry<V>>> it = entries.entrySet().iterator();
+        if (!it.hasNext()) return 0;
+        int freed = it.next().getValue().bytes;
+        it.remove();
+        bytes -= freed;
+        evictions++;
+        return freed;
+    }
+}
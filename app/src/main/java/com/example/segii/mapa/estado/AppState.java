@@ -0,0 +1,64 @@
+package com.example.segii.mapa.estado;
+
+import com.example.segii.mapa.ruta.RouteData;
+import com.google.android.gms.maps.model.LatLng;
+
+// Foto inmutable del estado compartido de la app: la última posición, el avance sobre la ruta,
+// la ruta activa y si se está escuchando la palabra clave. Nunca se modifica; cada cambio crea
+// una foto nueva con la versión siguiente, así cualquier hilo que la lea ve valores consistentes.
+// Los métodos with* devuelven la misma foto si el valor no cambia (no hay nada que publicar).
+public final class AppState {
+    // Estado al abrir la app
+    public static final AppState INITIAL = new AppState(0, null, -1, null, false);
+
+    // Número de cambio (crece con cada foto publicada)
+    public final long version;
+    // Última posición conocida del dispositivo (null hasta el primer fix)
+    public final LatLng location;
+    // Distancia recorrida sobre la ruta activa (-1 fuera de ella o sin ruta)
+    public final double distanceAlongRoute;
+    // Ruta que se está siguiendo (null si no hay navegación)
+    public final RouteData activeRoute;
+    // Indica si se está escuchando la palabra clave
+    public final boolean hotwordListening;
+
+    private AppState(long version, LatLng location, double distanceAlongRoute, RouteData activeRoute,
+                     boolean hotwordListening) {
+        this.version = version;
+        this.location = location;
+        this.distanceAlongRoute = distanceAlongRoute;
+        this.activeRoute = activeRoute;
+        this.hotwordListening = hotwordListening;
+    }
+
+    // Nueva posición fuera de la ruta (o sin ruta): el avance queda en -1, para que nunca se lea
+    // junto a esta posición un avance calculado con otro fix
+    public AppState withLocation(LatLng location) {
+        if (location == null || (location.equals(this.location) && distanceAlongRoute < 0)) return this;
+        return new AppState(version + 1, location, -1, activeRoute, hotwordListening);
+    }
+
+    // Nueva posición y distancia recorrida sobre la ruta activa
+    public AppState withProgress(LatLng location, double distanceAlongRoute) {
+        if (location == null) return this;
+        if (location.equals(this.location) && distanceAlongRoute == this.distanceAlongRoute) return this;
+        return new AppState(version + 1, location, distanceAlongRoute, activeRoute, hotwordListening);
+    }
+
+    // Nueva ruta activa (null al terminar); el avance vuelve a empezar
+    public AppState withActiveRoute(RouteData route) {
+        if (route == activeRoute) return this;
+        return new AppState(version + 1, location, -1, route, hotwordListening);
+    }
+
+    public AppState withHotwordListening(boolean listening) {
+        if (listening == hotwordListening) return this;
+        return new AppState(version + 1, location, distanceAlongRoute, activeRoute, listening);
+    }
+
+    @Override
+    public String toString() {
+        return "AppState{v" + version + ", ruta=" + (activeRoute != null ? activeRoute.destinationName : "ninguna")
+                + ", avance=" + Math.round(distanceAlongRoute) + " m, escuchando=" + hotwordListening + "}";
+    }
+}
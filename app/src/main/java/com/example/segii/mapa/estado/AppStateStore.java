@@ -0,0 +1,130 @@
+package com.example.segii.mapa.estado;
+
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+// Único lugar donde vive el estado compartido (posición, ruta activa, escucha de la palabra clave).
+// Los callbacks de ubicación, el hilo principal y los hilos de las rutas publican fotos inmutables
+// (AppState) con compare-and-set sobre una referencia atómica, sin candados; cualquier hilo lee la
+// foto actual con getState() y ve todos sus campos consistentes entre sí.
+// Las suscripciones eligen la parte del estado que les interesa y solo se avisan cuando esa parte
+// cambia; si llegan varios cambios antes de entregar el aviso, se entrega solo el más reciente.
+public class AppStateStore {
+    // Transformación de una foto en la siguiente (puede ejecutarse más de una vez si otro hilo publica antes)
+    public interface Update {
+        AppState apply(AppState state);
+    }
+
+    // Parte del estado que le interesa a una suscripción (se compara con equals)
+    public interface Selector {
+        Object select(AppState state);
+    }
+
+    public interface Listener {
+        void onChanged(AppState state);
+    }
+
+    // Suscripción activa; close() deja de avisar
+    public interface Subscription {
+        void close();
+    }
+
+    // Instancia compartida por toda la app
+    private static AppStateStore shared;
+
+    private final AtomicReference<AppState> state = new AtomicReference<>(AppState.INITIAL);
+    private final CopyOnWriteArrayList<Watcher> watchers = new CopyOnWriteArrayList<>();
+
+    public static synchronized AppStateStore get() {
+        if (shared == null) {
+            shared = new AppStateStore();
+        }
+        return shared;
+    }
+
+    // Foto actual del estado
+    public AppState getState() {
+        return state.get();
+    }
+
+    // Publica el resultado de aplicar update a la foto actual; reintenta si otro hilo publicó
+    // en medio. Devuelve la foto que quedó publicada
+    public AppState update(Update update) {
+        AppState current, next;
+        do {
+            current = state.get();
+            next = update.apply(current);
+            if (next == current) return current; // Sin cambios: nadie se entera
+        } while (!state.compareAndSet(current, next));
+        for (Watcher watcher : watchers) {
+            watcher.offer(next);
+        }
+        return next;
+    }
+
+    // Avisa en executor (que debe ejecutar en orden, p. ej. el hilo principal) cada vez que cambia la
+    // parte elegida por selector. El primer aviso llega con el estado actual
+    public Subscription subscribe(Selector selector, Listener listener, Executor executor) {
+        Watcher watcher = new Watcher(selector, listener, executor, state.get());
+        watchers.add(watcher);
+        // Lo publicado mientras se agregaba también se entrega
+        watcher.offer(state.get());
+        watcher.schedule();
+        return () -> {
+            watcher.closed = true;
+            watchers.remove(watcher);
+        };
+    }
+
+    private static final class Watcher {
+        private final Selector selector;
+        private final Listener listener;
+        private final Executor executor;
+        // Foto más reciente recibida y si ya hay un aviso pendiente en el executor
+        private final AtomicReference<AppState> latest;
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        // Solo se usan dentro del executor
+        private Object delivered;
+        private boolean hasDelivered;
+        private volatile boolean closed;
+
+        Watcher(Selector selector, Listener listener, Executor executor, AppState initial) {
+            this.selector = selector;
+            this.listener = listener;
+            this.executor = executor;
+            this.latest = new AtomicReference<>(initial);
+        }
+
+        // Recibe una foto publicada (desde cualquier hilo); las más viejas que la última se ignoran
+        void offer(AppState state) {
+            AppState seen;
+            do {
+                seen = latest.get();
+                if (seen.version >= state.version) return;
+            } while (!latest.compareAndSet(seen, state));
+            // Si la parte elegida no cambió no hace falta despertar al executor
+            if (Objects.equals(selector.select(seen), selector.select(state))) return;
+            schedule();
+        }
+
+        void schedule() {
+            if (scheduled.compareAndSet(false, true)) {
+                executor.execute(this::deliver);
+            }
+        }
+
+        private void deliver() {
+            scheduled.set(false);
+            if (closed) return;
+            AppState state = latest.get();
+            Object value = selector.select(state);
+            if (hasDelivered && Objects.equals(value, delivered)) return;
+            delivered = value;
+            hasDelivered = true;
+            listener.onChanged(state);
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package com.example.segii.mapa.guia;
+
+import com.example.segii.mapa.ruta.RouteData;
+import com.example.segii.mapa.ruta.RouteStep;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+// Motor de indicaciones por voz: al recibir la ruta calcula todas las frases y la distancia
+// (sobre la ruta) en la que debe decirse cada una; con cada fix solo compara la distancia
+// recorrida con la siguiente indicación pendiente.
+public class GuidanceEngine {
+    // Distancia de aviso anticipado antes de cada maniobra (m)
+    private static final double ADVANCE_METERS = 250;
+    // Distancia a la que se dice la maniobra "ahora" (m)
+    private static final double NOW_METERS = 40;
+    // Tramo mínimo entre maniobras para que tenga sentido un aviso anticipado (m)
+    private static final double MIN_ADVANCE_GAP = 120;
+    // Tiempo de anticipación para compensar la latencia del GPS y del audio (s)
+    private static final double LEAD_SECONDS = 1.5;
+    // Si la indicación quedó atrás por más de esta distancia ya no se dice (m)
+    private static final double STALE_METERS = 60;
+
+    // Interfaz para notificar cuándo se debe decir una frase
+    public interface PromptListener {
+        void onPrompt(String text);
+    }
+
+    // Indicación con la distancia sobre la ruta en la que se dispara
+    public static class Prompt {
+        public final double triggerAt;
+        public final String text;
+
+        Prompt(double triggerAt, String text) {
+            this.triggerAt = triggerAt;
+            this.text = text;
+        }
+    }
+
+    private final PromptListener listener;
+    // Indicaciones de la ruta actual ordenadas por distancia
+    private List<Prompt> prompts = Collections.emptyList();
+    // Índice de la siguiente indicación pendiente
+    private int next;
+
+    // Constructor que recibe el listener de frases
+    public GuidanceEngine(PromptListener listener) {
+        this.listener = listener;
+    }
+
+    // Construye las indicaciones de la ruta (null para detener la guía)
+    public void setRoute(RouteData route) {
+        next = 0;
+        if (route == null || route.steps.isEmpty()) {
+            prompts = Collections.emptyList();
+            return;
+        }
+        double[] cum = route.getCumulativeMeters();
+        List<Prompt> list = new ArrayList<>();
+        list.add(new Prompt(0, GuidancePhrases.start(route.steps.get(0), route.destinationName)));
+
+        for (int i = 1; i < route.steps.size(); i++) {
+            RouteStep step = route.steps.get(i);
+            double at = cum[Math.min(step.pointStart, cum.length - 1)];
+            // Longitud del tramo anterior: limita el aviso anticipado para no solaparlo con la maniobra previa
+            double gap = at - cum[Math.min(route.steps.get(i - 1).pointStart, cum.length - 1)];
+            if (gap >= MIN_ADVANCE_GAP) {
+                double advance = Math.min(ADVANCE_METERS, gap - NOW_METERS);
+                int spoken = GuidancePhrases.roundDown(advance);
+                list.add(new Prompt(at - spoken, GuidancePhrases.advance(step, spoken)));
+            }
+            list.add(new Prompt(Math.max(0, at - NOW_METERS), GuidancePhrases.now(step)));
+        }
+        list.add(new Prompt(Math.max(0, route.getLengthMeters() - NOW_METERS / 2), GuidancePhrases.arrival()));
+
+        // Orden estable por distancia de disparo
+        Collections.sort(list, (a, b) -> Double.compare(a.triggerAt, b.triggerAt));
+        prompts = list;
+    }
+
+    // Devuelve todas las frases distintas de la ruta (para sintetizarlas por adelantado)
+    public List<String> getPhrases() {
+        Set<String> texts = new LinkedHashSet<>();
+        for (Prompt prompt : prompts) {
+            texts.add(prompt.text);
+        }
+        return new ArrayList<>(texts);
+    }
+
+    // Devuelve las siguientes n frases pendientes (para preparar los reproductores)
+    public List<String> upcoming(int n) {
+        List<String> texts = new ArrayList<>(n);
+        for (int i = next; i < prompts.size() && texts.size() < n; i++) {
+            texts.add(prompts.get(i).text);
+        }
+        return texts;
+    }
+
+    // Procesa el avance sobre la ruta; dispara como máximo una indicación por fix
+    public void onProgress(double distanceAlong, double speedMps) {
+        if (distanceAlong < 0) return;
+        double position = distanceAlong + speedMps * LEAD_SECONDS;
+        Prompt due = null;
+        // Avanza sobre las indicaciones alcanzadas; solo se dice la más reciente
+        while (next < prompts.size() && prompts.get(next).triggerAt <= position) {
+            due = prompts.get(next++);
+        }
+        if (due != null && position - due.triggerAt <= STALE_METERS) {
+            listener.onPrompt(due.text);
+        }
+    }
+
+    // Distancia sobre la ruta de la siguiente indicación pendiente (infinito si ya no hay)
+    public double getNextTriggerAt() {
+        return next < prompts.size() ? prompts.get(next).triggerAt : Double.POSITIVE_INFINITY;
+    }
+
+    // Indica si ya se dijeron todas las indicaciones
+    public boolean isFinished() {
+        return next >= prompts.size();
+    }
+}
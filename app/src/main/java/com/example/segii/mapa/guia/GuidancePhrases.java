@@ -0,0 +1,99 @@
+package com.example.segii.mapa.guia;
+
+import com.example.segii.mapa.ruta.RouteStep;
+
+// Clase que convierte las maniobras de la API de Directions en frases en español.
+// Las frases no dependen de la distancia exacta al momento de hablar (se redondean a distancias
+// fijas), de modo que se pueden sintetizar y guardar en caché al construir la ruta.
+public final class GuidancePhrases {
+
+    private GuidancePhrases() {
+    }
+
+    // Devuelve la acción hablada de la maniobra, o null si la maniobra no es conocida
+    static String action(String maneuver) {
+        switch (maneuver) {
+            case "turn-left":
+                return "gira a la izquierda";
+            case "turn-right":
+                return "gira a la derecha";
+            case "turn-slight-left":
+                return "gira ligeramente a la izquierda";
+            case "turn-slight-right":
+                return "gira ligeramente a la derecha";
+            case "turn-sharp-left":
+                return "gira completamente a la izquierda";
+            case "turn-sharp-right":
+                return "gira completamente a la derecha";
+            case "uturn-left":
+            case "uturn-right":
+                return "da vuelta en U";
+            case "keep-left":
+                return "mantente a la izquierda";
+            case "keep-right":
+                return "mantente a la derecha";
+            case "fork-left":
+                return "en la bifurcación, mantente a la izquierda";
+            case "fork-right":
+                return "en la bifurcación, mantente a la derecha";
+            case "ramp-left":
+                return "toma la rampa de la izquierda";
+            case "ramp-right":
+                return "toma la rampa de la derecha";
+            case "merge":
+                return "incorpórate";
+            case "roundabout-left":
+            case "roundabout-right":
+                return "en la glorieta, toma la salida indicada";
+            case "straight":
+                return "sigue derecho";
+            default:
+                return null;
+        }
+    }
+
+    // Frase de aviso anticipado: "En 200 metros, gira a la izquierda"
+    public static String advance(RouteStep step, int meters) {
+        String action = action(step.maneuver);
+        if (action == null) {
+            action = lowerFirst(step.instruction);
+        }
+        return "En " + meters + " metros, " + action;
+    }
+
+    // Frase al llegar a la maniobra: "Gira a la izquierda"
+    public static String now(RouteStep step) {
+        String action = action(step.maneuver);
+        if (action == null) {
+            return step.instruction;
+        }
+        return upperFirst(action);
+    }
+
+    // Frase inicial de la ruta
+    public static String start(RouteStep first, String destinationName) {
+        String text = "Iniciando ruta a " + destinationName + ".";
+        if (!first.instruction.isEmpty()) {
+            text += " " + first.instruction;
+        }
+        return text;
+    }
+
+    // Frase de llegada
+    public static String arrival() {
+        return "Has llegado a tu destino";
+    }
+
+    // Redondea la distancia de aviso hacia abajo a múltiplos de 50 m
+    public static int roundDown(double meters) {
+        return Math.max(50, ((int) meters / 50) * 50);
+    }
+
+    private static String upperFirst(String s) {
+        return s.isEmpty() ? s : Character.toUpperCase(s.charAt(0)) + s.substring(1);
+    }
+
+    private static String lowerFirst(String s) {
+        return s.isEmpty() ? s : Character.toLowerCase(s.charAt(0)) + s.substring(1);
+    }
+}
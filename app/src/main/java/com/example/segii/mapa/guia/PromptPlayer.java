@@ -0,0 +1,287 @@
+package com.example.segii.mapa.guia;
+
+import android.content.Context;
+import android.media.AudioAttributes;
+import android.media.MediaPlayer;
+import android.os.Handler;
+import android.os.Looper;
+import android.speech.tts.TextToSpeech;
+import android.speech.tts.UtteranceProgressListener;
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Clase que reproduce las indicaciones de voz sin retraso perceptible.
+// Cada frase se sintetiza una sola vez a un archivo en caché (se reutiliza entre rutas y sesiones,
+// con un tope de tamaño y de antigüedad) y un grupo fijo de MediaPlayer se mantiene preparado con
+// las siguientes frases, en lugar de crear un reproductor por indicación.
+public class PromptPlayer {
+    // Número de reproductores del grupo
+    private static final int POOL_SIZE = 3;
+    // Etiqueta para logs
+    private static final String TAG = "PromptPlayer";
+    // Idioma de las indicaciones
+    private static final Locale LOCALE = new Locale("es", "MX");
+    // Tamaño máximo de la caché de frases (bytes) y antigüedad máxima sin usarse (ms)
+    static final long MAX_CACHE_BYTES = 20L * 1024 * 1024;
+    static final long MAX_CACHE_AGE_MS = 30L * 24 * 60 * 60 * 1000;
+
+    // Motor de síntesis de voz
+    private final TextToSpeech tts;
+    private volatile boolean ttsReady;
+    // Voz e idioma con los que se sintetizan las frases (forman parte de la clave del archivo)
+    private volatile String voiceTag;
+    // Directorio donde se guardan las frases sintetizadas
+    private final File cacheDir;
+    // Frases con su archivo ya sintetizado
+    private final Map<String, File> rendered = new ConcurrentHashMap<>();
+    // Frases solicitadas por clave de archivo (para resolver el texto en onDone)
+    private final Map<String, String> keys = new ConcurrentHashMap<>();
+    // Frases pendientes de sintetizar mientras el motor se inicializa
+    private final List<String> pending = new ArrayList<>();
+    // Handler del hilo principal (los MediaPlayer se manejan solo desde ahí)
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    // Grupo de reproductores y la frase cargada en cada uno
+    private final MediaPlayer[] players = new MediaPlayer[POOL_SIZE];
+    private final String[] loaded = new String[POOL_SIZE];
+    private final boolean[] prepared = new boolean[POOL_SIZE];
+    private final AudioAttributes attributes;
+
+    // Constructor que inicializa el motor de voz y el grupo de reproductores
+    public PromptPlayer(Context context) {
+        cacheDir = new File(context.getCacheDir(), "guia");
+        if (!cacheDir.exists() && !cacheDir.mkdirs()) {
+            Log.w(TAG, "No se pudo crear el directorio de caché de voz");
+        }
+        attributes = new AudioAttributes.Builder()
+                .setUsage(AudioAttributes.USAGE_ASSISTANCE_NAVIGATION_GUIDANCE)
+                .setContentType(AudioAttributes.CONTENT_TYPE_SPEECH)
+                .build();
+        for (int i = 0; i < POOL_SIZE; i++) {
+            final int slot = i;
+            players[i] = new MediaPlayer();
+            players[i].setAudioAttributes(attributes);
+            players[i].setOnPreparedListener(mp -> prepared[slot] = true);
+            players[i].setOnErrorListener((mp, what, extra) -> {
+                Log.e(TAG, "Error en reproductor " + slot + ": " + what + "/" + extra);
+                resetSlot(slot);
+                return true;
+            });
+        }
+
+        tts = new TextToSpeech(context.getApplicationContext(), this::onTtsInit);
+        // Marca la frase como disponible cuando termina de escribirse su archivo
+        tts.setOnUtteranceProgressListener(new UtteranceProgressListener() {
+            @Override
+            public void onStart(String utteranceId) {
+            }
+
+            @Override
+            public void onDone(String utteranceId) {
+                File file = new File(cacheDir, utteranceId + ".wav");
+                if (file.exists()) {
+                    String text = keys.get(utteranceId);
+                    if (text != null) {
+                        rendered.put(text, file);
+                    }
+                }
+            }
+
+            @Override
+            public void onError(String utteranceId) {
+                Log.e(TAG, "Error al sintetizar la frase " + utteranceId);
+            }
+        });
+    }
+
+    // Configura el idioma y sintetiza las frases que quedaron pendientes
+    private void onTtsInit(int status) {
+        if (status != TextToSpeech.SUCCESS) {
+            Log.e(TAG, "No se pudo inicializar TextToSpeech: " + status);
+            return;
+        }
+        tts.setLanguage(LOCALE);
+        String voice = tts.getVoice() != null ? tts.getVoice().getName() : tts.getDefaultEngine();
+        voiceTag = LOCALE.toLanguageTag() + "/" + voice;
+        List<String> toLoad;
+        synchronized (pending) {
+            ttsReady = true;
+            toLoad = new ArrayList<>(pending);
+            pending.clear();
+        }
+        preload(toLoad);
+    }
+
+    // Nombre de archivo de una frase: SHA-1 del texto con la voz y el idioma, así una frase
+    // sintetizada con otra voz no se reutiliza y dos frases distintas no comparten archivo
+    static String keyFor(String text, String voiceTag) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            digest.update(voiceTag.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            byte[] hash = digest.digest(text.getBytes(StandardCharsets.UTF_8));
+            StringBuilder key = new StringBuilder(hash.length * 2);
+            for (byte b : hash) {
+                key.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return key.toString();
+        } catch (NoSuchAlgorithmException e) {
+            // SHA-1 siempre está disponible en Android
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private String keyFor(String text) {
+        return keyFor(text, voiceTag);
+    }
+
+    // Sintetiza por adelantado todas las frases que aún no están en caché
+    public void preload(List<String> phrases) {
+        synchronized (pending) {
+            if (!ttsReady) {
+                // La clave depende de la voz: se resuelven cuando el motor termine de inicializarse
+                pending.addAll(phrases);
+                return;
+            }
+        }
+        for (String text : phrases) {
+            String key = keyFor(text);
+            keys.put(key, text);
+            File file = new File(cacheDir, key + ".wav");
+            if (file.exists() && file.length() > 0) {
+                // Ya se había sintetizado en una ruta o sesión anterior; se marca como usada
+                // para que la limpieza de la caché la conserve
+                file.setLastModified(System.currentTimeMillis());
+                rendered.put(text, file);
+            } else {
+                render(text, key);
+            }
+        }
+    }
+
+    // Pide al motor que escriba la frase a su archivo
+    private void render(String text, String key) {
+        tts.synthesizeToFile(text, null, new File(cacheDir, key + ".wav"), key);
+    }
+
+    // Borra las frases que no se han usado en MAX_CACHE_AGE_MS y, si la caché sigue pasando de
+    // MAX_CACHE_BYTES, las menos usadas recientemente. Hace E/S: llamar fuera del hilo principal
+    public void trimCache() {
+        int removed = trim(cacheDir, MAX_CACHE_BYTES, MAX_CACHE_AGE_MS, System.currentTimeMillis());
+        if (removed > 0) {
+            Log.i(TAG, "Frases borradas de la caché de voz: " + removed);
+        }
+    }
+
+    // Limpieza de la caché (separada para poder probarla); devuelve los archivos borrados
+    static int trim(File dir, long maxBytes, long maxAgeMs, long nowMs) {
+        File[] files = dir.listFiles((d, name) -> name.endsWith(".wav"));
+        if (files == null) return 0;
+        // Del usado más recientemente al más antiguo
+        long[] modified = new long[files.length];
+        Integer[] order = new Integer[files.length];
+        for (int i = 0; i < files.length; i++) {
+            modified[i] = files[i].lastModified();
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Long.compare(modified[b], modified[a]));
+        int removed = 0;
+        long total = 0;
+        for (int i : order) {
+            total += files[i].length();
+            if ((nowMs - modified[i] > maxAgeMs || total > maxBytes) && files[i].delete()) {
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    // Deja preparados los reproductores con las siguientes frases
+    public void prepare(List<String> upcoming) {
+        mainHandler.post(() -> {
+            for (String text : upcoming) {
+                if (slotWith(text) >= 0) continue;
+                File file = rendered.get(text);
+                if (file == null) continue;
+                int slot = freeSlot(upcoming);
+                if (slot < 0) return;
+                load(slot, text, file);
+            }
+        });
+    }
+
+    // Reproduce la frase; si no hay un reproductor listo usa la síntesis directa como respaldo
+    public void play(String text) {
+        mainHandler.post(() -> {
+            int slot = slotWith(text);
+            if (slot >= 0 && prepared[slot]) {
+                players[slot].seekTo(0);
+                players[slot].start();
+            } else if (ttsReady) {
+                tts.speak(text, TextToSpeech.QUEUE_FLUSH, null, keyFor(text));
+            } else {
+                Log.w(TAG, "Indicación sin audio disponible: " + text);
+            }
+        });
+    }
+
+    // Carga un archivo en el reproductor del slot y lo prepara en segundo plano
+    private void load(int slot, String text, File file) {
+        resetSlot(slot);
+        try {
+            players[slot].setDataSource(file.getPath());
+            loaded[slot] = text;
+            players[slot].prepareAsync();
+        } catch (IOException | IllegalStateException e) {
+            Log.e(TAG, "No se pudo cargar la frase: " + e.getMessage(), e);
+            resetSlot(slot);
+        }
+    }
+
+    private void resetSlot(int slot) {
+        players[slot].reset();
+        players[slot].setAudioAttributes(attributes);
+        loaded[slot] = null;
+        prepared[slot] = false;
+    }
+
+    // Busca el reproductor que ya tiene cargada la frase
+    private int slotWith(String text) {
+        for (int i = 0; i < POOL_SIZE; i++) {
+            if (text.equals(loaded[i])) return i;
+        }
+        return -1;
+    }
+
+    // Busca un reproductor libre o con una frase que ya no se necesita y que no está sonando
+    private int freeSlot(List<String> keep) {
+        for (int i = 0; i < POOL_SIZE; i++) {
+            if (loaded[i] == null) return i;
+        }
+        for (int i = 0; i < POOL_SIZE; i++) {
+            if (!keep.contains(loaded[i]) && !players[i].isPlaying()) return i;
+        }
+        return -1;
+    }
+
+    // Libera el motor de voz y los reproductores
+    public void release() {
+        mainHandler.removeCallbacksAndMessages(null);
+        for (MediaPlayer player : players) {
+            player.release();
+        }
+        tts.stop();
+        tts.shutdown();
+    }
+}
@@ -0,0 +1,91 @@
+package com.example.segii.mapa.keyWord;
+
+import android.os.ParcelFileDescriptor;
+
+import com.example.segii.mapa.registro.EventLog;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.locks.LockSupport;
+
+// Pasa al reconocedor de comandos el audio de la captura compartida por una tubería, empezando en
+// una posición del buffer (la muestra siguiente a la palabra clave). Primero envía de golpe lo que
+// ya estaba en el buffer y después sigue con el audio en vivo hasta que se detiene.
+class CommandAudioFeed {
+    // Muestras por escritura a la tubería
+    private static final int CHUNK = 1024;
+    // Espera cuando no hay audio nuevo (ns)
+    private static final long IDLE_NANOS = 10_000_000L;
+    private static final String TAG = "CommandAudioFeed";
+
+    private final PcmRingBuffer.Reader reader;
+    private final long maxSamples;
+    private final ParcelFileDescriptor readSide;
+    private final OutputStream out;
+    private final Thread thread;
+    private volatile boolean running = true;
+
+    // Abre la tubería y empieza a escribir; maxSamples limita lo que se envía si nadie detiene el envío
+    static CommandAudioFeed start(PcmRingBuffer buffer, long from, long maxSamples) throws IOException {
+        ParcelFileDescriptor[] pipe = ParcelFileDescriptor.createPipe();
+        return new CommandAudioFeed(buffer.readerAt(from), maxSamples, pipe[0], pipe[1]);
+    }
+
+    private CommandAudioFeed(PcmRingBuffer.Reader reader, long maxSamples, ParcelFileDescriptor readSide,
+                             ParcelFileDescriptor writeSide) {
+        this.reader = reader;
+        this.maxSamples = maxSamples;
+        this.readSide = readSide;
+        this.out = new ParcelFileDescriptor.AutoCloseOutputStream(writeSide);
+        this.thread = new Thread(this::pump, "comando-audio");
+        thread.start();
+    }
+
+    // Extremo de lectura para EXTRA_AUDIO_SOURCE
+    ParcelFileDescriptor getReadSide() {
+        return readSide;
+    }
+
+    // Termina el envío y cierra la tubería (el reconocedor ve el fin del audio)
+    void stop() {
+        running = false;
+        LockSupport.unpark(thread);
+        // El reconocedor tiene su propia copia del descriptor
+        try {
+            readSide.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    private void pump() {
+        short[] samples = new short[CHUNK];
+        byte[] bytes = new byte[CHUNK * 2];
+        long sent = 0;
+        try {
+            while (running && sent < maxSamples) {
+                int n = reader.read(samples, 0, (int) Math.min(CHUNK, maxSamples - sent));
+                if (n == 0) {
+                    LockSupport.parkNanos(IDLE_NANOS);
+                    continue;
+                }
+                // PCM de 16 bits little-endian, como lo espera el reconocedor
+                for (int i = 0; i < n; i++) {
+                    bytes[2 * i] = (byte) samples[i];
+                    bytes[2 * i + 1] = (byte) (samples[i] >> 8);
+                }
+                out.write(bytes, 0, 2 * n);
+                sent += n;
+            }
+        } catch (IOException e) {
+            // El reconocedor cerró su extremo: ya no necesita audio
+        } finally {
+            try {
+                out.close();
+            } catch (IOException ignored) {
+            }
+            if (reader.getSkipped() > 0) {
+                EventLog.w(TAG, "Muestras perdidas por retraso", reader.getSkipped());
+            }
+        }
+    }
+}
@@ -0,0 +1,235 @@
+package com.example.segii.mapa.keyWord;
+
+import com.example.segii.mapa.poi.PoiIndex;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// Convierte lo que se dictó después de la palabra clave en un comando estructurado (intención y
+// destino) sin red. Reconoce el conjunto fijo de comandos de la app y ajusta el destino al
+// vocabulario local (categorías y nombres del catálogo de puntos de interés), así el
+// reconocedor en el dispositivo puede equivocarse en una palabra y aun así llegar al destino.
+// Un resultado parcial solo se entrega antes de tiempo si ya dice un nombre completo del
+// vocabulario: una categoría ("llévame al mercado") puede ser el inicio de un nombre que sigue.
+public class CommandMatcher {
+    // Intenciones que entiende la app
+    public enum Kind { NAVIGATE, CANCEL, WHERE_AM_I, REACHABLE }
+
+    // Comando reconocido
+    public static final class Command {
+        public final Kind kind;
+        // Destino para geocodificar o buscar por categoría (solo NAVIGATE)
+        public final String destination;
+        // El destino coincide con el vocabulario local (un nombre o una categoría sola)
+        public final boolean known;
+        // Se dijeron todas las palabras de un nombre del vocabulario que ningún otro nombre extiende
+        public final boolean fullName;
+        // Minutos de viaje por los que se pregunta (solo REACHABLE)
+        public final int minutes;
+
+        Command(Kind kind, String destination, boolean known) {
+            this(kind, destination, known, false, 0);
+        }
+
+        Command(Kind kind, String destination, boolean known, boolean fullName, int minutes) {
+            this.kind = kind;
+            this.destination = destination;
+            this.known = known;
+            this.fullName = fullName;
+            this.minutes = minutes;
+        }
+
+        // Se puede entregar sin esperar al resultado final del reconocedor: lo que siga dictándose
+        // ya no cambiaría el destino
+        public boolean isComplete() {
+            return kind != Kind.NAVIGATE || fullName;
+        }
+
+        @Override
+        public String toString() {
+            return kind + (destination != null ? " " + destination : "") + (minutes > 0 ? " " + minutes + " min" : "")
+                    + (known ? " (vocabulario)" : "");
+        }
+    }
+
+    // Frases que preceden al destino, de la más larga a la más corta (sin acentos)
+    private static final String[] NAVIGATE_PREFIXES = {
+            "quiero ir al ", "quiero ir a ", "como llego al ", "como llego a ", "llevame al ", "llevame a ",
+            "navegar al ", "navegar a ", "navega al ", "navega a ", "vamos al ", "vamos a ", "ruta al ",
+            "ruta a ", "ir al ", "ir a "
+    };
+    // Primera palabra de una orden para terminar la navegación
+    private static final Set<String> CANCEL_WORDS = new HashSet<>(Arrays.asList(
+            "cancela", "cancelar", "deten", "detener", "termina", "terminar", "salir"));
+    // Palabras que no cuentan al comparar nombres
+    private static final Set<String> STOP_WORDS = new HashSet<>(Arrays.asList(
+            "a", "al", "el", "la", "los", "las", "de", "del", "y", "en", "mas", "cercana", "cercano"));
+    // Fracción de las palabras de un nombre que deben aparecer en lo dictado
+    private static final double MIN_NAME_OVERLAP = 0.75;
+    // "que hay a 10 minutos", "que hay a cinco minutos de aqui", "que hay cerca"
+    private static final Pattern REACHABLE = Pattern.compile("^(?:que )?hay (?:a (\\w+) minutos?|cerca)\\b");
+    // Minutos cuando no se dice cuántos
+    static final int DEFAULT_REACHABLE_MINUTES = 10;
+    // Números que se dictan con palabras
+    private static final Map<String, Integer> NUMBER_WORDS = new HashMap<>();
+
+    static {
+        String[] words = {"un", "dos", "tres", "cuatro", "cinco", "seis", "siete", "ocho", "nueve", "diez",
+                "once", "doce", "trece", "catorce", "quince"};
+        for (int i = 0; i < words.length; i++) NUMBER_WORDS.put(words[i], i + 1);
+        NUMBER_WORDS.put("uno", 1);
+        NUMBER_WORDS.put("veinte", 20);
+        NUMBER_WORDS.put("treinta", 30);
+    }
+
+    // Nombres del vocabulario y sus palabras significativas
+    private volatile List<String> names = Collections.emptyList();
+    private volatile List<String[]> nameTokens = Collections.emptyList();
+    // Nombres cuyas palabras están todas en otro nombre más largo ("Farmacia Guadalajara" en
+    // "Farmacia Guadalajara Centro"): decirlos completos no basta para entregar antes de tiempo
+    private volatile Set<String> extended = Collections.emptySet();
+    // "¿Qué hay a N minutos?" solo se reconoce si la app puede responderlo (trae la red vial)
+    private volatile boolean reachableEnabled;
+
+    // Frases de los comandos, para sesgar al reconocedor hacia ellas
+    public List<String> commandPhrases() {
+        List<String> phrases = new ArrayList<>(Arrays.asList("navega a", "llévame a", "quiero ir a", "cómo llego a",
+                "cancela", "dónde estoy"));
+        if (reachableEnabled) phrases.addAll(Arrays.asList("qué hay a 10 minutos", "qué hay cerca"));
+        return phrases;
+    }
+
+    // Activa o desactiva el comando de alcance (desactivado hasta que exista la red vial local)
+    public void setReachableEnabled(boolean enabled) {
+        reachableEnabled = enabled;
+    }
+
+    // Reemplaza el vocabulario local de destinos (se llama al cargar el catálogo)
+    public void setVocabulary(Collection<String> vocabulary) {
+        List<String> newNames = new ArrayList<>(vocabulary.size());
+        List<String[]> newTokens = new ArrayList<>(vocabulary.size());
+        for (String name : vocabulary) {
+            String[] tokens = significantTokens(PoiIndex.normalize(name));
+            if (tokens.length == 0) continue;
+            newNames.add(name);
+            newTokens.add(tokens);
+        }
+        Set<String> newExtended = new HashSet<>();
+        for (int i = 0; i < newTokens.size(); i++) {
+            List<String> tokens = Arrays.asList(newTokens.get(i));
+            for (String[] other : newTokens) {
+                if (other.length > tokens.size() && Arrays.asList(other).containsAll(tokens)) {
+                    newExtended.add(newNames.get(i));
+                    break;
+                }
+            }
+        }
+        extended = newExtended;
+        nameTokens = newTokens;
+        names = newNames;
+    }
+
+    public List<String> getVocabulary() {
+        return names;
+    }
+
+    // Devuelve el comando del texto dictado, o null si no corresponde a ningún comando
+    public Command match(String transcript) {
+        if (transcript == null) return null;
+        String text = PoiIndex.normalize(transcript).replaceAll("[^a-z0-9 ]+", " ").replaceAll("\\s+", " ").trim();
+        if (text.isEmpty()) return null;
+        if (text.startsWith("donde estoy")) return new Command(Kind.WHERE_AM_I, null, false);
+        Matcher reachable = REACHABLE.matcher(text);
+        if (reachableEnabled && reachable.find()) {
+            int minutes = reachable.group(1) != null ? minutes(reachable.group(1)) : DEFAULT_REACHABLE_MINUTES;
+            if (minutes > 0) return new Command(Kind.REACHABLE, null, false, false, minutes);
+        }
+        if (CANCEL_WORDS.contains(text.split(" ", 2)[0]) || text.startsWith("para la navegacion")) {
+            return new Command(Kind.CANCEL, null, false);
+        }
+        for (String prefix : NAVIGATE_PREFIXES) {
+            int at = text.indexOf(prefix);
+            // El prefijo puede venir después de un saludo o una muletilla ("oye, llevame a...")
+            if (at >= 0 && (at == 0 || text.charAt(at - 1) == ' ')) {
+                String destination = text.substring(at + prefix.length()).trim();
+                return destination.isEmpty() ? null : navigate(destination, true);
+            }
+        }
+        // Sin prefijo solo cuenta si lo dictado es exactamente un nombre del catálogo ("mercado
+        // municipal"); una categoría suelta o un nombre dentro de una frase ("el banco está
+        // cerrado") no es una orden
+        return navigate(text, false);
+    }
+
+    // Ajusta el destino al vocabulario; sin prefijo de comando solo acepta un nombre dicho tal cual
+    private Command navigate(String destination, boolean explicit) {
+        Set<String> spoken = new HashSet<>(Arrays.asList(significantTokens(destination)));
+        List<String> currentNames = names;
+        List<String[]> currentTokens = nameTokens;
+        String best = null;
+        double bestScore = 0;
+        int bestHits = 0, bestLength = 0;
+        for (int i = 0; i < currentTokens.size(); i++) {
+            String[] tokens = currentTokens.get(i);
+            int hits = 0;
+            for (String token : tokens) {
+                if (spoken.contains(token)) hits++;
+            }
+            // Las palabras del nombre que se dijeron, con un castigo pequeño por palabras de más
+            double score = hits / (double) tokens.length - 0.01 * Math.max(0, spoken.size() - hits);
+            if (hits > 0 && score > bestScore) {
+                bestScore = score;
+                best = currentNames.get(i);
+                bestHits = hits;
+                bestLength = tokens.length;
+            }
+        }
+        if (best != null && bestScore >= MIN_NAME_OVERLAP && !isCategoryWord(best)) {
+            boolean full = bestHits == bestLength && !extended.contains(best);
+            if (explicit) {
+                return new Command(Kind.NAVIGATE, best, true, full, 0); // Nombre del catálogo
+            }
+            // Sin prefijo se espera al resultado final: la frase podría seguir ("... está cerrado")
+            if (full && spoken.size() == bestHits) {
+                return new Command(Kind.NAVIGATE, best, true, false, 0);
+            }
+            return null;
+        }
+        if (!explicit) return null;
+        // Búsqueda por categoría solo si el destino es la categoría sola ("la farmacia más cercana")
+        return new Command(Kind.NAVIGATE, destination, PoiIndex.categoryFor(destination) != null);
+    }
+
+    // Minutos dictados con cifra o con palabra (0 si no se entiende)
+    private static int minutes(String word) {
+        Integer spoken = NUMBER_WORDS.get(word);
+        if (spoken != null) return spoken;
+        try {
+            return Math.max(0, Integer.parseInt(word));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    // Palabra suelta que nombra una categoría ("farmacia"), no un lugar
+    private static boolean isCategoryWord(String name) {
+        return name.indexOf(' ') < 0 && PoiIndex.categoryFor(name) != null;
+    }
+
+    private static String[] significantTokens(String normalized) {
+        List<String> tokens = new ArrayList<>();
+        for (String token : normalized.split("[^a-z0-9]+")) {
+            if (!token.isEmpty() && !STOP_WORDS.contains(token)) tokens.add(token);
+        }
+        return tokens.toArray(new String[0]);
+    }
+}
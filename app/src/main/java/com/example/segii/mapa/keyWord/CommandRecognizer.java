@@ -0,0 +1,266 @@
+package com.example.segii.mapa.keyWord;
+
+import android.content.Context;
+import android.content.Intent;
+import android.media.AudioFormat;
+import android.os.Build;
+import android.os.Bundle;
+import android.os.SystemClock;
+import android.speech.RecognitionListener;
+import android.speech.RecognizerIntent;
+import android.speech.SpeechRecognizer;
+
+import com.example.segii.mapa.registro.EventLog;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+// Escucha el comando después de la palabra clave con el reconocedor del dispositivo (sin red cuando
+// el sistema tiene el modelo local) y lo convierte en intención y destino con CommandMatcher.
+// Los resultados parciales se revisan mientras el usuario habla: si el mismo comando completo aparece
+// dos veces seguidas se entrega sin esperar a que el reconocedor decida que terminó la frase. Solo
+// cuentan como completos las órdenes fijas y los nombres completos del vocabulario; un destino por
+// categoría ("navega al banco") espera al resultado final, porque puede seguir el nombre ("azteca").
+// Si nada coincide con un comando, avisa para pasar al reconocimiento libre.
+// Cuando el sistema lo permite (Android 13+), el audio sale de la captura compartida desde la muestra
+// siguiente a la palabra clave, sin pausa entre "Okey Segui" y el comando; si no, la captura suelta
+// el micrófono mientras escucha el reconocedor.
+// Se usa desde el hilo principal (como exige SpeechRecognizer).
+public class CommandRecognizer implements RecognitionListener {
+    // Resultados al terminar el reconocimiento
+    public interface Listener {
+        // Comando reconocido en el dispositivo
+        void onCommand(CommandMatcher.Command command);
+        // Se habló pero no es un comando conocido (o el reconocedor local falló)
+        void onNoCommand();
+        // No se escuchó nada
+        void onSilence();
+    }
+
+    private static final String TAG = "CommandRecognizer";
+    // Resultados parciales iguales y seguidos para entregar antes del final
+    private static final int STABLE_PARTIALS = 2;
+    // Frases máximas para sesgar al reconocedor
+    private static final int MAX_BIASING_STRINGS = 200;
+    // Audio máximo que se le pasa al reconocedor desde la captura compartida (s)
+    private static final int MAX_COMMAND_SECONDS = 10;
+
+    private final Context context;
+    private final CommandMatcher matcher;
+    private SpeechRecognizer recognizer;
+    private Listener listener;
+    // Último comando completo visto en un resultado parcial y cuántas veces seguidas apareció
+    private String lastPartial;
+    private int stablePartials;
+    private long startedAt, speechEndedAt;
+    // Audio de la captura compartida hacia el reconocedor, o captura en pausa mientras escucha
+    private CommandAudioFeed feed;
+    private boolean capturePaused;
+
+    public CommandRecognizer(Context context, CommandMatcher matcher) {
+        this.context = context;
+        this.matcher = matcher;
+    }
+
+    // Empieza a escuchar; devuelve false si el dispositivo no tiene reconocedor
+    public boolean start(Listener listener) {
+        cancel();
+        if (recognizer == null) {
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.S && SpeechRecognizer.isOnDeviceRecognitionAvailable(context)) {
+                recognizer = SpeechRecognizer.createOnDeviceSpeechRecognizer(context);
+            } else if (SpeechRecognizer.isRecognitionAvailable(context)) {
+                // Reconocedor del sistema pidiendo el modelo local cuando exista
+                recognizer = SpeechRecognizer.createSpeechRecognizer(context);
+            } else {
+                return false;
+            }
+            recognizer.setRecognitionListener(this);
+        }
+        this.listener = listener;
+        lastPartial = null;
+        stablePartials = 0;
+        startedAt = SystemClock.elapsedRealtime();
+        speechEndedAt = 0;
+        Intent intent = recognitionIntent();
+        attachAudio(intent);
+        recognizer.startListening(intent);
+        return true;
+    }
+
+    // Conecta el reconocedor a la captura compartida desde el final de la palabra clave; si no se
+    // puede, pausa la captura para que el reconocedor use el micrófono
+    private void attachAudio(Intent intent) {
+        MicCapture capture = MicCapture.get();
+        long from = capture.takeKeywordEnd();
+        if (!capture.isRunning()) return; // Nadie más usa el micrófono
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.TIRAMISU) {
+            PcmRingBuffer buffer = capture.getBuffer();
+            int rate = capture.getSampleRate();
+            // Sin palabra clave (botón o reintento) empieza en el audio actual
+            long start = from >= 0 ? from : buffer.getWritePosition();
+            try {
+                feed = CommandAudioFeed.start(buffer, start, (long) rate * MAX_COMMAND_SECONDS);
+                intent.putExtra(RecognizerIntent.EXTRA_AUDIO_SOURCE, feed.getReadSide());
+                intent.putExtra(RecognizerIntent.EXTRA_AUDIO_SOURCE_CHANNEL_COUNT, 1);
+                intent.putExtra(RecognizerIntent.EXTRA_AUDIO_SOURCE_ENCODING, AudioFormat.ENCODING_PCM_16BIT);
+                intent.putExtra(RecognizerIntent.EXTRA_AUDIO_SOURCE_SAMPLING_RATE, rate);
+                EventLog.d(TAG, "Comando desde la captura compartida (ms ya en el buffer)",
+                        (buffer.getWritePosition() - start) * 1000 / rate);
+                return;
+            } catch (IOException e) {
+                EventLog.w(TAG, "No se pudo abrir la tubería de audio", e);
+            }
+        }
+        capture.pause();
+        capturePaused = true;
+    }
+
+    // Termina el envío de audio o devuelve el micrófono a la captura
+    private void detachAudio() {
+        if (feed != null) {
+            feed.stop();
+            feed = null;
+        }
+        if (capturePaused) {
+            MicCapture.get().resume();
+            capturePaused = false;
+        }
+    }
+
+    private Intent recognitionIntent() {
+        Intent intent = new Intent(RecognizerIntent.ACTION_RECOGNIZE_SPEECH);
+        intent.putExtra(RecognizerIntent.EXTRA_LANGUAGE_MODEL, RecognizerIntent.LANGUAGE_MODEL_FREE_FORM);
+        intent.putExtra(RecognizerIntent.EXTRA_LANGUAGE, Locale.getDefault().toLanguageTag());
+        intent.putExtra(RecognizerIntent.EXTRA_PARTIAL_RESULTS, true);
+        intent.putExtra(RecognizerIntent.EXTRA_PREFER_OFFLINE, true);
+        intent.putExtra(RecognizerIntent.EXTRA_MAX_RESULTS, 5);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.TIRAMISU) {
+            // Sesga el reconocimiento hacia los comandos y los destinos del catálogo
+            ArrayList<String> biasing = new ArrayList<>(matcher.commandPhrases());
+            List<String> vocabulary = matcher.getVocabulary();
+            biasing.addAll(vocabulary.subList(0, Math.min(vocabulary.size(), MAX_BIASING_STRINGS - biasing.size())));
+            intent.putStringArrayListExtra(RecognizerIntent.EXTRA_BIASING_STRINGS, biasing);
+        }
+        return intent;
+    }
+
+    // Deja de escuchar sin entregar nada
+    public void cancel() {
+        listener = null;
+        if (recognizer != null) recognizer.cancel();
+        detachAudio();
+    }
+
+    // Libera el reconocedor (al cerrar la actividad)
+    public void release() {
+        cancel();
+        if (recognizer != null) {
+            recognizer.destroy();
+            recognizer = null;
+        }
+    }
+
+    @Override
+    public void onPartialResults(Bundle partialResults) {
+        List<String> texts = partialResults.getStringArrayList(SpeechRecognizer.RESULTS_RECOGNITION);
+        if (listener == null || texts == null || texts.isEmpty()) return;
+        CommandMatcher.Command command = matcher.match(texts.get(0));
+        if (command == null || !command.isComplete()) {
+            lastPartial = null;
+            stablePartials = 0;
+            return;
+        }
+        String key = command.toString();
+        stablePartials = key.equals(lastPartial) ? stablePartials + 1 : 1;
+        lastPartial = key;
+        if (stablePartials >= STABLE_PARTIALS) {
+            recognizer.cancel(); // Ya no hace falta el resto del audio
+            detachAudio();
+            deliver(command, true);
+        }
+    }
+
+    @Override
+    public void onResults(Bundle results) {
+        detachAudio();
+        if (listener == null) return;
+        List<String> texts = results.getStringArrayList(SpeechRecognizer.RESULTS_RECOGNITION);
+        if (texts != null) {
+            // Revisa las alternativas en orden de confianza
+            for (String text : texts) {
+                CommandMatcher.Command command = matcher.match(text);
+                if (command != null) {
+                    deliver(command, false);
+                    return;
+                }
+            }
+        }
+        EventLog.d(TAG, "Sin comando", texts);
+        Listener current = listener;
+        listener = null;
+        current.onNoCommand();
+    }
+
+    @Override
+    public void onError(int error) {
+        detachAudio();
+        Listener current = listener;
+        if (current == null) return; // Cancelado por la app
+        listener = null;
+        EventLog.w(TAG, "Error del reconocedor", error);
+        if (error == SpeechRecognizer.ERROR_SPEECH_TIMEOUT || error == SpeechRecognizer.ERROR_NO_MATCH) {
+            current.onSilence();
+        } else {
+            // Sin modelo local, sin red, ocupado...: lo intenta el reconocimiento libre
+            current.onNoCommand();
+        }
+    }
+
+    private void deliver(CommandMatcher.Command command, boolean partial) {
+        Listener current = listener;
+        listener = null;
+        long now = SystemClock.elapsedRealtime();
+        // Mensajes fijos: la latencia va como valor y el comando se formatea en el hilo del registro
+        EventLog.i(TAG, partial ? "Comando de resultado parcial (ms desde el inicio)"
+                : "Comando de resultado final (ms desde el inicio)", now - startedAt);
+        if (speechEndedAt > 0) {
+            EventLog.d(TAG, "Comando: ms tras el fin de voz", now - speechEndedAt);
+        } else {
+            EventLog.d(TAG, "Comando antes del fin de voz");
+        }
+        EventLog.d(TAG, "Comando entregado", command);
+        current.onCommand(command);
+    }
+
+    @Override
+    public void onEndOfSpeech() {
+        speechEndedAt = SystemClock.elapsedRealtime();
+        // El reconocedor ya tiene la frase; cerrar la tubería le indica el fin del audio
+        if (feed != null) {
+            feed.stop();
+            feed = null;
+        }
+    }
+
+    @Override
+    public void onReadyForSpeech(Bundle params) {
+    }
+
+    @Override
+    public void onBeginningOfSpeech() {
+    }
+
+    @Override
+    public void onRmsChanged(float rmsdB) {
+    }
+
+    @Override
+    public void onBufferReceived(byte[] buffer) {
+    }
+
+    @Override
+    public void onEvent(int eventType, Bundle params) {
+    }
+}
@@ -0,0 +1,155 @@
+package com.example.segii.mapa.keyWord;
+
+import android.media.AudioFormat;
+import android.media.AudioRecord;
+import android.media.MediaRecorder;
+import android.os.Process;
+
+import com.example.segii.mapa.registro.EventLog;
+
+import java.util.concurrent.locks.LockSupport;
+
+// Captura única del micrófono para toda la app. Un solo hilo lee el micrófono, escribe el audio en
+// un PcmRingBuffer y entrega cada frame al detector de la palabra clave; el reconocedor de comandos
+// lee del mismo buffer desde la muestra siguiente a la palabra clave, así "Okey Segui, navega al
+// mercado" se entiende como una sola frase sin pausa. Cuando otro componente necesita el
+// micrófono directamente (reconocimiento libre), la captura se pausa y lo suelta.
+public class MicCapture {
+    // Segundos de audio que guarda el buffer (cubre lo que tarda en abrirse el reconocedor)
+    static final int BUFFER_SECONDS = 10;
+    private static final String TAG = "MicCapture";
+
+    // Recibe cada frame en el hilo de captura, con la posición absoluta de su última muestra + 1
+    public interface FrameListener {
+        void onFrame(short[] frame, long endPosition);
+    }
+
+    // Instancia compartida por toda la app (hay un solo micrófono)
+    private static MicCapture shared;
+
+    private AudioRecord audioRecord;
+    private Thread captureThread;
+    private volatile boolean running;
+    private volatile boolean paused;
+    private volatile PcmRingBuffer buffer;
+    private int sampleRate;
+    // Posición donde terminó la última palabra clave (-1 si no hay una pendiente)
+    private volatile long keywordEnd = -1;
+
+    public static synchronized MicCapture get() {
+        if (shared == null) {
+            shared = new MicCapture();
+        }
+        return shared;
+    }
+
+    // Abre el micrófono y empieza a capturar frames del tamaño indicado
+    public synchronized void start(int sampleRate, int frameLength, FrameListener listener) {
+        if (running) stop();
+        // Buffer del micrófono de un segundo para no perder audio si el hilo se retrasa
+        int bufferSize = Math.max(AudioRecord.getMinBufferSize(sampleRate, AudioFormat.CHANNEL_IN_MONO,
+                AudioFormat.ENCODING_PCM_16BIT), sampleRate * 2);
+        AudioRecord record = new AudioRecord(MediaRecorder.AudioSource.VOICE_RECOGNITION, sampleRate,
+                AudioFormat.CHANNEL_IN_MONO, AudioFormat.ENCODING_PCM_16BIT, bufferSize);
+        if (record.getState() != AudioRecord.STATE_INITIALIZED) {
+            record.release();
+            throw new IllegalStateException("No se pudo inicializar el micrófono");
+        }
+        audioRecord = record;
+        this.sampleRate = sampleRate;
+        buffer = new PcmRingBuffer(sampleRate * BUFFER_SECONDS);
+        keywordEnd = -1;
+        paused = false;
+        running = true;
+        captureThread = new Thread(() -> captureLoop(record, frameLength, listener), "microfono");
+        captureThread.start();
+    }
+
+    // Detiene la captura y suelta el micrófono
+    public synchronized void stop() {
+        running = false;
+        if (captureThread != null) {
+            LockSupport.unpark(captureThread);
+            try {
+                captureThread.join(1000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            captureThread = null;
+        }
+        if (audioRecord != null) {
+            audioRecord.release();
+            audioRecord = null;
+        }
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    // Suelta el micrófono sin detener el hilo (otro reconocedor lo va a usar)
+    public void pause() {
+        paused = true;
+    }
+
+    // Vuelve a capturar después de pause
+    public void resume() {
+        paused = false;
+        Thread thread = captureThread;
+        if (thread != null) LockSupport.unpark(thread);
+    }
+
+    // Buffer con el audio reciente (null si nunca se inició)
+    public PcmRingBuffer getBuffer() {
+        return buffer;
+    }
+
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+    // Lo llama el detector al reconocer la palabra clave, con la posición del final de su frame
+    public void markKeyword(long endPosition) {
+        keywordEnd = endPosition;
+    }
+
+    // Devuelve y olvida la posición de la última palabra clave, o -1 si no hay una pendiente
+    public long takeKeywordEnd() {
+        long end = keywordEnd;
+        keywordEnd = -1;
+        return end;
+    }
+
+    private void captureLoop(AudioRecord record, int frameLength, FrameListener listener) {
+        Process.setThreadPriority(Process.THREAD_PRIORITY_AUDIO);
+        short[] frame = new short[frameLength];
+        boolean recording = false;
+        while (running) {
+            if (paused) {
+                if (recording) {
+                    record.stop();
+                    recording = false;
+                    EventLog.d(TAG, "Micrófono en pausa");
+                }
+                LockSupport.parkNanos(50_000_000L);
+                continue;
+            }
+            if (!recording) {
+                record.startRecording();
+                recording = true;
+            }
+            // Completa un frame; read puede devolver menos muestras de las pedidas
+            int read = 0;
+            while (read < frameLength && running && !paused) {
+                int n = record.read(frame, read, frameLength - read);
+                if (n <= 0) break;
+                read += n;
+            }
+            if (read < frameLength) continue;
+            PcmRingBuffer ring = buffer;
+            ring.write(frame, 0, frameLength);
+            listener.onFrame(frame, ring.getWritePosition());
+        }
+        if (recording) record.stop();
+    }
+}
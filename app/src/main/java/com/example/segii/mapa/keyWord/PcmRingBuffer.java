@@ -0,0 +1,116 @@
+package com.example.segii.mapa.keyWord;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+// Buffer circular de audio PCM de 16 bits con un solo escritor (el hilo del micrófono) y varios
+// lectores, sin candados. Cada muestra tiene una posición absoluta (muestras escritas desde el
+// inicio), así un lector puede empezar exactamente donde terminó la palabra clave.
+// El escritor nunca espera: si un lector se queda atrás más que la capacidad, pierde lo más viejo
+// y su lectura salta a la muestra más antigua que sigue en el buffer.
+public class PcmRingBuffer {
+    private final short[] samples;
+    private final int mask;
+    // Muestras escritas desde el inicio; se publica después de copiar los datos
+    private final AtomicLong written = new AtomicLong();
+    // Escritura más larga vista: la que está en curso puede estar pisando hasta esa cantidad
+    // de muestras después de las ya publicadas
+    private volatile int maxWrite;
+
+    // Lector con su propia posición; cada lector se usa desde un solo hilo
+    public final class Reader {
+        private long position;
+        private long skipped;
+
+        Reader(long position) {
+            this.position = position;
+        }
+
+        // Copia hasta length muestras desde la posición del lector; devuelve cuántas copió (0 si no hay nuevas)
+        public int read(short[] dst, int offset, int length) {
+            long end = written.get();
+            long oldest = end + maxWrite - samples.length;
+            if (position < oldest) {
+                skipped += oldest - position;
+                position = oldest;
+            }
+            int n = (int) Math.min(length, end - position);
+            if (n <= 0) return 0;
+            copyOut(position, dst, offset, n);
+            // Si el escritor dio la vuelta mientras se copiaba (o está escribiendo encima), el inicio
+            // de la copia ya no es válido
+            long overwritten = written.get() + maxWrite - samples.length;
+            if (position < overwritten) {
+                int lost = (int) Math.min(n, overwritten - position);
+                skipped += lost;
+                position += lost;
+                n -= lost;
+                System.arraycopy(dst, offset + lost, dst, offset, n);
+            }
+            position += n;
+            return n;
+        }
+
+        // Muestras escritas que este lector aún no lee
+        public long available() {
+            return written.get() - position;
+        }
+
+        public long getPosition() {
+            return position;
+        }
+
+        // Muestras perdidas por quedarse atrás
+        public long getSkipped() {
+            return skipped;
+        }
+    }
+
+    // Capacidad en muestras; se redondea a potencia de dos
+    public PcmRingBuffer(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        samples = new short[size];
+        mask = size - 1;
+    }
+
+    public int capacity() {
+        return samples.length;
+    }
+
+    // Posición absoluta de la siguiente muestra que se escribirá
+    public long getWritePosition() {
+        return written.get();
+    }
+
+    // Agrega muestras (solo desde el hilo escritor)
+    public void write(short[] src, int offset, int length) {
+        if (length > maxWrite) maxWrite = length;
+        long start = written.get();
+        int at = (int) (start & mask);
+        int first = Math.min(length, samples.length - at);
+        System.arraycopy(src, offset, samples, at, first);
+        if (first < length) {
+            System.arraycopy(src, offset + first, samples, 0, length - first);
+        }
+        // Publica las muestras: un lector que vea la nueva posición ve también los datos
+        written.set(start + length);
+    }
+
+    // Lector que empieza en una posición absoluta (por ejemplo, el final de la palabra clave)
+    public Reader readerAt(long position) {
+        return new Reader(Math.min(position, written.get()));
+    }
+
+    // Lector que empieza en lo próximo que se escriba
+    public Reader reader() {
+        return new Reader(written.get());
+    }
+
+    private void copyOut(long from, short[] dst, int offset, int length) {
+        int at = (int) (from & mask);
+        int first = Math.min(length, samples.length - at);
+        System.arraycopy(samples, at, dst, offset, first);
+        if (first < length) {
+            System.arraycopy(samples, 0, dst, offset + first, length - first);
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package com.example.segii.mapa.keyWord;
+
+// Compuerta de actividad de voz que va antes del detector de la palabra clave.
+// Calcula la energía de cada frame (unas cuantas operaciones por muestra) contra un piso de
+// ruido adaptativo, y solo deja pasar audio cuando parece voz. Los últimos frames se guardan en
+// un buffer circular de pre-roll que se entrega al abrirse la compuerta, así el detector recibe
+// también el inicio de la palabra clave que llegó antes de superar el umbral.
+// Si el audio se mantiene fuerte más de lo que dura la palabra clave (el motor del auto, la
+// radio), ese nivel pasa a ser el nuevo piso de ruido y la compuerta se vuelve a cerrar.
+public class VoiceActivityGate {
+    // Frames de pre-roll (512 muestras a 16 kHz = 32 ms por frame: ~320 ms)
+    public static final int DEFAULT_PRE_ROLL_FRAMES = 10;
+    // Frames que la compuerta sigue abierta después de la última voz (~640 ms)
+    private static final int HANGOVER_FRAMES = 20;
+    // La energía debe superar al piso de ruido por este factor (~10 dB) para abrir
+    private static final double OPEN_RATIO = 10.0;
+    // Energía media por muestra mínima para abrir (evita abrir con ruido muy bajo amplificado)
+    private static final double MIN_ENERGY = 200.0 * 200.0;
+    // Adaptación del piso de ruido: baja rápido y sube lento (sigue al mínimo)
+    private static final double FLOOR_FALL = 0.2;
+    private static final double FLOOR_RISE = 0.002;
+    // Frames seguidos por encima del umbral tras los cuales ese nivel se toma como ruido de fondo
+    // (~3 s con frames de 32 ms; la palabra clave dura alrededor de 1 s)
+    private static final int MAX_LOUD_FRAMES = 94;
+    // Cruces por cero por muestra fuera de este rango se consideran ruido, no voz
+    private static final double MAX_ZERO_CROSSING_RATE = 0.5;
+
+    // Destino de los frames que pasan la compuerta
+    public interface FrameSink {
+        void onFrame(short[] frame);
+    }
+
+    private final short[][] preRoll;
+    private int preRollStart, preRollCount;
+    private double noiseFloor = -1;
+    // Frames por encima del umbral desde que se abrió la compuerta y su energía acumulada
+    private int loudFrames;
+    private double loudEnergy;
+    private int hangover;
+    private boolean open;
+    private boolean enabled = true;
+
+    // Contadores para medir cuánto audio llega al detector
+    private long framesIn, framesPassed;
+
+    public VoiceActivityGate(int frameLength) {
+        this(frameLength, DEFAULT_PRE_ROLL_FRAMES);
+    }
+
+    public VoiceActivityGate(int frameLength, int preRollFrames) {
+        preRoll = new short[preRollFrames][frameLength];
+    }
+
+    // Activa o desactiva la compuerta (desactivada, todos los frames pasan; útil para comparar)
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    // Procesa un frame; si parece voz (o sigue dentro del hangover) lo entrega al sink,
+    // precedido del pre-roll acumulado cuando la compuerta se acaba de abrir
+    public void offer(short[] frame, FrameSink sink) {
+        framesIn++;
+        if (!enabled) {
+            framesPassed++;
+            sink.onFrame(frame);
+            return;
+        }
+        boolean speech = isSpeech(frame);
+        if (speech) {
+            hangover = HANGOVER_FRAMES;
+            if (!open) {
+                open = true;
+                flushPreRoll(sink);
+            }
+        } else if (open && --hangover <= 0) {
+            open = false;
+        }
+
+        if (open) {
+            framesPassed++;
+            sink.onFrame(frame);
+        } else {
+            remember(frame);
+        }
+    }
+
+    // Energía media y cruces por cero del frame contra el piso de ruido
+    private boolean isSpeech(short[] frame) {
+        long sum = 0;
+        int crossings = 0;
+        short previous = frame[0];
+        for (short sample : frame) {
+            sum += sample * sample;
+            if ((sample ^ previous) < 0) crossings++;
+            previous = sample;
+        }
+        double energy = (double) sum / frame.length;
+        if (noiseFloor < 0) {
+            noiseFloor = energy;
+        }
+        boolean loud = energy > MIN_ENERGY && energy > noiseFloor * OPEN_RATIO;
+        boolean voiced = crossings < frame.length * MAX_ZERO_CROSSING_RATE;
+        // El piso solo aprende de frames que no son voz, para no subirlo mientras se habla
+        if (!loud) {
+            if (!open) {
+                loudFrames = 0;
+                loudEnergy = 0;
+            }
+            double rate = energy < noiseFloor ? FLOOR_FALL : FLOOR_RISE;
+            noiseFloor += (energy - noiseFloor) * rate;
+            return false;
+        }
+        // Demasiado tiempo fuerte para ser la palabra clave: el ruido de fondo subió. Su nivel
+        // medio pasa a ser el piso y la compuerta se cierra sin esperar el hangover
+        loudEnergy += energy;
+        if (++loudFrames >= MAX_LOUD_FRAMES) {
+            noiseFloor = loudEnergy / loudFrames;
+            loudFrames = 0;
+            loudEnergy = 0;
+            hangover = 0;
+            open = false;
+            return false;
+        }
+        return voiced;
+    }
+
+    // Copia el frame al buffer circular (reutiliza los arreglos, no asigna memoria)
+    private void remember(short[] frame) {
+        if (preRoll.length == 0) return;
+        int slot = (preRollStart + preRollCount) % preRoll.length;
+        System.arraycopy(frame, 0, preRoll[slot], 0, Math.min(frame.length, preRoll[slot].length));
+        if (preRollCount < preRoll.length) {
+            preRollCount++;
+        } else {
+            preRollStart = (preRollStart + 1) % preRoll.length;
+        }
+    }
+
+    private void flushPreRoll(FrameSink sink) {
+        for (int i = 0; i < preRollCount; i++) {
+            framesPassed++;
+            sink.onFrame(preRoll[(preRollStart + i) % preRoll.length]);
+        }
+        preRollStart = 0;
+        preRollCount = 0;
+    }
+
+    // Reinicia el estado (al volver a iniciar la escucha)
+    public void reset() {
+        open = false;
+        hangover = 0;
+        noiseFloor = -1;
+        loudFrames = 0;
+        loudEnergy = 0;
+        preRollStart = 0;
+        preRollCount = 0;
+        framesIn = 0;
+        framesPassed = 0;
+    }
+
+    public boolean isOpen() {
+        return open;
+    }
+
+    public long getFramesIn() {
+        return framesIn;
+    }
+
+    public long getFramesPassed() {
+        return framesPassed;
+    }
+}
@@ -1,30 +1,47 @@
 package com.example.segii.mapa.keyWord;
 
-// Importaciones necesarias para manejar permisos, contexto, logs y la biblioteca de detección de palabras clave (Porcupine)
+// Importaciones necesarias para manejar permisos, contexto, audio, logs y la biblioteca de detección de palabras clave (Porcupine)
 import android.Manifest;
 import android.app.Activity;
 import android.content.Context;
 import android.content.pm.PackageManager;
-import android.util.Log;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
 import android.widget.Toast;
 
 import androidx.core.app.ActivityCompat;
 import androidx.core.content.ContextCompat;
 
+import com.example.segii.mapa.estado.AppStateStore;
+import com.example.segii.mapa.registro.EventLog;
+
+import ai.picovoice.porcupine.Porcupine;
 import ai.picovoice.porcupine.PorcupineException;
-import ai.picovoice.porcupine.PorcupineManager;
-import ai.picovoice.porcupine.PorcupineManagerCallback;
 
-// Clase que maneja la detección de una palabra clave ("Okey Segui") usando la biblioteca Porcupine
+// Clase que maneja la detección de una palabra clave ("Okey Segui") usando la biblioteca Porcupine.
+// El audio llega de la captura compartida (MicCapture): cada frame pasa primero por una compuerta de
+// actividad de voz y Porcupine solo procesa los frames que parecen voz (más un pre-roll), no todo el
+// audio. Al detectar la palabra clave marca en la captura dónde terminó, para que el comando se lea
+// desde ahí.
 public class wordSegui {
-    // Variable para el administrador de Porcupine, que detecta la palabra clave
-    private PorcupineManager porcupineManager;
-    // Bandera que indica si está escuchando la palabra clave
-    private boolean isListening = false;
+    // Motor de Porcupine que detecta la palabra clave
+    private Porcupine porcupine;
+    // Captura compartida del micrófono
+    private final MicCapture capture = MicCapture.get();
+    // Compuerta de actividad de voz delante de Porcupine
+    private VoiceActivityGate gate;
+    private volatile boolean gateEnabled = true;
+    // Handler del hilo principal para notificar las detecciones
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    // Estado compartido donde se publica si se está escuchando la palabra clave
+    private final AppStateStore store = AppStateStore.get();
     // Contexto de la aplicación
     private final Context context;
     // Código constante para la solicitud de permiso de audio
     private static final int AUDIO_PERMISSION_REQUEST_CODE = 3;
+    // Intervalo del registro de consumo de CPU del hilo de captura (ms)
+    private static final long CPU_REPORT_INTERVAL_MS = 60_000;
     // Etiqueta para logs
     private static final String TAG = "wordSegui";
 
@@ -41,86 +58,134 @@ public class wordSegui {
     // Método para inicializar y comenzar a escuchar la palabra clave
     public void initializeAndStartListening(String accessKey, OnHotwordDetectedListener listener) {
         // Verifica si ya está escuchando
-        if (isListening) {
-            Log.d(TAG, "Ya está escuchando, ignorando solicitud");
+        if (isListening()) {
+            EventLog.d(TAG, "Ya está escuchando, ignorando solicitud");
             Toast.makeText(context, "Ya está escuchando", Toast.LENGTH_SHORT).show();
             return;
         }
 
         // Verifica si se tiene permiso de grabación de audio
         if (!checkAudioPermission()) {
-            Log.d(TAG, "Permiso de audio no otorgado, solicitando...");
+            EventLog.d(TAG, "Permiso de audio no otorgado, solicitando...");
             requestAudioPermission(); // Solicita permiso si no está otorgado
             return;
         }
 
         try {
             // Registra en el log el inicio de la inicialización de Porcupine
-            Log.d(TAG, "Inicializando PorcupineManager con AccessKey: " + accessKey.substring(0, 5) + "...");
-            // Configura y construye el PorcupineManager
-            porcupineManager = new PorcupineManager.Builder()
+            EventLog.d(TAG, "Inicializando Porcupine");
+            // Configura y construye el motor de Porcupine
+            porcupine = new Porcupine.Builder()
                     .setAccessKey(accessKey) // Establece la clave de acceso de Picovoice
                     .setKeywordPath("okey-segui_es_android_v3_0_0.ppn") // Archivo de la palabra clave en español
                     .setModelPath("porcupine_params_es.pv") // Modelo de lenguaje en español (comentar si no se usa)
                     .setSensitivity(0.7f) // Sensibilidad para la detección (0.0 a 1.0)
-                    .build(context, new PorcupineManagerCallback() {
-                        // Callback que se ejecuta cuando se detecta la palabra clave
-                        @Override
-                        public void invoke(int keywordIndex) {
-                            Log.d(TAG, "Hotword 'Okey Segui' detectado, índice: " + keywordIndex);
-                            Toast.makeText(context, "¡Hotword 'Okey Segui' detectado!", Toast.LENGTH_SHORT).show();
-                            listener.onDetected(); // Notifica al listener que se detectó la palabra
-                        }
-                    });
+                    .build(context);
 
-            // Inicia la escucha de la palabra clave
-            Log.d(TAG, "Iniciando escucha de Porcupine...");
-            porcupineManager.start();
-            isListening = true; // Actualiza la bandera de estado
+            int frameLength = porcupine.getFrameLength();
+            gate = new VoiceActivityGate(frameLength);
+            gate.setEnabled(gateEnabled);
+
+            // Inicia la captura compartida; cada frame llega a onFrame en el hilo del micrófono
+            EventLog.d(TAG, "Iniciando escucha de Porcupine...");
+            capture.start(porcupine.getSampleRate(), frameLength, frameListener(listener));
+            setListening(true); // Publica el estado de la escucha
             Toast.makeText(context, "Escuchando 'Okey Segui'...", Toast.LENGTH_SHORT).show();
         } catch (PorcupineException e) {
             // Maneja errores específicos de Porcupine
             String errorMessage = "Error al iniciar Porcupine: " + e.getMessage();
-            Log.e(TAG, errorMessage, e);
+            EventLog.e(TAG, errorMessage, e);
             Toast.makeText(context, errorMessage, Toast.LENGTH_LONG).show();
-            isListening = false; // Actualiza la bandera de estado
+            releaseEngine();
+            setListening(false); // Publica el estado de la escucha
         } catch (Exception e) {
             // Maneja errores inesperados
             String errorMessage = "Error inesperado al iniciar Porcupine: " + e.getMessage();
-            Log.e(TAG, errorMessage, e);
+            EventLog.e(TAG, errorMessage, e);
             Toast.makeText(context, errorMessage, Toast.LENGTH_LONG).show();
-            isListening = false; // Actualiza la bandera de estado
+            releaseEngine();
+            setListening(false); // Publica el estado de la escucha
+        }
+    }
+
+    // Pasa a Porcupine solo lo que la compuerta deja pasar (en el hilo del micrófono)
+    private MicCapture.FrameListener frameListener(OnHotwordDetectedListener listener) {
+        // Posición del final del frame actual en el buffer compartido
+        long[] frameEnd = new long[1];
+        VoiceActivityGate.FrameSink detector = pcm -> {
+            try {
+                if (porcupine.process(pcm) >= 0) {
+                    // El comando empieza en la muestra siguiente a la palabra clave
+                    capture.markKeyword(frameEnd[0]);
+                    mainHandler.post(() -> {
+                        EventLog.d(TAG, "Hotword 'Okey Segui' detectado");
+                        Toast.makeText(context, "¡Hotword 'Okey Segui' detectado!", Toast.LENGTH_SHORT).show();
+                        listener.onDetected(); // Notifica al listener que se detectó la palabra
+                    });
+                }
+            } catch (PorcupineException e) {
+                EventLog.e(TAG, "Error al procesar audio en Porcupine", e);
+            }
+        };
+
+        // Inicio del periodo del registro de CPU: tiempo, CPU del hilo y frames de la compuerta
+        long[] report = {SystemClock.elapsedRealtime(), SystemClock.currentThreadTimeMillis(), 0, 0};
+        return (frame, endPosition) -> {
+            frameEnd[0] = endPosition;
+            gate.setEnabled(gateEnabled);
+            gate.offer(frame, detector);
+
+            // Registra el CPU por minuto del hilo y qué fracción del audio llegó a Porcupine
+            long now = SystemClock.elapsedRealtime();
+            if (now - report[0] >= CPU_REPORT_INTERVAL_MS) {
+                long cpuMs = SystemClock.currentThreadTimeMillis() - report[1];
+                long framesIn = gate.getFramesIn() - report[2];
+                long framesPassed = gate.getFramesPassed() - report[3];
+                EventLog.i(TAG, "CPU de escucha (ms/min)", cpuMs * 60_000 / (now - report[0]));
+                EventLog.i(TAG, "Compuerta de voz activa", gateEnabled);
+                EventLog.i(TAG, "Frames enviados a Porcupine (%)", framesIn > 0 ? framesPassed * 100 / framesIn : 0);
+                report[0] = now;
+                report[1] = SystemClock.currentThreadTimeMillis();
+                report[2] = gate.getFramesIn();
+                report[3] = gate.getFramesPassed();
+            }
+        };
+    }
+
+    // Activa o desactiva la compuerta de voz (para comparar el consumo con y sin ella)
+    public void setGateEnabled(boolean enabled) {
+        gateEnabled = enabled;
+    }
+
+    // Detiene la captura y libera el micrófono y el motor
+    private void releaseEngine() {
+        capture.stop();
+        if (porcupine != null) {
+            porcupine.delete();
+            porcupine = null;
         }
     }
 
     // Método para detener la escucha de la palabra clave
     public void stopListening() {
-        // Verifica si no está escuchando o si el administrador es nulo
-        if (!isListening || porcupineManager == null) {
-            Log.d(TAG, "No se está escuchando o PorcupineManager es null, ignorando stop");
+        // Verifica si no está escuchando o si el motor es nulo
+        if (!isListening() || porcupine == null) {
+            EventLog.d(TAG, "No se está escuchando o Porcupine es null, ignorando stop");
             return;
         }
 
-        try {
-            // Detiene y libera los recursos de Porcupine
-            Log.d(TAG, "Deteniendo PorcupineManager...");
-            porcupineManager.stop(); // Detiene la escucha
-            porcupineManager.delete(); // Libera el administrador
-            porcupineManager = null; // Establece el administrador a nulo
-            isListening = false; // Actualiza la bandera de estado
-            Toast.makeText(context, "Escucha detenida", Toast.LENGTH_SHORT).show();
-        } catch (PorcupineException e) {
-            // Maneja errores al detener Porcupine
-            Log.e(TAG, "Error al detener Porcupine: " + e.getMessage(), e);
-            Toast.makeText(context, "Error al detener hotword: " + e.getMessage(), Toast.LENGTH_SHORT).show();
-        }
+        // Detiene la captura y libera los recursos de Porcupine
+        EventLog.d(TAG, "Deteniendo Porcupine...");
+        releaseEngine();
+        setListening(false); // Publica el estado de la escucha
+        Toast.makeText(context, "Escucha detenida", Toast.LENGTH_SHORT).show();
     }
 
     // Verifica si se tiene permiso de grabación de audio
     private boolean checkAudioPermission() {
         boolean granted = ContextCompat.checkSelfPermission(context, Manifest.permission.RECORD_AUDIO)
                 == PackageManager.PERMISSION_GRANTED;
-        Log.d(TAG, "Permiso RECORD_AUDIO: " + (granted ? "Otorgado" : "No otorgado"));
+        EventLog.d(TAG, "Permiso RECORD_AUDIO", granted ? "Otorgado" : "No otorgado");
         return granted;
     }
 
@@ -128,7 +193,7 @@ public class wordSegui {
     private void requestAudioPermission() {
         // Verifica si el contexto es una actividad
         if (context instanceof Activity) {
-            Log.d(TAG, "Solicitando permiso RECORD_AUDIO...");
+            EventLog.d(TAG, "Solicitando permiso RECORD_AUDIO...");
             // Solicita el permiso de grabación de audio
             ActivityCompat.requestPermissions(
                     (Activity) context,
@@ -137,19 +202,23 @@ public class wordSegui {
             );
         } else {
             // Registra un error si el contexto no es una actividad
-            Log.e(TAG, "Contexto no es Activity, no se pueden solicitar permisos");
+            EventLog.e(TAG, "Contexto no es Activity, no se pueden solicitar permisos");
             Toast.makeText(context, "No se pueden solicitar permisos", Toast.LENGTH_SHORT).show();
         }
     }
 
     // Devuelve el estado de la escucha
     public boolean isListening() {
-        return isListening;
+        return store.getState().hotwordListening;
+    }
+
+    private void setListening(boolean listening) {
+        store.update(state -> state.withHotwordListening(listening));
     }
 
     // Libera los recursos de Porcupine
     public void cleanup() {
-        Log.d(TAG, "Limpiando recursos de Porcupine...");
+        EventLog.d(TAG, "Limpiando recursos de Porcupine...");
         stopListening(); // Detiene la escucha y libera recursos
     }
-}
\ No newline at end of file
+}
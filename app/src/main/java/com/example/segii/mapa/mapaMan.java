@@ -1,9 +1,13 @@
 package com.example.segii.mapa;
 
 // Importaciones necesarias para manejar mapas de Google, contexto y UI
+import com.example.segii.mapa.area.ServiceArea;
+import com.example.segii.mapa.registro.EventLog;
+import com.example.segii.mapa.ruta.RouteProgress;
 import com.google.android.gms.maps.GoogleMap;
 import android.annotation.SuppressLint;
 import android.content.Context;
+import android.view.Choreographer;
 import android.widget.Toast;
 
 import androidx.annotation.NonNull;
@@ -11,27 +15,53 @@ import androidx.annotation.NonNull;
 import com.google.android.gms.maps.CameraUpdateFactory;
 import com.google.android.gms.maps.model.LatLng;
 import com.google.android.gms.maps.model.LatLngBounds;
+import com.google.android.gms.maps.model.Marker;
 import com.google.android.gms.maps.model.MarkerOptions;
+import com.google.android.gms.maps.model.Polygon;
+import com.google.android.gms.maps.model.PolygonOptions;
+import com.google.android.gms.maps.model.Polyline;
 import com.google.android.gms.maps.model.PolylineOptions;
 import java.util.List;
 
 // Clase que administra el mapa de Google Maps y sus funcionalidades
-public class mapaMan implements GoogleMap.OnMapClickListener {
+public class mapaMan implements GoogleMap.OnMapClickListener, Choreographer.FrameCallback {
+    // Tiempo de una actualización por encima del cual se registra (ns); un cuadro dura ~16 ms
+    private static final long SLOW_FRAME_UPDATE_NS = 4_000_000L;
+    // Colores de la parte que falta y de la ya recorrida
+    private static final int ROUTE_COLOR = 0xFF2196F3;
+    private static final int TRAVELED_COLOR = 0xFF9E9E9E;
     // Objeto que representa el mapa de Google
     private GoogleMap mMap;
     // Contexto de la aplicación
     private final Context context;
-    // Límites geográficos de Huauchinango
-    private final LatLngBounds huauchinangoBounds;
+    // Área de servicio (compartida con la ubicación y el cálculo de rutas)
+    private final ServiceArea serviceArea;
+    // Línea de la ruta dibujada actualmente; al seguir el avance, la parte que falta del tramo actual
+    private Polyline routePolyline;
+    // Parte ya recorrida del tramo actual, dibujada en gris debajo de la posición
+    private Polyline traveledPolyline;
+    // Tramos de la ruta (RouteProgress.chunk) dibujados una sola vez; al avanzar solo cambia su color
+    private Polyline[] chunkPolylines;
+    // Tramo que representan routePolyline y traveledPolyline (su línea propia está oculta)
+    private int activeChunk = -1;
+    // Marcadores de origen y destino de la ruta dibujada
+    private Marker originMarker;
+    private Marker destinationMarker;
+    // División recorrida/pendiente de la ruta (null hasta que la geometría está completa)
+    private RouteProgress progress;
+    // Último avance recibido; se aplica en el siguiente cuadro
+    private LatLng pendingLocation;
+    private double pendingMeters = -1;
+    private boolean framePosted;
+    // La cámara sigue al usuario después de la animación inicial de la ruta
+    private boolean following;
+    // Área alcanzable dibujada ("¿qué hay a 10 minutos?"), null si no hay
+    private Polygon reachablePolygon;
 
-    // Constructor que inicializa el contexto y los límites de Huauchinango
+    // Constructor que inicializa el contexto y el área de servicio
     public mapaMan(Context context) {
         this.context = context; // Asigna el contexto recibido
-        // Define los límites geográficos de Huauchinango
-        this.huauchinangoBounds = new LatLngBounds(
-                new LatLng(20.1, -98.1), // Esquina inferior izquierda
-                new LatLng(20.25, -97.95) // Esquina superior derecha
-        );
+        this.serviceArea = ServiceArea.get(context); // Usa la instancia compartida del área
     }
 
     // Método para inicializar el mapa con configuraciones iniciales
@@ -45,10 +75,10 @@ public class mapaMan implements GoogleMap.OnMapClickListener {
         // Habilita la brújula en el mapa
         mMap.getUiSettings().setCompassEnabled(true);
 
-        // Centra la cámara en los límites de Huauchinango con un margen de 100 píxeles
-        mMap.moveCamera(CameraUpdateFactory.newLatLngBounds(huauchinangoBounds, 100));
-        // Restringe los movimientos de la cámara a los límites de Huauchinango
-        mMap.setLatLngBoundsForCameraTarget(huauchinangoBounds);
+        // Centra la cámara en los límites del área de servicio con un margen de 100 píxeles
+        mMap.moveCamera(CameraUpdateFactory.newLatLngBounds(serviceArea.getBounds(), 100));
+        // Restringe los movimientos de la cámara a los límites del área de servicio
+        mMap.setLatLngBoundsForCameraTarget(serviceArea.getBounds());
 
         // Establece esta clase como listener para clics en el mapa
         mMap.setOnMapClickListener(this);
@@ -67,8 +97,8 @@ public class mapaMan implements GoogleMap.OnMapClickListener {
     public void centerOnLocation(LatLng location, boolean isUserLocation) {
         if (mMap == null) return; // Sale si el mapa no está inicializado
 
-        // Verifica si la ubicación está dentro de los límites de Huauchinango
-        if (huauchinangoBounds.contains(location)) {
+        // Verifica si la ubicación está dentro del área de servicio
+        if (serviceArea.contains(location)) {
             // Centra la cámara en la ubicación con un nivel de zoom de 15
             mMap.moveCamera(CameraUpdateFactory.newLatLngZoom(location, 15f));
             // Agrega un marcador en la ubicación
@@ -76,48 +106,227 @@ public class mapaMan implements GoogleMap.OnMapClickListener {
                     .position(location)
                     .title(isUserLocation ? "¡Estás aquí!" : "Destino"));
         } else {
-            // Si está fuera de los límites, centra en el centro de Huauchinango
-            LatLng huauchinangoCenter = new LatLng(20.1738, -98.0549);
-            mMap.moveCamera(CameraUpdateFactory.newLatLngZoom(huauchinangoCenter, 15f));
+            // Si está fuera del área, centra en su centro
+            mMap.moveCamera(CameraUpdateFactory.newLatLngZoom(serviceArea.getCenter(), 15f));
             // Muestra un mensaje si es la ubicación del usuario
             if (isUserLocation) {
-                        Toast.makeText(context, "Estás fuera de Huauchinango. Mostrando el centro de la ciudad.", Toast.LENGTH_LONG).show();
+                        Toast.makeText(context, "Estás fuera de " + serviceArea.getName() + ". Mostrando el centro de la ciudad.", Toast.LENGTH_LONG).show();
             }
         }
     }
 
     // Método para dibujar una ruta en el mapa
     public void drawRoute(List<LatLng> points, LatLng origin, LatLng destination, String destinationName) {
+        drawRoute(points, origin, destination, destinationName, null);
+    }
+
+    // Dibuja una ruta usando límites ya conocidos para la cámara (null para calcularlos de los puntos).
+    // Los puntos pueden ser solo la parte inicial de la ruta; el resto se agrega con updateRoutePoints.
+    public void drawRoute(List<LatLng> points, LatLng origin, LatLng destination, String destinationName,
+                          LatLngBounds routeBounds) {
         if (mMap == null || points == null || points.isEmpty()) return; // Sale si el mapa o la lista de puntos no es válida
 
         // Limpia los marcadores y rutas previas del mapa
         mMap.clear();
+        reachablePolygon = null;
+        progress = null;
+        chunkPolylines = null;
+        activeChunk = -1;
+        following = false;
         // Agrega un marcador en el punto de origen
-        mMap.addMarker(new MarkerOptions().position(origin).title("Origen"));
+        originMarker = mMap.addMarker(new MarkerOptions().position(origin).title("Origen"));
         // Agrega un marcador en el destino
-        mMap.addMarker(new MarkerOptions().position(destination).title(destinationName));
+        destinationMarker = mMap.addMarker(new MarkerOptions().position(destination).title(destinationName));
+        // Parte recorrida (vacía al inicio)
+        traveledPolyline = mMap.addPolyline(new PolylineOptions()
+                .color(TRAVELED_COLOR) // Color gris
+                .width(10));
         // Dibuja una línea (ruta) con los puntos proporcionados
-        mMap.addPolyline(new PolylineOptions()
+        routePolyline = mMap.addPolyline(new PolylineOptions()
                 .addAll(points)
-                .color(0xFF2196F3) // Color azul
+                .color(ROUTE_COLOR) // Color azul
                 .width(10)); // Grosor de la línea
 
-        // Crea un constructor para los límites de la cámara
-        LatLngBounds.Builder builder = new LatLngBounds.Builder();
-        builder.include(origin); // Incluye el punto de origen
-        for (LatLng point : points) {
-            builder.include(point); // Incluye cada punto de la ruta
+        LatLngBounds bounds = routeBounds;
+        if (bounds == null) {
+            // Crea un constructor para los límites de la cámara
+            LatLngBounds.Builder builder = new LatLngBounds.Builder();
+            builder.include(origin); // Incluye el punto de origen
+            for (LatLng point : points) {
+                builder.include(point); // Incluye cada punto de la ruta
+            }
+            bounds = builder.build(); // Construye los límites
         }
-        LatLngBounds bounds = builder.build(); // Construye los límites
 
-        // Anima la cámara para mostrar toda la ruta con un margen de 100 píxeles
+        // Anima la cámara para mostrar toda la ruta con un margen de 100 píxeles;
+        // al terminar (o si el usuario la interrumpe) la cámara empieza a seguir la posición
         mMap.animateCamera(
                 CameraUpdateFactory.newLatLngBounds(bounds, 100),
                 2000, // Duración de la animación en milisegundos
-                null
+                new GoogleMap.CancelableCallback() {
+                    @Override
+                    public void onFinish() {
+                        following = true;
+                    }
+
+                    @Override
+                    public void onCancel() {
+                        following = true;
+                    }
+                }
         );
     }
 
+    // Dibuja el área alcanzable como un polígono translúcido (reemplaza la anterior) y la encuadra
+    public void drawReachableArea(List<LatLng> outline) {
+        if (mMap == null) return;
+        clearReachableArea();
+        if (outline == null || outline.size() < 3) return;
+        reachablePolygon = mMap.addPolygon(new PolygonOptions()
+                .addAll(outline)
+                .fillColor(0x332196F3) // Azul translúcido
+                .strokeColor(0xFF2196F3)
+                .strokeWidth(4));
+        LatLngBounds.Builder builder = new LatLngBounds.Builder();
+        for (LatLng point : outline) {
+            builder.include(point);
+        }
+        // Mientras se ve el área la cámara no sigue al usuario
+        following = false;
+        mMap.animateCamera(CameraUpdateFactory.newLatLngBounds(builder.build(), 100));
+    }
+
+    // Quita el área alcanzable del mapa
+    public void clearReachableArea() {
+        if (reachablePolygon != null) {
+            reachablePolygon.remove();
+            reachablePolygon = null;
+        }
+    }
+
+    // Quita la ruta del mapa (al terminar o cancelar la navegación): las líneas, sus tramos, los
+    // marcadores y la división recorrida/pendiente. La cámara deja de seguir al usuario
+    public void clearRoute() {
+        if (framePosted) {
+            Choreographer.getInstance().removeFrameCallback(this);
+            framePosted = false;
+        }
+        if (chunkPolylines != null) {
+            for (Polyline line : chunkPolylines) line.remove();
+            chunkPolylines = null;
+        }
+        if (routePolyline != null) {
+            routePolyline.remove();
+            routePolyline = null;
+        }
+        if (traveledPolyline != null) {
+            traveledPolyline.remove();
+            traveledPolyline = null;
+        }
+        if (originMarker != null) {
+            originMarker.remove();
+            originMarker = null;
+        }
+        if (destinationMarker != null) {
+            destinationMarker.remove();
+            destinationMarker = null;
+        }
+        progress = null;
+        activeChunk = -1;
+        pendingLocation = null;
+        pendingMeters = -1;
+        following = false;
+    }
+
+    // Reemplaza los puntos de la ruta dibujada (por ejemplo, al terminar de decodificarla) y, con la
+    // geometría completa, empieza a separar la parte recorrida de la que falta
+    public void updateRoutePoints(List<LatLng> points, double[] cumulativeMeters) {
+        if (routePolyline == null || points == null || points.isEmpty()) return;
+        routePolyline.setPoints(points);
+        trackProgress(points, cumulativeMeters);
+    }
+
+    // Empieza a separar la parte recorrida de una ruta ya dibujada completa. La ruta se vuelve a
+    // dibujar por tramos (una sola vez); después cada cuadro solo envía los puntos del tramo actual
+    public void trackProgress(List<LatLng> points, double[] cumulativeMeters) {
+        if (routePolyline == null || points == null || points.isEmpty()) return;
+        progress = new RouteProgress(points, cumulativeMeters);
+        if (chunkPolylines != null) {
+            for (Polyline line : chunkPolylines) line.remove();
+        }
+        chunkPolylines = new Polyline[progress.chunkCount()];
+        for (int i = 0; i < chunkPolylines.length; i++) {
+            chunkPolylines[i] = mMap.addPolyline(new PolylineOptions()
+                    .addAll(progress.chunk(i))
+                    .color(ROUTE_COLOR)
+                    .width(10));
+        }
+        activeChunk = -1;
+        routePolyline.setPoints(progress.activeRemaining());
+        // Aplica el avance que llegó mientras se decodificaba
+        if (pendingMeters >= 0) scheduleFrame();
+    }
+
+    // Nueva posición sobre la ruta (metersAlong < 0 si no está sobre ella). No toca el mapa:
+    // solo guarda el dato, y el mapa se actualiza una vez por cuadro aunque lleguen varios fixes juntos
+    public void onProgress(LatLng location, double metersAlong) {
+        pendingLocation = location;
+        pendingMeters = metersAlong;
+        scheduleFrame();
+    }
+
+    private void scheduleFrame() {
+        if (framePosted || mMap == null) return;
+        framePosted = true;
+        Choreographer.getInstance().postFrameCallback(this);
+    }
+
+    // Aplica el último avance: solo se envían los puntos del tramo actual (entre las dos líneas, a lo más
+    // RouteProgress.CHUNK_POINTS + 3), sin importar el largo de la ruta, y se mueve la cámara
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        framePosted = false;
+        if (mMap == null || pendingLocation == null) return;
+        long start = System.nanoTime();
+        if (progress != null && progress.update(pendingMeters)) {
+            moveActiveChunk(progress.activeChunk());
+            traveledPolyline.setPoints(progress.activeTraveled());
+            routePolyline.setPoints(progress.activeRemaining());
+        }
+        if (following) {
+            mMap.moveCamera(CameraUpdateFactory.newLatLng(pendingLocation));
+        }
+        long elapsed = System.nanoTime() - start;
+        if (elapsed > SLOW_FRAME_UPDATE_NS) {
+            EventLog.w("mapaMan", "Actualización del avance lenta (us)", elapsed / 1000);
+        }
+    }
+
+    // Al cambiar de tramo, los que quedaron atrás se pintan de gris, los de adelante de azul, y se
+    // oculta la línea propia del tramo actual (la reemplazan routePolyline y traveledPolyline).
+    // Normalmente se avanza un tramo; solo un salto grande del GPS recorre varios
+    private void moveActiveChunk(int chunk) {
+        if (chunk == activeChunk) return;
+        int from = activeChunk < 0 ? 0 : Math.min(activeChunk, chunk);
+        int to = Math.max(activeChunk, chunk);
+        for (int i = from; i <= to; i++) {
+            chunkPolylines[i].setVisible(i != chunk);
+            chunkPolylines[i].setColor(i < chunk ? TRAVELED_COLOR : ROUTE_COLOR);
+        }
+        activeChunk = chunk;
+    }
+
+    // Deja de actualizar el mapa (al cerrar la actividad)
+    public void release() {
+        if (framePosted) {
+            Choreographer.getInstance().removeFrameCallback(this);
+            framePosted = false;
+        }
+        mMap = null;
+        progress = null;
+        chunkPolylines = null;
+    }
+
     // Método que se ejecuta cuando el usuario toca el mapa
     @Override
     public void onMapClick(@NonNull LatLng latLng) {
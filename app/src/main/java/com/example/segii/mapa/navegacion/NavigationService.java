@@ -0,0 +1,390 @@
+package com.example.segii.mapa.navegacion;
+
+import android.Manifest;
+import android.app.Notification;
+import android.app.NotificationChannel;
+import android.app.NotificationManager;
+import android.app.PendingIntent;
+import android.app.Service;
+import android.content.Intent;
+import android.content.pm.PackageManager;
+import android.content.pm.ServiceInfo;
+import android.os.Binder;
+import android.os.Handler;
+import android.os.IBinder;
+import android.os.Looper;
+
+import androidx.core.app.NotificationCompat;
+import androidx.core.app.ServiceCompat;
+import androidx.core.content.ContextCompat;
+
+import com.example.segii.R;
+import com.example.segii.mapa.Location;
+import com.example.segii.mapa.Mapa;
+import com.example.segii.mapa.Route;
+import com.example.segii.mapa.area.ServiceArea;
+import com.example.segii.mapa.cache.CacheRegistry;
+import com.example.segii.mapa.estado.AppStateStore;
+import com.example.segii.mapa.guia.GuidanceEngine;
+import com.example.segii.mapa.guia.PromptPlayer;
+import com.example.segii.mapa.keyWord.wordSegui;
+import com.example.segii.mapa.red.NetworkMonitor;
+import com.example.segii.mapa.registro.EventLog;
+import com.example.segii.mapa.ruta.EtaEstimator;
+import com.example.segii.mapa.ruta.QuotaGovernor;
+import com.example.segii.mapa.ruta.RouteData;
+import com.example.segii.mapa.ruta.RouteStore;
+import com.example.segii.mapa.ruta.SpeedProfile;
+import com.google.android.gms.maps.model.LatLng;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Servicio en primer plano que mantiene la navegación activa aunque la pantalla se apague o el
+// usuario cambie de app: es dueño de las actualizaciones de ubicación, del avance sobre la ruta,
+// de la guía por voz y de la escucha de la palabra clave. La ruta activa y la posición se publican
+// en AppStateStore; la actividad se suscribe ahí para dibujar y al volver recibe la misma ruta ya
+// decodificada y la última posición, sin recalcular.
+public class NavigationService extends Service {
+    // Acción para terminar la navegación desde la notificación u otra parte de la app
+    public static final String ACTION_STOP = "com.example.segii.mapa.DETENER_NAVEGACION";
+    // Extra con el que se abre la actividad para escuchar un comando tras la palabra clave
+    public static final String EXTRA_START_VOICE = "com.example.segii.mapa.INICIAR_VOZ";
+    private static final String CHANNEL_ID = "navegacion";
+    private static final int NOTIFICATION_ID = 1;
+    private static final String TAG = "NavigationService";
+    // Archivo con las velocidades aprendidas de los recorridos
+    private static final String SPEED_PROFILE_FILE = "velocidades.bin";
+
+    // Retraso máximo de entrega agrupada de fixes cuando no hay una maniobra cerca (ms)
+    private static final long BATCH_DELAY_MS = 10_000;
+    // Una indicación se considera cercana si falta menos de este tiempo o distancia para ella
+    private static final double NEAR_PROMPT_SECONDS = 30;
+    private static final double NEAR_PROMPT_METERS = 300;
+
+    // Interfaz para que la actividad reciba los eventos de la navegación mientras está visible (la
+    // ruta y la posición las lee de AppStateStore)
+    public interface NavigationListener {
+        // Se detectó la palabra clave
+        void onHotwordDetected();
+    }
+
+    // Binder local: la actividad y el servicio viven en el mismo proceso
+    public class LocalBinder extends Binder {
+        public NavigationService getService() {
+            return NavigationService.this;
+        }
+    }
+
+    private final IBinder binder = new LocalBinder();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    // Hilo para decodificar y guardar la ruta sin bloquear el hilo principal
+    private final ExecutorService ioExecutor = Executors.newSingleThreadExecutor();
+
+    private Location locationService; // Actualizaciones de ubicación y ajuste a la ruta
+    private GuidanceEngine guidance; // Cuándo decir cada indicación
+    private PromptPlayer promptPlayer; // Reproducción de las indicaciones
+    private wordSegui hotwordDetector; // Palabra clave "Okey Segui"
+    private RouteStore routeStore; // Ruta activa en disco
+    private Route rerouteCalculator; // Recalcula la ruta al desviarse
+
+    private final AppStateStore store = AppStateStore.get(); // Ruta activa y última posición ajustada
+    private NavigationListener listener; // Actividad conectada y visible (null en segundo plano)
+    private boolean foreground; // Indica si el servicio está en primer plano
+    private Boolean batching; // Modo actual de entrega de fixes (null si no hay actualizaciones)
+    private volatile SpeedProfile speedProfile; // Velocidades aprendidas (null mientras se carga)
+    private EtaEstimator eta; // Tiempo restante de la ruta activa
+    private long etaMinutes = -1; // Minutos mostrados en la notificación
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        locationService = new Location(this);
+        routeStore = new RouteStore(this);
+        promptPlayer = new PromptPlayer(this);
+        hotwordDetector = new wordSegui(this);
+        // Las velocidades aprendidas se leen fuera del hilo principal
+        File profileFile = new File(getFilesDir(), SPEED_PROFILE_FILE);
+        ioExecutor.execute(() -> speedProfile = SpeedProfile.load(profileFile));
+        // La caché de frases de voz se limpia al iniciar, antes de que se necesite
+        ioExecutor.execute(promptPlayer::trimCache);
+        // Al llegar a cada indicación la reproduce y prepara las siguientes
+        guidance = new GuidanceEngine(text -> {
+            promptPlayer.play(text);
+            promptPlayer.prepare(guidance.upcoming(3));
+        });
+        // Los recálculos se hacen aquí para que funcionen aunque la actividad no esté visible
+        rerouteCalculator = new Route(new Route.RouteCallback() {
+            @Override
+            public void onRouteCalculated(RouteData route) {
+                startNavigation(route);
+            }
+
+            @Override
+            public void onRouteFailed(String errorMessage) {
+                EventLog.e(TAG, "No se pudo recalcular la ruta", errorMessage);
+            }
+
+            @Override
+            public void onMultipleDestinationsFound(List<Route.DestinationOption> options) {
+                // No ocurre: el recálculo usa las coordenadas del destino
+            }
+        }, ServiceArea.get(this), QuotaGovernor.get(this), NetworkMonitor.get(this), CacheRegistry.get(this));
+        // Cada fix de un lote avanza el tiempo estimado con su propia hora, así los tramos
+        // intermedios también se registran con su velocidad real
+        locationService.setFixListener(this::onFix);
+        // Al desviarse de la ruta la recalcula desde la posición actual, sin volver a geocodificar
+        locationService.setOffRouteListener((lat, lng) -> {
+            RouteData route = getActiveRoute();
+            if (route != null) {
+                EventLog.d(TAG, "Desvío detectado, recalculando ruta");
+                rerouteCalculator.calculateRoute(new LatLng(lat, lng), route.getDestination(), route.destinationName,
+                        QuotaGovernor.Priority.REROUTE);
+            }
+        });
+    }
+
+    @Override
+    public int onStartCommand(Intent intent, int flags, int startId) {
+        if (intent != null && ACTION_STOP.equals(intent.getAction())) {
+            stopNavigation();
+        }
+        // Si el sistema mata el proceso, la ruta se restaura desde disco al abrir la app
+        return START_NOT_STICKY;
+    }
+
+    @Override
+    public IBinder onBind(Intent intent) {
+        return binder;
+    }
+
+    // Conecta (o desconecta con null) la actividad visible
+    public void setListener(NavigationListener listener) {
+        this.listener = listener;
+        // Con la actividad visible los fixes llegan de inmediato para mover el mapa
+        updateDeliveryMode();
+    }
+
+    public RouteData getActiveRoute() {
+        return store.getState().activeRoute;
+    }
+
+    public LatLng getLastLocation() {
+        return store.getState().location;
+    }
+
+    // Ubicación para la actividad (centrar el mapa, origen de una ruta). Pasa por el mismo filtro
+    // que las actualizaciones, que es el único que publica en el estado compartido
+    public void getDeviceLocation(Location.LocationCallback callback) {
+        locationService.getDeviceLocation(callback);
+    }
+
+    // Fix nuevo para el flujo de voz a ruta (ver Location.requestFreshFix)
+    public CompletableFuture<LatLng> requestFreshFix(long timeoutMs) {
+        return locationService.requestFreshFix(timeoutMs);
+    }
+
+    // Inicia (o reemplaza) la navegación por la ruta dada
+    public void startNavigation(RouteData route) {
+        // La actividad la dibuja al ver el cambio en el estado compartido
+        store.update(state -> state.withActiveRoute(route));
+        // Guarda la ruta para restaurarla si se cierra la app
+        ioExecutor.execute(() -> routeStore.save(route));
+        enterForeground();
+        if (route.isFullyDecoded()) {
+            beginTracking(route);
+        } else {
+            // La geometría se termina de decodificar fuera del hilo principal
+            ioExecutor.execute(() -> {
+                route.getCumulativeMeters();
+                mainHandler.post(() -> {
+                    if (getActiveRoute() == route) beginTracking(route);
+                });
+            });
+        }
+    }
+
+    // Termina la navegación y sale del primer plano
+    public void stopNavigation() {
+        boolean wasActive = getActiveRoute() != null;
+        store.update(state -> state.withActiveRoute(null));
+        locationService.stopLocationUpdates();
+        batching = null;
+        locationService.setActiveRoute(null);
+        guidance.setRoute(null);
+        eta = null;
+        ioExecutor.execute(routeStore::clear);
+        if (wasActive) saveSpeedProfile();
+        if (foreground) {
+            stopForeground(STOP_FOREGROUND_REMOVE);
+            foreground = false;
+        }
+        // Si la actividad sigue conectada el servicio vive hasta que se desconecte
+        stopSelf();
+    }
+
+    // Inicia la escucha de la palabra clave (requiere el permiso de audio ya otorgado)
+    public void startHotword(String accessKey) {
+        hotwordDetector.initializeAndStartListening(accessKey, this::onHotword);
+    }
+
+    public void stopHotword() {
+        hotwordDetector.stopListening();
+    }
+
+    public boolean isHotwordListening() {
+        return hotwordDetector.isListening();
+    }
+
+    // Con la actividad visible le pasa el evento; si no, la abre para escuchar el comando
+    private void onHotword() {
+        if (listener != null) {
+            listener.onHotwordDetected();
+        } else {
+            Intent intent = new Intent(this, Mapa.class)
+                    .addFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_SINGLE_TOP)
+                    .putExtra(EXTRA_START_VOICE, true);
+            try {
+                startActivity(intent);
+            } catch (RuntimeException e) {
+                // El sistema puede bloquear el inicio desde segundo plano; queda la notificación
+                EventLog.w(TAG, "No se pudo abrir la actividad desde segundo plano", e);
+            }
+        }
+    }
+
+    // Prepara la guía y las actualizaciones de ubicación de una ruta ya decodificada
+    private void beginTracking(RouteData route) {
+        locationService.setActiveRoute(route);
+        guidance.setRoute(route);
+        promptPlayer.preload(guidance.getPhrases());
+        promptPlayer.prepare(guidance.upcoming(3));
+        // El tiempo estimado se arma con el primer fix de la nueva ruta
+        eta = null;
+        batching = null;
+        updateDeliveryMode();
+    }
+
+    // Procesa la posición entregada por las actualizaciones (uno o varios fixes agrupados)
+    // (Location ya publicó la posición y el avance en el estado compartido)
+    private void onLocation(LatLng location) {
+        double distanceAlong = locationService.getDistanceAlongRoute();
+        guidance.onProgress(distanceAlong, locationService.getSpeed());
+        showEta();
+        if (getActiveRoute() != null && guidance.isFinished()) {
+            // Se dijo la indicación de llegada
+            stopNavigation();
+            return;
+        }
+        updateDeliveryMode();
+    }
+
+    // Calcula el tiempo restante en el dispositivo con cada fix, fechado con la hora del fix (los
+    // lotes traen fixes de varios segundos atrás; la franja horaria también sale de esa hora)
+    private void onFix(double distanceAlong, long fixTimeMillis) {
+        SpeedProfile profile = speedProfile;
+        RouteData route = getActiveRoute();
+        if (route == null || profile == null || !locationService.hasActiveRoute()) return;
+        if (eta == null) {
+            eta = new EtaEstimator(route, profile, fixTimeMillis);
+            EventLog.d(TAG, "Tiempo estimado de la ruta (s)", Math.round(eta.getTotalSeconds()));
+        }
+        eta.onProgress(distanceAlong, fixTimeMillis);
+    }
+
+    // Muestra el tiempo restante en la notificación cuando cambia (una vez por entrega)
+    private void showEta() {
+        if (eta == null) return;
+        long minutes = (long) Math.ceil(eta.getRemainingSeconds() / 60);
+        if (foreground && minutes != etaMinutes) {
+            etaMinutes = minutes;
+            getSystemService(NotificationManager.class).notify(NOTIFICATION_ID,
+                    buildNotification("Llegada en " + Math.max(1, minutes) + " min"));
+        }
+    }
+
+    // Guarda las velocidades aprendidas en este recorrido
+    private void saveSpeedProfile() {
+        SpeedProfile profile = speedProfile;
+        if (profile == null) return;
+        File file = new File(getFilesDir(), SPEED_PROFILE_FILE);
+        ioExecutor.execute(() -> profile.save(file));
+    }
+
+    // Agrupa los fixes solo si nadie está viendo el mapa y la siguiente indicación está lejos
+    private void updateDeliveryMode() {
+        if (getActiveRoute() == null || !locationService.hasActiveRoute()) return;
+        boolean wantBatching = listener == null && !isPromptNear();
+        if (batching != null && batching == wantBatching) return;
+        batching = wantBatching;
+        locationService.startLocationUpdates(new Location.LocationCallback() {
+            @Override
+            public void onLocationReceived(LatLng location) {
+                onLocation(location);
+            }
+
+            @Override
+            public void onLocationFailed() {
+                EventLog.e(TAG, "No se pudieron iniciar las actualizaciones de ubicación");
+            }
+        }, wantBatching ? BATCH_DELAY_MS : 0);
+    }
+
+    // Indica si la siguiente indicación está cerca según la distancia recorrida y la velocidad
+    private boolean isPromptNear() {
+        double along = locationService.getDistanceAlongRoute();
+        if (along < 0) return true; // Fuera de la ruta: se necesita precisión para recalcular
+        double remaining = guidance.getNextTriggerAt() - along;
+        return remaining < Math.max(NEAR_PROMPT_METERS, locationService.getSpeed() * NEAR_PROMPT_SECONDS);
+    }
+
+    // Pasa el servicio a primer plano con su notificación
+    private void enterForeground() {
+        if (foreground) return;
+        // Se inicia a sí mismo para seguir vivo aunque la actividad se desconecte
+        ContextCompat.startForegroundService(this, new Intent(this, NavigationService.class));
+        NotificationManager manager = getSystemService(NotificationManager.class);
+        manager.createNotificationChannel(new NotificationChannel(CHANNEL_ID, "Navegación", NotificationManager.IMPORTANCE_LOW));
+        Notification notification = buildNotification("Navegación activa");
+        etaMinutes = -1;
+        // El tipo micrófono solo se declara si ya se otorgó el permiso (si no, el sistema lo rechaza)
+        int types = ServiceInfo.FOREGROUND_SERVICE_TYPE_LOCATION;
+        if (ContextCompat.checkSelfPermission(this, Manifest.permission.RECORD_AUDIO) == PackageManager.PERMISSION_GRANTED) {
+            types |= ServiceInfo.FOREGROUND_SERVICE_TYPE_MICROPHONE;
+        }
+        // ServiceCompat ignora los tipos antes de Android 10, donde no existe esa versión de startForeground
+        ServiceCompat.startForeground(this, NOTIFICATION_ID, notification, types);
+        foreground = true;
+    }
+
+    // Notificación de la navegación con el texto dado
+    private Notification buildNotification(String text) {
+        PendingIntent open = PendingIntent.getActivity(this, 0,
+                new Intent(this, Mapa.class).addFlags(Intent.FLAG_ACTIVITY_SINGLE_TOP), PendingIntent.FLAG_IMMUTABLE);
+        return new NotificationCompat.Builder(this, CHANNEL_ID)
+                .setContentTitle("Segii")
+                .setContentText(text)
+                .setSmallIcon(R.drawable.ic_my_location)
+                .setOngoing(true)
+                .setSilent(true)
+                .setCategory(NotificationCompat.CATEGORY_NAVIGATION)
+                .setContentIntent(open)
+                .build();
+    }
+
+    @Override
+    public void onDestroy() {
+        mainHandler.removeCallbacksAndMessages(null);
+        locationService.stopLocationUpdates();
+        hotwordDetector.cleanup();
+        promptPlayer.release();
+        rerouteCalculator.shutdown();
+        // Lo aprendido en una navegación que no terminó también se conserva
+        if (getActiveRoute() != null) saveSpeedProfile();
+        ioExecutor.shutdown();
+        super.onDestroy();
+    }
+}
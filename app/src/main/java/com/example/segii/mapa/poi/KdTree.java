@@ -0,0 +1,141 @@
+package com.example.segii.mapa.poi;
+
+// Árbol k-d de dos dimensiones sobre coordenadas planas (metros) guardado en arreglos primitivos.
+// Se construye una sola vez ordenando los índices por mediana en el lugar; la consulta de los
+// k más cercanos usa un montículo acotado y descarta las ramas que no pueden mejorar el resultado.
+class KdTree {
+    // Coordenadas de cada punto en metros
+    private final double[] xs, ys;
+    // Índices de los puntos en el orden del árbol (el nodo de [lo, hi) es el de en medio)
+    private final int[] order;
+
+    KdTree(double[] xs, double[] ys) {
+        this.xs = xs;
+        this.ys = ys;
+        order = new int[xs.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        build(0, order.length, 0);
+    }
+
+    int size() {
+        return order.length;
+    }
+
+    // Coloca la mediana del eje en medio del rango y construye los subárboles
+    private void build(int lo, int hi, int axis) {
+        if (hi - lo <= 1) return;
+        int mid = (lo + hi) >>> 1;
+        select(lo, hi - 1, mid, axis);
+        build(lo, mid, axis ^ 1);
+        build(mid + 1, hi, axis ^ 1);
+    }
+
+    private double coord(int index, int axis) {
+        return axis == 0 ? xs[index] : ys[index];
+    }
+
+    // Quickselect: deja en k el elemento que le corresponde según el eje
+    private void select(int lo, int hi, int k, int axis) {
+        while (hi > lo) {
+            double pivot = coord(order[(lo + hi) >>> 1], axis);
+            int i = lo, j = hi;
+            while (i <= j) {
+                while (coord(order[i], axis) < pivot) i++;
+                while (coord(order[j], axis) > pivot) j--;
+                if (i <= j) {
+                    int tmp = order[i];
+                    order[i] = order[j];
+                    order[j] = tmp;
+                    i++;
+                    j--;
+                }
+            }
+            if (k <= j) {
+                hi = j;
+            } else if (k >= i) {
+                lo = i;
+            } else {
+                return;
+            }
+        }
+    }
+
+    // Busca los k puntos más cercanos a (x, y); escribe sus índices y distancias al cuadrado
+    // ordenados de menor a mayor y devuelve cuántos encontró
+    int nearest(double x, double y, int k, int[] outIndex, double[] outDist2) {
+        k = Math.min(k, Math.min(order.length, Math.min(outIndex.length, outDist2.length)));
+        if (k <= 0) return 0;
+        // Montículo de máximos con los mejores candidatos (la raíz es el peor)
+        int[] heapIndex = new int[k];
+        double[] heapDist = new double[k];
+        int count = search(0, order.length, 0, x, y, k, heapIndex, heapDist, 0);
+        // Extrae del montículo de mayor a menor para dejarlos ordenados
+        for (int n = count; n > 0; n--) {
+            outIndex[n - 1] = heapIndex[0];
+            outDist2[n - 1] = heapDist[0];
+            heapIndex[0] = heapIndex[n - 1];
+            heapDist[0] = heapDist[n - 1];
+            siftDown(heapIndex, heapDist, 0, n - 1);
+        }
+        return count;
+    }
+
+    private int search(int lo, int hi, int axis, double x, double y, int k,
+                       int[] heapIndex, double[] heapDist, int count) {
+        if (lo >= hi) return count;
+        int mid = (lo + hi) >>> 1;
+        int point = order[mid];
+        double dx = xs[point] - x;
+        double dy = ys[point] - y;
+        double d2 = dx * dx + dy * dy;
+        if (count < k) {
+            // Aún hay lugar: agrega y sube el candidato
+            int i = count++;
+            heapIndex[i] = point;
+            heapDist[i] = d2;
+            while (i > 0 && heapDist[(i - 1) / 2] < heapDist[i]) {
+                int parent = (i - 1) / 2;
+                swap(heapIndex, heapDist, i, parent);
+                i = parent;
+            }
+        } else if (d2 < heapDist[0]) {
+            // Reemplaza al peor candidato
+            heapIndex[0] = point;
+            heapDist[0] = d2;
+            siftDown(heapIndex, heapDist, 0, count);
+        }
+
+        // Primero baja por el lado de la consulta; el otro lado solo si el plano de corte está más
+        // cerca que el peor candidato actual
+        double diff = axis == 0 ? dx : dy;
+        boolean leftFirst = diff > 0;
+        count = search(leftFirst ? lo : mid + 1, leftFirst ? mid : hi, axis ^ 1, x, y, k, heapIndex, heapDist, count);
+        if (count < k || diff * diff < heapDist[0]) {
+            count = search(leftFirst ? mid + 1 : lo, leftFirst ? hi : mid, axis ^ 1, x, y, k, heapIndex, heapDist, count);
+        }
+        return count;
+    }
+
+    private static void siftDown(int[] heapIndex, double[] heapDist, int i, int size) {
+        while (true) {
+            int largest = i;
+            int left = 2 * i + 1, right = left + 1;
+            if (left < size && heapDist[left] > heapDist[largest]) largest = left;
+            if (right < size && heapDist[right] > heapDist[largest]) largest = right;
+            if (largest == i) return;
+            swap(heapIndex, heapDist, i, largest);
+            i = largest;
+        }
+    }
+
+    private static void swap(int[] heapIndex, double[] heapDist, int a, int b) {
+        int ti = heapIndex[a];
+        heapIndex[a] = heapIndex[b];
+        heapIndex[b] = ti;
+        double td = heapDist[a];
+        heapDist[a] = heapDist[b];
+        heapDist[b] = td;
+    }
+}
@@ -0,0 +1,18 @@
+package com.example.segii.mapa.poi;
+
+// Punto de interés local (farmacia, hospital, cajero, ...) con su categoría
+public class Poi {
+    // Nombre que se muestra y se dice al usuario
+    public final String name;
+    // Clave de la categoría (ver PoiIndex.categoryFor)
+    public final String category;
+    // Coordenadas en grados
+    public final double latitude, longitude;
+
+    public Poi(String name, String category, double latitude, double longitude) {
+        this.name = name != null ? name : "";
+        this.category = category;
+        this.latitude = latitude;
+        this.longitude = longitude;
+    }
+}
@@ -0,0 +1,201 @@
+package com.example.segii.mapa.poi;
+
+import com.example.segii.mapa.Route;
+import com.google.android.gms.maps.model.LatLng;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+// Índice local de puntos de interés por categoría. Responde "la farmacia más cercana" sin red
+// cuando el catálogo tiene puntos de esa categoría: cada una tiene su propio árbol k-d sobre
+// coordenadas planas en metros y la consulta devuelve las opciones ordenadas por distancia al fix.
+// El catálogo de la app (assets/poi_huauchinango.csv) todavía va vacío, así que mientras no se
+// llene con un levantamiento verificado esas búsquedas siguen yendo a Geocoding.
+public class PoiIndex {
+    // Metros por grado de latitud y de longitud en el ecuador (aproximación equirectangular)
+    private static final double METERS_PER_DEG_LAT = 110_540.0;
+    private static final double METERS_PER_DEG_LNG = 111_320.0;
+    // Latitud de referencia para la proyección (Huauchinango)
+    private static final double REFERENCE_LAT = 20.18;
+
+    // Palabras con las que el usuario nombra cada categoría (sin acentos, en minúsculas)
+    private static final Map<String, String> SYNONYMS = new HashMap<>();
+
+    static {
+        addSynonyms("farmacia", "farmacia", "farmacias", "botica");
+        addSynonyms("hospital", "hospital", "clinica", "sanatorio", "urgencias", "imss", "issste");
+        addSynonyms("cajero", "cajero", "cajeros", "banco", "atm");
+        addSynonyms("gasolinera", "gasolinera", "gasolina");
+        addSynonyms("tienda", "tienda", "oxxo", "abarrotes");
+        addSynonyms("mercado", "mercado", "tianguis");
+        addSynonyms("escuela", "escuela", "primaria", "secundaria", "preparatoria");
+        addSynonyms("iglesia", "iglesia", "parroquia", "templo");
+    }
+
+    // Palabras que acompañan a una búsqueda genérica ("la farmacia más cercana") sin nombrar un lugar
+    private static final Set<String> GENERIC_WORDS = new HashSet<>(Arrays.asList(
+            "el", "la", "los", "las", "un", "una", "unos", "unas", "al", "del", "de", "a", "algun", "alguna",
+            "mas", "cercano", "cercana", "cercanos", "cercanas", "cerca", "proximo", "proxima", "aqui",
+            "donde", "hay", "por", "favor"));
+
+    private static void addSynonyms(String category, String... words) {
+        for (String word : words) {
+            SYNONYMS.put(word, category);
+        }
+    }
+
+    // Árbol y puntos de una categoría
+    private static final class Category {
+        final List<Poi> pois;
+        final KdTree tree;
+
+        Category(List<Poi> pois) {
+            this.pois = pois;
+            double[] xs = new double[pois.size()];
+            double[] ys = new double[pois.size()];
+            for (int i = 0; i < xs.length; i++) {
+                xs[i] = toX(pois.get(i).longitude);
+                ys[i] = toY(pois.get(i).latitude);
+            }
+            this.tree = new KdTree(xs, ys);
+        }
+    }
+
+    private final Map<String, Category> categories = new LinkedHashMap<>();
+
+    // Construye el índice agrupando los puntos por categoría
+    public PoiIndex(List<Poi> pois) {
+        Map<String, List<Poi>> grouped = new LinkedHashMap<>();
+        for (Poi poi : pois) {
+            List<Poi> list = grouped.get(poi.category);
+            if (list == null) {
+                list = new ArrayList<>();
+                grouped.put(poi.category, list);
+            }
+            list.add(poi);
+        }
+        for (Map.Entry<String, List<Poi>> entry : grouped.entrySet()) {
+            categories.put(entry.getKey(), new Category(entry.getValue()));
+        }
+    }
+
+    // Lee el catálogo en formato CSV: categoria,nombre,latitud,longitud (las líneas con # se ignoran)
+    public static PoiIndex load(InputStream in) throws IOException {
+        List<Poi> pois = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) continue;
+                // El nombre puede llevar comas: la categoría va al inicio y las coordenadas al final
+                int first = line.indexOf(',');
+                int last = line.lastIndexOf(',');
+                int beforeLast = line.lastIndexOf(',', last - 1);
+                if (first < 0 || beforeLast <= first) continue;
+                try {
+                    pois.add(new Poi(line.substring(first + 1, beforeLast).trim(),
+                            line.substring(0, first).trim().toLowerCase(Locale.ROOT),
+                            Double.parseDouble(line.substring(beforeLast + 1, last).trim()),
+                            Double.parseDouble(line.substring(last + 1).trim())));
+                } catch (NumberFormatException e) {
+                    // Línea con coordenadas inválidas: se omite
+                }
+            }
+        }
+        return new PoiIndex(pois);
+    }
+
+    // Proyección plana local en metros
+    private static double toX(double lng) {
+        return lng * METERS_PER_DEG_LNG * Math.cos(Math.toRadians(REFERENCE_LAT));
+    }
+
+    private static double toY(double lat) {
+        return lat * METERS_PER_DEG_LAT;
+    }
+
+    // Quita acentos y pasa a minúsculas
+    public static String normalize(String text) {
+        String decomposed = Normalizer.normalize(text.toLowerCase(Locale.ROOT), Normalizer.Form.NFD);
+        return decomposed.replaceAll("\\p{M}+", "");
+    }
+
+    // Devuelve la categoría que nombra el texto dictado, o null si no es una búsqueda por categoría.
+    // Solo cuenta como búsqueda la categoría sola o con palabras genéricas ("una farmacia",
+    // "el cajero más cercano"); "Mercado Municipal" o "Banco Azteca" nombran un lugar concreto
+    public static String categoryFor(String text) {
+        if (text == null) return null;
+        String category = null;
+        for (String word : normalize(text).split("[^a-z0-9]+")) {
+            if (word.isEmpty() || GENERIC_WORDS.contains(word)) continue;
+            String named = SYNONYMS.get(word);
+            if (named == null || (category != null && !category.equals(named))) return null;
+            category = named;
+        }
+        return category;
+    }
+
+    // Palabras de categoría y nombres de los puntos: lo que el usuario puede dictar como destino
+    public List<String> getVocabulary() {
+        List<String> words = new ArrayList<>(SYNONYMS.keySet());
+        for (Category category : categories.values()) {
+            for (Poi poi : category.pois) words.add(poi.name);
+        }
+        return words;
+    }
+
+    // Todos los puntos del catálogo
+    public List<Poi> getPois() {
+        List<Poi> all = new ArrayList<>();
+        for (Category category : categories.values()) all.addAll(category.pois);
+        return all;
+    }
+
+    // Indica si el catálogo no tiene ningún punto
+    public boolean isEmpty() {
+        return categories.isEmpty();
+    }
+
+    // Indica si hay puntos cargados para la categoría
+    public boolean hasCategory(String category) {
+        return category != null && categories.containsKey(category);
+    }
+
+    // Los k puntos de la categoría más cercanos a (lat, lng), del más cercano al más lejano
+    public List<Poi> nearestPois(String category, double lat, double lng, int k) {
+        Category entry = category != null ? categories.get(category) : null;
+        if (entry == null || k <= 0) return Collections.emptyList();
+        int[] indices = new int[Math.min(k, entry.tree.size())];
+        double[] dist2 = new double[indices.length];
+        int found = entry.tree.nearest(toX(lng), toY(lat), indices.length, indices, dist2);
+        List<Poi> result = new ArrayList<>(found);
+        for (int i = 0; i < found; i++) {
+            result.add(entry.pois.get(indices[i]));
+        }
+        return result;
+    }
+
+    // Igual que nearestPois pero como opciones de destino para el diálogo de selección
+    public List<Route.DestinationOption> nearest(String category, LatLng from, int k) {
+        List<Poi> pois = nearestPois(category, from.latitude, from.longitude, k);
+        List<Route.DestinationOption> options = new ArrayList<>(pois.size());
+        for (Poi poi : pois) {
+            options.add(new Route.DestinationOption(poi.name, new LatLng(poi.latitude, poi.longitude)));
+        }
+        return options;
+    }
+}
@@ -0,0 +1,179 @@
+package com.example.segii.mapa.red;
+
+import android.content.Context;
+import android.net.ConnectivityManager;
+import android.net.Network;
+import android.net.NetworkCapabilities;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+
+import com.example.segii.mapa.registro.EventLog;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeoutException;
+import java.util.function.LongSupplier;
+
+// Estado de la conexión a internet según los callbacks de red del sistema (sin consultar en cada
+// solicitud), y cola de solicitudes que esperan a que vuelva una red validada.
+// En la cola hay a lo más una solicitud por clave: una nueva reemplaza a la anterior (que se
+// cancela), y las que esperan demasiado fallan al vencer su plazo, aunque la red no haya vuelto,
+// para que el usuario tenga una respuesta en vez de quedarse esperando.
+public class NetworkMonitor {
+    // Tiempo máximo que una solicitud espera en la cola (ms)
+    static final long MAX_QUEUE_MS = 2 * 60 * 1000L;
+    private static final String TAG = "NetworkMonitor";
+
+    // Instancia compartida por toda la app
+    private static NetworkMonitor shared;
+
+    // Programa una tarea después de un retraso (ms); devuelve con qué cancelarla
+    public interface Scheduler {
+        Runnable schedule(Runnable task, long delayMs);
+    }
+
+    // Solicitud en espera y el momento en que se encoló
+    private static final class Waiter {
+        final CompletableFuture<Void> future = new CompletableFuture<>();
+        final long queuedAt;
+
+        Waiter(long queuedAt) {
+            this.queuedAt = queuedAt;
+        }
+    }
+
+    private final LongSupplier clock;
+    private final Scheduler scheduler;
+    private final Map<String, Waiter> waiters = new LinkedHashMap<>();
+    private volatile boolean online;
+
+    // Devuelve la instancia compartida y la registra en el ConnectivityManager la primera vez
+    public static synchronized NetworkMonitor get(Context context) {
+        if (shared == null) {
+            ConnectivityManager connectivity = (ConnectivityManager) context.getApplicationContext()
+                    .getSystemService(Context.CONNECTIVITY_SERVICE);
+            // Estado inicial; después lo actualizan los callbacks
+            NetworkCapabilities capabilities = connectivity.getNetworkCapabilities(connectivity.getActiveNetwork());
+            Handler handler = new Handler(Looper.getMainLooper());
+            shared = new NetworkMonitor(isValidated(capabilities), SystemClock::elapsedRealtime, (task, delayMs) -> {
+                handler.postDelayed(task, delayMs);
+                return () -> handler.removeCallbacks(task);
+            });
+            connectivity.registerDefaultNetworkCallback(new ConnectivityManager.NetworkCallback() {
+                @Override
+                public void onCapabilitiesChanged(Network network, NetworkCapabilities capabilities) {
+                    shared.setOnline(isValidated(capabilities));
+                }
+
+                @Override
+                public void onLost(Network network) {
+                    shared.setOnline(false);
+                }
+            });
+        }
+        return shared;
+    }
+
+    // Constructor para indicar el estado inicial, el reloj monótono (ms) y dónde se programan los
+    // vencimientos de la cola
+    public NetworkMonitor(boolean online, LongSupplier clock, Scheduler scheduler) {
+        this.online = online;
+        this.clock = clock;
+        this.scheduler = scheduler;
+    }
+
+    // Red con internet que el sistema ya validó (no un portal cautivo ni una red sin salida)
+    private static boolean isValidated(NetworkCapabilities capabilities) {
+        return capabilities != null
+                && capabilities.hasCapability(NetworkCapabilities.NET_CAPABILITY_INTERNET)
+                && capabilities.hasCapability(NetworkCapabilities.NET_CAPABILITY_VALIDATED);
+    }
+
+    // Lectura sin costo del último estado reportado
+    public boolean isOnline() {
+        return online;
+    }
+
+    // Futuro que se completa cuando hay red (de inmediato si ya hay). Si ya había una solicitud
+    // en espera con la misma clave, esa se cancela: solo se envía la más reciente
+    public CompletableFuture<Void> awaitOnline(String key) {
+        if (online) return CompletableFuture.completedFuture(null);
+        Waiter waiter = new Waiter(clock.getAsLong());
+        Waiter stale;
+        synchronized (waiters) {
+            stale = waiters.remove(key);
+            waiters.put(key, waiter);
+        }
+        if (stale != null) stale.future.cancel(false);
+        // Vence aunque la red no vuelva
+        Runnable cancelExpiry = scheduler.schedule(() -> expire(key, waiter), MAX_QUEUE_MS);
+        // Al terminar de cualquier forma se quita el vencimiento; si quien espera se cancela, sale de la cola
+        waiter.future.whenComplete((result, error) -> {
+            cancelExpiry.run();
+            if (waiter.future.isCancelled()) {
+                synchronized (waiters) {
+                    waiters.remove(key, waiter);
+                }
+            }
+        });
+        // La red pudo volver mientras se encolaba
+        if (online) dispatch();
+        EventLog.i(TAG, "Solicitud en espera de red", key);
+        return waiter.future;
+    }
+
+    // Actualiza el estado (lo llama el callback de red); al volver la red despacha la cola en orden
+    public void setOnline(boolean online) {
+        boolean changed = this.online != online;
+        this.online = online;
+        if (changed) EventLog.i(TAG, "Conexión", online ? "disponible" : "perdida");
+        if (online) dispatch();
+    }
+
+    // Solicitudes en espera
+    public int getQueuedCount() {
+        synchronized (waiters) {
+            return waiters.size();
+        }
+    }
+
+    // Falla la solicitud si sigue en la cola al vencer su plazo
+    private void expire(String key, Waiter waiter) {
+        boolean removed;
+        synchronized (waiters) {
+            removed = waiters.remove(key, waiter);
+        }
+        if (removed) {
+            EventLog.i(TAG, "Solicitud vencida sin conexión", key);
+            waiter.future.completeExceptionally(timeout());
+        }
+    }
+
+    private static TimeoutException timeout() {
+        return new TimeoutException("La solicitud se canceló: pasó demasiado tiempo sin conexión");
+    }
+
+    private void dispatch() {
+        List<Waiter> ready = new ArrayList<>();
+        synchronized (waiters) {
+            for (Iterator<Waiter> it = waiters.values().iterator(); it.hasNext(); ) {
+                ready.add(it.next());
+                it.remove();
+            }
+        }
+        // Respaldo por si el vencimiento programado se retrasó (el dispositivo estuvo dormido)
+        long now = clock.getAsLong();
+        for (Waiter waiter : ready) {
+            if (now - waiter.queuedAt > MAX_QUEUE_MS) {
+                waiter.future.completeExceptionally(timeout());
+            } else {
+                waiter.future.complete(null);
+            }
+        }
+    }
+}
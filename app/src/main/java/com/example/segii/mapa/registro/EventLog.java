@@ -0,0 +1,253 @@
+package com.example.segii.mapa.registro;
+
+import android.os.Process;
+import android.util.Log;
+
+import com.example.segii.BuildConfig;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.regex.Pattern;
+
+// Registro de eventos asíncrono y acotado que reemplaza las llamadas a Log en las rutas críticas.
+// Quien registra solo copia referencias (mensaje fijo, valor, coordenadas) a un evento preasignado
+// de un buffer circular sin bloqueos; un hilo de baja prioridad arma el texto, recorta los valores
+// largos, oculta claves y tokens, y lo escribe en logcat. Si el buffer se llena, los eventos se
+// descartan y se cuentan en vez de frenar al hilo que registra.
+// En compilaciones release R8 elimina las llamadas a d() y sus argumentos (-assumenosideeffects en
+// proguard-rules.pro); en depuración d() revisa BuildConfig.DEBUG y el nivel de la etiqueta. Los
+// demás niveles sí llegan a release, por eso se pasa un mensaje fijo y el valor aparte, sin concatenar.
+public final class EventLog {
+    // Niveles (los mismos valores que android.util.Log)
+    public static final int DEBUG = Log.DEBUG;
+    public static final int INFO = Log.INFO;
+    public static final int WARN = Log.WARN;
+    public static final int ERROR = Log.ERROR;
+
+    // Eventos en el buffer circular (potencia de dos)
+    static final int DEFAULT_CAPACITY = 1024;
+    // Caracteres máximos de un valor (URL, JSON) en el texto final
+    static final int MAX_VALUE_CHARS = 512;
+    // Cada cuánto revisa el hilo de escritura si hay eventos (ns)
+    private static final long DRAIN_INTERVAL_NS = 200_000_000L;
+
+    // Parámetros de URL y campos JSON cuyo valor nunca debe llegar al log
+    private static final Pattern SECRET_QUERY = Pattern.compile(
+            "([?&](?:key|api_?key|access_?key|token|signature)=)[^&\\s\"]*", Pattern.CASE_INSENSITIVE);
+    private static final Pattern SECRET_JSON = Pattern.compile(
+            "(\"(?:key|api_?key|access_?key|token)\"\\s*:\\s*\")[^\"]*", Pattern.CASE_INSENSITIVE);
+
+    // Destino de las líneas ya formateadas (logcat en la app, una lista en pruebas)
+    public interface Sink {
+        void write(int level, String tag, String message, Throwable error);
+    }
+
+    // Evento preasignado; sus campos se sobrescriben en cada vuelta del buffer
+    private static final class Event {
+        int level;
+        String tag;
+        String message;
+        Object value;
+        double x, y;
+        boolean hasPoint;
+        Throwable error;
+    }
+
+    // Instancia de la app; el hilo de escritura arranca con la primera llamada
+    private static final EventLog shared = new EventLog(DEFAULT_CAPACITY, EventLog::logcat, true);
+
+    // Nivel mínimo por etiqueta; las que no aparecen usan el nivel predeterminado
+    private static final Map<String, Integer> levels = new ConcurrentHashMap<>();
+    private static volatile int defaultLevel = BuildConfig.DEBUG ? DEBUG : INFO;
+
+    private final Event[] events;
+    private final int mask;
+    // Secuencia publicada de cada casilla (-1: vacía); el lector solo toma las ya publicadas
+    private final AtomicLongArray published;
+    // Siguiente secuencia a reservar por los que registran y siguiente a escribir por el lector
+    private final AtomicLong claimed = new AtomicLong();
+    private final AtomicLong drained = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    // Descartes ya avisados en el log (solo lo toca el lector)
+    private long reportedDrops;
+    private final Sink sink;
+    private final Thread drainer;
+
+    EventLog(int capacity, Sink sink, boolean startThread) {
+        if (Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("La capacidad debe ser potencia de dos: " + capacity);
+        }
+        this.events = new Event[capacity];
+        for (int i = 0; i < capacity; i++) events[i] = new Event();
+        this.mask = capacity - 1;
+        this.published = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) published.set(i, -1);
+        this.sink = sink;
+        if (startThread) {
+            drainer = new Thread(this::drainLoop, "registro");
+            drainer.setDaemon(true);
+            drainer.start();
+        } else {
+            drainer = null;
+        }
+    }
+
+    // ---- API estática usada por la app ----
+
+    public static void d(String tag, String message) {
+        if (BuildConfig.DEBUG && isLoggable(tag, DEBUG)) shared.post(DEBUG, tag, message, null, 0, 0, false, null);
+    }
+
+    // El valor se convierte a texto (y se recorta) en el hilo de escritura, no aquí
+    public static void d(String tag, String message, Object value) {
+        if (BuildConfig.DEBUG && isLoggable(tag, DEBUG)) shared.post(DEBUG, tag, message, value, 0, 0, false, null);
+    }
+
+    // Coordenadas sin crear objetos ni concatenar
+    public static void d(String tag, String message, double lat, double lng) {
+        if (BuildConfig.DEBUG && isLoggable(tag, DEBUG)) shared.post(DEBUG, tag, message, null, lat, lng, true, null);
+    }
+
+    public static void i(String tag, String message) {
+        if (isLoggable(tag, INFO)) shared.post(INFO, tag, message, null, 0, 0, false, null);
+    }
+
+    public static void i(String tag, String message, Object value) {
+        if (isLoggable(tag, INFO)) shared.post(INFO, tag, message, value, 0, 0, false, null);
+    }
+
+    public static void w(String tag, String message, Object value) {
+        if (isLoggable(tag, WARN)) shared.post(WARN, tag, message, value, 0, 0, false, null);
+    }
+
+    public static void e(String tag, String message) {
+        if (isLoggable(tag, ERROR)) shared.post(ERROR, tag, message, null, 0, 0, false, null);
+    }
+
+    public static void e(String tag, String message, Object value) {
+        if (isLoggable(tag, ERROR)) shared.post(ERROR, tag, message, value, 0, 0, false, null);
+    }
+
+    public static void e(String tag, String message, Throwable error) {
+        if (isLoggable(tag, ERROR)) shared.post(ERROR, tag, message, null, 0, 0, false, error);
+    }
+
+    // Cambia el nivel mínimo de una etiqueta (por ejemplo, silenciar "DirectionsAPI" en pruebas de campo)
+    public static void setLevel(String tag, int level) {
+        levels.put(tag, level);
+    }
+
+    // Nivel para las etiquetas sin nivel propio
+    public static void setDefaultLevel(int level) {
+        defaultLevel = level;
+    }
+
+    public static boolean isLoggable(String tag, int level) {
+        Integer min = levels.get(tag);
+        return level >= (min != null ? min : defaultLevel);
+    }
+
+    // Escribe de inmediato lo pendiente (antes de cerrar la app o de un fallo esperado)
+    public static void flush() {
+        shared.drain();
+    }
+
+    // Eventos descartados por buffer lleno desde el inicio
+    public static long getDroppedCount() {
+        return shared.dropped.get();
+    }
+
+    // ---- Buffer circular ----
+
+    // Reserva una casilla, copia las referencias y la publica. Nunca bloquea: si el lector va
+    // una vuelta completa atrás, el evento se descarta
+    boolean post(int level, String tag, String message, Object value, double x, double y, boolean hasPoint,
+                 Throwable error) {
+        long seq;
+        do {
+            seq = claimed.get();
+            if (seq - drained.get() >= events.length) {
+                dropped.incrementAndGet();
+                return false;
+            }
+        } while (!claimed.compareAndSet(seq, seq + 1));
+
+        Event event = events[(int) seq & mask];
+        event.level = level;
+        event.tag = tag;
+        event.message = message;
+        event.value = value;
+        event.x = x;
+        event.y = y;
+        event.hasPoint = hasPoint;
+        event.error = error;
+        published.lazySet((int) seq & mask, seq);
+        // Los errores se escriben cuanto antes
+        if (level >= ERROR && drainer != null) LockSupport.unpark(drainer);
+        return true;
+    }
+
+    // Formatea y escribe los eventos publicados en orden; un solo lector a la vez
+    synchronized int drain() {
+        int written = 0;
+        long seq = drained.get();
+        while (published.get((int) seq & mask) == seq) {
+            Event event = events[(int) seq & mask];
+            int level = event.level;
+            String tag = event.tag;
+            String text = format(event);
+            Throwable error = event.error;
+            // Suelta las referencias (payloads grandes) antes de liberar la casilla
+            event.value = null;
+            event.error = null;
+            drained.lazySet(++seq);
+            sink.write(level, tag, text, error);
+            written++;
+        }
+        long lost = dropped.get() - reportedDrops;
+        if (lost > 0) {
+            reportedDrops += lost;
+            sink.write(WARN, "EventLog", lost + " eventos descartados (buffer lleno)", null);
+        }
+        return written;
+    }
+
+    private void drainLoop() {
+        Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+        while (true) {
+            drain();
+            LockSupport.parkNanos(this, DRAIN_INTERVAL_NS);
+        }
+    }
+
+    private static String format(Event event) {
+        if (event.value == null && !event.hasPoint) return event.message;
+        StringBuilder text = new StringBuilder(event.message.length() + 64);
+        text.append(event.message).append(": ");
+        if (event.hasPoint) {
+            text.append('(').append(event.x).append(", ").append(event.y).append(')');
+        } else {
+            text.append(redact(truncate(String.valueOf(event.value))));
+        }
+        return text.toString();
+    }
+
+    // Recorta valores largos (respuestas JSON completas) dejando el inicio y el tamaño omitido
+    static String truncate(String value) {
+        if (value.length() <= MAX_VALUE_CHARS) return value;
+        return value.substring(0, MAX_VALUE_CHARS) + "… (+" + (value.length() - MAX_VALUE_CHARS) + " caracteres)";
+    }
+
+    // Oculta claves de API y tokens en URLs y JSON
+    static String redact(String value) {
+        String result = SECRET_QUERY.matcher(value).replaceAll("$1***");
+        return SECRET_JSON.matcher(result).replaceAll("$1***");
+    }
+
+    private static void logcat(int level, String tag, String message, Throwable error) {
+        Log.println(level, tag, error == null ? message : message + '\n' + Log.getStackTraceString(error));
+    }
+}
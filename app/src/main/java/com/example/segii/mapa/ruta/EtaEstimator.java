@@ -0,0 +1,145 @@
+package com.example.segii.mapa.ruta;
+
+import java.util.List;
+import java.util.TimeZone;
+
+// Tiempo restante de la ruta calculado en el dispositivo. Al empezar se arma el tiempo acumulado
+// hasta cada punto con la velocidad aprendida de cada tramo (SpeedProfile) mezclada con la de los
+// pasos de Directions según cuántas veces se ha recorrido; así cada fix solo avanza un cursor e
+// interpola, sin volver a pedir la ruta. Mientras se avanza, el tiempo real que tomó cada tramo
+// se registra en el perfil para las siguientes rutas.
+// Se usa desde un solo hilo (el principal del servicio de navegación).
+public class EtaEstimator {
+    // Muestras aprendidas con las que el tramo pesa lo mismo que la estimación de Directions
+    private static final double LEARNED_HALF_WEIGHT = 3;
+    // Velocidad cuando el paso no trae duración (m/s, caminando)
+    private static final double FALLBACK_SPEED = 1.4;
+    // Velocidades que se aceptan como recorrido real (fuera del rango: parado o GPS saltando)
+    private static final double MIN_RECORD_SPEED = 0.5;
+    private static final double MAX_RECORD_SPEED = 45;
+    // Distancia mínima recorrida dentro de un tramo para registrar su velocidad (m)
+    private static final double MIN_RECORD_METERS = 30;
+    // Tiempo máximo dentro de un tramo (ms); más que eso fue una parada, no el tránsito
+    private static final long MAX_RECORD_MILLIS = 5 * 60_000L;
+    private static final long MILLIS_PER_HOUR = 3_600_000L;
+
+    private final SpeedProfile profile;
+    private final TimeZone timeZone;
+    private final double[] cumulativeMeters;
+    // Segundos estimados desde el inicio hasta cada punto
+    private final double[] cumulativeSeconds;
+    // Tramo del perfil al que pertenece cada segmento [i, i+1]
+    private final long[] segmentKeys;
+    // Segmento donde quedó el último fix (avanza con la posición, casi nunca retrocede)
+    private int cursor;
+    private double remainingSeconds;
+    // Tramo que se está recorriendo: desde dónde y cuándo se entró (-1 sin tramo)
+    private long cellKey;
+    private double cellStartMeters;
+    private long cellStartMillis = -1;
+
+    public EtaEstimator(RouteData route, SpeedProfile profile, long nowMillis) {
+        this(route, profile, nowMillis, TimeZone.getDefault());
+    }
+
+    EtaEstimator(RouteData route, SpeedProfile profile, long nowMillis, TimeZone timeZone) {
+        this.profile = profile;
+        this.timeZone = timeZone;
+        cumulativeMeters = route.getCumulativeMeters();
+        int n = cumulativeMeters.length;
+        cumulativeSeconds = new double[n];
+        segmentKeys = new long[Math.max(0, n - 1)];
+        int bucket = bucketAt(nowMillis);
+        int[] coords = route.getCoordsE5();
+        double cosLat = Math.cos(Math.toRadians((route.minLatE5 + route.maxLatE5) / 2.0 / RouteData.E5));
+        List<RouteStep> steps = route.steps;
+        int step = 0;
+        for (int i = 0; i + 1 < n; i++) {
+            // Paso de Directions que contiene el segmento
+            while (step + 1 < steps.size() && steps.get(step + 1).pointStart <= i) step++;
+            double length = cumulativeMeters[i + 1] - cumulativeMeters[i];
+            if (length <= 0) {
+                // Punto repetido entre pasos: hereda el tramo anterior
+                segmentKeys[i] = i > 0 ? segmentKeys[i - 1] : 0;
+                cumulativeSeconds[i + 1] = cumulativeSeconds[i];
+                continue;
+            }
+            int dLat = coords[2 * i + 2] - coords[2 * i];
+            int dLng = coords[2 * i + 3] - coords[2 * i + 1];
+            double heading = Math.toDegrees(Math.atan2(dLng * cosLat, dLat));
+            long key = SpeedProfile.key(coords[2 * i] + dLat / 2, coords[2 * i + 1] + dLng / 2, heading);
+            segmentKeys[i] = key;
+            double speed = blendedSpeed(steps.isEmpty() ? null : steps.get(step), key, bucket);
+            cumulativeSeconds[i + 1] = cumulativeSeconds[i] + length / speed;
+        }
+        remainingSeconds = getTotalSeconds();
+    }
+
+    // Velocidad esperada en el segmento: la de Directions corregida por lo aprendido en ese tramo
+    private double blendedSpeed(RouteStep step, long key, int bucket) {
+        double directions = step != null && step.durationSeconds > 0 && step.distanceMeters > 0
+                ? (double) step.distanceMeters / step.durationSeconds : Double.NaN;
+        int samples = profile.samples(key, bucket);
+        if (samples == 0) return Double.isNaN(directions) ? FALLBACK_SPEED : directions;
+        double learned = profile.speed(key, bucket);
+        if (Double.isNaN(directions)) return learned;
+        double weight = samples / (samples + LEARNED_HALF_WEIGHT);
+        return weight * learned + (1 - weight) * directions;
+    }
+
+    // Actualiza con la distancia recorrida sobre la ruta (-1 fuera de ella); devuelve los segundos restantes
+    public double onProgress(double metersAlong, long nowMillis) {
+        int last = cumulativeMeters.length - 1;
+        if (last < 1) return remainingSeconds = 0;
+        if (metersAlong < 0) {
+            // Fuera de la ruta el tiempo del tramo no es válido
+            cellStartMillis = -1;
+            return remainingSeconds;
+        }
+        while (cursor < last - 1 && cumulativeMeters[cursor + 1] <= metersAlong) cursor++;
+        while (cursor > 0 && cumulativeMeters[cursor] > metersAlong) cursor--;
+        double length = cumulativeMeters[cursor + 1] - cumulativeMeters[cursor];
+        double fraction = length > 0 ? Math.min(1, (metersAlong - cumulativeMeters[cursor]) / length) : 1;
+        double elapsed = cumulativeSeconds[cursor] + fraction * (cumulativeSeconds[cursor + 1] - cumulativeSeconds[cursor]);
+        remainingSeconds = Math.max(0, cumulativeSeconds[last] - elapsed);
+        trackCell(segmentKeys[cursor], metersAlong, nowMillis);
+        return remainingSeconds;
+    }
+
+    // Al salir de un tramo registra la velocidad con la que se recorrió
+    private void trackCell(long key, double metersAlong, long nowMillis) {
+        if (cellStartMillis >= 0 && key == cellKey) return;
+        if (cellStartMillis >= 0 && cellKey != 0) {
+            double meters = metersAlong - cellStartMeters;
+            long millis = nowMillis - cellStartMillis;
+            if (meters >= MIN_RECORD_METERS && millis > 0 && millis <= MAX_RECORD_MILLIS) {
+                double speed = meters * 1000 / millis;
+                if (speed >= MIN_RECORD_SPEED && speed <= MAX_RECORD_SPEED) {
+                    profile.record(cellKey, bucketAt(nowMillis), speed, dayAt(nowMillis));
+                }
+            }
+        }
+        cellKey = key;
+        cellStartMeters = metersAlong;
+        cellStartMillis = nowMillis;
+    }
+
+    // Segundos restantes según el último fix
+    public double getRemainingSeconds() {
+        return remainingSeconds;
+    }
+
+    // Segundos estimados para toda la ruta
+    public double getTotalSeconds() {
+        return cumulativeSeconds.length > 0 ? cumulativeSeconds[cumulativeSeconds.length - 1] : 0;
+    }
+
+    private int bucketAt(long millis) {
+        long local = millis + timeZone.getOffset(millis);
+        return SpeedProfile.bucketForHour((int) (Math.floorMod(local, 24 * MILLIS_PER_HOUR) / MILLIS_PER_HOUR));
+    }
+
+    private int dayAt(long millis) {
+        return (int) Math.floorDiv(millis + timeZone.getOffset(millis), 24 * MILLIS_PER_HOUR);
+    }
+}
@@ -0,0 +1,59 @@
+package com.example.segii.mapa.ruta;
+
+// Clase que decodifica el formato "encoded polyline" de Google a coordenadas enteras (grados * 1E5)
+public final class PolylineCodec {
+
+    private PolylineCodec() {
+    }
+
+    // Decodifica la polilínea completa a un arreglo intercalado [lat, lng, ...]
+    public static int[] decode(String encoded) {
+        int[] out = new int[countPoints(encoded) * 2];
+        decodeInto(encoded, out, 0);
+        return out;
+    }
+
+    // Decodifica la polilínea en out a partir de offset; devuelve el número de puntos escritos
+    public static int decodeInto(String encoded, int[] out, int offset) {
+        int index = 0, len = encoded.length();
+        int lat = 0, lng = 0;
+        int count = 0;
+
+        while (index < len) {
+            int b, shift = 0, result = 0;
+            // Decodifica la latitud
+            do {
+                b = encoded.charAt(index++) - 63;
+                result |= (b & 0x1f) << shift;
+                shift += 5;
+            } while (b >= 0x20);
+            lat += ((result & 1) != 0 ? ~(result >> 1) : (result >> 1));
+
+            shift = 0;
+            result = 0;
+            // Decodifica la longitud
+            do {
+                b = encoded.charAt(index++) - 63;
+                result |= (b & 0x1f) << shift;
+                shift += 5;
+            } while (b >= 0x20);
+            lng += ((result & 1) != 0 ? ~(result >> 1) : (result >> 1));
+
+            out[offset++] = lat;
+            out[offset++] = lng;
+            count++;
+        }
+        return count;
+    }
+
+    // Cuenta los puntos de la polilínea sin decodificarlos (cada valor termina en un carácter < 0x20 + 63)
+    public static int countPoints(String encoded) {
+        int values = 0;
+        for (int i = 0, len = encoded.length(); i < len; i++) {
+            if (encoded.charAt(i) - 63 < 0x20) {
+                values++;
+            }
+        }
+        return values / 2;
+    }
+}
@@ -0,0 +1,181 @@
+package com.example.segii.mapa.ruta;
+
+import android.content.Context;
+import android.os.SystemClock;
+
+import com.example.segii.mapa.registro.EventLog;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.LongSupplier;
+
+// Controla cuántas solicitudes se hacen a las APIs de Google (se cobran por solicitud).
+// Cada API tiene una cubeta de fichas que limita las ráfagas y un presupuesto diario que se guarda
+// en disco para sobrevivir a reinicios. Los recálculos dejan fichas y presupuesto de reserva, así
+// nunca agotan lo que necesita una solicitud del usuario. El archivo se escribe fuera del candado.
+public class QuotaGovernor {
+    // APIs con cuota propia
+    public enum Api { GEOCODING, DIRECTIONS }
+
+    // Clases de solicitud, de mayor a menor prioridad
+    public enum Priority { INTERACTIVE, REROUTE }
+
+    // Resultado de pedir permiso para una solicitud
+    public enum Decision { GRANTED, RATE_LIMITED, BUDGET_EXHAUSTED }
+
+    // Fichas máximas de la cubeta (ráfaga) y tiempo para recuperar una ficha (ms)
+    static final int BURST = 6;
+    static final long REFILL_MS = 2000;
+    // Fichas que cada prioridad debe dejar en la cubeta para las de mayor prioridad
+    private static final int[] RESERVED_TOKENS = {0, 2};
+    // Fracción del presupuesto diario que puede usar cada prioridad
+    private static final double[] BUDGET_SHARE = {1.0, 0.9};
+    // Solicitudes por día de cada API
+    static final int[] DEFAULT_DAILY_BUDGET = {300, 600};
+
+    // Archivo con el uso del día dentro de filesDir
+    private static final String FILE_NAME = "cuota_apis.txt";
+    private static final String TAG = "QuotaGovernor";
+
+    // Instancia compartida por toda la app (el presupuesto es uno solo)
+    private static QuotaGovernor shared;
+
+    private final File file;
+    // Reloj de pared (solo para saber el día) y reloj monótono para recargar la cubeta: si la hora
+    // del sistema se corrige hacia atrás, la cubeta no se vacía
+    private final LongSupplier wallClock;
+    private final LongSupplier elapsedClock;
+    private final int[] dailyBudget;
+    // Escritura del archivo: solo la última línea pendiente llega a disco (varias concesiones seguidas
+    // se juntan en una escritura)
+    private final Executor writer;
+    private final AtomicReference<String> pendingLine = new AtomicReference<>();
+    private final AtomicBoolean writeScheduled = new AtomicBoolean();
+    private final double[] tokens = new double[Api.values().length];
+    private final long[] refilledAt = new long[Api.values().length];
+    private final int[] usedToday = new int[Api.values().length];
+    private final SimpleDateFormat dayFormat = new SimpleDateFormat("yyyyMMdd", Locale.US);
+    private String day;
+
+    // Devuelve la instancia compartida, cargando el uso del día guardado
+    public static synchronized QuotaGovernor get(Context context) {
+        if (shared == null) {
+            shared = new QuotaGovernor(new File(context.getApplicationContext().getFilesDir(), FILE_NAME),
+                    System::currentTimeMillis, SystemClock::elapsedRealtime, DEFAULT_DAILY_BUDGET,
+                    Executors.newSingleThreadExecutor());
+        }
+        return shared;
+    }
+
+    // Constructor para indicar archivo, relojes de pared y monótono (ms), presupuesto diario por API
+    // y el executor (de un solo hilo) que escribe el archivo
+    public QuotaGovernor(File file, LongSupplier wallClock, LongSupplier elapsedClock, int[] dailyBudget,
+                         Executor writer) {
+        this.file = file;
+        this.writer = writer;
+        this.wallClock = wallClock;
+        this.elapsedClock = elapsedClock;
+        this.dailyBudget = dailyBudget.clone();
+        long elapsed = elapsedClock.getAsLong();
+        for (int i = 0; i < tokens.length; i++) {
+            tokens[i] = BURST;
+            refilledAt[i] = elapsed;
+        }
+        day = dayFormat.format(new Date(wallClock.getAsLong()));
+        load();
+    }
+
+    // Pide permiso para una solicitud; si se concede, gasta una ficha y una unidad del presupuesto.
+    // Nunca bloquea: quien llama decide si reintenta o avisa al usuario
+    public synchronized Decision acquire(Api api, Priority priority) {
+        int a = api.ordinal(), p = priority.ordinal();
+        rollDay(wallClock.getAsLong());
+        if (usedToday[a] >= dailyBudget[a] * BUDGET_SHARE[p]) {
+            return Decision.BUDGET_EXHAUSTED;
+        }
+        // Recarga la cubeta según el tiempo transcurrido
+        long elapsed = elapsedClock.getAsLong();
+        tokens[a] = Math.min(BURST, tokens[a] + Math.max(0, elapsed - refilledAt[a]) / (double) REFILL_MS);
+        refilledAt[a] = elapsed;
+        if (tokens[a] < 1 + RESERVED_TOKENS[p]) {
+            return Decision.RATE_LIMITED;
+        }
+        tokens[a] -= 1;
+        usedToday[a]++;
+        save();
+        return Decision.GRANTED;
+    }
+
+    // Solicitudes concedidas hoy para la API
+    public synchronized int getUsedToday(Api api) {
+        rollDay(wallClock.getAsLong());
+        return usedToday[api.ordinal()];
+    }
+
+    // Al cambiar el día el presupuesto vuelve a empezar
+    private void rollDay(long now) {
+        String today = dayFormat.format(new Date(now));
+        if (!today.equals(day)) {
+            day = today;
+            for (int i = 0; i < usedToday.length; i++) usedToday[i] = 0;
+            save();
+        }
+    }
+
+    // Formato del archivo: "día uso_geocoding uso_directions"
+    private void load() {
+        if (!file.exists()) return;
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+            String line = reader.readLine();
+            if (line == null) return;
+            String[] parts = line.trim().split(" ");
+            if (!parts[0].equals(day) || parts.length != usedToday.length + 1) return; // Uso de otro día
+            for (int i = 0; i < usedToday.length; i++) {
+                usedToday[i] = Integer.parseInt(parts[i + 1]);
+            }
+        } catch (IOException | NumberFormatException e) {
+            EventLog.e(TAG, "No se pudo leer el uso de las APIs", e);
+        }
+    }
+
+    // Deja el uso actual pendiente de escribir; se llama con el candado, pero no toca el disco
+    private void save() {
+        StringBuilder line = new StringBuilder(day);
+        for (int used : usedToday) line.append(' ').append(used);
+        pendingLine.set(line.toString());
+        if (writeScheduled.compareAndSet(false, true)) {
+            writer.execute(this::write);
+        }
+    }
+
+    // Guarda la última línea pendiente de forma atómica (archivo temporal + rename), como RouteStore
+    private void write() {
+        writeScheduled.set(false);
+        String line = pendingLine.getAndSet(null);
+        if (line == null) return; // Ya la escribió una tarea anterior
+        File tmp = new File(file.getPath() + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(tmp)) {
+            out.write(line.getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            EventLog.e(TAG, "No se pudo guardar el uso de las APIs", e);
+            return;
+        }
+        if (!tmp.renameTo(file)) {
+            EventLog.e(TAG, "No se pudo reemplazar el uso de las APIs");
+            tmp.delete();
+        }
+    }
+}
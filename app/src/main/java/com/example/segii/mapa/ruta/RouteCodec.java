@@ -0,0 +1,155 @@
+package com.example.segii.mapa.ruta;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+// Clase que serializa rutas a un formato binario compacto.
+// Formato (versión 1):
+//   int magic "SGRT" | byte versión | long createdAt
+//   origen y destino (lat, lng) como varints zigzag
+//   límites: minLat, minLng zigzag + alto y ancho como varints sin signo
+//   nombre del destino (varint longitud + UTF-8)
+//   número de puntos | bytes de la sección de puntos | deltas zigzag respecto al punto anterior
+//   número de pasos | por paso: delta de inicio, puntos, metros, segundos, maniobra, instrucción
+// Las coordenadas se guardan en grados * 1E5, la misma precisión que usa la API de Directions.
+public final class RouteCodec {
+    // Encabezado y versión del formato
+    static final int MAGIC = 0x53475254;
+    static final byte VERSION = 1;
+
+    private RouteCodec() {
+    }
+
+    // Serializa la ruta a un arreglo de bytes
+    public static byte[] encode(RouteData route) {
+        // Estimación inicial: ~3 bytes por coordenada más texto de los pasos
+        Writer out = new Writer(64 + route.getPointCount() * 6 + route.steps.size() * 48);
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+        out.writeLong(route.createdAtMillis);
+
+        // Origen y destino
+        out.writeSignedVarint(route.originLatE5);
+        out.writeSignedVarint(route.originLngE5);
+        out.writeSignedVarint(route.destLatE5);
+        out.writeSignedVarint(route.destLngE5);
+
+        // Límites: esquina mínima más tamaño (siempre positivo)
+        out.writeSignedVarint(route.minLatE5);
+        out.writeSignedVarint(route.minLngE5);
+        out.writeVarint(route.maxLatE5 - route.minLatE5);
+        out.writeVarint(route.maxLngE5 - route.minLngE5);
+
+        out.writeString(route.destinationName);
+
+        // Sección de puntos: se escribe aparte para conocer su tamaño y permitir saltarla al leer
+        int pointCount = route.getPointCount();
+        Writer points = new Writer(pointCount * 4 + 8);
+        int prevLat = route.minLatE5, prevLng = route.minLngE5;
+        int[] coords = route.getCoordsE5();
+        for (int i = 0; i < coords.length; i += 2) {
+            points.writeSignedVarint(coords[i] - prevLat);
+            points.writeSignedVarint(coords[i + 1] - prevLng);
+            prevLat = coords[i];
+            prevLng = coords[i + 1];
+        }
+        out.writeVarint(pointCount);
+        out.writeVarint(points.size);
+        out.writeBytes(points.buf, 0, points.size);
+
+        // Sección de pasos
+        out.writeVarint(route.steps.size());
+        int prevStart = 0;
+        for (RouteStep step : route.steps) {
+            out.writeVarint(step.pointStart - prevStart);
+            out.writeVarint(step.pointCount);
+            out.writeVarint(step.distanceMeters);
+            out.writeVarint(step.durationSeconds);
+            out.writeString(step.maneuver);
+            out.writeString(step.instruction);
+            prevStart = step.pointStart;
+        }
+        return out.toByteArray();
+    }
+
+    // Deserializa por completo una ruta desde un arreglo de bytes
+    public static RouteData decode(byte[] data) {
+        return RouteReader.wrap(ByteBuffer.wrap(data)).toRouteData();
+    }
+
+    // Codifica un entero con signo usando zigzag (los valores pequeños negativos ocupan pocos bytes)
+    static int zigzag(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    // Decodifica un entero zigzag
+    static int unzigzag(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    // Buffer de escritura que crece según se necesita
+    private static final class Writer {
+        byte[] buf;
+        int size;
+
+        Writer(int capacity) {
+            buf = new byte[Math.max(16, capacity)];
+        }
+
+        // Asegura espacio para n bytes adicionales
+        void ensure(int n) {
+            if (size + n > buf.length) {
+                buf = Arrays.copyOf(buf, Math.max(buf.length * 2, size + n));
+            }
+        }
+
+        void writeByte(int b) {
+            ensure(1);
+            buf[size++] = (byte) b;
+        }
+
+        void writeInt(int v) {
+            ensure(4);
+            buf[size++] = (byte) (v >>> 24);
+            buf[size++] = (byte) (v >>> 16);
+            buf[size++] = (byte) (v >>> 8);
+            buf[size++] = (byte) v;
+        }
+
+        void writeLong(long v) {
+            writeInt((int) (v >>> 32));
+            writeInt((int) v);
+        }
+
+        // Varint sin signo de 7 bits por byte
+        void writeVarint(int v) {
+            ensure(5);
+            while ((v & ~0x7F) != 0) {
+                buf[size++] = (byte) ((v & 0x7F) | 0x80);
+                v >>>= 7;
+            }
+            buf[size++] = (byte) v;
+        }
+
+        void writeSignedVarint(int v) {
+            writeVarint(zigzag(v));
+        }
+
+        void writeBytes(byte[] src, int offset, int length) {
+            ensure(length);
+            System.arraycopy(src, offset, buf, size, length);
+            size += length;
+        }
+
+        void writeString(String s) {
+            byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+            writeVarint(bytes.length);
+            writeBytes(bytes, 0, bytes.length);
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(buf, size);
+        }
+    }
+}
@@ -0,0 +1,241 @@
+package com.example.segii.mapa.ruta;
+
+import com.google.android.gms.maps.model.LatLng;
+import com.google.android.gms.maps.model.LatLngBounds;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+// Clase que representa una ruta ya calculada: geometría, pasos, origen, destino y límites.
+// La geometría puede venir ya decodificada (ruta restaurada de disco) o como las polilíneas
+// codificadas de cada paso (respuesta de Directions); en el segundo caso cada paso se decodifica
+// solo cuando se necesita, así el primer dibujo de una ruta larga no paga la ruta completa.
+public class RouteData {
+    // Factor de escala de las coordenadas (la API de Directions codifica con precisión 1E5)
+    public static final double E5 = 1E5;
+
+    // Nombre del destino tal como se muestra al usuario
+    public final String destinationName;
+    // Origen y destino en grados * 1E5
+    public final int originLatE5, originLngE5;
+    public final int destLatE5, destLngE5;
+    // Pasos de la ruta con su metadata
+    public final List<RouteStep> steps;
+    // Límites de la ruta (incluye el origen) en grados * 1E5
+    public final int minLatE5, minLngE5, maxLatE5, maxLngE5;
+    // Momento en que se calculó la ruta (milisegundos desde epoch)
+    public final long createdAtMillis;
+
+    // Coordenadas de la ruta intercaladas [lat0, lng0, lat1, lng1, ...] en grados * 1E5.
+    // Se reserva completo desde el inicio y cada paso se llena al decodificarlo.
+    private final int[] coordsE5;
+    // Polilínea codificada de cada paso; se pone en null cuando el paso ya está decodificado
+    private final String[] stepPolylines;
+    // Número de pasos aún sin decodificar
+    private int remainingSteps;
+    // Indica que toda la geometría está decodificada
+    private volatile boolean complete;
+
+    // Lista de LatLng construida solo cuando el mapa la necesita
+    private List<LatLng> points;
+    // Distancia acumulada (m) desde el inicio hasta cada punto, calculada al pedirla
+    private double[] cumulativeMeters;
+
+    // Constructor para una geometría ya decodificada; calcula los límites a partir de ella
+    public RouteData(String destinationName, int originLatE5, int originLngE5, int destLatE5, int destLngE5,
+                     int[] coordsE5, List<RouteStep> steps, long createdAtMillis) {
+        this.destinationName = destinationName != null ? destinationName : "";
+        this.originLatE5 = originLatE5;
+        this.originLngE5 = originLngE5;
+        this.destLatE5 = destLatE5;
+        this.destLngE5 = destLngE5;
+        this.coordsE5 = coordsE5;
+        this.stepPolylines = null;
+        this.complete = true;
+        this.steps = Collections.unmodifiableList(new ArrayList<>(steps));
+        this.createdAtMillis = createdAtMillis;
+
+        // Recorre la geometría una sola vez para obtener los límites
+        int minLat = originLatE5, maxLat = originLatE5;
+        int minLng = originLngE5, maxLng = originLngE5;
+        for (int i = 0; i < coordsE5.length; i += 2) {
+            minLat = Math.min(minLat, coordsE5[i]);
+            maxLat = Math.max(maxLat, coordsE5[i]);
+            minLng = Math.min(minLng, coordsE5[i + 1]);
+            maxLng = Math.max(maxLng, coordsE5[i + 1]);
+        }
+        this.minLatE5 = minLat;
+        this.minLngE5 = minLng;
+        this.maxLatE5 = maxLat;
+        this.maxLngE5 = maxLng;
+    }
+
+    // Constructor para una geometría sin decodificar: recibe la polilínea de cada paso y los
+    // límites que reporta la API (los pasos ya deben traer pointStart y pointCount)
+    public RouteData(String destinationName, int originLatE5, int originLngE5, int destLatE5, int destLngE5,
+                     List<RouteStep> steps, String[] stepPolylines,
+                     int minLatE5, int minLngE5, int maxLatE5, int maxLngE5, long createdAtMillis) {
+        this.destinationName = destinationName != null ? destinationName : "";
+        this.originLatE5 = originLatE5;
+        this.originLngE5 = originLngE5;
+        this.destLatE5 = destLatE5;
+        this.destLngE5 = destLngE5;
+        this.steps = Collections.unmodifiableList(new ArrayList<>(steps));
+        this.stepPolylines = stepPolylines.clone();
+        this.createdAtMillis = createdAtMillis;
+        // Los límites incluyen el origen, igual que en el constructor decodificado
+        this.minLatE5 = Math.min(minLatE5, originLatE5);
+        this.minLngE5 = Math.min(minLngE5, originLngE5);
+        this.maxLatE5 = Math.max(maxLatE5, originLatE5);
+        this.maxLngE5 = Math.max(maxLngE5, originLngE5);
+
+        int total = 0;
+        for (RouteStep step : steps) {
+            total = Math.max(total, step.pointStart + step.pointCount);
+        }
+        this.coordsE5 = new int[total * 2];
+        this.remainingSteps = steps.size();
+        this.complete = steps.isEmpty();
+    }
+
+    // Convierte grados a la representación entera de 1E5
+    public static int toE5(double degrees) {
+        return (int) Math.round(degrees * E5);
+    }
+
+    // Número de puntos de la geometría (se conoce sin decodificar)
+    public int getPointCount() {
+        return coordsE5.length / 2;
+    }
+
+    // Indica si toda la geometría ya está decodificada
+    public boolean isFullyDecoded() {
+        return complete;
+    }
+
+    // Decodifica los pasos [from, to) que aún no lo estén
+    public synchronized void decodeSteps(int from, int to) {
+        if (complete) return;
+        for (int i = from; i < to && i < steps.size(); i++) {
+            if (stepPolylines[i] != null) {
+                PolylineCodec.decodeInto(stepPolylines[i], coordsE5, 2 * steps.get(i).pointStart);
+                stepPolylines[i] = null;
+                remainingSteps--;
+            }
+        }
+        if (remainingSteps == 0) {
+            complete = true;
+        }
+    }
+
+    // Decodifica toda la geometría restante
+    public void decodeAll() {
+        decodeSteps(0, steps.size());
+    }
+
+    // Devuelve las coordenadas completas (decodifica lo que falte)
+    public int[] getCoordsE5() {
+        if (!complete) decodeAll();
+        return coordsE5;
+    }
+
+    // Número de pasos iniciales necesarios para cubrir la distancia dada (según la metadata)
+    public int stepsCovering(double meters) {
+        double sum = 0;
+        int count = 0;
+        while (count < steps.size() && sum < meters) {
+            sum += steps.get(count++).distanceMeters;
+        }
+        return Math.max(1, Math.min(count, steps.size()));
+    }
+
+    // Devuelve los puntos de los pasos [from, to) como LatLng, decodificando solo esos pasos
+    public List<LatLng> getPointsForSteps(int from, int to) {
+        to = Math.min(to, steps.size());
+        if (from >= to) return Collections.emptyList();
+        decodeSteps(from, to);
+        int start = steps.get(from).pointStart;
+        RouteStep last = steps.get(to - 1);
+        int end = last.pointStart + last.pointCount;
+        List<LatLng> list = new ArrayList<>(end - start);
+        for (int i = start; i < end; i++) {
+            list.add(new LatLng(coordsE5[2 * i] / E5, coordsE5[2 * i + 1] / E5));
+        }
+        return list;
+    }
+
+    // Latitud del punto i en grados
+    public double latAt(int i) {
+        return getCoordsE5()[2 * i] / E5;
+    }
+
+    // Longitud del punto i en grados
+    public double lngAt(int i) {
+        return getCoordsE5()[2 * i + 1] / E5;
+    }
+
+    // Devuelve la geometría como lista de LatLng para dibujarla en el mapa
+    public synchronized List<LatLng> getPoints() {
+        if (points == null) {
+            int[] coords = getCoordsE5();
+            List<LatLng> list = new ArrayList<>(getPointCount());
+            for (int i = 0; i < getPointCount(); i++) {
+                list.add(new LatLng(coords[2 * i] / E5, coords[2 * i + 1] / E5));
+            }
+            points = Collections.unmodifiableList(list);
+        }
+        return points;
+    }
+
+    // Devuelve la distancia acumulada en metros hasta cada punto de la geometría
+    public synchronized double[] getCumulativeMeters() {
+        if (cumulativeMeters == null) {
+            int[] coords = getCoordsE5();
+            int n = getPointCount();
+            double[] cum = new double[n];
+            // Aproximación equirectangular, suficiente para segmentos cortos de una ciudad
+            double metersPerE5Lat = 110_540.0 / E5;
+            double metersPerE5Lng = 111_320.0 * Math.cos(Math.toRadians((minLatE5 + maxLatE5) / 2.0 / E5)) / E5;
+            for (int i = 1; i < n; i++) {
+                double dy = (coords[2 * i] - coords[2 * i - 2]) * metersPerE5Lat;
+                double dx = (coords[2 * i + 1] - coords[2 * i - 1]) * metersPerE5Lng;
+                cum[i] = cum[i - 1] + Math.sqrt(dx * dx + dy * dy);
+            }
+            cumulativeMeters = cum;
+        }
+        return cumulativeMeters;
+    }
+
+    // Longitud total de la ruta en metros
+    public double getLengthMeters() {
+        double[] cum = getCumulativeMeters();
+        return cum.length > 0 ? cum[cum.length - 1] : 0;
+    }
+
+    // Memoria aproximada que ocupa la ruta ya decodificada (bytes), para el presupuesto de las cachés:
+    // coordenadas, lista de LatLng, distancias acumuladas y pasos con su instrucción
+    public int estimateBytes() {
+        int pointCount = getPointCount();
+        int bytes = 128 + pointCount * (2 * 4 + 40 + 8);
+        for (RouteStep step : steps) {
+            bytes += 64 + (step.instruction != null ? 2 * step.instruction.length() : 0);
+        }
+        return bytes;
+    }
+
+    // Devuelve los límites de la ruta sin necesidad de decodificar la geometría
+    public LatLngBounds getBounds() {
+        return new LatLngBounds(new LatLng(minLatE5 / E5, minLngE5 / E5), new LatLng(maxLatE5 / E5, maxLngE5 / E5));
+    }
+
+    // Devuelve el origen de la ruta
+    public LatLng getOrigin() {
+        return new LatLng(originLatE5 / E5, originLngE5 / E5);
+    }
+
+    // Devuelve el destino de la ruta
+    public LatLng getDestination() {
+        return new LatLng(destLatE5 / E5, destLngE5 / E5);
+    }
+}
@@ -0,0 +1,165 @@
+package com.example.segii.mapa.ruta;
+
+import com.google.android.gms.maps.model.LatLng;
+
+import java.util.AbstractList;
+import java.util.List;
+
+// Divide la geometría de la ruta en la parte recorrida y la que falta según la distancia avanzada.
+// Las dos partes son vistas sobre la misma lista de puntos (se crean una vez y se reutilizan), así
+// que actualizar el avance no copia la ruta: solo busca el segmento desde el anterior e interpola
+// el punto de corte.
+// Polyline.setPoints sí copia toda la lista que recibe, así que el mapa no dibuja las vistas
+// completas en cada cuadro: la ruta se parte en tramos de CHUNK_POINTS puntos que se dibujan una
+// vez, y solo el tramo donde está el corte se vuelve a enviar (activeTraveled/activeRemaining).
+public class RouteProgress {
+    // Avance mínimo (m) para volver a dibujar; menos que eso no se nota en pantalla
+    static final double MIN_STEP_METERS = 2.0;
+    // Segmentos por tramo; es lo más que se copia al mapa en un cuadro
+    public static final int CHUNK_POINTS = 128;
+
+    private final List<LatLng> points;
+    private final double[] cumulative;
+    // Último punto recorrido antes del corte y el punto de corte interpolado
+    private int split;
+    private LatLng cut;
+    private double drawnMeters = -1;
+
+    // Vistas reutilizables: [0..split] + corte, y corte + [split+1..n-1]
+    private final List<LatLng> traveled = new AbstractList<LatLng>() {
+        @Override
+        public LatLng get(int index) {
+            return index <= split ? points.get(index) : cut;
+        }
+
+        @Override
+        public int size() {
+            return cut == null ? 0 : split + 2;
+        }
+    };
+    private final List<LatLng> remaining = new AbstractList<LatLng>() {
+        @Override
+        public LatLng get(int index) {
+            if (cut == null) return points.get(index);
+            return index == 0 ? cut : points.get(split + index);
+        }
+
+        @Override
+        public int size() {
+            return cut == null ? points.size() : points.size() - split;
+        }
+    };
+
+    // Vistas del tramo del corte: [inicio del tramo..split] + corte, y corte + [split+1..fin del tramo]
+    private final List<LatLng> activeTraveled = new AbstractList<LatLng>() {
+        @Override
+        public LatLng get(int index) {
+            int start = chunkStart(activeChunk());
+            return start + index <= split ? points.get(start + index) : cut;
+        }
+
+        @Override
+        public int size() {
+            return cut == null ? 0 : split - chunkStart(activeChunk()) + 2;
+        }
+    };
+    private final List<LatLng> activeRemaining = new AbstractList<LatLng>() {
+        @Override
+        public LatLng get(int index) {
+            return index == 0 ? cut : points.get(split + index);
+        }
+
+        @Override
+        public int size() {
+            return cut == null ? 0 : chunkEnd(activeChunk()) - split + 1;
+        }
+    };
+
+    // Recibe los puntos de la ruta y la distancia acumulada hasta cada uno (RouteData.getCumulativeMeters)
+    public RouteProgress(List<LatLng> points, double[] cumulativeMeters) {
+        this.points = points;
+        this.cumulative = cumulativeMeters;
+    }
+
+    // Mueve el corte a la distancia recorrida; devuelve false si el cambio es demasiado pequeño
+    // para dibujarse (o la distancia no es válida) y las vistas no cambiaron
+    public boolean update(double metersAlong) {
+        int n = points.size();
+        if (metersAlong < 0 || n < 2) return false;
+        double meters = Math.min(metersAlong, cumulative[n - 1]);
+        if (drawnMeters >= 0 && Math.abs(meters - drawnMeters) < MIN_STEP_METERS) return false;
+
+        // Normalmente se avanza pocos segmentos: búsqueda lineal desde el corte anterior
+        int i = split;
+        if (cumulative[i] > meters) {
+            i = search(meters); // Retroceso (ajuste del GPS): búsqueda binaria
+        } else {
+            while (i < n - 2 && cumulative[i + 1] <= meters) i++;
+        }
+        double length = cumulative[i + 1] - cumulative[i];
+        double t = length > 0 ? (meters - cumulative[i]) / length : 0;
+        LatLng a = points.get(i), b = points.get(i + 1);
+        split = i;
+        cut = new LatLng(a.latitude + (b.latitude - a.latitude) * t, a.longitude + (b.longitude - a.longitude) * t);
+        drawnMeters = meters;
+        return true;
+    }
+
+    // Último índice con distancia acumulada <= meters (sin pasar del penúltimo punto)
+    private int search(double meters) {
+        int lo = 0, hi = points.size() - 2;
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            if (cumulative[mid] <= meters) lo = mid; else hi = mid - 1;
+        }
+        return lo;
+    }
+
+    // Puntos ya recorridos (vacía antes del primer avance)
+    public List<LatLng> traveled() {
+        return traveled;
+    }
+
+    // Puntos que faltan, empezando en el punto de corte
+    public List<LatLng> remaining() {
+        return remaining;
+    }
+
+    // Número de tramos en que se divide la ruta para dibujarla
+    public int chunkCount() {
+        return Math.max(1, (points.size() - 2) / CHUNK_POINTS + 1);
+    }
+
+    // Puntos del tramo (comparte el último punto con el inicio del siguiente para que la línea no se corte)
+    public List<LatLng> chunk(int index) {
+        return points.subList(chunkStart(index), chunkEnd(index) + 1);
+    }
+
+    // Tramo que contiene el corte (0 antes del primer avance)
+    public int activeChunk() {
+        return Math.min(split / CHUNK_POINTS, chunkCount() - 1);
+    }
+
+    // Parte recorrida del tramo del corte (vacía antes del primer avance)
+    public List<LatLng> activeTraveled() {
+        return activeTraveled;
+    }
+
+    // Parte que falta del tramo del corte, empezando en el punto de corte
+    public List<LatLng> activeRemaining() {
+        return activeRemaining;
+    }
+
+    private static int chunkStart(int index) {
+        return index * CHUNK_POINTS;
+    }
+
+    private int chunkEnd(int index) {
+        return Math.min((index + 1) * CHUNK_POINTS, points.size() - 1);
+    }
+
+    // Punto de corte actual, o null antes del primer avance
+    public LatLng getCut() {
+        return cut;
+    }
+}
@@ -0,0 +1,231 @@
+package com.example.segii.mapa.ruta;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+// Lector del formato de RouteCodec que trabaja directamente sobre el ByteBuffer (por ejemplo un
+// archivo mapeado en memoria). Solo lee el encabezado al crearse; puntos y pasos se decodifican
+// cuando se piden, sin copiar el contenido a estructuras intermedias.
+public final class RouteReader {
+    // Interfaz para recorrer los puntos sin crear objetos
+    public interface PointVisitor {
+        void visit(int index, int latE5, int lngE5);
+    }
+
+    // Buffer con los datos serializados (se usan lecturas absolutas, no se modifica su posición)
+    private final ByteBuffer buffer;
+    // Posición de lectura usada al parsear el encabezado
+    private int pos;
+
+    // Campos del encabezado
+    private final long createdAtMillis;
+    private final int originLatE5, originLngE5, destLatE5, destLngE5;
+    private final int minLatE5, minLngE5, maxLatE5, maxLngE5;
+    private final int nameOffset, nameLength;
+    private final int pointCount, pointsOffset;
+    private final int stepCount, stepsOffset;
+
+    // Constructor privado: usar wrap()
+    private RouteReader(ByteBuffer buffer) {
+        this.buffer = buffer;
+        this.pos = buffer.position();
+
+        // Verifica el encabezado del formato
+        if (buffer.remaining() < 13 || buffer.getInt(pos) != RouteCodec.MAGIC) {
+            throw new IllegalArgumentException("Formato de ruta inválido");
+        }
+        pos += 4;
+        if (buffer.get(pos++) != RouteCodec.VERSION) {
+            throw new IllegalArgumentException("Versión de ruta no soportada");
+        }
+        createdAtMillis = buffer.getLong(pos);
+        pos += 8;
+
+        originLatE5 = readSignedVarint();
+        originLngE5 = readSignedVarint();
+        destLatE5 = readSignedVarint();
+        destLngE5 = readSignedVarint();
+
+        minLatE5 = readSignedVarint();
+        minLngE5 = readSignedVarint();
+        maxLatE5 = minLatE5 + readVarint();
+        maxLngE5 = minLngE5 + readVarint();
+
+        // El nombre solo se localiza; se decodifica al pedirlo
+        nameLength = readVarint();
+        nameOffset = pos;
+        pos += nameLength;
+
+        // La sección de puntos se salta usando su longitud en bytes
+        pointCount = readVarint();
+        int pointsBytes = readVarint();
+        pointsOffset = pos;
+        pos += pointsBytes;
+
+        stepCount = readVarint();
+        stepsOffset = pos;
+    }
+
+    // Crea un lector sobre el buffer a partir de su posición actual
+    public static RouteReader wrap(ByteBuffer buffer) {
+        try {
+            return new RouteReader(buffer);
+        } catch (IndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Ruta serializada truncada", e);
+        }
+    }
+
+    public long getCreatedAtMillis() {
+        return createdAtMillis;
+    }
+
+    public int getPointCount() {
+        return pointCount;
+    }
+
+    public int getStepCount() {
+        return stepCount;
+    }
+
+    public int getOriginLatE5() {
+        return originLatE5;
+    }
+
+    public int getOriginLngE5() {
+        return originLngE5;
+    }
+
+    public int getDestLatE5() {
+        return destLatE5;
+    }
+
+    public int getDestLngE5() {
+        return destLngE5;
+    }
+
+    public int getMinLatE5() {
+        return minLatE5;
+    }
+
+    public int getMinLngE5() {
+        return minLngE5;
+    }
+
+    public int getMaxLatE5() {
+        return maxLatE5;
+    }
+
+    public int getMaxLngE5() {
+        return maxLngE5;
+    }
+
+    // Decodifica el nombre del destino
+    public String getDestinationName() {
+        return readString(nameOffset, nameLength);
+    }
+
+    // Recorre todos los puntos de la ruta sin reservar memoria
+    public void forEachPoint(PointVisitor visitor) {
+        int[] cursor = {pointsOffset};
+        int lat = minLatE5, lng = minLngE5;
+        for (int i = 0; i < pointCount; i++) {
+            lat += RouteCodec.unzigzag(readVarintAt(cursor));
+            lng += RouteCodec.unzigzag(readVarintAt(cursor));
+            visitor.visit(i, lat, lng);
+        }
+    }
+
+    // Decodifica los puntos en un arreglo intercalado [lat, lng, ...] proporcionado por el llamador
+    public int[] readPoints(int[] out) {
+        if (out == null || out.length < pointCount * 2) {
+            out = new int[pointCount * 2];
+        }
+        int[] cursor = {pointsOffset};
+        int lat = minLatE5, lng = minLngE5;
+        for (int i = 0; i < pointCount; i++) {
+            lat += RouteCodec.unzigzag(readVarintAt(cursor));
+            lng += RouteCodec.unzigzag(readVarintAt(cursor));
+            out[2 * i] = lat;
+            out[2 * i + 1] = lng;
+        }
+        return out;
+    }
+
+    // Decodifica la metadata de todos los pasos
+    public List<RouteStep> readSteps() {
+        List<RouteStep> steps = new ArrayList<>(stepCount);
+        int[] cursor = {stepsOffset};
+        int start = 0;
+        for (int i = 0; i < stepCount; i++) {
+            start += readVarintAt(cursor);
+            int count = readVarintAt(cursor);
+            int distance = readVarintAt(cursor);
+            int duration = readVarintAt(cursor);
+            String maneuver = readStringAt(cursor);
+            String instruction = readStringAt(cursor);
+            steps.add(new RouteStep(start, count, distance, duration, maneuver, instruction));
+        }
+        return steps;
+    }
+
+    // Materializa la ruta completa
+    public RouteData toRouteData() {
+        try {
+            int[] coords = readPoints(null);
+            return new RouteData(getDestinationName(), originLatE5, originLngE5, destLatE5, destLngE5,
+                    coords, readSteps(), createdAtMillis);
+        } catch (IndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Ruta serializada truncada", e);
+        }
+    }
+
+    // Lectura de varints a partir de la posición del encabezado
+    private int readVarint() {
+        int[] cursor = {pos};
+        int value = readVarintAt(cursor);
+        pos = cursor[0];
+        return value;
+    }
+
+    private int readSignedVarint() {
+        return RouteCodec.unzigzag(readVarint());
+    }
+
+    // Lee un varint en cursor[0] y avanza el cursor
+    private int readVarintAt(int[] cursor) {
+        int p = cursor[0];
+        int result = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = buffer.get(p++);
+            result |= (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0 && shift < 35);
+        cursor[0] = p;
+        return result;
+    }
+
+    // Lee una cadena con longitud prefijada en cursor[0]
+    private String readStringAt(int[] cursor) {
+        int length = readVarintAt(cursor);
+        String s = readString(cursor[0], length);
+        cursor[0] += length;
+        return s;
+    }
+
+    // Decodifica UTF-8 directamente del arreglo de respaldo si existe
+    private String readString(int offset, int length) {
+        if (length == 0) return "";
+        if (buffer.hasArray()) {
+            return new String(buffer.array(), buffer.arrayOffset() + offset, length, StandardCharsets.UTF_8);
+        }
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = buffer.get(offset + i);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
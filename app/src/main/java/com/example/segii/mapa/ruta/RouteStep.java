@@ -0,0 +1,28 @@
+package com.example.segii.mapa.ruta;
+
+// Clase que representa un paso (maniobra) de la ruta devuelto por la API de Directions
+public class RouteStep {
+    // Índice del primer punto del paso dentro de la geometría completa de la ruta
+    public final int pointStart;
+    // Número de puntos que pertenecen a este paso
+    public final int pointCount;
+    // Distancia del paso en metros
+    public final int distanceMeters;
+    // Duración estimada del paso en segundos
+    public final int durationSeconds;
+    // Maniobra de Google ("turn-left", "roundabout-right", ...) o cadena vacía si no hay
+    public final String maneuver;
+    // Instrucción del paso sin etiquetas HTML
+    public final String instruction;
+
+    // Constructor que recibe todos los datos del paso
+    public RouteStep(int pointStart, int pointCount, int distanceMeters, int durationSeconds,
+                     String maneuver, String instruction) {
+        this.pointStart = pointStart;
+        this.pointCount = pointCount;
+        this.distanceMeters = distanceMeters;
+        this.durationSeconds = durationSeconds;
+        this.maneuver = maneuver != null ? maneuver : "";
+        this.instruction = instruction != null ? instruction : "";
+    }
+}
@@ -0,0 +1,82 @@
+package com.example.segii.mapa.ruta;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+// Clase que guarda la ruta activa en disco para restaurarla tras rotar la pantalla o si el sistema
+// termina el proceso, sin volver a geocodificar ni pedir la ruta a la API
+public class RouteStore {
+    // Nombre del archivo de la ruta activa dentro de filesDir
+    private static final String FILE_NAME = "ruta_activa.bin";
+    // Tiempo máximo que una ruta guardada se considera vigente (6 horas)
+    private static final long MAX_AGE_MS = 6 * 60 * 60 * 1000L;
+    // Etiqueta para logs
+    private static final String TAG = "RouteStore";
+
+    // Archivo donde se guarda la ruta
+    private final File file;
+
+    // Constructor que usa el directorio privado de la aplicación
+    public RouteStore(Context context) {
+        this(new File(context.getFilesDir(), FILE_NAME));
+    }
+
+    // Constructor alternativo para indicar el archivo directamente
+    public RouteStore(File file) {
+        this.file = file;
+    }
+
+    // Guarda la ruta de forma atómica (archivo temporal + rename)
+    public synchronized boolean save(RouteData route) {
+        byte[] data = RouteCodec.encode(route);
+        File tmp = new File(file.getPath() + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(tmp)) {
+            out.write(data);
+            out.getFD().sync();
+        } catch (IOException e) {
+            Log.e(TAG, "No se pudo guardar la ruta: " + e.getMessage(), e);
+            return false;
+        }
+        if (!tmp.renameTo(file)) {
+            Log.e(TAG, "No se pudo reemplazar la ruta guardada");
+            tmp.delete();
+            return false;
+        }
+        return true;
+    }
+
+    // Carga la ruta guardada o devuelve null si no existe, está vencida o es inválida
+    public synchronized RouteData load() {
+        if (!file.exists() || file.length() == 0) return null;
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+             FileChannel channel = raf.getChannel()) {
+            // Mapea el archivo en memoria; el lector trabaja directamente sobre el mapeo
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            RouteReader reader = RouteReader.wrap(buffer);
+            if (System.currentTimeMillis() - reader.getCreatedAtMillis() > MAX_AGE_MS) {
+                Log.d(TAG, "Ruta guardada vencida, se descarta");
+                clear();
+                return null;
+            }
+            return reader.toRouteData();
+        } catch (IOException | IllegalArgumentException e) {
+            Log.e(TAG, "No se pudo leer la ruta guardada: " + e.getMessage(), e);
+            clear();
+            return null;
+        }
+    }
+
+    // Elimina la ruta guardada
+    public synchronized void clear() {
+        if (file.exists() && !file.delete()) {
+            Log.w(TAG, "No se pudo eliminar la ruta guardada");
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package com.example.segii.mapa.ruta;
+
+import com.example.segii.mapa.registro.EventLog;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+
+// Velocidades aprendidas de los recorridos del propio usuario: por tramo de calle (celda de ~110 m
+// y sentido de avance) y por franja del día (8 franjas de 3 horas). La tabla tiene un número fijo de
+// tramos (hash abierto con arreglos primitivos), así ocupa lo mismo en memoria y en disco sin importar
+// cuánto se maneje; cuando se llena se olvida el tramo usado hace más tiempo.
+public class SpeedProfile {
+    // Franjas horarias del día
+    public static final int BUCKETS = 8;
+    static final int HOURS_PER_BUCKET = 24 / BUCKETS;
+    // Tramos que se recuerdan como máximo (la tabla mide el doble para dejar huecos al hash)
+    static final int MAX_SEGMENTS = 3072;
+    private static final int CAPACITY = 4096;
+    // Tamaño de la celda en grados * 1E5 (~110 m)
+    private static final int CELL_E5 = 100;
+    // Muestras a partir de las cuales el promedio pasa a ser móvil (se adapta a cambios)
+    private static final int AVERAGE_WINDOW = 8;
+    // Versión del formato del archivo
+    private static final int MAGIC = 0x53504431; // "SPD1"
+    private static final String TAG = "SpeedProfile";
+
+    // Clave de cada tramo (0 = vacío) y el día de su último uso
+    private final long[] keys = new long[CAPACITY];
+    private final int[] lastUsedDay = new int[CAPACITY];
+    // Velocidad por tramo y franja en cm/s y cuántas muestras la forman (hasta 255)
+    private final short[] speeds = new short[CAPACITY * BUCKETS];
+    private final byte[] counts = new byte[CAPACITY * BUCKETS];
+    private int size;
+
+    // Clave del tramo que contiene el punto, según el sentido de avance (octante del rumbo)
+    public static long key(int latE5, int lngE5, double headingDegrees) {
+        long latCell = Math.floorDiv(latE5, CELL_E5) & 0xFFFFFFL;
+        long lngCell = Math.floorDiv(lngE5, CELL_E5) & 0xFFFFFFL;
+        int octant = (int) Math.floor(((headingDegrees % 360 + 360) % 360 + 22.5) / 45) & 7;
+        // El bit alto asegura que ninguna clave sea 0 (hueco)
+        return Long.MIN_VALUE | latCell << 27 | lngCell << 3 | octant;
+    }
+
+    // Franja del día de una hora local (0-23)
+    public static int bucketForHour(int hour) {
+        return (hour / HOURS_PER_BUCKET) % BUCKETS;
+    }
+
+    // Registra que el tramo se recorrió a speedMps en la franja dada; day sirve para olvidar lo viejo
+    public synchronized void record(long key, int bucket, double speedMps, int day) {
+        int slot = find(key);
+        if (slot < 0) {
+            if (size >= MAX_SEGMENTS) evictOldest();
+            slot = insert(key);
+        }
+        lastUsedDay[slot] = day;
+        int i = slot * BUCKETS + bucket;
+        int count = counts[i] & 0xFF;
+        double previous = speeds[i] / 100.0;
+        // Promedio de las primeras muestras y después promedio móvil
+        double weight = 1.0 / Math.min(count + 1, AVERAGE_WINDOW);
+        double updated = previous + (speedMps - previous) * weight;
+        speeds[i] = (short) Math.min(Short.MAX_VALUE, Math.round(updated * 100));
+        if (count < 255) counts[i] = (byte) (count + 1);
+    }
+
+    // Velocidad aprendida del tramo en la franja (m/s), o NaN si no hay muestras
+    public synchronized double speed(long key, int bucket) {
+        int slot = find(key);
+        if (slot < 0) return Double.NaN;
+        int i = slot * BUCKETS + bucket;
+        return counts[i] == 0 ? Double.NaN : speeds[i] / 100.0;
+    }
+
+    // Muestras que forman la velocidad del tramo en la franja
+    public synchronized int samples(long key, int bucket) {
+        int slot = find(key);
+        return slot < 0 ? 0 : counts[slot * BUCKETS + bucket] & 0xFF;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h >>> 52) & (CAPACITY - 1);
+    }
+
+    private int find(long key) {
+        for (int slot = hash(key); keys[slot] != 0; slot = (slot + 1) & (CAPACITY - 1)) {
+            if (keys[slot] == key) return slot;
+        }
+        return -1;
+    }
+
+    private int insert(long key) {
+        int slot = hash(key);
+        while (keys[slot] != 0) slot = (slot + 1) & (CAPACITY - 1);
+        keys[slot] = key;
+        size++;
+        return slot;
+    }
+
+    // Quita el tramo usado hace más tiempo (solo pasa con la tabla llena, al entrar un tramo nuevo)
+    private void evictOldest() {
+        int oldest = -1;
+        for (int slot = 0; slot < CAPACITY; slot++) {
+            if (keys[slot] != 0 && (oldest < 0 || lastUsedDay[slot] < lastUsedDay[oldest])) oldest = slot;
+        }
+        remove(oldest);
+    }
+
+    // Borra el hueco recorriendo hacia atrás los tramos que lo necesitan (sin marcas de borrado)
+    private void remove(int slot) {
+        int hole = slot;
+        int next = (hole + 1) & (CAPACITY - 1);
+        while (keys[next] != 0) {
+            int home = hash(keys[next]);
+            // El tramo puede ocupar el hueco si su posición ideal no está entre el hueco y él
+            boolean movable = hole <= next ? (home <= hole || home > next) : (home <= hole && home > next);
+            if (movable) {
+                moveSlot(next, hole);
+                hole = next;
+            }
+            next = (next + 1) & (CAPACITY - 1);
+        }
+        keys[hole] = 0;
+        lastUsedDay[hole] = 0;
+        for (int b = 0; b < BUCKETS; b++) {
+            speeds[hole * BUCKETS + b] = 0;
+            counts[hole * BUCKETS + b] = 0;
+        }
+        size--;
+    }
+
+    private void moveSlot(int from, int to) {
+        keys[to] = keys[from];
+        lastUsedDay[to] = lastUsedDay[from];
+        System.arraycopy(speeds, from * BUCKETS, speeds, to * BUCKETS, BUCKETS);
+        System.arraycopy(counts, from * BUCKETS, counts, to * BUCKETS, BUCKETS);
+    }
+
+    // Guarda solo los tramos ocupados, de forma atómica (archivo temporal + rename) como RouteStore
+    public void save(File file) {
+        File tmp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+            synchronized (this) {
+                out.writeInt(MAGIC);
+                out.writeInt(size);
+                for (int slot = 0; slot < CAPACITY; slot++) {
+                    if (keys[slot] == 0) continue;
+                    out.writeLong(keys[slot]);
+                    out.writeInt(lastUsedDay[slot]);
+                    for (int b = 0; b < BUCKETS; b++) {
+                        out.writeShort(speeds[slot * BUCKETS + b]);
+                        out.writeByte(counts[slot * BUCKETS + b]);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            EventLog.e(TAG, "No se pudieron guardar las velocidades", e);
+            return;
+        }
+        if (!tmp.renameTo(file)) {
+            EventLog.e(TAG, "No se pudo reemplazar el archivo de velocidades");
+            tmp.delete();
+        }
+    }
+
+    // Carga la tabla guardada; si no existe o está dañada empieza vacía
+    public static SpeedProfile load(File file) {
+        SpeedProfile profile = new SpeedProfile();
+        if (!file.exists()) return profile;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC) return profile;
+            int entries = Math.min(in.readInt(), MAX_SEGMENTS);
+            for (int e = 0; e < entries; e++) {
+                long key = in.readLong();
+                int day = in.readInt();
+                int slot = profile.insert(key);
+                profile.lastUsedDay[slot] = day;
+                for (int b = 0; b < BUCKETS; b++) {
+                    profile.speeds[slot * BUCKETS + b] = in.readShort();
+                    profile.counts[slot * BUCKETS + b] = in.readByte();
+                }
+            }
+        } catch (IOException e) {
+            EventLog.e(TAG, "No se pudieron leer las velocidades", e);
+            return new SpeedProfile();
+        }
+        return profile;
+    }
+}
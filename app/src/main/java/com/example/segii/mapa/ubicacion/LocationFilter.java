@@ -0,0 +1,174 @@
+package com.example.segii.mapa.ubicacion;
+
+// Filtro de Kalman de posición y velocidad (modelo de velocidad constante) para suavizar los
+// fixes del GPS. Trabaja en un plano local en metros con dos ejes independientes (este y norte).
+// Todo el estado son campos primitivos: cada actualización es de tiempo constante y no reserva memoria.
+public class LocationFilter {
+    // Metros por grado de latitud (aproximación válida para distancias urbanas)
+    static final double METERS_PER_DEG_LAT = 110_540.0;
+    // Metros por grado de longitud en el ecuador
+    static final double METERS_PER_DEG_LNG = 111_320.0;
+
+    // Desviación estándar de la aceleración del modelo (m/s²): caminando o en auto por la ciudad
+    private final double accelSigma;
+    // Precisión mínima que se acepta de un fix (metros), evita confiar demasiado en valores irreales
+    private static final double MIN_ACCURACY_M = 3.0;
+    // Umbral de la prueba de innovación (equivale a ~3.5 sigmas al cuadrado)
+    private static final double GATE = 12.0;
+    // Número de fixes rechazados seguidos tras los cuales se reinicia el filtro
+    private static final int MAX_REJECTED = 3;
+    // Intervalo máximo entre fixes antes de reiniciar (ms)
+    private static final long MAX_GAP_MS = 30_000;
+
+    // Origen del plano local
+    private double refLat, refLng, metersPerDegLng;
+    // Estado por eje: posición (m), velocidad (m/s) y covarianza 2x2 simétrica
+    private double x, vx, pxx, pxv, pvv;
+    private double y, vy, qyy, qyv, qvv;
+    // Momento del último fix aceptado (ms)
+    private long lastTimeMs;
+    private boolean initialized;
+    private int rejectedInRow;
+    // Fixes de la racha de rechazos actual
+    private final double[] rejectedLat = new double[MAX_REJECTED];
+    private final double[] rejectedLng = new double[MAX_REJECTED];
+    private final double[] rejectedR = new double[MAX_REJECTED];
+    private final long[] rejectedTimeMs = new long[MAX_REJECTED];
+
+    // Constructor con la aceleración típica de un peatón o vehículo urbano
+    public LocationFilter() {
+        this(1.0);
+    }
+
+    // Constructor que permite ajustar la aceleración del modelo
+    public LocationFilter(double accelSigma) {
+        this.accelSigma = accelSigma;
+    }
+
+    // Procesa un fix; devuelve false si se descartó por ser un salto inconsistente
+    public boolean update(double lat, double lng, double accuracyMeters, long timeMs) {
+        double r = Math.max(accuracyMeters, MIN_ACCURACY_M);
+        r = r * r;
+
+        if (!initialized || timeMs - lastTimeMs > MAX_GAP_MS || timeMs < lastTimeMs) {
+            reset(lat, lng, r, timeMs);
+            return true;
+        }
+        if (correct(lat, lng, r, timeMs, true)) {
+            rejectedInRow = 0;
+            return true;
+        }
+
+        // Rechazado: se guarda por si el salto resulta real
+        rejectedLat[rejectedInRow] = lat;
+        rejectedLng[rejectedInRow] = lng;
+        rejectedR[rejectedInRow] = r;
+        rejectedTimeMs[rejectedInRow] = timeMs;
+        if (++rejectedInRow < MAX_REJECTED) {
+            return false;
+        }
+        // El salto se sostuvo: el filtro vuelve a empezar en el primer fix rechazado y aplica los
+        // siguientes, así sigue la nueva posición con la velocidad que indican
+        reset(rejectedLat[0], rejectedLng[0], rejectedR[0], rejectedTimeMs[0]);
+        for (int i = 1; i < MAX_REJECTED; i++) {
+            correct(rejectedLat[i], rejectedLng[i], rejectedR[i], rejectedTimeMs[i], false);
+        }
+        return true;
+    }
+
+    // Predicción y corrección con un fix; con gate descarta (sin cambiar el estado) los saltos que
+    // no son consistentes con la velocidad y precisión actuales
+    private boolean correct(double lat, double lng, double r, long timeMs, boolean gate) {
+        // Predicción con el modelo de velocidad constante
+        double dt = (timeMs - lastTimeMs) / 1000.0;
+        double q = accelSigma * accelSigma;
+        double dt2 = dt * dt;
+        double q11 = q * dt2 * dt2 / 4, q12 = q * dt2 * dt / 2, q22 = q * dt2;
+
+        double predX = x + vx * dt;
+        double predY = y + vy * dt;
+        double ppxx = pxx + 2 * dt * pxv + dt2 * pvv + q11;
+        double ppxv = pxv + dt * pvv + q12;
+        double ppvv = pvv + q22;
+        double pqyy = qyy + 2 * dt * qyv + dt2 * qvv + q11;
+        double pqyv = qyv + dt * qvv + q12;
+        double pqvv = qvv + q22;
+
+        // Innovación en metros respecto a la predicción
+        double zx = (lng - refLng) * metersPerDegLng;
+        double zy = (lat - refLat) * METERS_PER_DEG_LAT;
+        double ix = zx - predX, iy = zy - predY;
+        double sx = ppxx + r, sy = pqyy + r;
+
+        if (gate && ix * ix / sx + iy * iy / sy > GATE) {
+            return false;
+        }
+
+        // Corrección (ganancia de Kalman por eje)
+        double kx = ppxx / sx, kvx = ppxv / sx;
+        x = predX + kx * ix;
+        vx = vx + kvx * ix;
+        pxx = (1 - kx) * ppxx;
+        pxv = (1 - kx) * ppxv;
+        pvv = ppvv - kvx * ppxv;
+
+        double ky = pqyy / sy, kvy = pqyv / sy;
+        y = predY + ky * iy;
+        vy = vy + kvy * iy;
+        qyy = (1 - ky) * pqyy;
+        qyv = (1 - ky) * pqyv;
+        qvv = pqvv - kvy * pqyv;
+
+        lastTimeMs = timeMs;
+        return true;
+    }
+
+    // Reinicia el filtro en la posición dada
+    private void reset(double lat, double lng, double r, long timeMs) {
+        refLat = lat;
+        refLng = lng;
+        metersPerDegLng = METERS_PER_DEG_LNG * Math.cos(Math.toRadians(lat));
+        x = y = vx = vy = 0;
+        pxx = qyy = r;
+        pxv = qyv = 0;
+        pvv = qvv = 25; // Velocidad inicial desconocida (±5 m/s)
+        lastTimeMs = timeMs;
+        rejectedInRow = 0;
+        initialized = true;
+    }
+
+    // Olvida el estado actual (por ejemplo al detener el seguimiento)
+    public void clear() {
+        initialized = false;
+    }
+
+    public boolean isInitialized() {
+        return initialized;
+    }
+
+    // Latitud filtrada en grados
+    public double getLatitude() {
+        return refLat + y / METERS_PER_DEG_LAT;
+    }
+
+    // Longitud filtrada en grados
+    public double getLongitude() {
+        return refLng + x / metersPerDegLng;
+    }
+
+    // Velocidad estimada en m/s
+    public double getSpeed() {
+        return Math.sqrt(vx * vx + vy * vy);
+    }
+
+    // Rumbo estimado en grados (0 = norte, sentido horario)
+    public double getBearing() {
+        double bearing = Math.toDegrees(Math.atan2(vx, vy));
+        return bearing < 0 ? bearing + 360 : bearing;
+    }
+
+    // Incertidumbre horizontal estimada en metros
+    public double getAccuracy() {
+        return Math.sqrt(Math.max(pxx, qyy));
+    }
+}
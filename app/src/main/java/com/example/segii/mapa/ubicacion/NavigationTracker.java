@@ -0,0 +1,89 @@
+package com.example.segii.mapa.ubicacion;
+
+import com.example.segii.mapa.ruta.RouteData;
+
+// Sigue el avance del usuario durante la navegación: filtra cada fix, lo ajusta a la ruta
+// activa y avisa una sola vez por desvío para que se recalcule la ruta.
+// No depende de Android, así se puede reproducir un recorrido grabado en la JVM.
+public class NavigationTracker {
+    // Interfaz para notificar que el usuario se salió de la ruta
+    public interface OffRouteListener {
+        void onOffRoute(double lat, double lng);
+    }
+
+    // Filtro de Kalman que suaviza los fixes del GPS
+    private final LocationFilter filter;
+    // Ajuste de los fixes a la ruta activa
+    private final RouteMatcher matcher = new RouteMatcher();
+    private OffRouteListener offRouteListener;
+    // Indica que ya se avisó del desvío actual (se limpia al volver a la ruta o cambiarla)
+    private boolean offRouteReported;
+    // Última posición entregada (ajustada a la ruta si quedó sobre ella)
+    private double latitude, longitude;
+
+    public NavigationTracker() {
+        this(new LocationFilter());
+    }
+
+    // Constructor alternativo para inyección del filtro
+    public NavigationTracker(LocationFilter filter) {
+        this.filter = filter;
+    }
+
+    public void setOffRouteListener(OffRouteListener listener) {
+        this.offRouteListener = listener;
+    }
+
+    // Establece la ruta activa (null para quitarla)
+    public void setRoute(RouteData route) {
+        matcher.setRoute(route);
+        offRouteReported = false;
+    }
+
+    public boolean hasRoute() {
+        return matcher.hasRoute();
+    }
+
+    // Procesa un fix crudo; devuelve true si quedó sobre la ruta activa
+    public boolean onFix(double lat, double lng, double accuracyMeters, long timeMs) {
+        filter.update(lat, lng, accuracyMeters, timeMs);
+        latitude = filter.getLatitude();
+        longitude = filter.getLongitude();
+        // Solo se ajusta a la ruta si el fix filtrado está cerca de ella
+        boolean onRoute = matcher.match(latitude, longitude);
+        if (onRoute) {
+            latitude = matcher.getMatchedLatitude();
+            longitude = matcher.getMatchedLongitude();
+            offRouteReported = false;
+        } else if (matcher.isOffRoute() && !offRouteReported) {
+            offRouteReported = true;
+            if (offRouteListener != null) {
+                offRouteListener.onOffRoute(latitude, longitude);
+            }
+        }
+        return onRoute;
+    }
+
+    public double getLatitude() {
+        return latitude;
+    }
+
+    public double getLongitude() {
+        return longitude;
+    }
+
+    // Distancia recorrida sobre la ruta activa, o -1 si el último fix no quedó sobre ella
+    public double getDistanceAlongRoute() {
+        return matcher.isMatched() ? matcher.getDistanceAlong() : -1;
+    }
+
+    // Velocidad estimada por el filtro (m/s)
+    public double getSpeed() {
+        return filter.getSpeed();
+    }
+
+    // Indica si los últimos fixes están fuera de la ruta activa
+    public boolean isOffRoute() {
+        return matcher.isOffRoute();
+    }
+}
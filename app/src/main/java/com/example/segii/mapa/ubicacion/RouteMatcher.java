@@ -0,0 +1,149 @@
+package com.example.segii.mapa.ubicacion;
+
+import com.example.segii.mapa.ruta.RouteData;
+
+// Ajusta (map-matching) la posición filtrada a la geometría de la ruta activa.
+// En condiciones normales solo revisa una ventana de segmentos alrededor del último segmento
+// ajustado, por lo que el costo por fix es constante; el recorrido completo solo se hace
+// cuando se pierde la ruta. Un fix fuera de la ruta no basta para declarar desvío: se exigen
+// varios seguidos, lo que evita recálculos innecesarios por saltos del GPS.
+public class RouteMatcher {
+    // Distancia máxima (m) para considerar que el usuario sigue sobre la ruta
+    private static final double ON_ROUTE_METERS = 30.0;
+    // Distancia (m) a partir de la cual se deja la ruta una vez ajustado a ella; el margen evita
+    // que el ruido del GPS alterne entre dentro y fuera cuando la calle va al borde del umbral
+    private static final double LEAVE_ROUTE_METERS = 40.0;
+    // Segmentos revisados hacia atrás y hacia adelante del último ajuste
+    private static final int WINDOW_BACK = 2;
+    private static final int WINDOW_AHEAD = 25;
+    // Fixes seguidos fuera de la ruta necesarios para declarar desvío
+    private static final int OFF_ROUTE_FIXES = 3;
+
+    // Geometría de la ruta en grados * 1E5 (intercalada lat, lng)
+    private int[] coords;
+    private int pointCount;
+    // Distancia acumulada hasta cada punto de la ruta (m)
+    private double[] cumulative;
+    // Escala local de longitud a metros
+    private double metersPerE5Lng;
+
+    // Resultado del último ajuste
+    private int segment;
+    private double fraction;
+    private double matchedLat, matchedLng;
+    private double distanceMeters;
+    private boolean matched;
+    private int offRouteCount;
+
+    // Establece la ruta contra la que se ajustan los fixes (null para quitarla)
+    public void setRoute(RouteData route) {
+        if (route == null || route.getPointCount() < 2) {
+            coords = null;
+            cumulative = null;
+            pointCount = 0;
+        } else {
+            coords = route.getCoordsE5();
+            pointCount = route.getPointCount();
+            cumulative = route.getCumulativeMeters();
+            double midLat = (route.minLatE5 + route.maxLatE5) / 2.0 / RouteData.E5;
+            metersPerE5Lng = LocationFilter.METERS_PER_DEG_LNG * Math.cos(Math.toRadians(midLat)) / RouteData.E5;
+        }
+        segment = 0;
+        matched = false;
+        offRouteCount = 0;
+    }
+
+    public boolean hasRoute() {
+        return coords != null;
+    }
+
+    // Ajusta la posición; devuelve true si quedó sobre la ruta
+    public boolean match(double lat, double lng) {
+        if (coords == null) return false;
+        double latE5 = lat * RouteData.E5;
+        double lngE5 = lng * RouteData.E5;
+
+        // Primero busca en la ventana alrededor del último segmento
+        int from = Math.max(0, segment - WINDOW_BACK);
+        int to = Math.min(pointCount - 2, segment + WINDOW_AHEAD);
+        double best = search(latE5, lngE5, from, to);
+        double limit = matched ? LEAVE_ROUTE_METERS : ON_ROUTE_METERS;
+
+        // Si se perdió la ruta, busca en toda la geometría
+        if (best > limit && (from > 0 || to < pointCount - 2)) {
+            best = search(latE5, lngE5, 0, pointCount - 2);
+        }
+
+        distanceMeters = best;
+        matched = best <= limit;
+        offRouteCount = matched ? 0 : offRouteCount + 1;
+        return matched;
+    }
+
+    // Busca el segmento más cercano entre from y to (inclusive) y guarda la proyección
+    private double search(double latE5, double lngE5, int from, int to) {
+        double bestDist2 = Double.MAX_VALUE;
+        for (int i = from; i <= to; i++) {
+            // Segmento en metros relativo al fix
+            double ay = (coords[2 * i] - latE5) * LocationFilter.METERS_PER_DEG_LAT / RouteData.E5;
+            double ax = (coords[2 * i + 1] - lngE5) * metersPerE5Lng;
+            double by = (coords[2 * i + 2] - latE5) * LocationFilter.METERS_PER_DEG_LAT / RouteData.E5;
+            double bx = (coords[2 * i + 3] - lngE5) * metersPerE5Lng;
+            double dx = bx - ax, dy = by - ay;
+            double len2 = dx * dx + dy * dy;
+            // Parámetro de la proyección del origen (el fix) sobre el segmento
+            double t = len2 > 0 ? -(ax * dx + ay * dy) / len2 : 0;
+            t = Math.max(0, Math.min(1, t));
+            double px = ax + t * dx, py = ay + t * dy;
+            double d2 = px * px + py * py;
+            if (d2 < bestDist2) {
+                bestDist2 = d2;
+                segment = i;
+                fraction = t;
+            }
+        }
+        // Calcula la posición ajustada del mejor segmento
+        int i = segment;
+        matchedLat = (coords[2 * i] + fraction * (coords[2 * i + 2] - coords[2 * i])) / RouteData.E5;
+        matchedLng = (coords[2 * i + 1] + fraction * (coords[2 * i + 3] - coords[2 * i + 1])) / RouteData.E5;
+        return Math.sqrt(bestDist2);
+    }
+
+    // Indica si hubo suficientes fixes seguidos fuera de la ruta para considerar un desvío
+    public boolean isOffRoute() {
+        return coords != null && offRouteCount >= OFF_ROUTE_FIXES;
+    }
+
+    public boolean isMatched() {
+        return matched;
+    }
+
+    public double getMatchedLatitude() {
+        return matchedLat;
+    }
+
+    public double getMatchedLongitude() {
+        return matchedLng;
+    }
+
+    // Índice del segmento ajustado (entre el punto segment y segment + 1)
+    public int getSegment() {
+        return segment;
+    }
+
+    // Posición dentro del segmento ajustado (0 a 1)
+    public double getFraction() {
+        return fraction;
+    }
+
+    // Distancia recorrida sobre la ruta hasta la posición ajustada (m)
+    public double getDistanceAlong() {
+        if (cumulative == null) return 0;
+        return cumulative[segment] + fraction * (cumulative[segment + 1] - cumulative[segment]);
+    }
+
+    // Distancia en metros entre el fix y la ruta
+    public double getDistanceMeters() {
+        return distanceMeters;
+    }
+}
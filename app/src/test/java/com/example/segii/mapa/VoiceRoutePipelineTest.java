@@ -0,0 +1,175 @@
+package com.example.segii.mapa;
+
+import com.example.segii.mapa.area.ServiceArea;
+import com.example.segii.mapa.red.NetworkMonitor;
+import com.example.segii.mapa.ruta.RouteData;
+import com.google.android.gms.maps.model.LatLng;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+import static org.junit.Assert.*;
+
+// Pruebas del flujo de voz a ruta: etapas traslapadas, cancelación y tiempos por etapa
+public class VoiceRoutePipelineTest {
+    private static final LatLng ORIGIN = new LatLng(20.173863, -98.054915);
+
+    // Responde con los archivos de prueba tras una latencia fija y registra el orden de las solicitudes
+    private static final class DelayedFixtures implements Interceptor {
+        final List<String> calls = new CopyOnWriteArrayList<>();
+        private final String geocode = resource("geocode.json");
+        private final String directions = resource("directions.json");
+
+        @Override
+        public Response intercept(Chain chain) throws IOException {
+            String path = chain.request().url().encodedPath();
+            String method = chain.request().method();
+            calls.add(method.equals("HEAD") ? "HEAD" : path.substring(path.lastIndexOf('/', path.length() - 6) + 1));
+            try {
+                Thread.sleep(30);
+            } catch (InterruptedException e) {
+                throw new IOException(e);
+            }
+            String body = path.endsWith("geocode/json") ? geocode : path.endsWith("directions/json") ? directions : "";
+            return new Response.Builder()
+                    .request(chain.request())
+                    .protocol(Protocol.HTTP_1_1)
+                    .code(200)
+                    .message("OK")
+                    .body(ResponseBody.create(body, MediaType.get("application/json")))
+                    .build();
+        }
+    }
+
+    private final DelayedFixtures fixtures = new DelayedFixtures();
+    private final NetworkMonitor network = new NetworkMonitor(true, System::currentTimeMillis, (task, delayMs) -> () -> { });
+    private final Route route = new Route(null, ServiceArea.huauchinango(),
+            new OkHttpClient.Builder().addInterceptor(fixtures).build(), Runnable::run, "https://maps.test/",
+            null, network);
+    // Fix que la prueba completa cuando quiere (como el GPS)
+    private final CompletableFuture<LatLng> fix = new CompletableFuture<>();
+
+    @After
+    public void tearDown() {
+        route.shutdown();
+    }
+
+    private VoiceRoutePipeline pipeline() {
+        return new VoiceRoutePipeline(timeout -> fix, route, () -> null, network::isOnline, 5);
+    }
+
+    @Test
+    public void geocodingOverlapsTheFixAndRouteFollows() throws Exception {
+        VoiceRoutePipeline pipeline = pipeline();
+        pipeline.begin();
+        CompletableFuture<VoiceRoutePipeline.Result> result = pipeline.onDestination("mercado municipal");
+
+        // La geocodificación se completa sin esperar al fix
+        waitFor(() -> fixtures.calls.contains("geocode/json"));
+        Thread.sleep(100);
+        assertFalse(result.isDone());
+        assertFalse(fixtures.calls.contains("directions/json"));
+
+        fix.complete(ORIGIN);
+        VoiceRoutePipeline.Result value = result.get(5, TimeUnit.SECONDS);
+        assertNotNull(value.route);
+        assertEquals(ORIGIN, value.origin);
+        // Conexión calentada al inicio, luego geocodificación y direcciones
+        assertEquals("HEAD", fixtures.calls.get(0));
+        assertEquals("directions/json", fixtures.calls.get(fixtures.calls.size() - 1));
+
+        VoiceRoutePipeline.StageTimes times = pipeline.getLastStageTimes();
+        assertNotNull(times);
+        assertTrue(times.geocodeMs >= 0 && times.geocodeMs < times.fixMs);
+        assertTrue(times.directionsMs >= times.fixMs);
+        assertTrue(times.totalMs >= times.directionsMs);
+    }
+
+    @Test
+    public void cancelStopsPendingStages() throws Exception {
+        VoiceRoutePipeline pipeline = pipeline();
+        pipeline.begin();
+        CompletableFuture<VoiceRoutePipeline.Result> result = pipeline.onDestination("mercado municipal");
+        pipeline.cancel();
+
+        assertTrue(result.isCancelled());
+        // Cancelar el fix es lo que apaga la solicitud al GPS
+        assertTrue(fix.isCancelled());
+        Thread.sleep(200);
+        assertFalse(fixtures.calls.contains("directions/json"));
+        assertNull(pipeline.getLastStageTimes());
+    }
+
+    @Test
+    public void offlineRequestWaitsForNetworkAndOffersRecentRoute() throws Exception {
+        VoiceRoutePipeline pipeline = pipeline();
+        // Primera ruta con red: queda como reciente
+        pipeline.begin();
+        fix.complete(ORIGIN);
+        assertNotNull(pipeline.onDestination("mercado municipal").get(5, TimeUnit.SECONDS).route);
+        fixtures.calls.clear();
+
+        network.setOnline(false);
+        List<RouteData> offered = new CopyOnWriteArrayList<>();
+        pipeline.setOfflineListener((destination, recentRoute) -> offered.add(recentRoute));
+        pipeline.begin();
+        CompletableFuture<VoiceRoutePipeline.Result> result = pipeline.onDestination("mercado municipal");
+
+        // Sin red: se ofrece la ruta reciente y no sale ninguna solicitud (la geocodificación ya se conocía)
+        waitFor(() -> !offered.isEmpty());
+        assertNotNull(offered.get(0));
+        Thread.sleep(100);
+        assertFalse(result.isDone());
+        assertTrue(fixtures.calls.isEmpty());
+        assertEquals(1, network.getQueuedCount());
+
+        // Al volver la red se envía la solicitud en espera
+        network.setOnline(true);
+        assertNotNull(result.get(5, TimeUnit.SECONDS).route);
+        assertEquals(Collections.singletonList("directions/json"), fixtures.calls);
+    }
+
+    private interface Condition {
+        boolean holds();
+    }
+
+    private static void waitFor(Condition condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.holds()) {
+            assertTrue("Tiempo de espera agotado", System.currentTimeMillis() < deadline);
+            Thread.sleep(5);
+        }
+    }
+
+    private static String resource(String name) {
+        try (InputStream in = VoiceRoutePipelineTest.class.getResourceAsStream("/replay/" + name)) {
+            assertNotNull("Falta el archivo de prueba " + name, in);
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int n;
+            while ((n = in.read(buffer)) > 0) {
+                out.write(buffer, 0, n);
+            }
+            return new String(out.toByteArray(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
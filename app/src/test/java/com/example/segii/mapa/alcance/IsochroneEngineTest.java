@@ -0,0 +1,100 @@
+package com.example.segii.mapa.alcance;
+
+import com.example.segii.mapa.area.ServiceArea;
+import com.example.segii.mapa.poi.Poi;
+import com.google.android.gms.maps.model.LatLng;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+// Pruebas del alcance local: tiempos de Dijkstra, orden de los lugares por tiempo, contorno del
+// área y consultas repetidas sobre la malla de Huauchinango
+public class IsochroneEngineTest {
+    private static final double STEP_DEG = 100 / 110_540.0; // 100 m hacia el norte
+
+    // Calle recta de 6 nodos (60 s por tramo) con un atajo de 0 a 4 de 100 s, solo de ida
+    private static RoadGraph street() {
+        RoadGraph.Builder builder = new RoadGraph.Builder();
+        for (int i = 0; i < 6; i++) builder.addNode(20.17 + i * STEP_DEG, -98.05);
+        for (int i = 0; i < 5; i++) builder.addTwoWay(i, i + 1, 60);
+        builder.addEdge(0, 4, 100);
+        return builder.build();
+    }
+
+    @Test
+    public void singleSweep_givesShortestTimesUpToTheLimit() {
+        RoadGraph graph = street();
+        IsochroneEngine engine = new IsochroneEngine(graph, 10);
+        Reachability reach = engine.compute(20.17, -98.05, 170);
+        // 0, 1 (60 s), 2 (120 s), 4 (100 s por el atajo), 3 y 5 (160 s)
+        assertEquals(6, reach.getReachedCount());
+        assertEquals(100, reach.secondsTo(graph.latAt(4), graph.lngAt(4)), 1e-3);
+        assertEquals(160, reach.secondsTo(graph.latAt(5), graph.lngAt(5)), 1e-3);
+        // De regreso no hay atajo
+        Reachability back = engine.compute(graph.latAt(4), graph.lngAt(4), 200);
+        assertEquals(240, engine.compute(graph.latAt(4), graph.lngAt(4), 300).secondsTo(20.17, -98.05), 1e-3);
+        assertEquals(Double.POSITIVE_INFINITY, back.secondsTo(20.17, -98.05), 0);
+        // La consulta anterior no deja rastros en la siguiente
+        assertEquals(100, engine.compute(20.17, -98.05, 170).secondsTo(graph.latAt(4), graph.lngAt(4)), 1e-3);
+    }
+
+    @Test
+    public void nearestNode_matchesBruteForce() {
+        RoadGraph graph = RoadGraph.lattice(ServiceArea.huauchinango(), 150, 7, 1.3);
+        Random random = new Random(7);
+        for (int q = 0; q < 500; q++) {
+            double lat = 20.1 + random.nextDouble() * 0.15, lng = -98.1 + random.nextDouble() * 0.15;
+            int best = -1;
+            double bestDist2 = Double.MAX_VALUE;
+            for (int i = 0; i < graph.getNodeCount(); i++) {
+                double dx = graph.xOf(i) - graph.toX(lng), dy = graph.yOf(i) - graph.toY(lat);
+                if (dx * dx + dy * dy < bestDist2) {
+                    bestDist2 = dx * dx + dy * dy;
+                    best = i;
+                }
+            }
+            int found = graph.nearestNode(lat, lng, IsochroneEngine.MAX_SNAP_METERS);
+            double dx = graph.xOf(found) - graph.toX(lng), dy = graph.yOf(found) - graph.toY(lat);
+            assertEquals("Consulta " + q, bestDist2, dx * dx + dy * dy, 1e-6);
+        }
+        assertEquals(-1, graph.nearestNode(21, -98.05, IsochroneEngine.MAX_SNAP_METERS));
+    }
+
+    @Test
+    public void tenMinutes_ranksPlacesAndOutlinesTheArea() {
+        double speed = 25 / 3.6, circuity = 1.3;
+        RoadGraph graph = RoadGraph.lattice(ServiceArea.huauchinango(), 150, speed, circuity);
+        IsochroneEngine engine = new IsochroneEngine(graph, speed / circuity);
+        LatLng center = new LatLng(20.1738, -98.0549);
+        List<Poi> pois = Arrays.asList(
+                new Poi("Lejos", "tienda", 20.2300, -98.0549),
+                new Poi("Cerca", "farmacia", 20.1760, -98.0549),
+                new Poi("Medio", "mercado", 20.1738, -98.0400));
+        // Varias consultas seguidas reutilizan los arreglos de trabajo y dan el mismo resultado
+        Reachability first = engine.compute(center.latitude, center.longitude, 600);
+        Reachability reach = null;
+        for (int i = 0; i < 5; i++) reach = engine.compute(center.latitude, center.longitude, 600);
+        assertEquals(first.getReachedCount(), reach.getReachedCount());
+
+        List<Reachability.Reached> ranked = reach.rank(pois, 10);
+        assertEquals(2, ranked.size());
+        assertEquals("Cerca", ranked.get(0).poi.name);
+        assertEquals("Medio", ranked.get(1).poi.name);
+        assertTrue(ranked.get(0).seconds < ranked.get(1).seconds);
+
+        List<LatLng> outline = reach.outline(72, 40);
+        assertTrue(outline.size() >= 8 && outline.size() <= 72);
+        // Ningún punto del contorno está más lejos de lo que se recorre en línea recta en 10 min
+        double maxMeters = 600 * speed / circuity + 200;
+        for (LatLng point : outline) {
+            double dy = (point.latitude - center.latitude) * 110_540;
+            double dx = (point.longitude - center.longitude) * 111_320 * Math.cos(Math.toRadians(center.latitude));
+            assertTrue(Math.sqrt(dx * dx + dy * dy) < maxMeters);
+        }
+    }
+}
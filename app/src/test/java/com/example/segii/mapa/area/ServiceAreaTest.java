@@ -0,0 +1,89 @@
+package com.example.segii.mapa.area;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+// Pruebas del área de servicio: rejilla contra el recorrido completo del polígono
+public class ServiceAreaTest {
+
+    // Polígono en forma de estrella (cóncavo) con un hueco cuadrado en el centro
+    private static double[][] starWithHole() {
+        int spikes = 40;
+        double[] star = new double[4 * spikes];
+        for (int i = 0; i < 2 * spikes; i++) {
+            double angle = Math.PI * i / spikes;
+            double radius = i % 2 == 0 ? 0.08 : 0.03;
+            star[2 * i] = -98.05 + radius * Math.cos(angle);
+            star[2 * i + 1] = 20.17 + radius * Math.sin(angle);
+        }
+        double[] hole = {-98.055, 20.165, -98.045, 20.165, -98.045, 20.175, -98.055, 20.175};
+        return new double[][]{star, hole};
+    }
+
+    // Regla par-impar recorriendo todas las aristas (referencia)
+    private static boolean bruteForce(double[][] rings, double x, double y) {
+        boolean inside = false;
+        for (double[] ring : rings) {
+            int n = ring.length / 2;
+            for (int i = 0, j = n - 1; i < n; j = i++) {
+                double xi = ring[2 * i], yi = ring[2 * i + 1], xj = ring[2 * j], yj = ring[2 * j + 1];
+                if ((yi > y) != (yj > y) && x < xi + (y - yi) * (xj - xi) / (yj - yi)) inside = !inside;
+            }
+        }
+        return inside;
+    }
+
+    private static String toGeoJson(double[][] rings) throws Exception {
+        JSONArray polygon = new JSONArray();
+        for (double[] ring : rings) {
+            JSONArray coords = new JSONArray();
+            for (int i = 0; i <= ring.length / 2; i++) {
+                int k = i % (ring.length / 2); // Cierra el anillo repitiendo el primer punto
+                coords.put(new JSONArray().put(ring[2 * k]).put(ring[2 * k + 1]));
+            }
+            polygon.put(coords);
+        }
+        JSONObject feature = new JSONObject()
+                .put("type", "Feature")
+                .put("properties", new JSONObject().put("name", "Estrella"))
+                .put("geometry", new JSONObject().put("type", "Polygon").put("coordinates", polygon));
+        return new JSONObject()
+                .put("type", "FeatureCollection")
+                .put("properties", new JSONObject().put("name", "Prueba").put("center", new JSONArray().put(-98.05).put(20.17)))
+                .put("features", new JSONArray().put(feature))
+                .toString();
+    }
+
+    @Test
+    public void contains_matchesBruteForce() throws Exception {
+        double[][] rings = starWithHole();
+        ServiceArea area = ServiceArea.parse(toGeoJson(rings));
+        Random random = new Random(11);
+        int inside = 0;
+        for (int i = 0; i < 20000; i++) {
+            double lng = -98.14 + random.nextDouble() * 0.18;
+            double lat = 20.08 + random.nextDouble() * 0.18;
+            boolean expected = bruteForce(rings, lng, lat);
+            assertEquals("(" + lat + ", " + lng + ")", expected, area.contains(lat, lng));
+            if (expected) inside++;
+        }
+        assertTrue(inside > 1000);
+        assertEquals("Prueba", area.getName());
+        assertEquals(20.17, area.getCenter().latitude, 1e-9);
+    }
+
+    @Test
+    public void defaultArea_coversHuauchinango() {
+        ServiceArea area = ServiceArea.huauchinango();
+        assertTrue(area.contains(20.1738, -98.0549));
+        assertTrue(area.contains(area.getCenter()));
+        assertFalse(area.contains(-20.1782935, -98.0719694));
+        assertEquals("Huauchinango", area.regionAt(20.2, -98.0));
+        assertNull(area.regionAt(19.4, -99.1));
+    }
+}
@@ -0,0 +1,76 @@
+package com.example.segii.mapa.cache;
+
+import android.content.ComponentCallbacks2;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+// Pruebas del registro de cachés: presupuesto propio, límite global con peso y avisos de memoria
+public class CacheRegistryTest {
+    // Cada valor cuesta lo que indica
+    private static final MemoryCache.Weigher<String, Integer> BY_VALUE = (key, value) -> value;
+
+    @Test
+    public void cache_respectsItsOwnBudgetAndCountsHits() {
+        CacheRegistry registry = new CacheRegistry(10_000);
+        MemoryCache<String, Integer> cache = registry.create("a", 300, 1, BY_VALUE);
+        cache.put("x", 100);
+        cache.put("y", 100);
+        assertEquals(Integer.valueOf(100), cache.get("x"));
+        cache.put("z", 150);
+
+        // "y" era la menos usada
+        assertNull(cache.get("y"));
+        assertNotNull(cache.get("x"));
+        // Una entrada más grande que el presupuesto no se guarda
+        cache.put("enorme", 500);
+        assertNull(cache.get("enorme"));
+
+        MemoryCache.Stats stats = cache.stats();
+        assertEquals(2, stats.entries);
+        assertEquals(250, stats.bytes);
+        assertEquals(250, registry.getTotalBytes());
+        assertEquals(1, stats.evictions);
+        assertEquals(2 / 4.0, stats.hitRate(), 1e-9);
+    }
+
+    @Test
+    public void globalLimit_evictsOldCheapEntriesFirst() {
+        CacheRegistry registry = new CacheRegistry(400);
+        MemoryCache<String, Integer> cheap = registry.create("barata", 400, 1, BY_VALUE);
+        MemoryCache<String, Integer> costly = registry.create("cara", 400, 8, BY_VALUE);
+        costly.put("ruta", 150);
+        cheap.put("destino", 150);
+        // Pasa el límite global: la entrada de la caché cara es más vieja pero pesa más
+        cheap.put("otro", 150);
+
+        assertNotNull(costly.get("ruta"));
+        assertNull(cheap.get("destino"));
+        assertNotNull(cheap.get("otro"));
+        assertEquals(300, registry.getTotalBytes());
+    }
+
+    @Test
+    public void trimMemory_shrinksByLevelAndRemovedCachesRelease() {
+        CacheRegistry registry = new CacheRegistry(10_000);
+        MemoryCache<String, Integer> cache = registry.create("a", 10_000, 1, BY_VALUE);
+        for (int i = 0; i < 8; i++) cache.put("k" + i, 100);
+
+        registry.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN);
+        assertEquals(400, registry.getTotalBytes());
+        // Se conservan las más recientes
+        assertNotNull(cache.get("k7"));
+        assertNull(cache.get("k0"));
+
+        registry.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW);
+        assertEquals(100, registry.getTotalBytes());
+        registry.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_COMPLETE);
+        assertEquals(0, registry.getTotalBytes());
+
+        cache.put("k", 100);
+        registry.remove(cache);
+        assertEquals(0, registry.getTotalBytes());
+        assertTrue(registry.stats().isEmpty());
+    }
+}
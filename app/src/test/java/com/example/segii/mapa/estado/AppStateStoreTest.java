@@ -0,0 +1,96 @@
+package com.example.segii.mapa.estado;
+
+import com.google.android.gms.maps.model.LatLng;
+
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+
+import static org.junit.Assert.*;
+
+// Pruebas del estado compartido: avisos solo con cambios reales, avisos agrupados y publicaciones
+// desde varios hilos sin perder cambios
+public class AppStateStoreTest {
+    private static final LatLng PLAZA = new LatLng(20.17, -98.05);
+
+    @Test
+    public void subscribers_hearOnlyAboutTheirPart() {
+        AppStateStore store = new AppStateStore();
+        List<AppState> listening = new ArrayList<>();
+        AppStateStore.Subscription subscription =
+                store.subscribe(state -> state.hotwordListening, listening::add, Runnable::run);
+        // Primer aviso con el estado actual
+        assertEquals(1, listening.size());
+
+        AppState before = store.getState();
+        assertSame(before, store.update(state -> state.withHotwordListening(false)));
+        store.update(state -> state.withLocation(PLAZA));
+        store.update(state -> state.withLocation(new LatLng(20.17, -98.05)));
+        assertEquals(before.version + 1, store.getState().version);
+        assertEquals(1, listening.size());
+
+        store.update(state -> state.withHotwordListening(true));
+        assertEquals(2, listening.size());
+        assertTrue(listening.get(1).hotwordListening);
+        // La foto entregada es consistente: trae también la posición publicada antes
+        assertEquals(PLAZA, listening.get(1).location);
+
+        subscription.close();
+        store.update(state -> state.withHotwordListening(false));
+        assertEquals(2, listening.size());
+    }
+
+    @Test
+    public void pendingNotices_deliverOnlyTheLatestState() {
+        AppStateStore store = new AppStateStore();
+        Queue<Runnable> mainThread = new ArrayDeque<>();
+        List<AppState> progress = new ArrayList<>();
+        store.subscribe(state -> state.location, progress::add, mainThread::add);
+        for (int i = 0; i < 10; i++) {
+            LatLng location = new LatLng(20.17 + i * 1e-4, -98.05);
+            double along = i * 10;
+            store.update(state -> state.withProgress(location, along));
+        }
+        // Un solo aviso pendiente para todo el lote
+        assertEquals(1, mainThread.size());
+        while (!mainThread.isEmpty()) mainThread.poll().run();
+        assertEquals(1, progress.size());
+        assertEquals(90, progress.get(0).distanceAlongRoute, 0);
+    }
+
+    @Test
+    public void concurrentPublishers_doNotLoseUpdates() throws Exception {
+        AppStateStore store = new AppStateStore();
+        int threads = 4, updates = 20_000;
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            Thread worker = new Thread(() -> {
+                for (int i = 0; i < updates; i++) {
+                    store.update(state -> state.withProgress(PLAZA, state.distanceAlongRoute + 1));
+                }
+            });
+            workers.add(worker);
+            worker.start();
+        }
+        for (Thread worker : workers) worker.join();
+        assertEquals(-1 + threads * updates, store.getState().distanceAlongRoute, 0);
+        assertEquals(threads * updates, store.getState().version);
+    }
+
+    @Test
+    public void locationWithoutProgress_dropsThePreviousProgress() {
+        AppStateStore store = new AppStateStore();
+        store.update(state -> state.withProgress(PLAZA, 120));
+        // Un fix que no quedó sobre la ruta no conserva el avance de otro fix
+        LatLng away = new LatLng(20.18, -98.06);
+        store.update(state -> state.withLocation(away));
+        assertEquals(away, store.getState().location);
+        assertEquals(-1, store.getState().distanceAlongRoute, 0);
+        // La misma posición sin avance ya no es un cambio
+        AppState before = store.getState();
+        assertSame(before, store.update(state -> state.withLocation(away)));
+    }
+}
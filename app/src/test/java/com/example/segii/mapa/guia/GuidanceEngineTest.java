@@ -0,0 +1,73 @@
+package com.example.segii.mapa.guia;
+
+import com.example.segii.mapa.ruta.RouteData;
+import com.example.segii.mapa.ruta.RouteStep;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+// Pruebas del cálculo y disparo de indicaciones de voz
+public class GuidanceEngineTest {
+
+    // Ruta recta hacia el norte de 11 puntos separados ~100 m con un giro a la izquierda en el punto 6
+    private static RouteData route() {
+        int[] coords = new int[22];
+        for (int i = 0; i < 11; i++) {
+            coords[2 * i] = 2017000 + i * 90;
+            coords[2 * i + 1] = -9805000;
+        }
+        List<RouteStep> steps = Arrays.asList(
+                new RouteStep(0, 6, 600, 60, "", "Dirígete al norte"),
+                new RouteStep(6, 5, 400, 40, "turn-left", "Gira a la izquierda en Calle Guerrero"));
+        return new RouteData("Mercado", coords[0], coords[1], coords[20], coords[21], coords, steps, 0L);
+    }
+
+    @Test
+    public void setRoute_precomputesAllPhrases() {
+        GuidanceEngine engine = new GuidanceEngine(text -> { });
+        engine.setRoute(route());
+        assertEquals(Arrays.asList(
+                "Iniciando ruta a Mercado. Dirígete al norte",
+                "En 250 metros, gira a la izquierda",
+                "Gira a la izquierda",
+                "Has llegado a tu destino"), engine.getPhrases());
+    }
+
+    @Test
+    public void onProgress_firesEachPromptOnceAtItsDistance() {
+        List<String> spoken = new ArrayList<>();
+        GuidanceEngine engine = new GuidanceEngine(spoken::add);
+        RouteData route = route();
+        engine.setRoute(route);
+        double turnAt = route.getCumulativeMeters()[6];
+
+        engine.onProgress(0, 0);
+        engine.onProgress(turnAt - 300, 0);
+        engine.onProgress(turnAt - 245, 0);
+        engine.onProgress(turnAt - 240, 0);
+        engine.onProgress(turnAt - 35, 0);
+        engine.onProgress(route.getLengthMeters(), 0);
+
+        assertEquals(Arrays.asList(
+                "Iniciando ruta a Mercado. Dirígete al norte",
+                "En 250 metros, gira a la izquierda",
+                "Gira a la izquierda",
+                "Has llegado a tu destino"), spoken);
+        assertTrue(engine.isFinished());
+    }
+
+    @Test
+    public void onProgress_skipsStalePrompts() {
+        List<String> spoken = new ArrayList<>();
+        GuidanceEngine engine = new GuidanceEngine(spoken::add);
+        engine.setRoute(route());
+        // Primer fix ya muy avanzado (por ejemplo, al restaurar la ruta)
+        engine.onProgress(450, 0);
+        assertTrue(spoken.isEmpty());
+    }
+}
@@ -0,0 +1,57 @@
+package com.example.segii.mapa.guia;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+// Pruebas de la caché de frases de voz: claves por contenido y limpieza por tamaño y antigüedad
+public class PromptPlayerTest {
+    private static final long DAY_MS = 24L * 60 * 60 * 1000;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void keyFor_dependsOnTextAndVoice() {
+        // "Aa" y "BB" tienen el mismo hashCode y largo
+        assertEquals("Aa".hashCode(), "BB".hashCode());
+        assertNotEquals(PromptPlayer.keyFor("Aa", "es-MX/a"), PromptPlayer.keyFor("BB", "es-MX/a"));
+        assertNotEquals(PromptPlayer.keyFor("Gira a la derecha", "es-MX/a"),
+                PromptPlayer.keyFor("Gira a la derecha", "es-MX/b"));
+        assertEquals(PromptPlayer.keyFor("Gira a la derecha", "es-MX/a"),
+                PromptPlayer.keyFor("Gira a la derecha", "es-MX/a"));
+    }
+
+    @Test
+    public void trim_removesOldFilesAndLeastRecentlyUsedOverBudget() throws IOException {
+        File dir = folder.getRoot();
+        long now = 100 * DAY_MS;
+        File stale = write(dir, "viejo.wav", 10, now - 40 * DAY_MS);
+        File oldest = write(dir, "a.wav", 400, now - 3 * DAY_MS);
+        File middle = write(dir, "b.wav", 400, now - 2 * DAY_MS);
+        File newest = write(dir, "c.wav", 400, now - DAY_MS);
+        File other = write(dir, "otro.txt", 10, now - 40 * DAY_MS);
+
+        assertEquals(2, PromptPlayer.trim(dir, 1000, 30 * DAY_MS, now));
+        assertFalse(stale.exists());
+        assertFalse(oldest.exists());
+        assertTrue(middle.exists());
+        assertTrue(newest.exists());
+        assertTrue(other.exists());
+    }
+
+    private static File write(File dir, String name, int bytes, long modified) throws IOException {
+        File file = new File(dir, name);
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(new byte[bytes]);
+        }
+        assertTrue(file.setLastModified(modified));
+        return file;
+    }
+}
@@ -0,0 +1,113 @@
+package com.example.segii.mapa.keyWord;
+
+import com.example.segii.mapa.keyWord.CommandMatcher.Command;
+import com.example.segii.mapa.keyWord.CommandMatcher.Kind;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+// Pruebas de la conversión de lo dictado a intención y destino, sin red
+public class CommandMatcherTest {
+    private static CommandMatcher matcher() {
+        CommandMatcher matcher = new CommandMatcher();
+        matcher.setVocabulary(Arrays.asList("farmacia", "Mercado Municipal", "Farmacia Guadalajara Centro",
+                "Farmacia Guadalajara", "Parroquia de la Santa Cruz"));
+        return matcher;
+    }
+
+    @Test
+    public void navigate_snapsToTheLocalVocabulary() {
+        CommandMatcher matcher = matcher();
+        Command command = matcher.match("Llévame al mercado municipal");
+        assertEquals(Kind.NAVIGATE, command.kind);
+        assertEquals("Mercado Municipal", command.destination);
+        assertTrue(command.isComplete());
+
+        // Una palabra mal reconocida no impide llegar al nombre del catálogo
+        command = matcher.match("oye navega a la parroquia santa cruz");
+        assertEquals("Parroquia de la Santa Cruz", command.destination);
+        command = matcher.match("quiero ir a farmacia guadalajara del centro");
+        assertEquals("Farmacia Guadalajara Centro", command.destination);
+
+        // Una categoría sola queda como búsqueda de la más cercana, pero espera al resultado final
+        command = matcher.match("llévame a la farmacia más cercana");
+        assertEquals(Kind.NAVIGATE, command.kind);
+        assertEquals("la farmacia mas cercana", command.destination);
+        assertTrue(command.known);
+        assertFalse(command.isComplete());
+    }
+
+    @Test
+    public void partialDestinations_waitForTheRestOfTheName() {
+        CommandMatcher matcher = matcher();
+        // La categoría puede ser el inicio de un nombre ("... municipal", "... azteca")
+        Command command = matcher.match("llévame al mercado");
+        assertEquals("mercado", command.destination);
+        assertFalse(command.isComplete());
+        command = matcher.match("navega al banco");
+        assertTrue(command.known);
+        assertFalse(command.isComplete());
+        // Una categoría con más palabras ya no es búsqueda por categoría
+        assertFalse(matcher.match("navega al banco azteca").known);
+        // Un nombre completo que otro nombre extiende tampoco se entrega antes de tiempo
+        assertFalse(matcher.match("quiero ir a farmacia guadalajara").isComplete());
+        assertTrue(matcher.match("quiero ir a farmacia guadalajara centro").isComplete());
+    }
+
+    @Test
+    public void withoutPrefix_onlyAnExactNameIsACommand() {
+        CommandMatcher matcher = matcher();
+        // Una categoría o un nombre dentro de una frase no son órdenes
+        assertNull(matcher.match("el banco está cerrado"));
+        assertNull(matcher.match("la farmacia más cercana"));
+        assertNull(matcher.match("el mercado municipal está cerrado"));
+        // El nombre dicho tal cual sí, pero espera al resultado final
+        Command command = matcher.match("mercado municipal");
+        assertEquals("Mercado Municipal", command.destination);
+        assertFalse(command.isComplete());
+    }
+
+    @Test
+    public void unknownDestination_needsTheFinalResult() {
+        Command command = matcher().match("navega a la casa de mi tía");
+        assertEquals(Kind.NAVIGATE, command.kind);
+        assertEquals("la casa de mi tia", command.destination);
+        assertFalse(command.isComplete());
+    }
+
+    @Test
+    public void fixedCommandsAndNoMatch() {
+        CommandMatcher matcher = matcher();
+        assertEquals(Kind.CANCEL, matcher.match("Cancela la navegación").kind);
+        assertEquals(Kind.WHERE_AM_I, matcher.match("¿Dónde estoy?").kind);
+        // Sin comando ni destino conocido: pasa al reconocimiento libre
+        assertNull(matcher.match("qué hora es"));
+        assertNull(matcher.match("navega a"));
+    }
+
+    @Test
+    public void reachable_readsTheMinutes() {
+        CommandMatcher matcher = matcher();
+        matcher.setReachableEnabled(true);
+        Command command = matcher.match("¿Qué hay a diez minutos?");
+        assertEquals(Kind.REACHABLE, command.kind);
+        assertEquals(10, command.minutes);
+        assertTrue(command.isComplete());
+        assertEquals(5, matcher.match("que hay a 5 minutos de aquí").minutes);
+        assertEquals(CommandMatcher.DEFAULT_REACHABLE_MINUTES, matcher.match("qué hay cerca").minutes);
+        assertEquals(1, matcher.match("qué hay a un minuto").minutes);
+    }
+
+    @Test
+    public void reachable_isIgnoredWithoutARoadNetwork() {
+        CommandMatcher matcher = matcher();
+        // Sin red vial no se reconoce ni se sugiere al reconocedor
+        assertNull(matcher.match("¿Qué hay a diez minutos?"));
+        assertFalse(matcher.commandPhrases().contains("qué hay cerca"));
+        matcher.setReachableEnabled(true);
+        assertTrue(matcher.commandPhrases().contains("qué hay cerca"));
+    }
+}
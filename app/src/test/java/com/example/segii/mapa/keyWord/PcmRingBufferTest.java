@@ -0,0 +1,86 @@
+package com.example.segii.mapa.keyWord;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+// Pruebas del buffer de audio compartido: lectura desde la palabra clave, lectores atrasados y
+// un escritor y un lector en hilos distintos sin candados
+public class PcmRingBufferTest {
+    private static final int FRAME = 512;
+
+    // Frame cuyas muestras son su posición absoluta (módulo 2^15)
+    private static short[] frame(long start) {
+        short[] frame = new short[FRAME];
+        for (int i = 0; i < FRAME; i++) frame[i] = (short) ((start + i) & 0x7FFF);
+        return frame;
+    }
+
+    @Test
+    public void commandReaderStartsRightAfterTheKeyword() {
+        PcmRingBuffer buffer = new PcmRingBuffer(16_000);
+        assertEquals(16_384, buffer.capacity());
+        for (int i = 0; i < 10; i++) buffer.write(frame(i * FRAME), 0, FRAME);
+        long keywordEnd = buffer.getWritePosition();
+        // El comando empieza a decirse mientras se abre el reconocedor
+        for (int i = 10; i < 14; i++) buffer.write(frame(i * FRAME), 0, FRAME);
+
+        PcmRingBuffer.Reader reader = buffer.readerAt(keywordEnd);
+        assertEquals(4 * FRAME, reader.available());
+        short[] out = new short[3000];
+        int n = reader.read(out, 0, out.length);
+        assertEquals(2048, n);
+        for (int i = 0; i < n; i++) assertEquals((short) ((keywordEnd + i) & 0x7FFF), out[i]);
+        assertEquals(0, reader.read(out, 0, out.length));
+    }
+
+    @Test
+    public void slowReaderSkipsToTheOldestSampleKept() {
+        PcmRingBuffer buffer = new PcmRingBuffer(4 * FRAME);
+        PcmRingBuffer.Reader reader = buffer.reader();
+        for (int i = 0; i < 10; i++) buffer.write(frame(i * FRAME), 0, FRAME);
+
+        short[] out = new short[FRAME];
+        int n = reader.read(out, 0, FRAME);
+        assertEquals(FRAME, n);
+        // Se pierde lo pisado (y el frame que se podría estar escribiendo); el resto sigue en orden
+        long first = reader.getPosition() - n;
+        assertEquals(7 * FRAME, first);
+        assertEquals(7 * FRAME, reader.getSkipped());
+        assertEquals((short) (first & 0x7FFF), out[0]);
+    }
+
+    @Test
+    public void concurrentWriterAndReaderSeeContinuousAudio() throws Exception {
+        PcmRingBuffer buffer = new PcmRingBuffer(16 * FRAME);
+        int frames = 20_000;
+        PcmRingBuffer.Reader reader = buffer.reader();
+        AtomicReference<String> error = new AtomicReference<>();
+        Thread consumer = new Thread(() -> {
+            short[] out = new short[700];
+            long total = (long) frames * FRAME;
+            while (reader.getPosition() < total && error.get() == null) {
+                long start = reader.getPosition();
+                int n = reader.read(out, 0, out.length);
+                // Tras un salto por retraso, la lectura sigue siendo contigua desde la nueva posición
+                long at = reader.getPosition() - n;
+                if (at < start) error.set("La posición retrocedió");
+                for (int i = 0; i < n; i++) {
+                    if (out[i] != (short) ((at + i) & 0x7FFF)) {
+                        error.set("Muestra " + (at + i) + " corrupta");
+                        break;
+                    }
+                }
+            }
+        });
+        consumer.start();
+        for (int i = 0; i < frames; i++) {
+            buffer.write(frame((long) i * FRAME), 0, FRAME);
+        }
+        consumer.join(10_000);
+        assertFalse(consumer.isAlive());
+        assertNull(error.get());
+    }
+}
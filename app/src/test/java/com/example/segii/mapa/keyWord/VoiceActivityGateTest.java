@@ -0,0 +1,141 @@
+package com.example.segii.mapa.keyWord;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+// Pruebas de la compuerta de voz con un minuto de audio sintético: ruido de fondo bajo con
+// ráfagas parecidas a voz, y ruido de motor que sube a mitad del recorrido.
+public class VoiceActivityGateTest {
+    private static final int SAMPLE_RATE = 16000;
+    private static final int FRAME = 512;
+
+    // Un minuto de audio en frames; marca qué frames contienen voz
+    private static short[][] syntheticMinute(boolean[] speech, long seed) {
+        return syntheticMinute(speech, seed, Integer.MAX_VALUE, 0);
+    }
+
+    // Igual, con ruido de motor de baja frecuencia (RMS engineRms) desde el frame engineFrom
+    private static short[][] syntheticMinute(boolean[] speech, long seed, int engineFrom, double engineRms) {
+        Random random = new Random(seed);
+        int frames = speech.length;
+        short[][] audio = new short[frames][FRAME];
+        // Tres ráfagas de ~1 s (como decir "okey segui") en el minuto
+        int[] bursts = {400, 1100, 1500};
+        for (int start : bursts) {
+            for (int f = start; f < start + 31 && f < frames; f++) speech[f] = true;
+        }
+        int t = 0;
+        for (int f = 0; f < frames; f++) {
+            for (int i = 0; i < FRAME; i++, t++) {
+                double sample = random.nextGaussian() * 40; // ruido de fondo
+                if (f >= engineFrom) {
+                    // Motor: 90 Hz con un armónico y algo de ruido
+                    sample += engineRms * (1.2 * Math.sin(2 * Math.PI * 90 * t / SAMPLE_RATE)
+                            + 0.4 * Math.sin(2 * Math.PI * 180 * t / SAMPLE_RATE)
+                            + 0.3 * random.nextGaussian());
+                }
+                if (speech[f]) {
+                    // Tono con armónicos y envolvente silábica (~4 Hz)
+                    double envelope = 0.5 + 0.5 * Math.sin(2 * Math.PI * 4 * t / SAMPLE_RATE);
+                    sample += envelope * 4000 * (Math.sin(2 * Math.PI * 180 * t / SAMPLE_RATE)
+                            + 0.5 * Math.sin(2 * Math.PI * 360 * t / SAMPLE_RATE));
+                }
+                audio[f][i] = (short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, sample));
+            }
+        }
+        return audio;
+    }
+
+    // Detector de relleno: trabajo por frame del orden de un modelo pequeño
+    private static final class CostlyEngine implements VoiceActivityGate.FrameSink {
+        final List<short[]> received = new ArrayList<>();
+        final boolean keep;
+        double sink;
+
+        CostlyEngine(boolean keep) {
+            this.keep = keep;
+        }
+
+        @Override
+        public void onFrame(short[] frame) {
+            if (keep) received.add(frame.clone());
+            double acc = 0;
+            for (int k = 0; k < 64; k++) {
+                for (short sample : frame) acc += Math.sin(sample * 1e-4 + k);
+            }
+            sink += acc;
+        }
+    }
+
+    @Test
+    public void gate_passesSpeechWithPreRollAndBlocksSilence() {
+        int frames = SAMPLE_RATE * 60 / FRAME;
+        boolean[] speech = new boolean[frames];
+        short[][] audio = syntheticMinute(speech, 7);
+
+        VoiceActivityGate gate = new VoiceActivityGate(FRAME);
+        CostlyEngine engine = new CostlyEngine(true);
+        int firstOpen = -1;
+        for (int f = 0; f < frames; f++) {
+            gate.offer(audio[f], engine);
+            if (firstOpen < 0 && gate.isOpen()) firstOpen = f;
+        }
+
+        int speechFrames = 0;
+        for (boolean s : speech) if (s) speechFrames++;
+        // Pasa la voz completa y descarta la mayor parte del silencio
+        assertTrue(gate.getFramesPassed() >= speechFrames);
+        assertTrue("Demasiado audio llega al detector: " + gate.getFramesPassed() + "/" + frames,
+                gate.getFramesPassed() < frames / 5);
+        // La compuerta se abre en la primera ráfaga y el pre-roll entrega el audio previo
+        assertTrue(firstOpen >= 400 && firstOpen < 403);
+        assertArrayEquals(audio[firstOpen - VoiceActivityGate.DEFAULT_PRE_ROLL_FRAMES], engine.received.get(0));
+        assertArrayEquals(audio[firstOpen], engine.received.get(VoiceActivityGate.DEFAULT_PRE_ROLL_FRAMES));
+    }
+
+    @Test
+    public void gate_adaptsWhenEngineNoiseStarts() {
+        // Un minuto de ruido bajo, luego un minuto con el motor encendido (~320 RMS) y las ráfagas de voz
+        int minute = SAMPLE_RATE * 60 / FRAME;
+        boolean[] speech = new boolean[minute];
+        short[][] quiet = syntheticMinute(new boolean[minute], 3);
+        short[][] engine = syntheticMinute(speech, 5, 0, 320);
+
+        VoiceActivityGate gate = new VoiceActivityGate(FRAME);
+        CostlyEngine detector = new CostlyEngine(false);
+        for (short[] frame : quiet) gate.offer(frame, detector);
+        long before = gate.getFramesPassed();
+        // Frames de voz en los que la compuerta estuvo abierta
+        int openOnSpeech = 0, speechFrames = 0;
+        for (int f = 0; f < minute; f++) {
+            gate.offer(engine[f], detector);
+            if (speech[f]) {
+                speechFrames++;
+                if (gate.isOpen()) openOnSpeech++;
+            }
+        }
+
+        // El motor abre la compuerta solo un momento; después pasa poco más que la voz
+        long passed = gate.getFramesPassed() - before;
+        assertTrue("Demasiado audio llega al detector con el motor: " + passed + "/" + minute,
+                passed < minute / 5);
+        // La voz sobre el motor sigue abriendo la compuerta
+        assertTrue(openOnSpeech > speechFrames * 9 / 10);
+    }
+
+    @Test
+    public void gate_disabledPassesEverything() {
+        VoiceActivityGate gate = new VoiceActivityGate(FRAME);
+        gate.setEnabled(false);
+        CostlyEngine engine = new CostlyEngine(true);
+        short[] silence = new short[FRAME];
+        for (int f = 0; f < 50; f++) gate.offer(silence, engine);
+        assertEquals(50, gate.getFramesPassed());
+        assertEquals(50, engine.received.size());
+    }
+}
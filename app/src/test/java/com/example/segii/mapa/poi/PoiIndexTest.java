@@ -0,0 +1,87 @@
+package com.example.segii.mapa.poi;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+// Pruebas del índice de puntos de interés: k vecinos contra búsqueda exhaustiva y categorías dictadas
+public class PoiIndexTest {
+
+    private static double distance2(Poi poi, double lat, double lng) {
+        double dy = (poi.latitude - lat) * 110_540.0;
+        double dx = (poi.longitude - lng) * 111_320.0 * Math.cos(Math.toRadians(20.18));
+        return dx * dx + dy * dy;
+    }
+
+    @Test
+    public void nearest_matchesBruteForce() {
+        Random random = new Random(3);
+        List<Poi> pois = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            pois.add(new Poi("p" + i, i % 3 == 0 ? "farmacia" : "cajero",
+                    20.10 + random.nextDouble() * 0.15, -98.10 + random.nextDouble() * 0.15));
+        }
+        PoiIndex index = new PoiIndex(pois);
+
+        for (int q = 0; q < 200; q++) {
+            double lat = 20.10 + random.nextDouble() * 0.15;
+            double lng = -98.10 + random.nextDouble() * 0.15;
+            List<Poi> expected = new ArrayList<>();
+            for (Poi poi : pois) {
+                if (poi.category.equals("farmacia")) expected.add(poi);
+            }
+            Collections.sort(expected, (a, b) -> Double.compare(distance2(a, lat, lng), distance2(b, lat, lng)));
+
+            List<Poi> found = index.nearestPois("farmacia", lat, lng, 5);
+            assertEquals(5, found.size());
+            for (int i = 0; i < 5; i++) {
+                assertEquals(distance2(expected.get(i), lat, lng), distance2(found.get(i), lat, lng), 1e-6);
+            }
+        }
+    }
+
+    @Test
+    public void nearest_handlesSmallAndMissingCategories() {
+        List<Poi> pois = new ArrayList<>();
+        pois.add(new Poi("Hospital General", "hospital", 20.176, -98.052));
+        PoiIndex index = new PoiIndex(pois);
+        assertEquals(1, index.nearestPois("hospital", 20.17, -98.05, 5).size());
+        assertTrue(index.nearestPois("farmacia", 20.17, -98.05, 5).isEmpty());
+        assertFalse(index.hasCategory(null));
+    }
+
+    @Test
+    public void categoryFor_recognizesSpokenCategories() {
+        assertEquals("farmacia", PoiIndex.categoryFor("la farmacia la farmacia"));
+        assertEquals("hospital", PoiIndex.categoryFor("clínica clínica más cercana"));
+        assertEquals("cajero", PoiIndex.categoryFor("un banco"));
+        assertEquals("gasolinera", PoiIndex.categoryFor("¿Dónde hay una gasolinera cerca?"));
+        assertNull(PoiIndex.categoryFor("plaza principal"));
+    }
+
+    @Test
+    public void categoryFor_ignoresNamedPlaces() {
+        assertNull(PoiIndex.categoryFor("Mercado Municipal"));
+        assertNull(PoiIndex.categoryFor("Banco Azteca"));
+        assertNull(PoiIndex.categoryFor("Escuela Primaria Benito Juárez"));
+        assertNull(PoiIndex.categoryFor("el banco está cerrado"));
+        assertNull(PoiIndex.categoryFor("farmacia y gasolinera"));
+    }
+
+    @Test
+    public void load_parsesCatalog() throws Exception {
+        String csv = "# comentario\nfarmacia,Farmacia Centro, local 2,20.1750,-98.0530\ncajero,Sin coordenadas,x,y\n";
+        PoiIndex index = PoiIndex.load(new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)));
+        List<Poi> found = index.nearestPois("farmacia", 20.17, -98.05, 3);
+        assertEquals(1, found.size());
+        assertEquals("Farmacia Centro, local 2", found.get(0).name);
+        assertFalse(index.hasCategory("cajero"));
+    }
+}
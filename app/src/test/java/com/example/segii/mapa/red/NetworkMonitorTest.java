@@ -0,0 +1,114 @@
+package com.example.segii.mapa.red;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+// Pruebas de la cola sin conexión: despacho al reconectar, solicitudes reemplazadas y vencidas
+public class NetworkMonitorTest {
+    private final AtomicLong now = new AtomicLong(1_000_000L);
+    // Vencimientos programados: momento y tarea (null si se canceló)
+    private final List<Long> dueAt = new ArrayList<>();
+    private final List<Runnable> tasks = new ArrayList<>();
+
+    private NetworkMonitor monitor(boolean online) {
+        return new NetworkMonitor(online, now::get, (task, delayMs) -> {
+            int slot = tasks.size();
+            dueAt.add(now.get() + delayMs);
+            tasks.add(task);
+            return () -> tasks.set(slot, null);
+        });
+    }
+
+    // Avanza el reloj y corre los vencimientos que ya tocan
+    private void advance(long ms) {
+        now.addAndGet(ms);
+        for (int i = 0; i < tasks.size(); i++) {
+            Runnable task = tasks.get(i);
+            if (task != null && dueAt.get(i) <= now.get()) {
+                tasks.set(i, null);
+                task.run();
+            }
+        }
+    }
+
+    @Test
+    public void online_completesImmediately() {
+        NetworkMonitor monitor = monitor(true);
+        assertTrue(monitor.awaitOnline("directions").isDone());
+        assertEquals(0, monitor.getQueuedCount());
+    }
+
+    @Test
+    public void offline_queuesUntilValidatedNetworkAndCollapsesByKey() {
+        NetworkMonitor monitor = monitor(false);
+        CompletableFuture<Void> first = monitor.awaitOnline("directions");
+        CompletableFuture<Void> geocode = monitor.awaitOnline("geocode");
+        CompletableFuture<Void> second = monitor.awaitOnline("directions");
+
+        // La solicitud anterior con la misma clave se descarta
+        assertTrue(first.isCancelled());
+        assertEquals(2, monitor.getQueuedCount());
+        assertFalse(second.isDone());
+
+        monitor.setOnline(true);
+        assertTrue(second.isDone() && !second.isCompletedExceptionally());
+        assertTrue(geocode.isDone() && !geocode.isCompletedExceptionally());
+        assertEquals(0, monitor.getQueuedCount());
+    }
+
+    @Test
+    public void cancelledWaiterLeavesTheQueue() {
+        NetworkMonitor monitor = monitor(false);
+        monitor.awaitOnline("directions").cancel(false);
+        assertEquals(0, monitor.getQueuedCount());
+    }
+
+    @Test
+    public void staleRequestsFailInsteadOfBeingSentLate() throws InterruptedException {
+        NetworkMonitor monitor = monitor(false);
+        CompletableFuture<Void> stale = monitor.awaitOnline("directions");
+        now.addAndGet(NetworkMonitor.MAX_QUEUE_MS + 1);
+        CompletableFuture<Void> fresh = monitor.awaitOnline("geocode");
+
+        monitor.setOnline(true);
+        try {
+            stale.get();
+            fail("La solicitud vencida no debía enviarse");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof TimeoutException);
+        }
+        assertFalse(fresh.isCompletedExceptionally());
+    }
+
+    @Test
+    public void staleRequestsFailWhileStillOffline() throws InterruptedException {
+        NetworkMonitor monitor = monitor(false);
+        CompletableFuture<Void> waiting = monitor.awaitOnline("directions");
+        advance(NetworkMonitor.MAX_QUEUE_MS - 1);
+        assertFalse(waiting.isDone());
+
+        // Sin que vuelva la red, la solicitud falla al vencer y sale de la cola
+        advance(1);
+        try {
+            waiting.get();
+            fail("La solicitud debía vencer sin conexión");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof TimeoutException);
+        }
+        assertEquals(0, monitor.getQueuedCount());
+
+        // Una solicitud despachada a tiempo ya no vence después
+        CompletableFuture<Void> sent = monitor.awaitOnline("directions");
+        monitor.setOnline(true);
+        advance(NetworkMonitor.MAX_QUEUE_MS);
+        assertTrue(sent.isDone() && !sent.isCompletedExceptionally());
+    }
+}
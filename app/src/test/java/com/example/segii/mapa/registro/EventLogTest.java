@@ -0,0 +1,94 @@
+package com.example.segii.mapa.registro;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+// Pruebas del registro de eventos: orden, buffer lleno, recorte y ocultamiento de claves
+public class EventLogTest {
+
+    private static final class ListSink implements EventLog.Sink {
+        final List<String> lines = Collections.synchronizedList(new ArrayList<>());
+
+        @Override
+        public void write(int level, String tag, String message, Throwable error) {
+            lines.add(tag + "|" + message);
+        }
+    }
+
+    @Test
+    public void drain_writesInOrderAndFormatsLazily() {
+        ListSink sink = new ListSink();
+        EventLog log = new EventLog(8, sink, false);
+        log.post(EventLog.DEBUG, "A", "Origen", null, 20.1, -98.05, true, null);
+        log.post(EventLog.DEBUG, "A", "Puntos", 42, 0, 0, false, null);
+        log.post(EventLog.INFO, "B", "Listo", null, 0, 0, false, null);
+        assertTrue(sink.lines.isEmpty());
+
+        assertEquals(3, log.drain());
+        assertEquals("A|Origen: (20.1, -98.05)", sink.lines.get(0));
+        assertEquals("A|Puntos: 42", sink.lines.get(1));
+        assertEquals("B|Listo", sink.lines.get(2));
+        assertEquals(0, log.drain());
+    }
+
+    @Test
+    public void post_dropsWhenFullAndReportsIt() {
+        ListSink sink = new ListSink();
+        EventLog log = new EventLog(4, sink, false);
+        for (int i = 0; i < 10; i++) {
+            log.post(EventLog.DEBUG, "T", "n", i, 0, 0, false, null);
+        }
+        log.drain();
+        assertEquals(5, sink.lines.size());
+        assertEquals("T|n: 0", sink.lines.get(0));
+        assertEquals("T|n: 3", sink.lines.get(3));
+        assertTrue(sink.lines.get(4).contains("6 eventos descartados"));
+
+        // Después de vaciarse vuelve a aceptar eventos
+        assertTrue(log.post(EventLog.DEBUG, "T", "n", 99, 0, 0, false, null));
+    }
+
+    @Test
+    public void post_concurrentProducersLoseNothingWithinCapacity() throws InterruptedException {
+        ListSink sink = new ListSink();
+        EventLog log = new EventLog(4096, sink, false);
+        Thread[] producers = new Thread[4];
+        for (int t = 0; t < producers.length; t++) {
+            final int id = t;
+            producers[t] = new Thread(() -> {
+                for (int i = 0; i < 1000; i++) log.post(EventLog.DEBUG, "T" + id, "n", i, 0, 0, false, null);
+            });
+            producers[t].start();
+        }
+        for (Thread producer : producers) producer.join();
+        log.drain();
+        assertEquals(4000, sink.lines.size());
+        // El orden por productor se conserva
+        for (int t = 0; t < producers.length; t++) {
+            int expected = 0;
+            for (String line : sink.lines) {
+                if (line.startsWith("T" + t + "|")) assertEquals("T" + t + "|n: " + expected++, line);
+            }
+            assertEquals(1000, expected);
+        }
+    }
+
+    @Test
+    public void format_redactsKeysAndTruncatesPayloads() {
+        assertEquals("https://maps.googleapis.com/maps/api/directions/json?origin=1,2&key=***",
+                EventLog.redact("https://maps.googleapis.com/maps/api/directions/json?origin=1,2&key=AIzaSyXYZ"));
+        assertEquals("a?token=***&x=1", EventLog.redact("a?token=abc&x=1"));
+        assertEquals("{\"access_key\": \"***\"}", EventLog.redact("{\"access_key\": \"secreto\"}"));
+
+        StringBuilder json = new StringBuilder();
+        while (json.length() < 100_000) json.append("{\"lat\":20.1,\"lng\":-98.0},");
+        String truncated = EventLog.truncate(json.toString());
+        assertTrue(truncated.length() < EventLog.MAX_VALUE_CHARS + 40);
+        assertTrue(truncated.endsWith("(+" + (json.length() - EventLog.MAX_VALUE_CHARS) + " caracteres)"));
+    }
+}
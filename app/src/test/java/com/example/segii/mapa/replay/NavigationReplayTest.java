@@ -0,0 +1,322 @@
+package com.example.segii.mapa.replay;
+
+import com.example.segii.mapa.Route;
+import com.example.segii.mapa.area.ServiceArea;
+import com.example.segii.mapa.guia.GuidanceEngine;
+import com.example.segii.mapa.ruta.RouteData;
+import com.example.segii.mapa.ubicacion.NavigationTracker;
+import com.google.android.gms.maps.model.LatLng;
+
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+import static org.junit.Assert.*;
+
+// Reproduce en la JVM un recorrido GPS grabado contra respuestas fijas de Geocoding y Directions:
+// calcula la ruta, la decodifica, arma la guía y procesa cada fix como lo haría la app.
+// Reporta la latencia de cada etapa (media y p95), los bytes asignados y los recálculos;
+// solo se verifican resultados, nunca tiempos.
+public class NavigationReplayTest {
+    // Repeticiones medidas del recorrido completo (después del calentamiento)
+    private static final int ITERATIONS = 30;
+    private static final int WARMUP = 10;
+    // Metros que cubre el primer dibujo de la ruta (igual que en Mapa)
+    private static final double INITIAL_RENDER_METERS = 2000;
+
+    // Fix del recorrido grabado
+    private static final class Fix {
+        final double lat, lng, accuracy;
+        final long timeMs;
+
+        Fix(double lat, double lng, double accuracy, long timeMs) {
+            this.lat = lat;
+            this.lng = lng;
+            this.accuracy = accuracy;
+            this.timeMs = timeMs;
+        }
+    }
+
+    // Muestras de tiempo (ns) de una etapa
+    private static final class Stage {
+        final String name;
+        final List<Long> samples = new ArrayList<>();
+
+        Stage(String name) {
+            this.name = name;
+        }
+
+        void add(long nanos) {
+            samples.add(nanos);
+        }
+
+        String report() {
+            long[] sorted = new long[samples.size()];
+            long sum = 0;
+            for (int i = 0; i < sorted.length; i++) {
+                sorted[i] = samples.get(i);
+                sum += sorted[i];
+            }
+            Arrays.sort(sorted);
+            long p95 = sorted[Math.min(sorted.length - 1, (int) Math.ceil(sorted.length * 0.95) - 1)];
+            return String.format("%-18s media %8.1f us   p95 %8.1f us   (%d muestras)",
+                    name, sum / 1000.0 / sorted.length, p95 / 1000.0, sorted.length);
+        }
+    }
+
+    // Responde las solicitudes a las APIs de Google con los archivos de prueba
+    private static final class FixtureInterceptor implements Interceptor {
+        final AtomicInteger geocodeCalls = new AtomicInteger();
+        final AtomicInteger directionsCalls = new AtomicInteger();
+        private final String geocode = resource("geocode.json");
+        private final String directions = resource("directions.json");
+
+        @Override
+        public Response intercept(Chain chain) {
+            String path = chain.request().url().encodedPath();
+            String body;
+            if (path.endsWith("geocode/json")) {
+                geocodeCalls.incrementAndGet();
+                body = geocode;
+            } else if (path.endsWith("directions/json")) {
+                directionsCalls.incrementAndGet();
+                body = directions;
+            } else {
+                throw new IllegalStateException("Solicitud no esperada: " + path);
+            }
+            return new Response.Builder()
+                    .request(chain.request())
+                    .protocol(Protocol.HTTP_1_1)
+                    .code(200)
+                    .message("OK")
+                    .body(ResponseBody.create(body, MediaType.get("application/json")))
+                    .build();
+        }
+    }
+
+    // Resultado del cálculo de ruta entregado por el callback
+    private static final class RouteResult implements Route.RouteCallback {
+        final CountDownLatch done = new CountDownLatch(1);
+        volatile RouteData route;
+        volatile String error;
+
+        @Override
+        public void onRouteCalculated(RouteData route) {
+            this.route = route;
+            done.countDown();
+        }
+
+        @Override
+        public void onRouteFailed(String errorMessage) {
+            this.error = errorMessage;
+            done.countDown();
+        }
+
+        @Override
+        public void onMultipleDestinationsFound(List<Route.DestinationOption> options) {
+            this.error = "Múltiples destinos: " + options.size();
+            done.countDown();
+        }
+
+        RouteData await() throws InterruptedException {
+            assertTrue("Tiempo de espera agotado", done.await(10, TimeUnit.SECONDS));
+            assertNull(error, error);
+            return route;
+        }
+    }
+
+    // Métricas de una pasada completa del recorrido
+    private static final class ReplayResult {
+        int reroutes;
+        int prompts;
+        int matchedFixes;
+        double finalDistanceAlong;
+        boolean finished;
+    }
+
+    private static String resource(String name) {
+        try (InputStream in = NavigationReplayTest.class.getResourceAsStream("/replay/" + name)) {
+            assertNotNull("Falta el archivo de prueba " + name, in);
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int n;
+            while ((n = in.read(buffer)) > 0) {
+                out.write(buffer, 0, n);
+            }
+            return new String(out.toByteArray(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static List<Fix> loadTrace() throws IOException {
+        List<Fix> fixes = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                NavigationReplayTest.class.getResourceAsStream("/replay/trace.csv"), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty() || line.startsWith("#")) continue;
+                String[] parts = line.split(",");
+                fixes.add(new Fix(Double.parseDouble(parts[0]), Double.parseDouble(parts[1]),
+                        Double.parseDouble(parts[2]), Long.parseLong(parts[3])));
+            }
+        }
+        return fixes;
+    }
+
+    // Bytes asignados por el hilo actual (solo en JVMs que lo soportan)
+    private static long allocatedBytes() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1;
+    }
+
+    // Calcula la ruta con el cliente de prueba y espera el resultado
+    private static RouteData calculate(Route route, RouteResult result, LatLng origin, String destination)
+            throws InterruptedException {
+        route.calculateRoute(origin, destination);
+        return result.await();
+    }
+
+    // Recorre el trazo completo; si se pasan etapas, registra en ellas los tiempos
+    private static ReplayResult replay(OkHttpClient client, List<Fix> trace,
+                                       Stage routeStage, Stage renderStage, Stage decodeStage,
+                                       Stage guidanceStage, Stage fixStage, Stage rerouteStage) throws Exception {
+        ReplayResult result = new ReplayResult();
+        Fix first = trace.get(0);
+
+        long start = System.nanoTime();
+        RouteResult initial = new RouteResult();
+        Route router = new Route(initial, ServiceArea.huauchinango(), client, Runnable::run, "https://maps.test/");
+        RouteData route = calculate(router, initial, new LatLng(first.lat, first.lng), "Mercado Municipal");
+        routeStage.add(System.nanoTime() - start);
+
+        // Primer dibujo: solo los pasos cercanos al origen
+        start = System.nanoTime();
+        route.getPointsForSteps(0, route.stepsCovering(INITIAL_RENDER_METERS));
+        route.getBounds();
+        renderStage.add(System.nanoTime() - start);
+
+        // Resto de la geometría y distancias acumuladas
+        start = System.nanoTime();
+        route.getPoints();
+        route.getCumulativeMeters();
+        decodeStage.add(System.nanoTime() - start);
+
+        start = System.nanoTime();
+        GuidanceEngine guidance = new GuidanceEngine(text -> result.prompts++);
+        guidance.setRoute(route);
+        guidance.getPhrases();
+        guidanceStage.add(System.nanoTime() - start);
+
+        NavigationTracker tracker = new NavigationTracker();
+        tracker.setRoute(route);
+        List<double[]> pendingReroutes = new ArrayList<>();
+        tracker.setOffRouteListener((lat, lng) -> pendingReroutes.add(new double[]{lat, lng}));
+
+        for (Fix fix : trace) {
+            start = System.nanoTime();
+            if (tracker.onFix(fix.lat, fix.lng, fix.accuracy, fix.timeMs)) {
+                result.matchedFixes++;
+            }
+            guidance.onProgress(tracker.getDistanceAlongRoute(), tracker.getSpeed());
+            fixStage.add(System.nanoTime() - start);
+
+            // Recalcula desde la posición actual, sin geocodificar (como Mapa al detectar un desvío)
+            if (!pendingReroutes.isEmpty()) {
+                double[] at = pendingReroutes.remove(0);
+                result.reroutes++;
+                start = System.nanoTime();
+                RouteResult rerouted = new RouteResult();
+                Route reRouter = new Route(rerouted, ServiceArea.huauchinango(), client, Runnable::run, "https://maps.test/");
+                reRouter.calculateRoute(new LatLng(at[0], at[1]), route.getDestination(), route.destinationName);
+                RouteData next = rerouted.await();
+                next.getCumulativeMeters();
+                tracker.setRoute(next);
+                rerouteStage.add(System.nanoTime() - start);
+                reRouter.shutdown();
+            }
+        }
+        router.shutdown();
+        result.finalDistanceAlong = tracker.getDistanceAlongRoute();
+        result.finished = guidance.isFinished();
+        return result;
+    }
+
+    @Test
+    public void replay_followsRouteAndReroutesOnDetour() throws Exception {
+        FixtureInterceptor fixtures = new FixtureInterceptor();
+        OkHttpClient client = new OkHttpClient.Builder().addInterceptor(fixtures).build();
+        List<Fix> trace = loadTrace();
+        Stage unused = new Stage("");
+
+        ReplayResult result = replay(client, trace, unused, unused, unused, unused, unused, unused);
+
+        assertEquals(1, fixtures.geocodeCalls.get());
+        // El desvío del recorrido provoca al menos un recálculo, y no uno por cada fix fuera de la ruta
+        assertTrue("Se esperaba un recálculo", result.reroutes >= 1);
+        assertTrue("Demasiados recálculos: " + result.reroutes, result.reroutes <= 3);
+        assertEquals(1 + result.reroutes, fixtures.directionsCalls.get());
+        // La mayoría de los fixes quedan sobre la ruta y se dicen las indicaciones hasta la llegada
+        assertTrue(result.matchedFixes > trace.size() / 2);
+        assertTrue(result.prompts > 0);
+        assertTrue(result.finished);
+        assertTrue(result.finalDistanceAlong > 0);
+    }
+
+    @Test
+    public void benchmark_endToEndReplay() throws Exception {
+        OkHttpClient client = new OkHttpClient.Builder().addInterceptor(new FixtureInterceptor()).build();
+        List<Fix> trace = loadTrace();
+
+        Stage discard = new Stage("");
+        for (int i = 0; i < WARMUP; i++) {
+            replay(client, trace, discard, discard, discard, discard, discard, discard);
+        }
+
+        Stage routeStage = new Stage("ruta (HTTP+JSON)");
+        Stage renderStage = new Stage("primer dibujo");
+        Stage decodeStage = new Stage("decodificación");
+        Stage guidanceStage = new Stage("guía");
+        Stage fixStage = new Stage("fix");
+        Stage rerouteStage = new Stage("recálculo");
+        int reroutes = 0;
+        long allocatedBefore = allocatedBytes();
+        for (int i = 0; i < ITERATIONS; i++) {
+            reroutes += replay(client, trace, routeStage, renderStage, decodeStage, guidanceStage, fixStage, rerouteStage).reroutes;
+        }
+        long allocated = allocatedBytes() - allocatedBefore;
+
+        System.out.println("Recorrido de " + trace.size() + " fixes, " + ITERATIONS + " repeticiones:");
+        for (Stage stage : new Stage[]{routeStage, renderStage, decodeStage, guidanceStage, fixStage, rerouteStage}) {
+            if (!stage.samples.isEmpty()) System.out.println("  " + stage.report());
+        }
+        System.out.println("  recálculos por recorrido: " + (double) reroutes / ITERATIONS);
+        if (allocatedBefore >= 0) {
+            System.out.println("  bytes asignados por recorrido (hilo de prueba): " + allocated / ITERATIONS);
+        }
+        assertEquals(ITERATIONS * trace.size(), fixStage.samples.size());
+        assertEquals(ITERATIONS, routeStage.samples.size());
+    }
+}
@@ -0,0 +1,125 @@
+package com.example.segii.mapa.ruta;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.TimeZone;
+
+import static org.junit.Assert.*;
+
+// Pruebas del tiempo restante calculado en el dispositivo y de la tabla de velocidades aprendidas
+public class EtaEstimatorTest {
+    private static final TimeZone UTC = TimeZone.getTimeZone("UTC");
+    // 10:00 UTC de un día cualquiera
+    private static final long MORNING = 1_760_000_000_000L - 1_760_000_000_000L % 86_400_000L + 10 * 3_600_000L;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    // Ruta recta de 2 km hacia el norte, un punto cada ~20 m; Directions dice 200 s (10 m/s)
+    private static RouteData straightRoute() {
+        int n = 101;
+        int[] coords = new int[2 * n];
+        for (int i = 0; i < n; i++) {
+            coords[2 * i] = 2_000_000 + (int) Math.round(i * 20 * 1E5 / 110_540);
+            coords[2 * i + 1] = -9_800_000;
+        }
+        RouteStep step = new RouteStep(0, n, 2000, 200, "", "Sigue derecho");
+        return new RouteData("Prueba", coords[0], coords[1], coords[2 * n - 2], coords[2 * n - 1],
+                coords, Collections.singletonList(step), 0);
+    }
+
+    // Recorre la ruta completa a la velocidad dada con un fix cada 20 m
+    private static void drive(RouteData route, SpeedProfile profile, double speed) {
+        EtaEstimator eta = new EtaEstimator(route, profile, MORNING, UTC);
+        double[] cumulative = route.getCumulativeMeters();
+        for (double meters : cumulative) {
+            eta.onProgress(meters, MORNING + Math.round(meters / speed * 1000));
+        }
+    }
+
+    @Test
+    public void withoutHistory_usesTheDirectionsSpeed() {
+        RouteData route = straightRoute();
+        EtaEstimator eta = new EtaEstimator(route, new SpeedProfile(), MORNING, UTC);
+        assertEquals(200, eta.getTotalSeconds(), 1);
+        assertEquals(100, eta.onProgress(route.getLengthMeters() / 2, MORNING), 1);
+        // Fuera de la ruta conserva el último valor
+        assertEquals(100, eta.onProgress(-1, MORNING + 1000), 1);
+        assertEquals(0, eta.onProgress(route.getLengthMeters(), MORNING + 2000), 1e-9);
+    }
+
+    @Test
+    public void slowTrips_makeTheNextEstimateLonger() {
+        RouteData route = straightRoute();
+        SpeedProfile profile = new SpeedProfile();
+        drive(route, profile, 5);
+        assertTrue(profile.size() > 10);
+        double once = new EtaEstimator(route, profile, MORNING, UTC).getTotalSeconds();
+        assertTrue("Estimado " + once, once > 215 && once < 260);
+        for (int i = 0; i < 8; i++) drive(route, profile, 5);
+        double many = new EtaEstimator(route, profile, MORNING, UTC).getTotalSeconds();
+        // Con muchas muestras manda lo aprendido (5 m/s => ~400 s en los tramos conocidos)
+        assertTrue("Estimado " + many, many > 300 && many < 400);
+        // Otra franja del día no se ve afectada
+        assertEquals(200, new EtaEstimator(route, profile, MORNING + 6 * 3_600_000L, UTC).getTotalSeconds(), 1);
+    }
+
+    @Test
+    public void batchedFixes_recordEveryCellWithTheirOwnTime() {
+        // Con la pantalla apagada los fixes (uno por segundo a 20 m/s) llegan en lotes de 10 s:
+        // cada lote cruza casi dos celdas del perfil
+        RouteData route = straightRoute();
+        double length = route.getLengthMeters();
+        SpeedProfile everyFix = new SpeedProfile();
+        SpeedProfile lastOfBatch = new SpeedProfile();
+        EtaEstimator all = new EtaEstimator(route, everyFix, MORNING, UTC);
+        EtaEstimator last = new EtaEstimator(route, lastOfBatch, MORNING, UTC);
+        for (int batch = 0; batch * 200 <= length; batch++) {
+            for (int i = 0; i < 10; i++) {
+                int second = batch * 10 + i;
+                all.onProgress(Math.min(second * 20.0, length), MORNING + second * 1000L);
+            }
+            // Solo el último fix del lote, fechado al entregarse
+            last.onProgress(Math.min((batch * 10 + 9) * 20.0, length), MORNING + (batch + 1) * 10_000L);
+        }
+        // Cada fix con su hora registra también las celdas intermedias, a la velocidad real
+        assertTrue(everyFix.size() > lastOfBatch.size());
+        int bucket = SpeedProfile.bucketForHour(10);
+        int recorded = 0;
+        for (int lat = 2_000_000; lat < 2_000_000 + 1900; lat += 100) {
+            long key = SpeedProfile.key(lat, -9_800_000, 0);
+            if (everyFix.samples(key, bucket) == 0) continue;
+            recorded++;
+            assertEquals(20, everyFix.speed(key, bucket), 1);
+        }
+        assertTrue(recorded >= 15);
+    }
+
+    @Test
+    public void profile_isBoundedAndSurvivesARestart() throws Exception {
+        SpeedProfile profile = new SpeedProfile();
+        int extra = 50;
+        for (int i = 0; i < SpeedProfile.MAX_SEGMENTS + extra; i++) {
+            profile.record(SpeedProfile.key(2_000_000 + 100 * i, -9_800_000, 0), 3, 8, i);
+        }
+        assertEquals(SpeedProfile.MAX_SEGMENTS, profile.size());
+        // Se olvidaron los tramos usados hace más tiempo
+        assertTrue(Double.isNaN(profile.speed(SpeedProfile.key(2_000_000, -9_800_000, 0), 3)));
+        long newest = SpeedProfile.key(2_000_000 + 100 * (SpeedProfile.MAX_SEGMENTS + extra - 1), -9_800_000, 0);
+        assertEquals(8, profile.speed(newest, 3), 0.01);
+
+        File file = new File(folder.getRoot(), "velocidades.bin");
+        profile.save(file);
+        SpeedProfile loaded = SpeedProfile.load(file);
+        assertEquals(SpeedProfile.MAX_SEGMENTS, loaded.size());
+        assertEquals(8, loaded.speed(newest, 3), 0.01);
+        assertEquals(1, loaded.samples(newest, 3));
+        assertEquals(0, loaded.samples(newest, 4));
+        // Cada tramo ocupa 8 + 4 + 8 * 3 bytes en disco
+        assertTrue(file.length() <= 8 + SpeedProfile.MAX_SEGMENTS * 36L);
+    }
+}
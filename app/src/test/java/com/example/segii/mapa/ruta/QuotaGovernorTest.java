@@ -0,0 +1,123 @@
+package com.example.segii.mapa.ruta;
+
+import com.example.segii.mapa.ruta.QuotaGovernor.Api;
+import com.example.segii.mapa.ruta.QuotaGovernor.Decision;
+import com.example.segii.mapa.ruta.QuotaGovernor.Priority;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+// Pruebas del control de cuota: ráfagas, reservas por prioridad y presupuesto diario en disco
+public class QuotaGovernorTest {
+    private static final long DAY_MS = 24 * 60 * 60 * 1000L;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    // Reloj de pared de prueba que empieza al mediodía para no cruzar de día sin querer, y reloj monótono
+    private final AtomicLong now = new AtomicLong(1_700_000_000_000L / DAY_MS * DAY_MS + DAY_MS / 2);
+    private final AtomicLong elapsed = new AtomicLong(5_000_000L);
+
+    // El archivo se escribe en el mismo hilo para poder leerlo enseguida
+    private QuotaGovernor governor(File file, int geocoding, int directions) {
+        return new QuotaGovernor(file, now::get, elapsed::get, new int[]{geocoding, directions}, Runnable::run);
+    }
+
+    // Avanza ambos relojes
+    private void advance(long ms) {
+        now.addAndGet(ms);
+        elapsed.addAndGet(ms);
+    }
+
+    @Test
+    public void bucket_limitsBurstsAndRefills() throws IOException {
+        QuotaGovernor governor = governor(folder.newFile(), 100, 100);
+        for (int i = 0; i < QuotaGovernor.BURST; i++) {
+            assertEquals(Decision.GRANTED, governor.acquire(Api.DIRECTIONS, Priority.INTERACTIVE));
+        }
+        assertEquals(Decision.RATE_LIMITED, governor.acquire(Api.DIRECTIONS, Priority.INTERACTIVE));
+        // Cada API tiene su propia cubeta
+        assertEquals(Decision.GRANTED, governor.acquire(Api.GEOCODING, Priority.INTERACTIVE));
+
+        advance(QuotaGovernor.REFILL_MS);
+        assertEquals(Decision.GRANTED, governor.acquire(Api.DIRECTIONS, Priority.INTERACTIVE));
+        assertEquals(Decision.RATE_LIMITED, governor.acquire(Api.DIRECTIONS, Priority.INTERACTIVE));
+    }
+
+    @Test
+    public void bucket_ignoresWallClockCorrections() throws IOException {
+        QuotaGovernor governor = governor(folder.newFile(), 100, 100);
+        for (int i = 0; i < QuotaGovernor.BURST; i++) {
+            assertEquals(Decision.GRANTED, governor.acquire(Api.DIRECTIONS, Priority.INTERACTIVE));
+        }
+        // La hora del sistema se corrige dos minutos hacia atrás mientras pasan 2 s reales
+        now.addAndGet(-2 * 60 * 1000L);
+        elapsed.addAndGet(QuotaGovernor.REFILL_MS);
+        assertEquals(Decision.GRANTED, governor.acquire(Api.DIRECTIONS, Priority.INTERACTIVE));
+        advance(QuotaGovernor.REFILL_MS);
+        assertEquals(Decision.GRANTED, governor.acquire(Api.DIRECTIONS, Priority.INTERACTIVE));
+    }
+
+    @Test
+    public void lowerPrioritiesLeaveTokensForTheUser() throws IOException {
+        QuotaGovernor governor = governor(folder.newFile(), 100, 100);
+        // Los recálculos se detienen con 2 fichas
+        int reroutes = 0;
+        while (governor.acquire(Api.DIRECTIONS, Priority.REROUTE) == Decision.GRANTED) reroutes++;
+        assertEquals(QuotaGovernor.BURST - 2, reroutes);
+        // La solicitud del usuario todavía pasa
+        assertEquals(Decision.GRANTED, governor.acquire(Api.DIRECTIONS, Priority.INTERACTIVE));
+        assertEquals(Decision.GRANTED, governor.acquire(Api.DIRECTIONS, Priority.INTERACTIVE));
+    }
+
+    @Test
+    public void writes_happenOffTheLockAndCoalesce() throws IOException {
+        File file = folder.newFile();
+        List<Runnable> queued = new ArrayList<>();
+        QuotaGovernor governor = new QuotaGovernor(file, now::get, elapsed::get, new int[]{100, 100}, queued::add);
+        for (int i = 0; i < 3; i++) {
+            assertEquals(Decision.GRANTED, governor.acquire(Api.DIRECTIONS, Priority.INTERACTIVE));
+        }
+        // Las tres concesiones dejan una sola escritura pendiente y nada en disco todavía
+        assertEquals(1, queued.size());
+        assertEquals(0, file.length());
+        queued.get(0).run();
+        assertEquals(3, governor(file, 100, 100).getUsedToday(Api.DIRECTIONS));
+    }
+
+    @Test
+    public void dailyBudget_survivesRestartsAndResetsNextDay() throws IOException {
+        File file = folder.newFile();
+        QuotaGovernor governor = governor(file, 100, 10);
+        for (int i = 0; i < 5; i++) {
+            advance(QuotaGovernor.REFILL_MS * QuotaGovernor.BURST);
+            assertEquals(Decision.GRANTED, governor.acquire(Api.DIRECTIONS, Priority.INTERACTIVE));
+        }
+
+        // Un reinicio de la app conserva lo usado
+        QuotaGovernor restarted = governor(file, 100, 10);
+        assertEquals(5, restarted.getUsedToday(Api.DIRECTIONS));
+        for (int i = 0; i < 4; i++) {
+            advance(QuotaGovernor.REFILL_MS * QuotaGovernor.BURST);
+            assertEquals(Decision.GRANTED, restarted.acquire(Api.DIRECTIONS, Priority.INTERACTIVE));
+        }
+        // Los recálculos solo usan el 90 % del presupuesto; el último queda para el usuario
+        advance(QuotaGovernor.REFILL_MS * QuotaGovernor.BURST);
+        assertEquals(Decision.BUDGET_EXHAUSTED, restarted.acquire(Api.DIRECTIONS, Priority.REROUTE));
+        assertEquals(Decision.GRANTED, restarted.acquire(Api.DIRECTIONS, Priority.INTERACTIVE));
+        assertEquals(Decision.BUDGET_EXHAUSTED, restarted.acquire(Api.DIRECTIONS, Priority.INTERACTIVE));
+
+        advance(DAY_MS);
+        assertEquals(0, restarted.getUsedToday(Api.DIRECTIONS));
+        assertEquals(Decision.GRANTED, restarted.acquire(Api.DIRECTIONS, Priority.INTERACTIVE));
+    }
+}
@@ -0,0 +1,170 @@
+package com.example.segii.mapa.ruta;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+// Pruebas del formato binario de rutas y comparación con JSON (tamaño y tiempo de lectura)
+public class RouteCodecTest {
+
+    // Crea una ruta sintética alrededor de Huauchinango
+    private static RouteData sampleRoute(int points, int steps) {
+        Random random = new Random(42);
+        int[] coords = new int[points * 2];
+        int lat = 2017382, lng = -9805490;
+        for (int i = 0; i < points; i++) {
+            lat += random.nextInt(21) - 10;
+            lng += random.nextInt(21) - 10;
+            coords[2 * i] = lat;
+            coords[2 * i + 1] = lng;
+        }
+        List<RouteStep> stepList = new ArrayList<>();
+        int perStep = points / steps;
+        for (int i = 0; i < steps; i++) {
+            stepList.add(new RouteStep(i * perStep, perStep, 120 + i, 30 + i,
+                    i % 2 == 0 ? "turn-left" : "turn-right", "Gira en la calle Benito Juárez número " + i));
+        }
+        return new RouteData("Mercado Municipal", coords[0], coords[1],
+                coords[coords.length - 2], coords[coords.length - 1], coords, stepList, 1700000000000L);
+    }
+
+    @Test
+    public void roundTrip_preservesRoute() {
+        RouteData route = sampleRoute(500, 10);
+        RouteData decoded = RouteCodec.decode(RouteCodec.encode(route));
+
+        assertEquals(route.destinationName, decoded.destinationName);
+        assertEquals(route.createdAtMillis, decoded.createdAtMillis);
+        assertEquals(route.destLatE5, decoded.destLatE5);
+        assertEquals(route.destLngE5, decoded.destLngE5);
+        assertArrayEquals(route.getCoordsE5(), decoded.getCoordsE5());
+        assertEquals(route.minLatE5, decoded.minLatE5);
+        assertEquals(route.maxLngE5, decoded.maxLngE5);
+        assertEquals(route.steps.size(), decoded.steps.size());
+        for (int i = 0; i < route.steps.size(); i++) {
+            assertEquals(route.steps.get(i).pointStart, decoded.steps.get(i).pointStart);
+            assertEquals(route.steps.get(i).instruction, decoded.steps.get(i).instruction);
+            assertEquals(route.steps.get(i).maneuver, decoded.steps.get(i).maneuver);
+        }
+    }
+
+    @Test
+    public void reader_readsHeaderWithoutDecodingPoints() {
+        RouteData route = sampleRoute(100, 4);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(RouteCodec.encode(route).length);
+        buffer.put(RouteCodec.encode(route));
+        buffer.flip();
+
+        RouteReader reader = RouteReader.wrap(buffer);
+        assertEquals(100, reader.getPointCount());
+        assertEquals(4, reader.getStepCount());
+        assertEquals("Mercado Municipal", reader.getDestinationName());
+
+        int[] last = new int[2];
+        reader.forEachPoint((index, latE5, lngE5) -> {
+            last[0] = latE5;
+            last[1] = lngE5;
+        });
+        assertEquals(route.getCoordsE5()[198], last[0]);
+        assertEquals(route.getCoordsE5()[199], last[1]);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void reader_rejectsInvalidData() {
+        RouteReader.wrap(ByteBuffer.wrap(new byte[]{1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13}));
+    }
+
+    @Test
+    public void polylineCodec_decodesGoogleSample() {
+        // Ejemplo de la documentación de Google: (38.5,-120.2), (40.7,-120.95), (43.252,-126.453)
+        String encoded = "_p~iF~ps|U_ulLnnqC_mqNvxq`@";
+        assertEquals(3, PolylineCodec.countPoints(encoded));
+        assertArrayEquals(new int[]{3850000, -12020000, 4070000, -12095000, 4325200, -12645300},
+                PolylineCodec.decode(encoded));
+    }
+
+    @Test
+    public void benchmark_binaryVsJson() throws Exception {
+        RouteData route = sampleRoute(5000, 60);
+        byte[] binary = RouteCodec.encode(route);
+        String json = toJson(route);
+        int iterations = 200;
+
+        // Calentamiento
+        for (int i = 0; i < 50; i++) {
+            RouteCodec.decode(binary);
+            fromJson(json);
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            RouteCodec.decode(binary);
+        }
+        long binaryNs = (System.nanoTime() - start) / iterations;
+
+        start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            fromJson(json);
+        }
+        long jsonNs = (System.nanoTime() - start) / iterations;
+
+        System.out.println("Ruta de 5000 puntos: binario " + binary.length + " bytes, " + binaryNs / 1000 + " us;"
+                + " JSON " + json.length() + " bytes, " + jsonNs / 1000 + " us");
+        assertTrue(binary.length * 4 < json.length());
+        assertArrayEquals(route.getCoordsE5(), fromJson(json).getCoordsE5());
+    }
+
+    // Representación JSON equivalente usada como referencia
+    private static String toJson(RouteData route) throws Exception {
+        JSONObject obj = new JSONObject();
+        obj.put("destinationName", route.destinationName);
+        obj.put("createdAt", route.createdAtMillis);
+        obj.put("origin", new JSONArray().put(route.originLatE5 / RouteData.E5).put(route.originLngE5 / RouteData.E5));
+        obj.put("destination", new JSONArray().put(route.destLatE5 / RouteData.E5).put(route.destLngE5 / RouteData.E5));
+        JSONArray points = new JSONArray();
+        for (int i = 0; i < route.getPointCount(); i++) {
+            points.put(new JSONArray().put(route.latAt(i)).put(route.lngAt(i)));
+        }
+        obj.put("points", points);
+        JSONArray steps = new JSONArray();
+        for (RouteStep step : route.steps) {
+            steps.put(new JSONObject()
+                    .put("start", step.pointStart).put("count", step.pointCount)
+                    .put("distance", step.distanceMeters).put("duration", step.durationSeconds)
+                    .put("maneuver", step.maneuver).put("instruction", step.instruction));
+        }
+        obj.put("steps", steps);
+        return obj.toString();
+    }
+
+    private static RouteData fromJson(String json) throws Exception {
+        JSONObject obj = new JSONObject(json);
+        JSONArray points = obj.getJSONArray("points");
+        int[] coords = new int[points.length() * 2];
+        for (int i = 0; i < points.length(); i++) {
+            JSONArray p = points.getJSONArray(i);
+            coords[2 * i] = RouteData.toE5(p.getDouble(0));
+            coords[2 * i + 1] = RouteData.toE5(p.getDouble(1));
+        }
+        List<RouteStep> steps = new ArrayList<>();
+        JSONArray jsonSteps = obj.getJSONArray("steps");
+        for (int i = 0; i < jsonSteps.length(); i++) {
+            JSONObject s = jsonSteps.getJSONObject(i);
+            steps.add(new RouteStep(s.getInt("start"), s.getInt("count"), s.getInt("distance"),
+                    s.getInt("duration"), s.getString("maneuver"), s.getString("instruction")));
+        }
+        JSONArray origin = obj.getJSONArray("origin");
+        JSONArray dest = obj.getJSONArray("destination");
+        return new RouteData(obj.getString("destinationName"),
+                RouteData.toE5(origin.getDouble(0)), RouteData.toE5(origin.getDouble(1)),
+                RouteData.toE5(dest.getDouble(0)), RouteData.toE5(dest.getDouble(1)),
+                coords, steps, obj.getLong("createdAt"));
+    }
+}
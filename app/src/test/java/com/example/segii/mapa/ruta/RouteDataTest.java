@@ -0,0 +1,44 @@
+package com.example.segii.mapa.ruta;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+// Pruebas de la decodificación por pasos de la geometría de la ruta
+public class RouteDataTest {
+    // Polilínea de ejemplo de la documentación de Google (3 puntos)
+    private static final String SAMPLE = "_p~iF~ps|U_ulLnnqC_mqNvxq`@";
+    private static final int[] SAMPLE_E5 = {3850000, -12020000, 4070000, -12095000, 4325200, -12645300};
+
+    private static RouteData lazyRoute() {
+        return new RouteData("Destino", 3850000, -12020000, 4325200, -12645300,
+                Arrays.asList(new RouteStep(0, 3, 500, 60, "", "Paso 1"),
+                        new RouteStep(3, 3, 5000, 600, "turn-left", "Paso 2")),
+                new String[]{SAMPLE, SAMPLE},
+                3850000, -12645300, 4325200, -12020000, 0L);
+    }
+
+    @Test
+    public void lazyRoute_decodesOnlyRequestedSteps() {
+        RouteData route = lazyRoute();
+        assertEquals(6, route.getPointCount());
+        assertFalse(route.isFullyDecoded());
+        assertEquals(1, route.stepsCovering(400));
+
+        route.decodeSteps(0, 1);
+        assertFalse(route.isFullyDecoded());
+
+        route.decodeSteps(1, 2);
+        assertTrue(route.isFullyDecoded());
+    }
+
+    @Test
+    public void lazyRoute_fullDecodeMatchesEagerGeometry() {
+        int[] expected = new int[12];
+        System.arraycopy(SAMPLE_E5, 0, expected, 0, 6);
+        System.arraycopy(SAMPLE_E5, 0, expected, 6, 6);
+        assertArrayEquals(expected, lazyRoute().getCoordsE5());
+    }
+}
@@ -0,0 +1,131 @@
+package com.example.segii.mapa.ruta;
+
+import com.google.android.gms.maps.model.LatLng;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+// Pruebas de la división recorrida/pendiente de la ruta, de sus tramos y del costo por fix en rutas largas
+public class RouteProgressTest {
+    // Ruta recta hacia el norte con un punto cada 10 m
+    private static final double STEP_DEG = 10 / 110_540.0;
+
+    private static RouteProgress straightRoute(int n, List<LatLng> points) {
+        double[] cumulative = new double[n];
+        for (int i = 0; i < n; i++) {
+            points.add(new LatLng(20 + i * STEP_DEG, -98));
+            cumulative[i] = i * 10.0;
+        }
+        return new RouteProgress(points, cumulative);
+    }
+
+    @Test
+    public void split_interpolatesTheCutAndSharesIt() {
+        List<LatLng> points = new ArrayList<>();
+        RouteProgress progress = straightRoute(5, points);
+        assertTrue(progress.traveled().isEmpty());
+        assertEquals(5, progress.remaining().size());
+
+        assertTrue(progress.update(25));
+        // Recorrido: puntos 0, 1, 2 y el corte; pendiente: el corte, 3 y 4
+        assertEquals(4, progress.traveled().size());
+        assertEquals(3, progress.remaining().size());
+        assertSame(progress.getCut(), progress.traveled().get(3));
+        assertSame(progress.getCut(), progress.remaining().get(0));
+        assertSame(points.get(3), progress.remaining().get(1));
+        assertEquals(20 + 2.5 * STEP_DEG, progress.getCut().latitude, 1e-9);
+
+        // Un avance menor al mínimo no se vuelve a dibujar; fuera de la ruta tampoco
+        assertFalse(progress.update(25 + RouteProgress.MIN_STEP_METERS / 2));
+        assertFalse(progress.update(-1));
+
+        // Retroceso por un ajuste del GPS y avance más allá del final
+        assertTrue(progress.update(5));
+        assertEquals(2, progress.traveled().size());
+        assertTrue(progress.update(1000));
+        assertEquals(points.get(4).latitude, progress.getCut().latitude, 1e-12);
+        assertEquals(2, progress.remaining().size());
+    }
+
+    @Test
+    public void longRoute_updateCostDoesNotDependOnLength() {
+        int n = 50_000; // 500 km de geometría
+        RouteProgress progress = straightRoute(n, new ArrayList<>());
+        // Calentamiento
+        for (int i = 0; i < 2000; i++) progress.update(i * 4.0);
+
+        int fixes = 20_000;
+        long start = System.nanoTime();
+        for (int i = 0; i < fixes; i++) {
+            progress.update(8000 + i * 15.0);
+            // Recorre los extremos como lo hace el mapa al recibir los puntos
+            progress.traveled().get(progress.traveled().size() - 1);
+            progress.remaining().get(0);
+        }
+        double perFixUs = (System.nanoTime() - start) / 1000.0 / fixes;
+        System.out.printf("Avance de la ruta: %.2f us por fix (%d puntos)%n", perFixUs, n);
+        // Muy por debajo del presupuesto de un cuadro (16 ms)
+        assertTrue(perFixUs < 1000);
+    }
+
+    @Test
+    public void chunks_coverTheRouteAndFollowTheCut() {
+        int n = 2 * RouteProgress.CHUNK_POINTS + 11;
+        List<LatLng> points = new ArrayList<>();
+        RouteProgress progress = straightRoute(n, points);
+        assertEquals(3, progress.chunkCount());
+        // Los tramos comparten el punto de unión y juntos cubren toda la ruta
+        int covered = 0;
+        for (int c = 0; c < progress.chunkCount(); c++) {
+            List<LatLng> chunk = progress.chunk(c);
+            assertSame(points.get(covered), chunk.get(0));
+            covered += chunk.size() - 1;
+        }
+        assertEquals(n - 1, covered);
+        assertEquals(0, progress.activeChunk());
+        assertTrue(progress.activeRemaining().isEmpty());
+
+        // Corte a la mitad del segundo tramo
+        double meters = (RouteProgress.CHUNK_POINTS + 40.5) * 10;
+        assertTrue(progress.update(meters));
+        assertEquals(1, progress.activeChunk());
+        List<LatLng> traveled = progress.activeTraveled(), remaining = progress.activeRemaining();
+        assertSame(points.get(RouteProgress.CHUNK_POINTS), traveled.get(0));
+        assertEquals(42, traveled.size());
+        assertSame(progress.getCut(), traveled.get(traveled.size() - 1));
+        assertSame(progress.getCut(), remaining.get(0));
+        assertSame(points.get(RouteProgress.CHUNK_POINTS + 41), remaining.get(1));
+        assertSame(points.get(2 * RouteProgress.CHUNK_POINTS), remaining.get(remaining.size() - 1));
+
+        // Al final de la ruta el tramo activo es el último
+        assertTrue(progress.update(n * 10.0));
+        assertEquals(2, progress.activeChunk());
+        assertSame(points.get(n - 1), progress.activeRemaining().get(progress.activeRemaining().size() - 1));
+    }
+
+    @Test
+    public void longRoute_frameCopiesOnlyTheActiveChunk() {
+        int n = 50_000; // 500 km de geometría
+        RouteProgress progress = straightRoute(n, new ArrayList<>());
+        int fixes = 5_000;
+        int maxPoints = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < fixes; i++) {
+            progress.update(i * 97.0);
+            // Copia lo que el mapa recibe en cada cuadro (Polyline.setPoints copia la lista completa)
+            List<LatLng> traveled = new ArrayList<>(progress.activeTraveled());
+            List<LatLng> remaining = new ArrayList<>(progress.activeRemaining());
+            maxPoints = Math.max(maxPoints, traveled.size() + remaining.size());
+        }
+        double perFrameUs = (System.nanoTime() - start) / 1000.0 / fixes;
+        System.out.printf("Puntos enviados al mapa: %.2f us por cuadro (%d puntos en la ruta)%n", perFrameUs, n);
+        // Lo que se copia por cuadro está acotado por el tramo, no por la ruta
+        assertTrue(maxPoints <= RouteProgress.CHUNK_POINTS + 3);
+        // Muy por debajo del presupuesto de un cuadro (16 ms)
+        assertTrue(perFrameUs < 1000);
+    }
+}
@@ -0,0 +1,87 @@
+package com.example.segii.mapa.ubicacion;
+
+import com.example.segii.mapa.ruta.RouteData;
+import com.example.segii.mapa.ruta.RouteStep;
+
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+// Pruebas del filtro de Kalman y del ajuste a la ruta
+public class LocationFilterTest {
+    // Grados de latitud equivalentes a un metro
+    private static final double DEG_PER_M = 1 / LocationFilter.METERS_PER_DEG_LAT;
+
+    @Test
+    public void filter_reducesNoiseOnStraightWalk() {
+        LocationFilter filter = new LocationFilter();
+        Random random = new Random(7);
+        double rawError = 0, filteredError = 0;
+        // Caminata hacia el norte a 1.4 m/s con ruido de ±15 m
+        for (int i = 0; i < 120; i++) {
+            double trueLat = 20.17 + i * 1.4 * DEG_PER_M;
+            double noisyLat = trueLat + random.nextGaussian() * 15 * DEG_PER_M;
+            filter.update(noisyLat, -98.05, 15, i * 1000L);
+            if (i >= 20) {
+                rawError += Math.abs(noisyLat - trueLat);
+                filteredError += Math.abs(filter.getLatitude() - trueLat);
+            }
+        }
+        assertTrue(filteredError < rawError * 0.6);
+    }
+
+    @Test
+    public void filter_rejectsSingleJump() {
+        LocationFilter filter = new LocationFilter();
+        for (int i = 0; i < 10; i++) {
+            filter.update(20.17, -98.05, 5, i * 1000L);
+        }
+        // Salto de 300 m en un segundo
+        assertFalse(filter.update(20.17 + 300 * DEG_PER_M, -98.05, 5, 10_000L));
+        assertEquals(20.17, filter.getLatitude(), 2 * DEG_PER_M);
+    }
+
+    @Test
+    public void filter_resetsAfterSustainedJump() {
+        LocationFilter filter = new LocationFilter();
+        for (int i = 0; i < 10; i++) {
+            filter.update(20.17, -98.05, 5, i * 1000L);
+        }
+        // El salto se repite: los dos primeros se descartan y el tercero reinicia el filtro
+        double jumped = 20.17 + 300 * DEG_PER_M;
+        assertFalse(filter.update(jumped, -98.05, 5, 10_000L));
+        assertFalse(filter.update(jumped, -98.05, 5, 11_000L));
+        assertTrue(filter.update(jumped, -98.05, 5, 12_000L));
+        assertEquals(jumped, filter.getLatitude(), 1e-9);
+        // Los fixes siguientes ya se siguen sin rechazos
+        for (int i = 13; i < 16; i++) {
+            assertTrue(filter.update(jumped, -98.05, 5, i * 1000L));
+        }
+        assertEquals(jumped, filter.getLatitude(), 2 * DEG_PER_M);
+    }
+
+    @Test
+    public void matcher_snapsToRouteAndDetectsOffRoute() {
+        // Ruta recta hacia el este de ~1 km
+        int[] coords = {2017000, -9806000, 2017000, -9805500, 2017000, -9805000};
+        RouteData route = new RouteData("Destino", 2017000, -9806000, 2017000, -9805000, coords,
+                Collections.<RouteStep>emptyList(), 0L);
+        RouteMatcher matcher = new RouteMatcher();
+        matcher.setRoute(route);
+
+        // 10 m al norte de la ruta: se ajusta sobre ella
+        assertTrue(matcher.match(20.17 + 10 * DEG_PER_M, -98.052));
+        assertEquals(20.17, matcher.getMatchedLatitude(), 1e-7);
+        assertEquals(1, matcher.getSegment());
+
+        // Un solo fix lejano no es desvío; tres seguidos sí
+        matcher.match(20.17 + 100 * DEG_PER_M, -98.052);
+        assertFalse(matcher.isOffRoute());
+        matcher.match(20.17 + 100 * DEG_PER_M, -98.052);
+        matcher.match(20.17 + 100 * DEG_PER_M, -98.052);
+        assertTrue(matcher.isOffRoute());
+    }
+}